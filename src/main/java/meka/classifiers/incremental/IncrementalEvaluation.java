@@ -25,12 +25,21 @@ import meka.classifiers.multilabel.Evaluation;
 import weka.core.converters.AbstractFileSaver;
 import weka.core.converters.ArffSaver;
 import weka.core.converters.ConverterUtils;
+import weka.core.converters.ConverterUtils.DataSource;
 
 import java.io.File;
 import java.util.Arrays;
 import java.util.HashMap;
 import java.util.ArrayList;
 import java.util.Enumeration;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * IncrementalEvaluation.java - For Evaluating Incremental (Updateable) Classifiers.
@@ -46,8 +55,27 @@ public class IncrementalEvaluation {
 	 */
 	public static void runExperiment(MultiXClassifier h, String args[]) {
 		try {
-			h.setOptions(args);
-			Result avg = IncrementalEvaluation.evaluateModel(h,args);
+			// the classifier takes its options first; what remains are the evaluation options
+			String options[] = args.clone();
+			try {
+				h.setOptions(options);
+			}
+			catch(Exception e) {
+				// the classifier may reject the streaming flags, which it does not know: take out only those, and retry
+				options = args.clone();
+				boolean stream = Utils.getFlag("stream", options);
+				boolean pipeline = Utils.getFlag("pipeline", options);
+				if (!stream && !pipeline)
+					throw e;
+				h.setOptions(options);
+				List<String> rest = new ArrayList<String>(Arrays.asList(options));
+				if (stream)
+					rest.add("-stream");
+				if (pipeline)
+					rest.add("-pipeline");
+				options = rest.toArray(new String[0]);
+			}
+			Result avg = IncrementalEvaluation.evaluateModel(h,options);
 			if (avg != null)
 				System.out.println(avg);
 		} catch(Exception e) {
@@ -74,10 +102,21 @@ public class IncrementalEvaluation {
 			needPrebuiltModel = true;
 		}
 
-		// Load training data
+		// Stream the training data (rather than loading it)? In a pipeline?
+		boolean pipeline = Utils.getFlag("pipeline", options);
+		boolean stream = Utils.getFlag("stream", options) || pipeline;
+
+		// Load training data (or just its header, when streaming)
 		Instances train = null;
+		DataSource trainSource = null;
 		if (Utils.getOptionPos('t', options) > -1) {
-			train = Evaluation.loadDataset(options, 't');
+			if (stream) {
+				trainSource = openDataset(Utils.getOption('t', options));
+				train = trainSource.getStructure();
+			}
+			else {
+				train = Evaluation.loadDataset(options, 't');
+			}
 			MLUtils.prepareData(train);
 			needPrebuiltModel = false;  // we can build a model with training data
 		}
@@ -148,7 +187,21 @@ public class IncrementalEvaluation {
 		Utils.checkForRemainingOptions(options);
 
 		Result result = null;
-		if (train != null) {
+		if (trainSource != null) {
+			if (doEval && pipeline) {
+				result = evaluateModelPrequentialPipelined(h, trainSource, train, nWin, rLabeled, Top, Vop);
+			}
+			else if (doEval) {
+				result = evaluateModelPrequentialStream(h, trainSource, train, nWin, rLabeled, Top, Vop);
+			}
+			else {
+				Instances init = readInstances(trainSource, train, nWin); 	// initial window
+				h.buildClassifier(init);
+				while (trainSource.hasMoreElements(train))
+					((UpdateableClassifier) h).updateClassifier(nextInstance(trainSource, train));
+			}
+		}
+		else if (train != null) {
 			if (doEval) {
 				result = evaluateModelPrequentialBasic(h, train, nWin, rLabeled, Top, Vop);
 			}
@@ -338,10 +391,10 @@ public class IncrementalEvaluation {
 
 			// Calibrate threshold for next window
 			if (Top.equals("PCutL")) {
-				t = ThresholdUtils.calibrateThresholds(result.predictions,MLUtils.labelCardinalities(result.actuals));
+				t = ThresholdUtils.calibrateThresholds(result.getPredictions(),MLUtils.labelCardinalities(result.getActuals()));
 			}
 			else {
-				Arrays.fill(t,ThresholdUtils.calibrateThreshold(result.predictions,MLUtils.labelCardinality(result.allTrueValues())));
+				Arrays.fill(t,ThresholdUtils.calibrateThreshold(result.getPredictions(),MLUtils.labelCardinality(result.allTrueValues())));
 			}
 
 		}
@@ -465,41 +518,84 @@ public class IncrementalEvaluation {
 	 */
 	public static Result evaluateModelPrequentialBasic(MultiXClassifier h, Instances D, int windowSize, double rLabeled, String Top, String Vop) throws Exception {
 
-		if (h.getDebug())
-			System.out.println(":- Classifier -: "+h.getClass().getName()+": "+Arrays.toString(h.getOptions()));
+		Result result = new Result();
 
-		int L = D.classIndex();
+		long init_time = buildInitial(h,new Instances(D,0,windowSize),result,rLabeled); 	// initial window
 
-		Result result = new Result();
+		D = new Instances(D,windowSize,D.numInstances()-windowSize); 	// the rest (after the initial window)
 
-		long train_time = 0;
-		long test_time = 0;
+		if (h.getDebug()) {
+			System.out.println("Proceeding to Test/Label/Update cycle on remaining ("+D.numInstances()+") instances ...");
+		}
 
-		double nth = 1. / rLabeled; // label every nth example
-		result.setInfo("Supervision",String.valueOf(rLabeled));
+		setInfo(h,D,result,Top,Vop);
 
-		Instances D_init = new Instances(D,0,windowSize); 	// initial window
+		return prequential(h,new DataSource(D),D,result,windowSize,rLabeled,Vop,init_time,D.numInstances());
+	}
+
+
+	/**
+	 * Prequential Evaluation - Accuracy since the start of evaluation, streaming through the data.
+	 * Like evaluateModelPrequentialBasic(h,D,...), but the instances are read from 'source' one at a time (test, then
+	 * train), and only the evaluation statistics are accumulated, not the predictions; so memory does not grow with the
+	 * size of the stream. The curve-based statistics (AUPRC, AUROC, ...) need all the predictions, and are not given;
+	 * neither is the log loss limited by D (which needs the size of the stream in advance).
+	 * @param	h		Multilabel Classifier
+	 * @param 	source	stream
+	 * @param 	header	the header of the stream (with the class index set, e.g., by MLUtils.prepareData)
+	 * @param	windowSize	size of the initial window, and sampling frequency (of evaluation statistics)
+	 * @param	rLabeled	labelled-ness (1.0 by default)
+	 * @param	Top	threshold option
+	 * @param	Vop	verbosity option
+	 */
+	public static Result evaluateModelPrequentialStream(MultiXClassifier h, DataSource source, Instances header, int windowSize, double rLabeled, String Top, String Vop) throws Exception {
+
+		Result result = new Result(header.classIndex());
+		result.setStorePredictions(false);
+
+		long init_time = buildInitial(h,readInstances(source,header,windowSize),result,rLabeled); 	// initial window
 
 		if (h.getDebug()) {
-			System.out.println("Training classifier on initial window (of size "+windowSize+") ...");
+			System.out.println("Proceeding to Test/Label/Update cycle on the remaining instances ...");
 		}
 
-		train_time = System.currentTimeMillis();
-		h.buildClassifier(D_init); 										// initial classifir
-		train_time = System.currentTimeMillis() - train_time;
+		setInfo(h,header,result,Top,Vop);
+		result.setAccumulator(newAccumulator(result,Vop));
 
-		D = new Instances(D,windowSize,D.numInstances()-windowSize); 	// the rest (after the initial window)
+		return prequential(h,source,header,result,windowSize,rLabeled,Vop,init_time,-1);
+	}
+
+	/**
+	 * BuildInitial - Build h on the initial window D_init (the first step of a prequential evaluation into 'result').
+	 * @return	the time taken (in nanoseconds)
+	 */
+	private static long buildInitial(MultiXClassifier h, Instances D_init, Result result, double rLabeled) throws Exception {
+
+		if (h.getDebug())
+			System.out.println(":- Classifier -: "+h.getClass().getName()+": "+Arrays.toString(h.getOptions()));
+
+		result.setInfo("Supervision",String.valueOf(rLabeled));
 
 		if (h.getDebug()) {
-			System.out.println("Proceeding to Test/Label/Update cycle on remaining ("+D.numInstances()+") instances ...");
+			System.out.println("Training classifier on initial window (of size "+D_init.numInstances()+") ...");
 		}
 
+		long init_time = System.nanoTime();
+		h.buildClassifier(D_init); 										// initial classifier
+		return System.nanoTime() - init_time;
+	}
+
+	/**
+	 * SetInfo - Set the info of a prequential evaluation of h (already built) on the instances of 'header' into 'result',
+	 * including its type, and (if multi-label) its threshold, of which only a single one can be chosen.
+	 */
+	private static void setInfo(MultiXClassifier h, Instances header, Result result, String Top, String Vop) {
 		result.setInfo("Classifier",h.getClass().getName());
 		result.setInfo("Options",Arrays.toString(h.getOptions()));
 		result.setInfo("Additional Info",h.toString());
-		result.setInfo("Dataset",MLUtils.getDatasetName(D));
+		result.setInfo("Dataset",MLUtils.getDatasetName(header));
 		result.setInfo("Verbosity",Vop);
-		if (h instanceof MultiTargetClassifier || Evaluation.isMT(D)) {
+		if (h instanceof MultiTargetClassifier || Evaluation.isMT(header)) {
 			result.setInfo("Type","MT");
 		}
 		else {
@@ -512,64 +608,391 @@ public class IncrementalEvaluation {
 			}
 			result.setInfo("Threshold", String.valueOf(t));
 		}
+	}
+
+	/**
+	 * NewAccumulator - An accumulator for the type and threshold in the info of 'result' (see setInfo), which gives the
+	 * statistics for verbosity option Vop.
+	 */
+	private static MetricAccumulator newAccumulator(Result result, String Vop) {
+		int V = MLUtils.getIntegerOption(Vop,1);
+		MetricAccumulator acc;
+		if (result.getInfo("Type").equals("MT"))
+			acc = new MetricAccumulator(result.L,null);
+		else
+			acc = new MetricAccumulator(result.L,ThresholdUtils.thresholdStringToArray(result.getInfo("Threshold"),result.L));
+		acc.setRanking(V > 1);
+		acc.setLevenshtein(V > 2);
+		return acc;
+	}
+
+	/**
+	 * Prequential - Test then train h on each (remaining) instance of 'source', adding the results to 'result', and sampling
+	 * the evaluation statistics every windowSize instances; then add the final statistics and running times.
+	 * @param	init_time	the time taken to build h on the initial window (in nanoseconds)
+	 * @param	N	the number of instances in 'source' (only for printing the progress), -1 if not known
+	 */
+	private static Result prequential(MultiXClassifier h, DataSource source, Instances header, Result result, int windowSize, double rLabeled, String Vop, long init_time, int N) throws Exception {
+
+		int L = header.classIndex();
+
+		long test_time = 0;
+		long train_time = init_time;
+
 		ArrayList<HashMap<String,Object>> samples = new ArrayList<HashMap<String,Object>>();
 
-		for(int i = 0; i < D.numInstances(); i++) {
+		for(int i = 0; source.hasMoreElements(header); i++) {
 
-			Instance x = D.instance(i);
-			Instance x_ = (Instance)x.copy(); 		// copy
-				
-			/*
-			 * TEST
-			 */
-			long before_test = System.currentTimeMillis();
-			double y[] = h.distributionForInstance(x_);
-			long after_test = System.currentTimeMillis();
-			test_time += (after_test-before_test);
-			result.addResult(y,x);
+			TestedInstance r = testThenTrain(h,nextInstance(source,header),L,isLabelled(i,rLabeled));
+			test_time += r.testNanos;
+			train_time += r.updateNanos;
+			result.addResult(r.pred,r.y);
 
 			/*
-			 * LABEL BECOMES AVAILABLE ?
+			 * RECORD MEASUREMENT
 			 */
-			if ( rLabeled >= 0.5 ) {
-				x = MLUtils.setLabelsMissing(x,L);
+			if (i % windowSize == (windowSize-1)) {
+				addSample(samples,result,Vop,test_time/1e9,train_time/1e9,i,N);
 			}
 
+		}
+
+		result.output = Result.getStats(result,Vop);
+		result.setMeasurement("Results sampled over time", Result.getResultsAsInstances(samples));
+
+		result.vals.put("Test time",(test_time)/1e9);
+		result.vals.put("Build time",(train_time)/1e9);
+		result.vals.put("Total time",(test_time+train_time)/1e9);
+
+		return result;
+	}
+
+	/**
+	 * TestedInstance - the outcome of testing the classifier on an instance, then updating it (see testThenTrain).
+	 */
+	private static class TestedInstance {
+
+		/** marks the end of the stream */
+		static final TestedInstance END = new TestedInstance(null, null, 0L, 0L);
+
+		/** the true values */
+		final int y[];
+
+		/** the prediction */
+		final double pred[];
+
+		/** the time taken to make the prediction, and to update the classifier (in nanoseconds) */
+		final long testNanos, updateNanos;
+
+		TestedInstance(int y[], double pred[], long testNanos, long updateNanos) {
+			this.y = y;
+			this.pred = pred;
+			this.testNanos = testNanos;
+			this.updateNanos = updateNanos;
+		}
+	}
+
+	/**
+	 * TestThenTrain - Test h on x, then update h with x, with its labels set missing if it is not labelled.
+	 * @return	the true values of x, the prediction, and the time taken for each step
+	 */
+	private static TestedInstance testThenTrain(MultiXClassifier h, Instance x, int L, boolean labelled) throws Exception {
+
+		Instance x_ = (Instance)x.copy(); 		// copy
+
+		/*
+		 * TEST
+		 */
+		long before_test = System.nanoTime();
+		double y[] = h.distributionForInstance(x_);
+		long after_test = System.nanoTime();
+		int real[] = MLUtils.toIntArray(x,y.length);
+
+		/*
+		 * LABEL BECOMES AVAILABLE ?
+		 */
+		if (!labelled) {
+			x = MLUtils.setLabelsMissing(x,L);
+		}
+
+		/*
+		 * UPDATE
+		 * (The classifier will have to decide if it wants to deal with unlabelled instances.)
+		 */
+		long before = System.nanoTime();
+		((UpdateableClassifier)h).updateClassifier(x);
+		long after = System.nanoTime();
+
+		return new TestedInstance(real,y,after_test-before_test,after-before);
+	}
+
+	/**
+	 * IsLabelled - Whether the i-th instance of a stream with labelled-ness rLabeled is labelled: as in
+	 * evaluateModelBatchWindow, every (1/rLabeled)-th instance is labelled if rLabeled &lt; 0.5, otherwise every
+	 * (1/(1-rLabeled))-th instance is unlabelled; all of them are labelled if rLabeled is 1.0.
+	 */
+	private static boolean isLabelled(int i, double rLabeled) {
+		if (rLabeled >= 1.0)
+			return true;
+		if (rLabeled <= 0.0)
+			return false;
+		if (rLabeled < 0.5)
+			return (i % (int)(1./rLabeled) == 0);
+		return (i % (int)(1./(1.-rLabeled)) != 0);
+	}
+
+	/**
+	 * AddSample - Add the evaluation statistics so far (after the i-th instance, of N, or -1 if not known) to 'samples',
+	 * along with the running times (in seconds).
+	 * @return	the sample added
+	 */
+	private static HashMap<String,Object> addSample(ArrayList<HashMap<String,Object>> samples, Result result, String Vop, double test_time, double train_time, int i, int N) {
+		HashMap<String,Object> eval_sample = Result.getStats(result,Vop);
+		eval_sample.put("Test time",test_time);
+		eval_sample.put("Build time",train_time);
+		eval_sample.put("Total time",test_time+train_time);
+		eval_sample.put("Instances",(double)i);
+		eval_sample.put("Samples",(double)(samples.size()+1));
+		samples.add(eval_sample);
+		System.out.println("Sample (#"+samples.size()+") of performance at "+i+(N >= 0 ? "/"+N : "")+" instances.");
+		return eval_sample;
+	}
+
+	/** the default capacity of the queues between the stages of evaluateModelPrequentialPipelined */
+	public static final int DEFAULT_QUEUE_SIZE = 1024;
+
+	/** marks the end of the stream in the queue of parsed instances */
+	private static final Instance END_OF_STREAM = new DenseInstance(0);
+
+	/**
+	 * Prequential Evaluation (pipelined) - as evaluateModelPrequentialPipelined(h,source,header,windowSize,rLabeled,Top,Vop,queueSize),
+	 * with queues of DEFAULT_QUEUE_SIZE.
+	 */
+	public static Result evaluateModelPrequentialPipelined(MultiXClassifier h, DataSource source, Instances header, int windowSize, double rLabeled, String Top, String Vop) throws Exception {
+		return evaluateModelPrequentialPipelined(h, source, header, windowSize, rLabeled, Top, Vop, DEFAULT_QUEUE_SIZE);
+	}
+
+	/**
+	 * Prequential Evaluation (pipelined) - As evaluateModelPrequentialStream(h,source,...), but in three stages, each in its
+	 * own thread and connected by bounded queues: (1) reading/parsing the instances, (2) testing, then updating the classifier,
+	 * and (3) evaluation. Testing and updating are one stage, since the classifier must be updated with each instance before
+	 * it is tested on the next one (and classifiers are not thread-safe). Memory is bounded by the queues and the window.
+	 * <br>
+	 * Besides the accumulated statistics, the example-based statistics over the last windowSize instances are given
+	 * (sliding window, e.g., "Accuracy (window)"), as well as the distribution of the time taken per instance to test and
+	 * to update (in microseconds, measured with System.nanoTime()), and the throughput of the pipeline.
+	 * @param	h		Multilabel Classifier
+	 * @param 	source	stream
+	 * @param 	header	the header of the stream (with the class index set, e.g., by MLUtils.prepareData)
+	 * @param	windowSize	size of the initial window, of the sliding window, and sampling frequency (of evaluation statistics)
+	 * @param	rLabeled	labelled-ness (1.0 by default)
+	 * @param	Top	threshold option
+	 * @param	Vop	verbosity option
+	 * @param	queueSize	the capacity of the queues between the stages
+	 */
+	public static Result evaluateModelPrequentialPipelined(MultiXClassifier h, final DataSource source, final Instances header, final int windowSize, double rLabeled, String Top, final String Vop, int queueSize) throws Exception {
+
+		int L = header.classIndex();
+
+		final Result result = new Result(L);
+		result.setStorePredictions(false);
+
+		final long init_time = buildInitial(h,readInstances(source,header,windowSize),result,rLabeled); 	// initial window
+
+		if (h.getDebug()) {
+			System.out.println("Proceeding to pipelined Test/Label/Update cycle on the remaining instances ...");
+		}
+
+		setInfo(h,header,result,Top,Vop);
+		MetricAccumulator acc = newAccumulator(result,Vop);
+		result.setAccumulator(acc);
+
+		// (only touched by the evaluation stage, until it is done)
+		final SlidingWindowMetrics window = new SlidingWindowMetrics(L,acc.getThresholds(),windowSize);
+		final LatencyHistogram testLatency = new LatencyHistogram();
+		final LatencyHistogram updateLatency = new LatencyHistogram();
+		final ArrayList<HashMap<String,Object>> samples = new ArrayList<HashMap<String,Object>>();
+
+		final BlockingQueue<Instance> parsed = new ArrayBlockingQueue<Instance>(queueSize);
+		final BlockingQueue<TestedInstance> tested = new ArrayBlockingQueue<TestedInstance>(queueSize);
+
+		long pipeline_time = System.nanoTime();
+		ExecutorService executor = ThreadUtils.newExecutor(2);
+		try {
 			/*
-			 * UPDATE
-			 * (The classifier will have to decide if it wants to deal with unlabelled instances.)
+			 * READ
 			 */
-			long before = System.currentTimeMillis();
-			((UpdateableClassifier)h).updateClassifier(x);
-			long after = System.currentTimeMillis();
-			train_time += (after-before); 
+			Future<Void> reader = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					try {
+						while (source.hasMoreElements(header))
+							parsed.put(nextInstance(source,header));
+					}
+					finally {
+						parsed.put(END_OF_STREAM);
+					}
+					return null;
+				}
+			});
 
 			/*
 			 * RECORD MEASUREMENT
 			 */
-			if (i % windowSize == (windowSize-1)) {
-				HashMap<String,Object> eval_sample = Result.getStats(result,Vop);
-				eval_sample.put("Test time",(test_time)/1000.0);
-				eval_sample.put("Build time",(train_time)/1000.0);
-				eval_sample.put("Total time",(test_time+train_time)/1000.0);
-				eval_sample.put("Instances",(double)i);
-				eval_sample.put("Samples",(double)(samples.size()+1));
-				samples.add(eval_sample);
-				System.out.println("Sample (#"+samples.size()+") of performance at "+i+"/"+D.numInstances()+" instances.");
+			Future<Void> evaluator = executor.submit(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					int i = 0;
+					for (TestedInstance r = tested.take(); r != TestedInstance.END; r = tested.take(), i++) {
+						result.addResult(r.pred,r.y);
+						window.update(r.y,r.pred);
+						testLatency.record(r.testNanos);
+						updateLatency.record(r.updateNanos);
+						if (i % windowSize == (windowSize-1)) {
+							HashMap<String,Object> eval_sample = addSample(samples,result,Vop,testLatency.getSum()/1e9,(init_time+updateLatency.getSum())/1e9,i,-1);
+							putWindowStats(eval_sample,window);
+						}
+					}
+					return null;
+				}
+			});
+
+			try {
+				int i = 0;
+				for (Instance x = take(parsed,reader); x != END_OF_STREAM; x = take(parsed,reader), i++) {
+					put(tested,testThenTrain(h,x,L,isLabelled(i,rLabeled)),evaluator);
+				}
+			}
+			finally {
+				put(tested,TestedInstance.END,evaluator);
 			}
 
+			try {
+				reader.get();
+				evaluator.get();
+			}
+			catch(ExecutionException e) {
+				if (e.getCause() instanceof Exception)
+					throw (Exception)e.getCause();
+				throw e;
+			}
+		}
+		finally {
+			executor.shutdownNow();
 		}
+		pipeline_time = System.nanoTime() - pipeline_time;
 
 		result.output = Result.getStats(result,Vop);
-		result.setMeasurement("Results sampled over time", Result.getResultsAsInstances(samples));
-
-		result.vals.put("Test time",(test_time)/1000.0);
-		result.vals.put("Build time",(train_time)/1000.0);
-		result.vals.put("Total time",(test_time+train_time)/1000.0);
+		putWindowStats(result.output,window);
+		if (!samples.isEmpty())
+			result.setMeasurement("Results sampled over time", Result.getResultsAsInstances(samples));
+
+		double test_time = testLatency.getSum()/1e9;
+		double train_time = (init_time+updateLatency.getSum())/1e9;
+		result.vals.put("Test time",test_time);
+		result.vals.put("Build time",train_time);
+		result.vals.put("Total time",test_time+train_time);
+		result.vals.put("Throughput (instances/s)",testLatency.numValues()/(pipeline_time/1e9));
+		putLatencies(result.vals,"Test latency",testLatency);
+		putLatencies(result.vals,"Update latency",updateLatency);
 
 		return result;
 	}
 
+	/**
+	 * PutWindowStats - add the statistics over the sliding window to 'stats'.
+	 */
+	private static void putWindowStats(HashMap<String,Object> stats, SlidingWindowMetrics window) {
+		if (window.isMultiLabel())
+			stats.put("Accuracy (window)",window.P_Accuracy());
+		stats.put("Hamming score (window)",window.P_Hamming());
+		stats.put("Exact match (window)",window.P_ExactMatch());
+		if (window.isMultiLabel())
+			stats.put("F1 (micro averaged) (window)",window.P_FmicroAvg());
+	}
+
+	/**
+	 * PutLatencies - add the mean, median, tail percentiles, and maximum of a latency histogram to 'stats' (in microseconds).
+	 */
+	private static void putLatencies(HashMap<String,Object> stats, String name, LatencyHistogram latency) {
+		stats.put(name+" mean (us)",latency.getMean()/1e3);
+		stats.put(name+" 50% (us)",latency.getPercentile(0.5)/1e3);
+		stats.put(name+" 99% (us)",latency.getPercentile(0.99)/1e3);
+		stats.put(name+" 99.9% (us)",latency.getPercentile(0.999)/1e3);
+		stats.put(name+" max (us)",latency.getMax()/1e3);
+	}
+
+	/**
+	 * Take - the next element from 'queue', failing if the stage 'producer' failed without putting one.
+	 */
+	private static <E> E take(BlockingQueue<E> queue, Future<?> producer) throws Exception {
+		while (true) {
+			E e = queue.poll(100, TimeUnit.MILLISECONDS);
+			if (e != null)
+				return e;
+			if (producer.isDone() && queue.isEmpty()) {
+				producer.get();
+				throw new IllegalStateException("Stage finished without marking the end of the stream");
+			}
+		}
+	}
+
+	/**
+	 * Put - put 'e' into 'queue', failing if the stage 'consumer' failed (and would never take it).
+	 */
+	private static <E> void put(BlockingQueue<E> queue, E e, Future<?> consumer) throws Exception {
+		while (!queue.offer(e, 100, TimeUnit.MILLISECONDS)) {
+			if (consumer.isDone()) {
+				consumer.get();
+				throw new IllegalStateException("Stage finished before the end of the stream");
+			}
+		}
+	}
+
+	/**
+	 * OpenDataset - open a dataset for reading it incrementally (checks the file as Evaluation.loadDataset does).
+	 * @param	filename	the filename to open
+	 * @return	the data source
+	 */
+	public static DataSource openDataset(String filename) throws Exception {
+
+		// Check for filename
+		if (filename == null || filename.isEmpty())
+			throw new Exception("[Error] You did not specify a dataset!");
+
+		// Check for existence of file
+		File file = new File(filename);
+		if (!file.exists())
+			throw new Exception("[Error] File does not exist: " + filename);
+		if (file.isDirectory())
+			throw new Exception("[Error] "+filename+ " points to a directory!");
+
+		try {
+			return new DataSource(filename);
+		} catch(Exception e) {
+			e.printStackTrace();
+			throw new Exception("[Error] Failed to open file '"+filename+"'.");
+		}
+	}
+
+	/**
+	 * NextInstance - the next instance from 'source', as part of 'header' (i.e., with its class index).
+	 */
+	private static Instance nextInstance(DataSource source, Instances header) throws Exception {
+		Instance x = source.nextElement(header);
+		x.setDataset(header);
+		return x;
+	}
+
+	/**
+	 * ReadInstances - read (up to) the next n instances from 'source'.
+	 */
+	private static Instances readInstances(DataSource source, Instances header, int n) throws Exception {
+		Instances D = new Instances(header, n);
+		while (D.numInstances() < n && source.hasMoreElements(header))
+			D.add(nextInstance(source,header));
+		return D;
+	}
 
 	public static void printOptions(Enumeration e) {
 
@@ -586,6 +1009,10 @@ public class IncrementalEvaluation {
 		//text.append("\tSets the percentage of data to use for the initial training, e.g., 10.\n");
 		text.append("-x <number of windows>\n");
 		text.append("\tSets the number of samples to take (at evenly space intervals); default: 10.\n");
+		text.append("-stream\n");
+		text.append("\tReads the training data one instance at a time (test, then train) rather than loading it into memory;\n\tonly the evaluation statistics are kept (no curve-based ones).\n");
+		text.append("-pipeline\n");
+		text.append("\tAs -stream, but reads, tests/updates, and evaluates in separate threads; also gives statistics over a sliding\n\twindow (of the sampling size), latency percentiles, and throughput.\n");
 		text.append("-no-eval\n");
 		text.append("\tSkips evaluation, e.g., used when test set contains no class labels.\n");
 		text.append("-supervision <ratio labelled>\n");
@@ -20,6 +20,8 @@ import meka.core.A;
 import meka.core.MatrixUtils;
 import meka.core.OptionUtils;
 import meka.core.StatUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
 import mst.Edge;
 import mst.EdgeWeightedGraph;
 import mst.KruskalMST;
@@ -43,7 +45,7 @@ import java.util.*;
  * @author	Jesse Read
  * @version June 2013
  */
-public class BCC extends CC {
+public class BCC extends CC implements ThreadLimiter {
 
 	private static final long serialVersionUID = 585507197229071545L;
 
@@ -96,7 +98,7 @@ public class BCC extends CC {
 		else {	
 			// Old/default Option
 			if (getDebug()) System.out.println("The Frequency method for finding marginal dependence.");
-			CD = StatUtils.margDepMatrix(D,m_DependencyType);
+			CD = StatUtils.margDepMatrix(D,m_DependencyType,m_NumThreads);
 		}
 
 		if (getDebug()) System.out.println(MatrixUtils.toString(CD));
@@ -216,10 +218,46 @@ public class BCC extends CC {
 		return "XXX";
 	}
 
+	protected int m_NumThreads = ThreadUtils.SEQUENTIAL;
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for measuring the label dependencies; -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	@Override
 	public Enumeration listOptions() {
 		Vector result = new Vector();
 		result.addElement(new Option("\tThe way to measure dependencies.\n\tdefault: "+m_DependencyType+" (frequencies only)", "X", 1, "-X <value>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + ThreadUtils.SEQUENTIAL, "num-threads");
 		OptionUtils.add(result, super.listOptions());
 		return OptionUtils.toEnumeration(result);
 	}
@@ -227,6 +265,7 @@ public class BCC extends CC {
 	@Override
 	public void setOptions(String[] options) throws Exception {
 		setDependencyType(OptionUtils.parse(options, 'X', "Ibf"));
+		setNumThreads(OptionUtils.parse(options, "num-threads", ThreadUtils.SEQUENTIAL));
 		super.setOptions(options);
 	}
 
@@ -234,6 +273,7 @@ public class BCC extends CC {
 	public String [] getOptions() {
 		List<String> result = new ArrayList<>();
 		OptionUtils.add(result, 'X', getDependencyType());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		OptionUtils.add(result, super.getOptions());
 		return OptionUtils.toArray(result);
 	}
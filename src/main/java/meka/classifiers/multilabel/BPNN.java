@@ -19,11 +19,23 @@ import Jama.Matrix;
 import meka.classifiers.multilabel.NN.AbstractNeuralNet;
 import meka.core.MLUtils;
 import meka.core.MatrixUtils;
+import meka.core.OptionUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.Option;
 
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Enumeration;
+import java.util.List;
 import java.util.Random;
+import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
 
 /**
  * @TEMP
@@ -32,12 +44,14 @@ import java.util.Random;
 /**
  * BPNN.java - Back Propagation Neural Network.
  * This is a standard back-propagated Neural Network with multiple outputs that correspond to multiple labels.<br>
- * If trained 'from scratch' only 1 layer is possible, but if you initialise it (from another method) with pre-trained weight matrices, the number of layers is inferred from that.
+ * If trained 'from scratch' only 1 layer is possible, but if you initialise it (from another method) with pre-trained weight matrices, the number of layers is inferred from that.<br>
+ * Training is by (mini-batch) gradient descent: the forward and backward passes of each batch are matrix-matrix products into buffers allocated once per training run,
+ * optionally split by rows over several threads (with the same result as on a single thread). With a batch size of 1 (the default), this is the original per-instance training.
  * @author Jesse Read 
  * @version March 2013
 */
 
-public class BPNN extends AbstractNeuralNet {
+public class BPNN extends AbstractNeuralNet implements ThreadLimiter {
 
 	private static final long serialVersionUID = -4568680054917021671L;
 
@@ -46,6 +60,20 @@ public class BPNN extends AbstractNeuralNet {
 	protected Random r = null;
 	protected Matrix dW_[] = null;
 
+	/** the mini-batch size */
+	protected int m_MiniBatchSize = 1;
+
+	/** the number of threads to use for training */
+	protected int m_NumThreads = ThreadUtils.SEQUENTIAL;
+
+	/** the minimum number of multiply-adds of a product for it to be split over threads */
+	protected static final int PARALLEL_MIN_WORK = 1 << 15;
+
+	/** training buffers: activations Z[0..nW] (with bias, except the output), error terms dZ[1..nW] (without bias), weight deltas dW[0..nW-1] */
+	protected transient double m_Z[][][] = null;
+	protected transient double m_dZ[][][] = null;
+	protected transient double m_dW[][][] = null;
+
 	public BPNN() {
 		// different default for now
 		m_E = 100;			
@@ -80,6 +108,21 @@ public class BPNN extends AbstractNeuralNet {
 		return popy(x);
 	}
 
+	/**
+	 * Predicts all instances of D with a single forward pass (of an N x d input matrix).
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+		return popY(MLUtils.getXfromD(D));
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(BPNN.class);
+	}
+
 	/**
 	 * Preset Weights - Initialize a BPNN with (pre-trained) weight matrices W (which also determines X dimensions).
 	 * @param	W	pre-trained weight matrix (should include bias weights, assume W[-1]-1 hidden units in penultimate layer not including bias])
@@ -146,6 +189,76 @@ public class BPNN extends AbstractNeuralNet {
 		return train(X_,Y_,m_E);
 	}
 
+	public void setMiniBatchSize(int b) {
+		m_MiniBatchSize = b;
+	}
+
+	public int getMiniBatchSize() {
+		return m_MiniBatchSize;
+	}
+
+	public String miniBatchSizeTipText() {
+		return "The number of instances in each (mini-)batch of gradient descent; the learning rate applies to the gradient averaged over the batch.";
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for training (splitting the rows of each batch); -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
+	@Override
+	public Enumeration listOptions() {
+		Vector result = new Vector();
+		result.addElement(new Option("\tSets the mini-batch size\n\tdefault: 1", "B", 1, "-B <value>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + ThreadUtils.SEQUENTIAL, "num-threads");
+		OptionUtils.add(result, super.listOptions());
+		return OptionUtils.toEnumeration(result);
+	}
+
+	@Override
+	public void setOptions(String[] options) throws Exception {
+		setMiniBatchSize(OptionUtils.parse(options, 'B', 1));
+		setNumThreads(OptionUtils.parse(options, "num-threads", ThreadUtils.SEQUENTIAL));
+		super.setOptions(options);
+	}
+
+	@Override
+	public String [] getOptions() {
+		List<String> result = new ArrayList<>();
+		OptionUtils.add(result, 'B', getMiniBatchSize());
+		OptionUtils.add(result, "num-threads", getNumThreads());
+		OptionUtils.add(result, super.getOptions());
+		return OptionUtils.toArray(result);
+	}
+
 	/**
 	 * Train - Train for I iterations.
 	 * I is not necessarily m_E (yet)!
@@ -159,13 +272,21 @@ public class BPNN extends AbstractNeuralNet {
 		I = Math.abs(I);
 		double E_ = Double.MAX_VALUE;
 		double E = 0.0;
-		for(int e = 0; e < I; e++) {
-			E = update(X_,Y_);
-			if (breakEarly && E > E_) {
-				if (getDebug()) System.out.println(" early stopped at epcho "+e+" ... ");
-				break; 	// positive gradient
+		ExecutorService executor = makeExecutor();
+		try {
+			for(int e = 0; e < I; e++) {
+				E = update(X_,Y_,executor);
+				if (breakEarly && E > E_) {
+					if (getDebug()) System.out.println(" early stopped at epcho "+e+" ... ");
+					break; 	// positive gradient
+				}
+				E_ = E;
 			}
-			E_ = E;
+		}
+		finally {
+			if (executor != null)
+				executor.shutdownNow();
+			freeBuffers();
 		}
 		if (getDebug()) System.out.println("Done.");
 		return E;
@@ -175,14 +296,118 @@ public class BPNN extends AbstractNeuralNet {
 	 * Update - A single training epoch.
 	 */
 	public double update(double X_[][], double Y_[][]) throws Exception {
+		ExecutorService executor = makeExecutor();
+		try {
+			return update(X_,Y_,executor);
+		}
+		finally {
+			if (executor != null)
+				executor.shutdownNow();
+			freeBuffers();
+		}
+	}
+
+	/**
+	 * Update - A single training epoch, in mini-batches of getMiniBatchSize() instances.
+	 * @param	executor	the thread pool to split the batches over (null for sequential)
+	 * @return	the sum over the batches of the (square root of the) sum of squared errors
+	 */
+	protected double update(double X_[][], double Y_[][], ExecutorService executor) throws Exception {
 		int N = X_.length;
+		int b = Math.max(1, Math.min(m_MiniBatchSize, N));
+		makeBuffers(b, X_[0].length);
 		double E = 0.0;
-		for(int i = 0; i < N; i++) {
-			E += this.backPropagate(new double[][]{X_[i]},new double[][]{Y_[i]});
+		for(int n = 0; n < N; n += b) {
+			E += backPropagate(X_,Y_,n,Math.min(n+b,N),executor);
 		}
 		return E;
 	}
 
+	/**
+	 * The actual number of threads to train with (see getNumThreads()), i.e., the size of the thread pool of makeExecutor().
+	 */
+	protected int getActualNumThreads() {
+		return ThreadUtils.getActualNumThreads(m_NumThreads, ThreadUtils.getAvailableProcessors());
+	}
+
+	/**
+	 * A thread pool (of getActualNumThreads() daemon threads) for training, or null for sequential execution.
+	 */
+	protected ExecutorService makeExecutor() {
+		int numThreads = getActualNumThreads();
+		if (numThreads == ThreadUtils.SEQUENTIAL || m_MiniBatchSize <= 1)
+			return null;
+		return ThreadUtils.newExecutor(numThreads);
+	}
+
+	/**
+	 * Allocate the training buffers for batches of (up to) b instances of d inputs (unless already there).
+	 */
+	protected void makeBuffers(int b, int d) {
+		int nW = W.length;
+		if (m_Z != null && m_Z[0].length == b && m_Z[0][0].length == d + 1)
+			return;
+		m_Z = new double[nW+1][][];
+		m_dZ = new double[nW+1][][];
+		m_dW = new double[nW][][];
+		m_Z[0] = new double[b][d + 1];
+		for(int i = 0; i < nW; i++) {
+			int h = W[i].getColumnDimension();
+			m_Z[i+1] = new double[b][(i + 1 < nW) ? h + 1 : h];
+			m_dZ[i+1] = new double[b][h];
+			m_dW[i] = new double[W[i].getRowDimension()][h];
+		}
+	}
+
+	/**
+	 * Free the training buffers.
+	 */
+	protected void freeBuffers() {
+		m_Z = null;
+		m_dZ = null;
+		m_dW = null;
+	}
+
+	/**
+	 * A block of rows from ... to-1 of a product.
+	 */
+	protected interface RowBlock {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Run the rows 0 ... n-1 of a product (of 'work' multiply-adds in all) in blocks, over the numThreads threads of the executor (if any, and if worth it).
+	 * Each row is computed by one thread, in the same way as sequentially.
+	 */
+	protected static void forRows(ExecutorService executor, int numThreads, int n, long work, final RowBlock block) throws Exception {
+		if (executor == null || numThreads < 2 || work < PARALLEL_MIN_WORK || n < 2) {
+			block.run(0, n);
+			return;
+		}
+		int numBlocks = Math.min(n, numThreads);
+		List<Callable<Void>> jobs = new ArrayList<>();
+		for(int k = 0; k < numBlocks; k++) {
+			final int from = (int)((long)n * k / numBlocks);
+			final int to = (int)((long)n * (k + 1) / numBlocks);
+			jobs.add(new Callable<Void>() {
+				@Override
+				public Void call() {
+					block.run(from, to);
+					return null;
+				}
+			});
+		}
+		try {
+			for(Future<Void> job : executor.invokeAll(jobs))
+				job.get();
+		}
+		catch (ExecutionException e) {
+			if (e.getCause() instanceof Exception)
+				throw (Exception)e.getCause();
+			throw e;
+		}
+	}
+
 	/**
 	 * Forward Pass - Given input x_, get output y_.
 	 * @param	x_	input
@@ -306,6 +531,139 @@ public class BPNN extends AbstractNeuralNet {
 		return SSE;
 	}
 
+	/**
+	 * Back Propagate - Do one round of Back Propagation on the batch of rows from ... to-1 of X_,Y_, in the training buffers.
+	 * The same as backPropagate(X_[from...to-1],Y_[from...to-1]), except that the weight derivatives are averaged over the batch.
+	 * @param	X_	input
+	 * @param	Y_	teacher values
+	 * @param	from	the first row of the batch
+	 * @param	to	the last row of the batch (exclusive)
+	 * @param	executor	the thread pool (null for sequential)
+	 * @return	the (square root of the) sum of squared errors on the batch
+	 */
+	protected double backPropagate(final double[][] X_, final double[][] Y_, final int from, int to, ExecutorService executor) throws Exception {
+
+		final int m = to - from;				// batch size
+		final int nW = W.length;				// num. of weight matrices
+		final int numThreads = (executor == null) ? ThreadUtils.SEQUENTIAL : getActualNumThreads();
+		final double Z[][][] = m_Z;
+		final double dZ[][][] = m_dZ;
+
+		/*
+		   1. FORWARD PROPAGATION.
+		   Z[i+1] = sigma(Z[i] * W[i]), with a bias in all but the output layer.
+		 */
+		for(int r = 0; r < m; r++) {
+			Z[0][r][0] = 1.0;
+			System.arraycopy(X_[from+r], 0, Z[0][r], 1, X_[from+r].length);
+		}
+		for(int i = 0; i < nW; i++) {
+			final double Z_in[][] = Z[i];
+			final double Z_out[][] = Z[i+1];
+			final double W_[][] = W[i].getArray();
+			final int h = W[i].getColumnDimension();
+			final int bias = (i + 1 < nW) ? 1 : 0;
+			forRows(executor, numThreads, m, (long)m * W_.length * h, (a, b) -> {
+				for(int r = a; r < b; r++) {
+					double z[] = Z_out[r];
+					Arrays.fill(z, 0.0);
+					double x[] = Z_in[r];
+					for(int k = 0; k < x.length; k++) {
+						double x_k = x[k];
+						if (x_k == 0.0)
+							continue;
+						double w[] = W_[k];
+						for(int c = 0; c < h; c++) {
+							z[c + bias] += x_k * w[c];
+						}
+					}
+					if (bias > 0)
+						z[0] = 1.0;
+					for(int c = bias; c < z.length; c++) {
+						z[c] = MatrixUtils.sigma(z[c]);
+					}
+				}
+			});
+		}
+
+		/*
+		   2. BACKWARD PROPAGATION.
+		   Propagate the errors backward through the neural net.
+		 */
+		final int L = Y_[0].length;
+		double SSE = 0.0;
+		for(int r = 0; r < m; r++) {
+			double y[] = Y_[from+r];
+			double z[] = Z[nW][r];
+			double d[] = dZ[nW][r];
+			for(int c = 0; c < L; c++) {
+				double e = y[c] - z[c];								// ERROR
+				d[c] = MatrixUtils.dsigma(z[c]) * e;
+				SSE += e * e;
+			}
+		}
+		for(int i = nW-1; i > 0; i--) {
+			final double dZ_out[][] = dZ[i+1];
+			final double dZ_in[][] = dZ[i];
+			final double Z_in[][] = Z[i];
+			final double W_[][] = W[i].getArray();
+			forRows(executor, numThreads, m, (long)m * W_.length * dZ_out[0].length, (a, b) -> {
+				for(int r = a; r < b; r++) {
+					double d_out[] = dZ_out[r];
+					double d_in[] = dZ_in[r];
+					double z[] = Z_in[r];
+					// (the bias unit k = 0 gets no error term)
+					for(int k = 1; k < W_.length; k++) {
+						double w[] = W_[k];
+						double e = 0.0;
+						for(int c = 0; c < d_out.length; c++) {
+							e += d_out[c] * w[c];
+						}
+						d_in[k-1] = MatrixUtils.dsigma(z[k]) * e;
+					}
+				}
+			});
+		}
+
+		/*
+		   3. WEIGHT UPDATE (with momentum)
+		   dW[i] = R/m * Z[i]^T * dZ[i+1] + M * dW_[i];  W[i] += dW[i]
+		 */
+		final double rate = m_R / m;
+		for(int i = 0; i < nW; i++) {
+			final double Z_in[][] = Z[i];
+			final double dZ_out[][] = dZ[i+1];
+			final double dW[][] = m_dW[i];
+			final double dW_prev[][] = dW_[i].getArray();
+			final double W_[][] = W[i].getArray();
+			final int h = W_[0].length;
+			forRows(executor, numThreads, W_.length, (long)m * W_.length * h, (a, b) -> {
+				for(int k = a; k < b; k++) {
+					double g[] = dW[k];
+					Arrays.fill(g, 0.0);
+					for(int r = 0; r < m; r++) {
+						double z_k = rate * Z_in[r][k];
+						double d[] = dZ_out[r];
+						for(int c = 0; c < h; c++) {
+							g[c] += z_k * d[c];
+						}
+					}
+					double g_prev[] = dW_prev[k];
+					double w[] = W_[k];
+					for(int c = 0; c < h; c++) {
+						g[c] += g_prev[c] * m_M;
+						w[c] += g[c];
+					}
+				}
+			});
+			// Update momentum records (swap the buffers)
+			m_dW[i] = dW_prev;
+			dW_[i] = new Matrix(dW, W_.length, h);
+		}
+
+		return Math.sqrt(SSE);
+	}
+
 	public static void main(String args[]) throws Exception {
 		ProblemTransformationMethod.evaluation(new BPNN(), args);
 	}
@@ -26,15 +26,25 @@ import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Drawable;
+import weka.core.Option;
 import meka.core.MultiLabelDrawable;
-import meka.core.MLUtils;
 import meka.core.F;
+import meka.core.LabelViewInstance;
+import meka.core.MLUtils;
+import meka.core.OptionUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
 import weka.core.RevisionUtils;
 
+import java.util.ArrayList;
+import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Vector;
+import java.util.concurrent.Callable;
 
-public class BR extends ProblemTransformationMethod implements MultiLabelDrawable {
+public class BR extends ProblemTransformationMethod implements MultiLabelDrawable, ThreadLimiter {
 
 	/** for serialization. */
 	private static final long serialVersionUID = -5390512540469007904L;
@@ -42,6 +52,12 @@ public class BR extends ProblemTransformationMethod implements MultiLabelDrawabl
 	protected Classifier m_MultiClassifiers[] = null;
 	protected Instances m_InstancesTemplates[] = null; 
 
+	/** the number of threads to use for building the per-label models. */
+	protected int m_NumThreads = getDefaultNumThreads();
+
+	/** reusable views of the test instance, one per label (and per thread), see #getViews(int) */
+	protected transient volatile ThreadLocal<LabelViewInstance[]> m_Views = null;
+
 	/**
 	 * Description to display in the GUI.
 	 * 
@@ -64,19 +80,67 @@ public class BR extends ProblemTransformationMethod implements MultiLabelDrawabl
 		if(getDebug()) System.out.print("Creating "+L+" models ("+m_Classifier.getClass().getName()+"): ");
 		m_MultiClassifiers = AbstractClassifier.makeCopies(m_Classifier,L);
 		m_InstancesTemplates = new Instances[L];
+		m_Views = null;
 
+		// each label is an independent job, which only writes to its own slot in m_MultiClassifiers / m_InstancesTemplates,
+		// so the models are identical to the ones built sequentially
+		List<Callable<Void>> jobs = new ArrayList<>();
 		for(int j = 0; j < L; j++) {
+			final int label = j;
+			jobs.add(new Callable<Void>() {
+				@Override
+				public Void call() throws Exception {
+					buildLabel(D,label);
+					return null;
+				}
+			});
+		}
+		ThreadUtils.runAll(jobs, m_NumThreads);
+		if(getDebug()) System.out.println();
+	}
 
-			//Select only class attribute 'j'
-			Instances D_j = F.keepLabels(new Instances(D),L,new int[]{j});
-			D_j.setClassIndex(0);
+	/**
+	 * Builds the model for label 'j' (and stores its template).
+	 * The models only read from 'D', so this may be called concurrently for different labels.
+	 * @param	D	the multi-label training data
+	 * @param	j	the label index
+	 */
+	protected void buildLabel(Instances D, int j) throws Exception {
+		int L = D.classIndex();
+
+		//Select only class attribute 'j' (as a view onto D, rather than a copy of it)
+		Instances D_j = F.keepLabelsView(D,L,new int[]{j});
+		D_j.setClassIndex(0);
 
-			//Build the classifier for that class
-			m_MultiClassifiers[j].buildClassifier(D_j);
-			if(getDebug()) System.out.print(" " + (D_j.classAttribute().name()));
+		//Build the classifier for that class
+		m_MultiClassifiers[j].buildClassifier(D_j);
+		if(getDebug()) System.out.print(" " + (D_j.classAttribute().name()));
+
+		m_InstancesTemplates[j] = new Instances(D_j, 0);
+	}
 
-			m_InstancesTemplates[j] = new Instances(D_j, 0);
+	/**
+	 * GetViews - the views used for making predictions in the current thread, one for each label.
+	 * The views are created on first use (and after (re)building the classifier); afterwards a prediction
+	 * only has to point them at the test instance, rather than copying it L times.
+	 * @param	L	the number of labels
+	 * @return	the views of the current thread (elements are null until first used)
+	 */
+	protected LabelViewInstance[] getViews(int L) {
+		ThreadLocal<LabelViewInstance[]> views = m_Views;
+		if (views == null) {
+			synchronized(this) {
+				if (m_Views == null)
+					m_Views = new ThreadLocal<LabelViewInstance[]>();
+				views = m_Views;
+			}
+		}
+		LabelViewInstance x_[] = views.get();
+		if (x_ == null || x_.length != L) {
+			x_ = new LabelViewInstance[L];
+			views.set(x_);
 		}
+		return x_;
 	}
 
 	@Override
@@ -86,18 +150,116 @@ public class BR extends ProblemTransformationMethod implements MultiLabelDrawabl
 
 		double y[] = new double[L];
 
+		LabelViewInstance x_[] = getViews(L);
+
 		for (int j = 0; j < L; j++) {
-			Instance x_j = (Instance)x.copy();
-			x_j.setDataset(null);
-			x_j = MLUtils.keepAttributesAt(x_j,new int[]{j},L);
-			x_j.setDataset(m_InstancesTemplates[j]);
-			//y[j] = m_MultiClassifiers[j].classifyInstance(x_j);
-			y[j] = m_MultiClassifiers[j].distributionForInstance(x_j)[1];
+			// [y_j,x_1,...,x_d] of x (the class value is not used by the base classifier)
+			if (x_[j] == null) {
+				x_[j] = new LabelViewInstance(x,L,new int[]{j});
+				x_[j].setDataset(m_InstancesTemplates[j]);
+			}
+			else {
+				x_[j].setSource(x);
+			}
+			//y[j] = m_MultiClassifiers[j].classifyInstance(x_[j]);
+			y[j] = m_MultiClassifiers[j].distributionForInstance(x_[j])[1];
 		}
 
 		return y;
 	}
 
+	/**
+	 * Predicts all instances of D at once: for each label j, the base model is given the whole block [y_j,X] (as views
+	 * onto D), so it can make use of its own batch prediction, if it has one.
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+
+		int L = D.classIndex();
+		double Y[][] = new double[D.numInstances()][L];
+
+		for (int j = 0; j < L; j++) {
+			Instances D_j = F.keepLabelsView(D,L,new int[]{j},null,m_InstancesTemplates[j]);
+			double P[][] = MLUtils.distributionsForInstances(m_MultiClassifiers[j],D_j);
+			for (int i = 0; i < P.length; i++) {
+				Y[i][j] = P[i][1];
+			}
+		}
+
+		return Y;
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(BR.class);
+	}
+
+	/**
+	 * Returns the default number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	protected int getDefaultNumThreads() {
+		return ThreadUtils.SEQUENTIAL;
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for building the per-label models; -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
+	@Override
+	public Enumeration<Option> listOptions() {
+		Vector result = new Vector();
+		OptionUtils.addOption(result, numThreadsTipText(), "" + getDefaultNumThreads(), "num-threads");
+		OptionUtils.add(result, super.listOptions());
+		return OptionUtils.toEnumeration(result);
+	}
+
+	@Override
+	public void setOptions(String[] options) throws Exception {
+		setNumThreads(OptionUtils.parse(options, "num-threads", getDefaultNumThreads()));
+		super.setOptions(options);
+	}
+
+	@Override
+	public String [] getOptions() {
+		List<String> result = new ArrayList<>();
+		OptionUtils.add(result, "num-threads", getNumThreads());
+		OptionUtils.add(result, super.getOptions());
+		return OptionUtils.toArray(result);
+	}
+
 	/**
 	 * Returns the type of graph representing
 	 * the object.
@@ -16,6 +16,7 @@
 package meka.classifiers.multilabel;
 
 import meka.classifiers.multilabel.cc.CNode;
+import meka.classifiers.multilabel.cc.CNodeCache;
 import meka.core.A;
 import meka.core.MultiLabelDrawable;
 import meka.core.OptionUtils;
@@ -51,6 +52,9 @@ public class CC extends ProblemTransformationMethod
 
 	protected int m_Chain[] = null;
 
+	/** if set, nodes are taken from (and added to) this cache when building, see #useNodeCache(CNodeCache) */
+	protected transient CNodeCache m_NodeCache = null;
+
 	/**
 	 * Prepare a Chain. One of the following:<br>
 	 * - Use pre-set chain. If there is none, then <br>
@@ -95,6 +99,15 @@ public class CC extends ProblemTransformationMethod
 		return m_Chain;
 	}
 
+	/**
+	 * UseNodeCache - build the nodes of the chain through 'cache' (null for none), i.e., reuse any node already trained
+	 * for the same label and set of parents. The cache must only hold nodes trained on the same data and base classifier.
+	 * @param cache		a cache of nodes
+	 */
+	public void useNodeCache(CNodeCache cache) {
+		m_NodeCache = cache;
+	}
+
 	@Override
 	public void buildClassifier(Instances D) throws Exception {
 		testCapabilities(D);
@@ -113,8 +126,13 @@ public class CC extends ProblemTransformationMethod
 		for(int j : m_Chain) {
 			if (getDebug()) 
 				System.out.print(" "+D.attribute(j).name());
-			nodes[j] = new CNode(j, null, pa);
-			nodes[j].build(D, m_Classifier);
+			if (m_NodeCache != null) {
+				nodes[j] = m_NodeCache.build(j, pa, D, m_Classifier);
+			}
+			else {
+				nodes[j] = new CNode(j, null, pa);
+				nodes[j].build(D, m_Classifier);
+			}
 			pa = A.append(pa,j);
 		}
 		if (getDebug()) System.out.println(" ) -:");
@@ -139,12 +157,39 @@ public class CC extends ProblemTransformationMethod
 
 		for(int j : m_Chain) {
 			// h_j : x,pa_j -> y_j
-			y[j] = nodes[j].classify((Instance)x.copy(),y); 
+			y[j] = nodes[j].classify(x,y); 
 		}
 
 		return y;
 	}
 
+	/**
+	 * Predicts all instances of D at once, going down the chain one node (and one batch of predictions) at a time.
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+
+		int L = D.classIndex();
+		double Y[][] = new double[D.numInstances()][L];
+
+		for(int j : m_Chain) {
+			// h_j : X,pa_j -> y_j
+			double P[][] = nodes[j].distributions(D,Y);
+			for(int i = 0; i < Y.length; i++) {
+				Y[i][j] = Utils.maxIndex(P[i]);
+			}
+		}
+
+		return Y;
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(CC.class);
+	}
+
 	/**
 	 * SampleForInstance.
 	 * predict y[j] stochastically rather than deterministically (as with distributionForInstance(Instance x)).
@@ -189,10 +234,10 @@ public class CC extends ProblemTransformationMethod
 		double y[] = new double[L];
 
 		for(int j : m_Chain) {
-			double p[] = nodes[j].distribution(t_[j],y);               // e.g., [0.4, 0.6]
+			nodes[j].updateTransform(t_[j],y); 						   // need to update the transform #SampleForInstance(x,r)
+			double p[] = nodes[j].distributionT(t_[j]);                // e.g., [0.4, 0.6]
 			y[j] = A.samplePMF(p,r);                                   // e.g., 0
 			confidences[j] = p[(int)y[j]];                             // e.g., 0.4
-			nodes[j].updateTransform(t_[j],y); 						   // need to update the transform #SampleForInstance(x,r)
 		}
 
 		return y;
@@ -230,7 +275,7 @@ public class CC extends ProblemTransformationMethod
 
 		for(int j : m_Chain) {
 			// h_j : x,pa_j -> y_j
-			double d[] = nodes[j].distribution((Instance)x.copy(),path);  // <-- posterior distribution
+			double d[] = nodes[j].distribution(x,path);                   // <-- posterior distribution
 			int k = (int)Math.round(path[j]);                             // <-- value of interest
 			p[j] = d[k];                                                  // <-- p(y_j==k) i.e., 'confidence'
 			//y[j] = path[j];
@@ -20,6 +20,8 @@ import meka.classifiers.multilabel.cc.Trellis;
 import meka.core.A;
 import meka.core.OptionUtils;
 import meka.core.StatUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
 import weka.core.*;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
@@ -34,13 +36,14 @@ import java.util.*;
  * @author 	Jesse Read
  * @version	January 2014
  */
-public class CDT extends CDN {
+public class CDT extends CDN implements ThreadLimiter {
 
 	private static final long serialVersionUID = -1237783546336254364L;
 
 	protected int m_Width = -1;
 	protected int m_Density = 1;
 	protected String m_DependencyMetric = "None";
+	protected int m_NumThreads = ThreadUtils.SEQUENTIAL;
 
 	Trellis trel = null;
 
@@ -75,7 +78,7 @@ public class CDT extends CDN {
 
 		/* Rearrange the Trellis */
 		if (!m_DependencyMetric.equals("None"))
-			trel = CT.orderTrellis(trel,StatUtils.margDepMatrix(D,m_DependencyMetric),m_R);
+			trel = CT.orderTrellis(trel,StatUtils.margDepMatrix(D,m_DependencyMetric,m_NumThreads),m_R);
 
 		/*
 		 * Build Trellis
@@ -136,6 +139,7 @@ public class CDT extends CDN {
 		result.addElement(new Option("\t"+widthTipText(), "H", 1, "-H <value>"));
 		result.addElement(new Option("\t"+densityTipText(), "L", 1, "-L <value>"));
 		result.addElement(new Option("\t"+dependencyMetricTipText(), "X", 1, "-X <value>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + ThreadUtils.SEQUENTIAL, "num-threads");
 		OptionUtils.add(result, super.listOptions());
 		return OptionUtils.toEnumeration(result);
 	}
@@ -145,6 +149,7 @@ public class CDT extends CDN {
 		setWidth(OptionUtils.parse(options, 'H', -1));
 		setDensity(OptionUtils.parse(options, 'L', 1));
 		setDependencyMetric(OptionUtils.parse(options, 'X', "None"));
+		setNumThreads(OptionUtils.parse(options, "num-threads", ThreadUtils.SEQUENTIAL));
 		super.setOptions(options);
 	}
 
@@ -154,6 +159,7 @@ public class CDT extends CDN {
 		OptionUtils.add(result, 'H', getWidth());
 		OptionUtils.add(result, 'L', getDensity());
 		OptionUtils.add(result, 'X', getDependencyMetric());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		OptionUtils.add(result, super.getOptions());
 		return OptionUtils.toArray(result);
 	}
@@ -212,6 +218,39 @@ public class CDT extends CDN {
 		return "The dependency heuristic to use in rearranging the trellis (None by default).";
 	}
 
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for measuring the label dependencies (if a dependency heuristic is given); -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	public static void main(String args[]) {
 		ProblemTransformationMethod.evaluation(new CDT(), args);
 	}
@@ -75,7 +75,7 @@ public class CT extends MCC implements TechnicalInformationHandler {
 		 * If specified, try and reorder the nodes in the trellis (i.e., get a superior structure)
 		 */
 		if (m_Is > 0) {
-			double I[][] =  StatUtils.margDepMatrix(D,m_DependencyMetric);
+			double I[][] =  StatUtils.margDepMatrix(D,m_DependencyMetric,m_NumThreads);
 
 			/*
 			 * Get dependency Matrix
@@ -226,6 +226,11 @@ public class CT extends MCC implements TechnicalInformationHandler {
 		return "The dependency heuristic to use in rearranging the trellis (applicable if chain iterations > 0), default: Ibf (Mutual Information, fast binary version for multi-label data)";
 	}
 
+	@Override
+	public String numThreadsTipText() {
+		return "The number of threads to use for building and rating the candidate chains, and for measuring the label dependencies; -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 
 	@Override
 	public TechnicalInformation getTechnicalInformation() {
@@ -91,7 +91,7 @@ public class DBPNN extends AbstractDeepNeuralNet implements TechnicalInformation
 		                                                            
 		Matrix W[] = trimBiases(dbm.getWs());
 
-		// Back propagate with batch size of 1 to fine tune the DBM into a supervised DBN
+		// Back propagate (with the mini-batch size of the BPNN, 1 by default) to fine tune the DBM into a supervised DBN
 		if (m_Classifier instanceof BPNN) {
 			if (getDebug())
 				System.out.println("You have chosen to use BPNN (good!)");
@@ -130,6 +130,18 @@ public class DBPNN extends AbstractDeepNeuralNet implements TechnicalInformation
 		return m_Classifier.distributionForInstance(xy);
 	}
 
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+		return MLUtils.distributionsForInstances(m_Classifier,D);
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(DBPNN.class);
+	}
+
 	protected static Matrix trimBiases(Matrix A) {
 		double M_[][] = A.getArray();
 		return new Matrix(MatrixUtils.removeBias(M_));
@@ -20,10 +20,13 @@ import meka.classifiers.multitarget.MultiTargetClassifier;
 import meka.core.MLEvalUtils;
 import meka.core.MLUtils;
 import meka.core.Result;
+import meka.core.ThreadUtils;
+import weka.core.BatchPredictor;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Option;
 import weka.core.SerializationHelper;
+import weka.core.SparseInstance;
 import weka.core.Utils;
 import weka.core.converters.AbstractFileSaver;
 import weka.core.converters.ArffSaver;
@@ -33,11 +36,14 @@ import weka.core.converters.ConverterUtils.DataSource;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Enumeration;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.Callable;
 
 /**
  * Evaluation.java - Evaluation functionality.
@@ -72,6 +78,8 @@ public class Evaluation {
 
 	public static final String FLAG_CROSSVALIDATION_OUTDIR = "x-out-dir";
 
+	public static final String FLAG_CROSSVALIDATION_NUMTHREADS = "x-num-threads";
+
 	public static final char FLAG_TRAINFILE = 't';
 
 	public static final char FLAG_TESTFILE = 'T';
@@ -114,6 +122,7 @@ public class Evaluation {
 		boolean optCrossvalidation = (Utils.getOptionPos(FLAG_CROSSVALIDATION, options) >= 0);
 		String optCrossvalidationFolds = Utils.getOption(FLAG_CROSSVALIDATION, options);
 		String optCrossvalidationOutDir = Utils.getOption(FLAG_CROSSVALIDATION_OUTDIR, options);
+		String optCrossvalidationNumThreads = Utils.getOption(FLAG_CROSSVALIDATION_NUMTHREADS, options);
 		String optSplitPercentage = Utils.getOption(FLAG_SPLITPERCENTAGE, options);
 		String optSplitNumber = Utils.getOption(FLAG_SPLITNUMBER, options);
 		boolean optInvertSplit = Utils.getFlag(FLAG_INVERTSPLIT, options);
@@ -201,7 +210,11 @@ public class Evaluation {
 						throw new IOException("Cross-validation output directory (-" + FLAG_CROSSVALIDATION_OUTDIR + ") does not point to a directory: " + optCrossvalidationOutDir);
 					cvData = new HashMap<>();
 				}
-				r = Evaluation.cvModel(h,D_train,numFolds,top,voption, cvData);
+				// evaluate the folds in parallel? (-Thr: one thread per CPU/core)
+				int numThreads = optThreaded ? ThreadUtils.ALL : ThreadUtils.SEQUENTIAL;
+				if (!optCrossvalidationNumThreads.isEmpty())
+					numThreads = Integer.parseInt(optCrossvalidationNumThreads);
+				r = Evaluation.cvModel(h,D_train,numFolds,top,voption, cvData, numThreads);
 				System.out.println(r.toString());
 				// save per-fold data
 				if (cvData != null) {
@@ -273,7 +286,7 @@ public class Evaluation {
 						if (top.startsWith("PCut")) {
 							// if PCut is specified we need the training data,
 							// so that we can calibrate the threshold!
-							t = MLEvalUtils.getThreshold(r.predictions, D_train, top);
+							t = MLEvalUtils.getThreshold(r.getPredictions(), D_train, top, optThreaded ? ThreadUtils.ALL : ThreadUtils.SEQUENTIAL);
 						}
 						r = evaluateModel(h, D_test, t, voption);
 					}
@@ -400,7 +413,7 @@ public class Evaluation {
 		}
 		else if (h instanceof MultiLabelClassifier) {
 			r.setInfo("Type","ML");
-			r.setInfo("Threshold",MLEvalUtils.getThreshold(r.predictions,D_train,top)); // <-- only relevant to ML (for now), but we'll put it in here in any case
+			r.setInfo("Threshold",MLEvalUtils.getThreshold(r.getPredictions(),D_train,top)); // <-- only relevant to ML (for now), but we'll put it in here in any case
 		}
 		r.setInfo("Verbosity",vop);
 		r.output = Result.getStats(r, vop);
@@ -465,14 +478,51 @@ public class Evaluation {
 	 * @return	Result	raw prediction data with evaluation statistics included.
 	 */
 	public static Result cvModel(MultiLabelClassifier h, Instances D, int numFolds, String top, String vop, Map<Integer,Object[]> perFold) throws Exception {
-		Result r_[] = new Result[numFolds];
+		return cvModel(h, D, numFolds, top, vop, perFold, ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * CVModel - Split D into train/test folds, and then train and evaluate on each one, evaluating up to 'numThreads' folds at once.
+	 * Each fold (except the last, which uses h itself, as in the sequential case) is evaluated with its own copy of h.
+	 * The folds are combined in order, so the Result is the same as the sequential one (apart from running times).
+	 * @param	h		 a multi-output classifier
+	 * @param	D      	 test data Instances
+	 * @param	numFolds number of folds of CV
+	 * @param	top    	 Threshold OPtion (pertains to multi-label data only)
+	 * @param	vop    	Verbosity OPtion (which measures do we want to calculate/output)
+	 * @param   perFold  the per fold data (0: train Instances, 1: test Instances, 2: Results), ignored if null
+	 * @param   numThreads the number of threads (for the folds, and the curve-based statistics): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 * @return	Result	raw prediction data with evaluation statistics included.
+	 */
+	public static Result cvModel(final MultiLabelClassifier h, final Instances D, final int numFolds, String top, String vop, Map<Integer,Object[]> perFold, int numThreads) throws Exception {
+		Instances D_trains[] = new Instances[numFolds];
+		Instances D_tests[] = new Instances[numFolds];
+		for(int i = 0; i < numFolds; i++) {
+			D_trains[i] = D.trainCV(numFolds,i);
+			D_tests[i] = D.testCV(numFolds,i);
+		}
+
+		int foldThreads = ThreadUtils.getActualNumThreads(numThreads, numFolds);
+		MultiLabelClassifier h_[] = (foldThreads == ThreadUtils.SEQUENTIAL) ? null : ProblemTransformationMethod.makeCopies(h, numFolds - 1);
+		List<Callable<Result>> jobs = new ArrayList<>();
 		for(int i = 0; i < numFolds; i++) {
-			Instances D_train = D.trainCV(numFolds,i);
-			Instances D_test = D.testCV(numFolds,i);
-			if (h.getDebug()) System.out.println(":- Fold ["+i+"/"+numFolds+"] -: "+MLUtils.getDatasetName(D)+"\tL="+D.classIndex()+"\tD(t:T)=("+D_train.numInstances()+":"+D_test.numInstances()+")\tLC(t:T)="+Utils.roundDouble(MLUtils.labelCardinality(D_train,D.classIndex()),2)+":"+Utils.roundDouble(MLUtils.labelCardinality(D_test,D.classIndex()),2)+")");
-			r_[i] = evaluateModel(h, D_train, D_test); // <-- should not run stats yet!
-			if (perFold != null)
-				perFold.put(i, new Object[]{D_train, D_test, r_[i]});
+			final int fold = i;
+			final MultiLabelClassifier h_i = (h_ != null && i < numFolds - 1) ? h_[i] : h;
+			final Instances D_train = D_trains[i];
+			final Instances D_test = D_tests[i];
+			jobs.add(new Callable<Result>() {
+				@Override
+				public Result call() throws Exception {
+					printFold(h, D, D_train, D_test, fold, numFolds);
+					return evaluateModel(h_i, D_train, D_test); // <-- should not run stats yet!
+				}
+			});
+		}
+		final Result r_[] = ThreadUtils.runAll(jobs, foldThreads).toArray(new Result[numFolds]);
+
+		if (perFold != null) {
+			for(int i = 0; i < numFolds; i++)
+				perFold.put(i, new Object[]{D_trains[i], D_tests[i], r_[i]});
 		}
 		Result r = MLEvalUtils.combinePredictions(r_);
 		if (h instanceof MultiTargetClassifier || isMT(D)) {
@@ -488,13 +538,18 @@ public class Evaluation {
 			}
 		}
 		r.setInfo("Verbosity",vop);
-		r.output = Result.getStats(r, vop);
+		r.output = Result.getStats(r, vop, numThreads);
 		// Need to reset this because of CV
 		r.setValue("Number of training instances",D.numInstances());
 		r.setValue("Number of test instances",D.numInstances());
 		return r;
 	}
 
+	/** Prints the details of fold i (if h is in debug mode). */
+	private static void printFold(MultiLabelClassifier h, Instances D, Instances D_train, Instances D_test, int i, int numFolds) {
+		if (h.getDebug()) System.out.println(":- Fold ["+i+"/"+numFolds+"] -: "+MLUtils.getDatasetName(D)+"\tL="+D.classIndex()+"\tD(t:T)=("+D_train.numInstances()+":"+D_test.numInstances()+")\tLC(t:T)="+Utils.roundDouble(MLUtils.labelCardinality(D_train,D.classIndex()),2)+":"+Utils.roundDouble(MLUtils.labelCardinality(D_test,D.classIndex()),2)+")");
+	}
+
 	/**
 	 * EvaluateModel - Build model 'h' on 'D_train', test it on 'D_test'.
 	 * Note that raw multi-label predictions returned in Result may not have been thresholded yet.
@@ -547,6 +602,7 @@ public class Evaluation {
 
 	/* allow threaded evaluation of model,
 	 * all instances are passed to the classifier then they are gathered in results,
+	 * (the threshold and the curve-based statistics are also computed with all CPUs/cores),
 	 * for short datasets the overhead might be significant
 	 */
 	public static Result evaluateModelM(MultiXClassifier h, Instances D_train, Instances D_test, String top, String vop) throws Exception {
@@ -586,41 +642,68 @@ public class Evaluation {
 		else if (h instanceof MultiLabelClassifier) {
 			result.setInfo("Type","ML");
 		}
-		result.setInfo("Threshold",MLEvalUtils.getThreshold(result.predictions,D_train,top)); // <-- only relevant to ML (for now), but we'll put it in here in any case
+		result.setInfo("Threshold",MLEvalUtils.getThreshold(result.getPredictions(),D_train,top,ThreadUtils.ALL)); // <-- only relevant to ML (for now), but we'll put it in here in any case
 		result.setInfo("Verbosity",vop);
-		result.output = Result.getStats(result, vop);
+		result.output = Result.getStats(result, vop, ThreadUtils.ALL);
 		return result;
 	}
 
 	/**
-	 * TestClassifier - test classifier h on D_test
+	 * TestClassifier - test classifier h on D_test.
+	 * If h implements batch prediction more efficiently (see weka.core.BatchPredictor), the test instances are
+	 * predicted in batches (of h's batch size), otherwise one by one.
+	 * The predictions are stored compactly if there are many of them (see Result#isCompactSize(int,int)).
 	 * @param	h		a multi-dim. classifier, ALREADY BUILT
 	 * @param	D_test 	test data
 	 * @return	Result	with raw prediction data ONLY
 	 */
 	public static Result testClassifier(MultiXClassifier h, Instances D_test) throws Exception {
+		return testClassifier(h, D_test, Result.isCompactSize(D_test.numInstances(), D_test.classIndex()));
+	}
+
+	/**
+	 * TestClassifier - test classifier h on D_test.
+	 * @param	h		a multi-dim. classifier, ALREADY BUILT
+	 * @param	D_test 	test data
+	 * @param	compact	whether to store the predictions compactly (see Result#setCompact(boolean))
+	 * @return	Result	with raw prediction data ONLY
+	 */
+	public static Result testClassifier(MultiXClassifier h, Instances D_test, boolean compact) throws Exception {
 
 		int L = D_test.classIndex();
-		Result result = new Result(D_test.numInstances(),L);
+		int N = D_test.numInstances();
+		Result result = new Result(N,L);
+		result.setCompact(compact);
+		int B = getBatchSize(h);
 
 		if(h.getDebug()) System.out.print(":- Evaluate ");
-		for (int i = 0, c = 0; i < D_test.numInstances(); i++) {
+		for (int i = 0, c = 0; i < N; i += B) {
 
-			if(h.getDebug()) { int t = i*50/D_test.numInstances(); if(t > c) { System.out.print("#"); c = t; } }
+			if(h.getDebug()) { int t = i*50/N; if(t > c) { System.out.print("#"); c = t; } }
 
 			// No cheating allowed; clear all class information
-			Instance x = (Instance)(D_test.instance(i)).copy();
-			for(int v = 0; v < D_test.classIndex(); v++)
-				x.setValue(v,0.0);
-
-			// Get and store ranking
-			double y[] = h.distributionForInstance(x);
-			// Cut off any [no-longer-needed] probabalistic information from MT classifiers.
-			if (h instanceof MultiTargetClassifier)
-                            y = Arrays.copyOfRange(y, L, L*2);
-
-			// Store the result
-			result.addResult(y,D_test.instance(i));
+			int n = Math.min(B, N - i);
+			double Y[][];
+			if (B > 1) {
+				Instances D_ = new Instances(D_test, n);
+				for(int k = 0; k < n; k++)
+					D_.add(clearLabels(D_test.instance(i+k), L));
+				Y = ((BatchPredictor)h).distributionsForInstances(D_);
+			}
+			else {
+				Y = new double[][]{h.distributionForInstance(clearLabels(D_test.instance(i), L))};
+			}
+
+			for(int k = 0; k < n; k++) {
+				// Get and store ranking
+				double y[] = Y[k];
+				// Cut off any [no-longer-needed] probabalistic information from MT classifiers.
+				if (h instanceof MultiTargetClassifier)
+					y = Arrays.copyOfRange(y, L, L*2);
+
+				// Store the result
+				result.addResult(y,D_test.instance(i+k));
+			}
 		}
 		if(h.getDebug()) System.out.println(":-");
 
@@ -635,6 +718,41 @@ public class Evaluation {
 
 		return result;
 	}
+
+	/**
+	 * GetBatchSize - the number of test instances to predict at once with h: its batch size if it implements
+	 * batch prediction more efficiently, and 1 otherwise.
+	 */
+	protected static int getBatchSize(MultiXClassifier h) {
+		if (!(h instanceof BatchPredictor) || !((BatchPredictor)h).implementsMoreEfficientBatchPrediction())
+			return 1;
+		try {
+			return Math.max(1, Integer.parseInt(((BatchPredictor)h).getBatchSize()));
+		}
+		catch (Exception e) {
+			return 100;
+		}
+	}
+
+	/**
+	 * ClearLabels - a copy of x, with the values of all L labels set to 0. A sparse x stays sparse: only its stored
+	 * label values are cleared (the others are 0 already).
+	 */
+	protected static Instance clearLabels(Instance x, int L) {
+		Instance x_ = (Instance)x.copy();
+		if (x instanceof SparseInstance) {
+			for(int k = x.numValues() - 1; k >= 0; k--) {
+				if (x.index(k) < L && x.valueSparse(k) != 0.0)
+					x_.setValue(x.index(k),0.0);
+			}
+		}
+		else {
+			for(int j = 0; j < L; j++)
+				x_.setValue(j,0.0);
+		}
+		return x_;
+	}
+
 	/**
 	 *Test Classifier but threaded (Multiple)
 	 * @param	h		a multi-dim. classifier, ALREADY BUILT (threaded, implements MultiLabelThreaded)
@@ -790,6 +908,10 @@ public class Evaluation {
 		text.append("\tDo cross-validation with this many folds.\n");
 		text.append("-" + FLAG_CROSSVALIDATION_OUTDIR + " <dir>\n");
 		text.append("\tOptional (existing) directory for storing cross-validation output per fold\n\t(train, test, performance, results).\n");
+		text.append("-" + FLAG_CROSSVALIDATION_NUMTHREADS + " <number of threads>\n");
+		text.append("\tThe number of cross-validation folds to evaluate in parallel\n\t(-1 = number of CPUs/cores; 0 or 1 = sequential, the default; see also -" + FLAG_THREADED + ").\n");
+		text.append("-" + FLAG_THREADED + "\n");
+		text.append("\tThreaded evaluation (of MultiLabelClassifierThreaded classifiers);\n\twith cross-validation, evaluates one fold per CPU/core in parallel.\n");
 		text.append("-" + FLAG_NOEVAL + "\n");
 		text.append("\tSkips evaluation, e.g., used when test set contains no class labels.\n");
 		text.append("-" + FLAG_RANDOMIZE + "\n");
@@ -23,7 +23,10 @@ import weka.core.Instances;
 import weka.core.Drawable;
 import weka.core.OptionHandler;
 import weka.core.RevisionUtils;
+import weka.core.Utils;
 
+import meka.core.F;
+import meka.core.MLUtils;
 import meka.core.MultiLabelDrawable;
 import meka.core.PSUtils;
 
@@ -40,6 +43,9 @@ public class LC extends ProblemTransformationMethod implements OptionHandler, Mu
 	/** for serialization. */
 	private static final long serialVersionUID = -2726090581435923988L;
 
+	/** the label indices of each class value of the template, e.g., "[1,3]" to [1,3] (decoded once, at build time) */
+	protected int m_MetaLabels[][] = null;
+
 	/**
 	 * Description to display in the GUI.
 	 * 
@@ -63,6 +69,7 @@ public class LC extends ProblemTransformationMethod implements OptionHandler, Mu
 		if(getDebug()) System.out.print("Transforming Instances ...");
 		Instances D_ = PSUtils.LCTransformation(D,L);
 		m_InstancesTemplate = new Instances(D_,0);
+		m_MetaLabels = PSUtils.decodeMetaLabels(m_InstancesTemplate.classAttribute());
 
 		// Set Info ; Build Classifier
 		info = "K = "+m_InstancesTemplate.attribute(0).numValues() + ", N = "+D_.numInstances();
@@ -87,7 +94,57 @@ public class LC extends ProblemTransformationMethod implements OptionHandler, Mu
 
 		y[(int)m_Classifier.classifyInstance(x_)] = 1.0;
 
-		return PSUtils.convertDistribution(y,L,m_InstancesTemplate);
+		return PSUtils.recombination(y,L,getMetaLabels());
+	}
+
+	/**
+	 * Predicts all instances of D at once: the whole block is converted (as views onto D, with the class missing,
+	 * as in PSUtils.convertInstance) and classified in one go.
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+
+		int L = D.classIndex();
+		double Y[][] = new double[D.numInstances()][];
+
+		//if there is only one class (as for e.g. in some hier. mtds) predict it
+		if(L == 1) {
+			for(int i = 0; i < Y.length; i++)
+				Y[i] = new double[]{1.0};
+			return Y;
+		}
+
+		Instances D_ = F.keepLabelsView(D,L,new int[]{0},new double[]{Utils.missingValue()},m_InstancesTemplate);
+
+		//Get the classifications
+		double c[] = MLUtils.classifyInstances(m_Classifier,D_);
+		int meta_labels[][] = getMetaLabels();
+
+		for(int i = 0; i < Y.length; i++) {
+			double y[] = new double[L];
+			for(int j : meta_labels[(int)c[i]]) {
+				y[j] = 1.0;
+			}
+			Y[i] = y;
+		}
+
+		return Y;
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(LC.class);
+	}
+
+	/**
+	 * GetMetaLabels - the label indices of each class value of the template (decoded now, if this model was built without them).
+	 */
+	protected int[][] getMetaLabels() {
+		if (m_MetaLabels == null)
+			m_MetaLabels = PSUtils.decodeMetaLabels(m_InstancesTemplate.classAttribute());
+		return m_MetaLabels;
 	}
 
 	/**
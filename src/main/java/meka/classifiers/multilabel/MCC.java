@@ -15,10 +15,12 @@
 
 package meka.classifiers.multilabel;
 
+import meka.classifiers.multilabel.cc.CNodeCache;
 import weka.core.TechnicalInformation.*;
 import weka.core.*;
 import meka.core.*;
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * MCC.java - CC with Monte Carlo optimisation. 
@@ -36,12 +38,17 @@ import java.util.*;
  * @author Jesse Read
  * @version	March 2015
  */
-public class MCC extends CC implements TechnicalInformationHandler, MultiTargetCapable {
+public class MCC extends CC implements TechnicalInformationHandler, MultiTargetCapable, ThreadLimiter {
 
 	private static final long serialVersionUID = 5085402586815030939L;
 	protected int m_Is = 0;
 	protected int m_Iy = 10;
 	protected String m_Payoff = "Exact match";
+	protected int m_K = 1;
+	protected int m_NumThreads = ThreadUtils.SEQUENTIAL;
+
+	/** the number of trained nodes kept (per label) while searching the chain space, see CNodeCache */
+	protected static final int NODE_CACHE_FACTOR = 4;
 
 	/**
 	 * Payoff - Return a default score of h evaluated on D.
@@ -58,6 +65,32 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		return (Double)r.getMeasurement(m_Payoff);
 	}
 
+	/**
+	 * BuildAndRate - build a CC for each of the chains 's_[k]' on D (through 'cache'), and rate each one with #payoff,
+	 * with up to getNumThreads() threads.
+	 * @return	the chains built, and their payoffs
+	 */
+	protected Object[] buildAndRate(int s_[][], final Instances D, final CNodeCache cache) throws Exception {
+		List<Callable<Object[]>> jobs = new ArrayList<>();
+		for(final int chain[] : s_) {
+			jobs.add(new Callable<Object[]>() {
+				@Override
+				public Object[] call() throws Exception {
+					CC h_ = CCUtils.buildCC(chain,D,m_Classifier,cache);
+					return new Object[]{h_, payoff(h_,new Instances(D))};
+				}
+			});
+		}
+		List<Object[]> results = ThreadUtils.runAll(jobs, m_NumThreads);
+		CC h_[] = new CC[s_.length];
+		double w_[] = new double[s_.length];
+		for(int k = 0; k < s_.length; k++) {
+			h_[k] = (CC)results.get(k)[0];
+			w_[k] = (Double)results.get(k)[1];
+		}
+		return new Object[]{h_, w_};
+	}
+
 	@Override
 	public void buildClassifier(Instances D) throws Exception {
 		testCapabilities(D);
@@ -75,43 +108,63 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		if(getDebug()) System.out.println("s_[0] = "+Arrays.toString(s));
 
 		// If we want to optimize the chain space ...
+		CNodeCache cache = null;
 		if (m_Is > 0) {
 
+			// (only retrain the nodes whose parents change)
+			cache = new CNodeCache(NODE_CACHE_FACTOR * L);
+
 			// Make CC
-			CC h = CCUtils.buildCC(s,D,m_Classifier);
+			CC h = CCUtils.buildCC(s,D,m_Classifier,cache);
 
 			if (getDebug()) System.out.println("Optimising s ... ("+m_Is+" iterations):");
 
 			double w = payoff(h,new Instances(D));
 			if (getDebug()) System.out.println("h_{t="+0+"} := "+Arrays.toString(s)); //+"; w = "+w);
 
-			for(int t = 0; t < m_Is; t++) {
+			for(int t = 0; t < m_Is; ) {
 
-				// propose a chain s' by swapping two elements in s
-				int s_[] = Arrays.copyOf(A.swap(s,m_R),s.length);
+				// propose K chains s' by swapping two elements in s (one after the other)
+				int K = Math.min(Math.max(m_K,1), m_Is - t);
+				int s_[][] = new int[K][];
+				for(int k = 0; k < K; k++) {
+					s_[k] = Arrays.copyOf(A.swap(s,m_R),s.length);
+				}
 
-				// build h'
-				CC h_ = CCUtils.buildCC(s_,D,m_Classifier);
+				// build and rate each h' (in parallel)
+				Object built[] = buildAndRate(s_,D,cache);
+				CC h_[] = (CC[])built[0];
+				double w_[] = (double[])built[1];
 
-				// rate h'
-				double w_ = payoff(h_,new Instances(D));
+				// the best h' (the first, if tied)
+				int best = 0;
+				for(int k = 1; k < K; k++) {
+					if (w_[k] > w_[best])
+						best = k;
+				}
+				t += K;
 
 				// accept h' over h ? 
-				if (w_ > w) {
-					w = w_;
-					s = s_;
-					h = h_;
-					if (getDebug()) System.out.println("h_{t="+(t+1)+"} := "+Arrays.toString(s)); //+"; w = "+w);
+				if (w_[best] > w) {
+					w = w_[best];
+					s = s_[best];
+					h = h_[best];
+					if (getDebug()) System.out.println("h_{t="+(t-K+best+1)+"} := "+Arrays.toString(s)); //+"; w = "+w);
 					//if (getDebug()) System.out.print("& "+Utils.doubleToString(likelihood(h_,new Instances(D),1),8,2));
 					//if (getDebug()) System.out.print("& "+Utils.doubleToString(likelihood(h_,new Instances(D),2),8,2));
 					//if (getDebug()) System.out.println("& "+Utils.doubleToString(likelihood(h_,new Instances(D),5),8,2));
 				}
 			}
+			if (getDebug()) System.out.println("nodes trained: "+cache.getMisses()+", reused: "+cache.getHits());
 		}
 		if (getDebug()) System.out.println("---");
 
 		this.prepareChain(s);
+		useNodeCache(cache);
 		super.buildClassifier(D);
+		useNodeCache(null);
+		if (cache != null)
+			CNodeCache.release(nodes);
 	}
 
 	@Override
@@ -156,6 +209,8 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		result.addElement(new Option("\t"+chainIterationsTipText()+"\n\tdefault: 0", "Is", 1, "-Is <value>"));
 		result.addElement(new Option("\t"+inferenceIterationsTipText()+"\n\tdefault: 10", "Iy", 1, "-Iy <value>"));
 		result.addElement(new Option("\t"+payoffTipText()+"\n\tdefault: Exact match", "P", 1, "-P <value>"));
+		result.addElement(new Option("\t"+candidatesTipText()+"\n\tdefault: 1", "K", 1, "-K <value>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + ThreadUtils.SEQUENTIAL, "num-threads");
 		OptionUtils.add(result, super.listOptions());
 		return OptionUtils.toEnumeration(result);
 	}
@@ -165,6 +220,8 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		setChainIterations(OptionUtils.parse(options, "Is", 0));
 		setInferenceIterations(OptionUtils.parse(options, "Iy", 10));
 		setPayoff(OptionUtils.parse(options, 'P', "Exact match"));
+		setCandidates(OptionUtils.parse(options, 'K', 1));
+		setNumThreads(OptionUtils.parse(options, "num-threads", ThreadUtils.SEQUENTIAL));
 		super.setOptions(options);
 	}
 
@@ -174,6 +231,8 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		OptionUtils.add(result, "Is", getChainIterations());
 		OptionUtils.add(result, "Iy", getInferenceIterations());
 		OptionUtils.add(result, 'P', getPayoff());
+		OptionUtils.add(result, 'K', getCandidates());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		OptionUtils.add(result, super.getOptions());
 		return OptionUtils.toArray(result);
 	}
@@ -220,6 +279,53 @@ public class MCC extends CC implements TechnicalInformationHandler, MultiTargetC
 		return "Sets the payoff function. Any of those listed in regular evaluation output will do (e.g., 'Exact match').";
 	}
 
+	/** Set the number of candidate chains per step */
+	public void setCandidates(int k) {
+		m_K = k;
+	}
+
+	/** Get the number of candidate chains per step */
+	public int getCandidates() {
+		return m_K;
+	}
+
+	public String candidatesTipText() {
+		return "The number of candidate chains proposed at each step of the search of the chain space, built and rated in parallel (the best one is then considered); the total number of chains evaluated is still given by the chain iterations.";
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for building and rating the candidate chains; -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	@Override
 	public String globalInfo() {
 		return "Classifier Chains with Monte Carlo optimization. " + "For more information see:\n" + getTechnicalInformation().toString();
@@ -22,6 +22,7 @@ package meka.classifiers.multilabel;
 
 import meka.classifiers.MultiXClassifier;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
 import weka.core.OptionHandler;
 
 /**
@@ -32,4 +33,21 @@ import weka.core.OptionHandler;
  */
 public interface MultiLabelClassifier
 		extends MultiXClassifier {
+
+	/**
+	 * Returns the predictions for all instances of D (with L labels) as a double[N][L] matrix, where row i is what
+	 * distributionForInstance(D.instance(i)) returns. Classifiers which can do this more efficiently than instance by
+	 * instance override this method (see weka.core.BatchPredictor).
+	 *
+	 * @param D	the instances
+	 * @return	the predictions, one row per instance
+	 * @throws Exception if predictions can not be made
+	 */
+	public default double[][] distributionsForInstances(Instances D) throws Exception {
+		double Y[][] = new double[D.numInstances()][];
+		for(int i = 0; i < Y.length; i++) {
+			Y[i] = distributionForInstance(D.instance(i));
+		}
+		return Y;
+	}
 }
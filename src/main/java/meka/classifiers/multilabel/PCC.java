@@ -17,6 +17,7 @@ package meka.classifiers.multilabel;
 
 import weka.core.*;
 import meka.core.A;
+import meka.core.OptionUtils;
 import weka.core.TechnicalInformation.*;
 import java.util.*;
 
@@ -32,6 +33,32 @@ import java.util.*;
 public class PCC extends CC implements TechnicalInformationHandler{
 	private static final long serialVersionUID = -7669951968300150007L; // MT Capable
 
+	/** inference: enumerate all combinations (the reference) */
+	public static final int INFERENCE_EXHAUSTIVE = 0;
+	/** inference: depth-first search with upper-bound pruning (exact) */
+	public static final int INFERENCE_DFS = 1;
+	/** inference: uniform-cost / A* search (exact) */
+	public static final int INFERENCE_ASTAR = 2;
+	/** inference: beam search (approximate) */
+	public static final int INFERENCE_BEAM = 3;
+
+	/** the inference methods */
+	public static final Tag[] TAGS_INFERENCE = {
+		new Tag(INFERENCE_EXHAUSTIVE, "exhaustive", "Exhaustive enumeration"),
+		new Tag(INFERENCE_DFS, "dfs", "Depth-first search with pruning"),
+		new Tag(INFERENCE_ASTAR, "astar", "A* (uniform-cost) search"),
+		new Tag(INFERENCE_BEAM, "beam", "Beam search"),
+	};
+
+	/** the maximum number of paths expanded by DFS (as many as exhaustive search tries), after which the best path found so far is returned; A* falls back to DFS after as many */
+	public static final int MAX_EXPANSIONS = 1000000;
+	/** the maximum number of paths kept in the queue of A* search, after which it falls back to DFS */
+	public static final int MAX_QUEUE_SIZE = 100000;
+
+	protected int m_Inference = INFERENCE_DFS;
+
+	protected int m_BeamWidth = 10;
+
 	/**
 	 * Push - increment y[0] until = K[0], then reset and start with y[0], etc ...
 	 * Basically a counter.
@@ -78,8 +105,53 @@ public class PCC extends CC implements TechnicalInformationHandler{
 		return p;
 	}
 
-	@Override
-	public double[] distributionForInstance(Instance xy) throws Exception {
+	/**
+	 * Path - A path down the chain, i.e., values y[j] for the first 'depth' labels of the chain (y[j] = 0 for the others),
+	 * their probabilities conf[j] = p(y_j = y[j] | x, pa_j), and the product w of these probabilities.
+	 * Each step down the chain multiplies w by a probability, so w is an upper bound on the score of any completion of the path.
+	 */
+	protected static class Path {
+
+		public final double y[];
+		public final double conf[];
+		public final double w;
+		public final int depth;
+
+		/** The empty path (for L labels). */
+		public Path(int L) {
+			this(new double[L], new double[L], 1.0, 0);
+		}
+
+		protected Path(double y[], double conf[], double w, int depth) {
+			this.y = y;
+			this.conf = conf;
+			this.w = w;
+			this.depth = depth;
+		}
+
+		/** A copy of this path, extended with y_j = k, which has probability p. */
+		public Path extend(int j, int k, double p) {
+			double y_[] = Arrays.copyOf(y,y.length);
+			double conf_[] = Arrays.copyOf(conf,conf.length);
+			y_[j] = k;
+			conf_[j] = p;
+			return new Path(y_, conf_, w * p, depth + 1);
+		}
+	}
+
+	/**
+	 * The distribution of the next label of the chain after 'path', given x; computed only once for all extensions of 'path'.
+	 */
+	protected double[] next(Instance x, Path path) throws Exception {
+		int j = m_Chain[path.depth];
+		return nodes[j].distribution(x, path.y);
+	}
+
+	/**
+	 * Exhaustive - try all combinations (at most 1,000,000 of them), running down the whole chain for each one.
+	 * This is the reference implementation.
+	 */
+	protected Path exhaustive(Instance xy, int K[]) throws Exception {
 
 		int L = xy.classIndex(); 
 
@@ -91,9 +163,6 @@ public class PCC extends CC implements TechnicalInformationHandler{
 		 * e.g. K = [3,3,5]
 		 * we push y_[] from [0,0,0] to [2,2,4] over all necessary iterations.
 		 */
-		int K[] = getKs(xy.dataset());
-		if (getDebug()) 
-			System.out.println("K[] = "+Arrays.toString(K));
 		double y_[] = new double[L]; 
 
 		for(int i = 0; i < 1000000; i++) { // limit to 1m
@@ -114,10 +183,230 @@ public class PCC extends CC implements TechnicalInformationHandler{
 			}
 		}
 
+		return new Path(y, conf, w, L);
+	}
+
+	/**
+	 * Precedes - whether combination y comes before y_ in the order in which #exhaustive(Instance, int[]) tries them
+	 * (y[0] changing fastest).
+	 */
+	private static boolean precedes(double y[], double y_[]) {
+		for(int j = y.length - 1; j >= 0; j--) {
+			if (y[j] != y_[j])
+				return y[j] < y_[j];
+		}
+		return false;
+	}
+
+	/**
+	 * DFS - depth-first search for the most probable path below 'path', given the best complete path found so far.
+	 * See #dfs(Instance, Path, Path, int[]).
+	 */
+	protected Path dfs(Instance x, Path path, Path best) throws Exception {
+		return dfs(x, path, best, new int[1]);
+	}
+
+	/**
+	 * DFS - depth-first search for the most probable path below 'path', given the best complete path found so far.
+	 * Exact: a path is only pruned if its (upper bound) score cannot beat the best one found so far, or can only tie
+	 * with it while none of its completions precedes it.
+	 * The most probable values are tried first (of equally probable ones, the smallest first), so that good paths
+	 * (and hence pruning) are found early.
+	 * The result is the same as that of #exhaustive(Instance, int[]): complete paths are scored in the same way (the
+	 * product of their probabilities, in label order), and of several equally probable ones, the one exhaustive search
+	 * tries first is kept. (Prefixes are scored in chain order, which may differ in rounding, hence the slack in pruning.)
+	 * Like exhaustive search, this gives up after MAX_EXPANSIONS paths (counted in expanded[0]), and then returns the
+	 * best complete path found so far.
+	 * @return	the best complete path (either a completion of 'path', or 'best')
+	 */
+	protected Path dfs(Instance x, Path path, Path best, int expanded[]) throws Exception {
+		if (path.depth == m_Chain.length) {
+			double w = A.product(path.conf);
+			if (w > best.w || (w == best.w && precedes(path.y, best.y)))
+				return new Path(path.y, path.conf, w, path.depth);
+			return best;
+		}
+
+		int j = m_Chain[path.depth];
+		double d[] = next(x, path);
+		expanded[0]++;
+		double d_[] = new double[d.length];
+		for(int k = 0; k < d.length; k++) {
+			d_[k] = -d[k];
+		}
+		int order[] = Utils.stableSort(d_);
+		for(int i = 0; i < order.length && expanded[0] < MAX_EXPANSIONS; i++) {
+			int k = order[i];
+			double w = path.w * d[k];
+			if (w < best.w * (1.0 - 1e-9))
+				break;
+			Path path_ = path.extend(j, k, d[k]);
+			// (on a tie, only a completion which precedes 'best' can win, and the one with y = 0 for the rest is the first)
+			if (w > best.w * (1.0 + 1e-9) || precedes(path_.y, best.y))
+				best = dfs(x, path_, best, expanded);
+		}
+		return best;
+	}
+
+	/**
+	 * A* - uniform-cost search, i.e., A* where the heuristic for the rest of the chain is the trivial upper bound 1.
+	 * Exact: paths are expanded in order of their score (of equally probable ones, the deepest first), so the first
+	 * complete path taken from the queue is the most probable one. Unlike DFS, this may keep many paths in memory at
+	 * once (e.g., all paths of any depth above some score, if many combinations are about equally probable): after
+	 * MAX_EXPANSIONS paths, or once MAX_QUEUE_SIZE paths are queued, this falls back to DFS (which needs little memory).
+	 */
+	protected Path astar(Instance x, int L) throws Exception {
+		PriorityQueue<Path> queue = new PriorityQueue<Path>(11, new Comparator<Path>() {
+			@Override
+			public int compare(Path p1, Path p2) {
+				int result = Double.compare(p2.w, p1.w);
+				if (result == 0)
+					result = Integer.compare(p2.depth, p1.depth);
+				if (result == 0)
+					result = precedes(p1.y, p2.y) ? -1 : (precedes(p2.y, p1.y) ? 1 : 0);
+				return result;
+			}
+		});
+		queue.add(new Path(L));
+		int expanded = 0;
+		while (true) {
+			Path path = queue.poll();
+			if (path.depth == L)
+				return path;
+			if (expanded >= MAX_EXPANSIONS || queue.size() >= MAX_QUEUE_SIZE)
+				return dfs(x, new Path(L), new Path(new double[L], new double[L], 0.0, L));
+			int j = m_Chain[path.depth];
+			double d[] = next(x, path);
+			expanded++;
+			for(int k = 0; k < d.length; k++) {
+				queue.add(path.extend(j, k, d[k]));
+			}
+		}
+	}
+
+	/**
+	 * Beam search - go down the chain keeping only the 'width' most probable paths at each step.
+	 * Approximate (exact if 'width' is at least the number of combinations).
+	 */
+	protected Path beam(Instance x, int L, int width) throws Exception {
+		List<Path> beam = new ArrayList<Path>();
+		beam.add(new Path(L));
+		for(int depth = 0; depth < L; depth++) {
+			int j = m_Chain[depth];
+			List<Path> next = new ArrayList<Path>();
+			for(Path path : beam) {
+				double d[] = next(x, path);
+				for(int k = 0; k < d.length; k++) {
+					next.add(path.extend(j, k, d[k]));
+				}
+			}
+			// (a stable sort, so ties are kept in order)
+			Collections.sort(next, new Comparator<Path>() {
+				@Override
+				public int compare(Path p1, Path p2) {
+					return Double.compare(p2.w, p1.w);
+				}
+			});
+			beam = next.subList(0, Math.min(width, next.size()));
+		}
+		return beam.get(0);
+	}
+
+	@Override
+	public double[] distributionForInstance(Instance xy) throws Exception {
+
+		int L = xy.classIndex(); 
+
+		int K[] = getKs(xy.dataset());
+		if (getDebug()) 
+			System.out.println("K[] = "+Arrays.toString(K));
+
+		Path best;
+		switch (m_Inference) {
+			case INFERENCE_DFS:
+				best = dfs(xy, new Path(L), new Path(new double[L], new double[L], 0.0, L));
+				break;
+			case INFERENCE_ASTAR:
+				best = astar(xy, L);
+				break;
+			case INFERENCE_BEAM:
+				best = beam(xy, L, m_BeamWidth);
+				break;
+			default:
+				best = exhaustive(xy, K);
+		}
+		if (getDebug()) 
+			System.out.println("y = "+Arrays.toString(best.y)+", :"+best.w);
+
+		double y[] = best.y;
+		double conf[] = best.conf;
+
 		// If it's multi-label (binary only), return the probabilistic output (else just the values).
 		return (A.max(K) > 2) ? y : convertConfidenceToProbability(conf,y); //return p_y; //y;
 	}
 
+	/**
+	 * Sets the inference method (see TAGS_INFERENCE).
+	 */
+	public void setInference(SelectedTag value) {
+		if (value.getTags() == TAGS_INFERENCE)
+			m_Inference = value.getSelectedTag().getID();
+	}
+
+	/**
+	 * Gets the inference method.
+	 */
+	public SelectedTag getInference() {
+		return new SelectedTag(m_Inference, TAGS_INFERENCE);
+	}
+
+	public String inferenceTipText() {
+		return "The inference method: exhaustive enumeration of all combinations (the reference, limited to 1,000,000 combinations), depth-first search with pruning or A* search (both exact, up to 1,000,000 expanded paths), or beam search (approximate).";
+	}
+
+	/**
+	 * Sets the width of the beam (for beam search).
+	 */
+	public void setBeamWidth(int value) {
+		m_BeamWidth = value;
+	}
+
+	/**
+	 * Gets the width of the beam (for beam search).
+	 */
+	public int getBeamWidth() {
+		return m_BeamWidth;
+	}
+
+	public String beamWidthTipText() {
+		return "The number of paths kept at each step of beam search.";
+	}
+
+	@Override
+	public Enumeration listOptions() {
+		Vector result = new Vector();
+		result.addElement(new Option("\t"+inferenceTipText()+"\n\tdefault: "+new SelectedTag(INFERENCE_DFS, TAGS_INFERENCE), "inference", 1, "-inference " + Tag.toOptionList(TAGS_INFERENCE)));
+		OptionUtils.addOption(result, beamWidthTipText(), "10", "beam-width");
+		OptionUtils.add(result, super.listOptions());
+		return OptionUtils.toEnumeration(result);
+	}
+
+	@Override
+	public void setOptions(String[] options) throws Exception {
+		setInference(new SelectedTag(OptionUtils.parse(options, "inference", TAGS_INFERENCE[INFERENCE_DFS].getIDStr()), TAGS_INFERENCE));
+		setBeamWidth(OptionUtils.parse(options, "beam-width", 10));
+		super.setOptions(options);
+	}
+
+	@Override
+	public String [] getOptions() {
+		List<String> result = new ArrayList<>();
+		OptionUtils.add(result, "inference", getInference().getSelectedTag().getIDStr());
+		OptionUtils.add(result, "beam-width", getBeamWidth());
+		OptionUtils.add(result, super.getOptions());
+		return OptionUtils.toArray(result);
+	}
+
 	@Override
 	public String globalInfo() {
 		return "Probabalistic Classifier Chains. " + "For more information see:\n" + getTechnicalInformation().toString();
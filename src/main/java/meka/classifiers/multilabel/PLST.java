@@ -15,6 +15,7 @@
 
 package meka.classifiers.multilabel;
 
+import meka.core.LabelCovariance;
 import meka.core.OptionUtils;
 import meka.classifiers.multitarget.CR;
 import meka.core.MatrixUtils;
@@ -28,12 +29,14 @@ import weka.core.TechnicalInformation;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 import weka.core.TechnicalInformationHandler;
+import weka.core.Utils;
 import weka.core.matrix.Matrix;
 import weka.core.matrix.SingularValueDecomposition;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Random;
 import java.util.Vector;
 
 /**
@@ -45,6 +48,11 @@ import java.util.Vector;
  * See: Farbound Tai and Hsuan-Tien Lin. Multilabel classification with 
  * principal label space transformation. Neural Computation, 24(9):2508--2542, 
  * September 2012. 
+ * <br>
+ * With the covariance option, the transformation matrix is computed from the L x L
+ * covariance of the labels, accumulated in one pass over the data, rather than
+ * from the SVD of the N x L label matrix (for many labels, with a randomized
+ * truncated decomposition).
  *
  * @author     Joerg Wicker (wicker@uni-mainz.de)
  */
@@ -73,6 +81,20 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
      */
     protected int m_Size = getDefaultSize();
 
+    /*
+     * Whether to compute the transformation matrix from the label covariance.
+     */
+    protected boolean m_Covariance = false;
+
+    /*
+     * From how many labels on the covariance is decomposed with a randomized
+     * (truncated) method, and its parameters.
+     */
+    protected static final int RANDOMIZED_MIN_LABELS = 100;
+    protected static final int RANDOMIZED_OVERSAMPLING = 10;
+    protected static final int RANDOMIZED_ITERATIONS = 4;
+    protected static final long RANDOMIZED_SEED = 1;
+
     /**
      * Returns the global information of the classifier.
      *
@@ -137,6 +159,34 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
 	    + "less than the number of labels and more than 1.";
     }
 
+    /**
+     * Returns whether the transformation matrix is computed from the label covariance.
+     *
+     * @return true if computed from the covariance.
+     */
+    public boolean getCovariance(){
+	return m_Covariance;
+    }
+
+    /**
+     * Sets whether to compute the transformation matrix from the label covariance.
+     *
+     * @param covariance true to compute it from the covariance.
+     */
+    public void setCovariance(boolean covariance){
+	this.m_Covariance = covariance;
+    }
+
+    /**
+     * The tooltip for the covariance.
+     *
+     * @return the tooltip.
+     */
+    public String covarianceTipText(){
+	return "Compute the transformation from the L x L covariance of the labels, in one\n"
+	    + "pass over the data, rather than from the SVD of the N x L label matrix.";
+    }
+
     /**
      * Returns an instance of a TechnicalInformation object, containing
      * detailed information about the technical background of this class,
@@ -174,6 +224,10 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
 			      ""+getDefaultSize(),
 			      "size");
 
+	OptionUtils.addFlag(newVector,
+			    covarianceTipText(),
+			    "covariance");
+
 	OptionUtils.add(newVector, super.listOptions());
 
 	return OptionUtils.toEnumeration(newVector);
@@ -187,6 +241,7 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
     public String[] getOptions(){
 	List<String> result = new ArrayList<>();
 	OptionUtils.add(result, "size", getSize());
+	OptionUtils.add(result, "covariance", getCovariance());
 	OptionUtils.add(result, super.getOptions());
 	return OptionUtils.toArray(result);
     }
@@ -201,6 +256,7 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
      */
     public void setOptions(String[] options) throws Exception {
 	setSize(OptionUtils.parse(options, "size", getDefaultSize()));
+	setCovariance(Utils.getFlag("covariance", options));
 	super.setOptions(options);
     }
 
@@ -218,6 +274,9 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
      */
     @Override
     public Instances transformLabels(Instances D) throws Exception{
+	if (m_Covariance)
+	    return transformLabelsCovariance(D);
+
 	Instances features = this.extractPart(D, false);
 	Instances labels = this.extractPart(D, true);
 
@@ -308,6 +367,79 @@ public class PLST extends LabelTransformationClassifier implements TechnicalInfo
 	return result;
     }
 
+    /**
+     * Transforms the labels as transformLabels(D), with the transformation matrix
+     * computed from the L x L covariance of the labels: its eigenvectors are the
+     * right singular vectors (V) of the shifted label matrix. The covariance is
+     * accumulated in one pass over D, so no N x L matrix is needed; for many labels,
+     * only the top eigenvectors are computed (randomized).
+     *
+     * @param D the instances to transform into new instances with transformed labels.
+     * @return The resulting instances. Instances consist of features and transformed labels.
+     */
+    protected Instances transformLabelsCovariance(Instances D) throws Exception{
+	int L = D.classIndex();
+	int k = this.getSize();
+
+	if (k < 1 || k > L)
+	    throw new Exception("Size of the compressed matrix must be between 1 and the number of labels ("+L+"): "+k);
+
+	LabelCovariance covariance = new LabelCovariance(L);
+
+	for (int i = 0; i < D.numInstances(); i++){
+	    covariance.update(D.instance(i));
+	}
+
+	// remember shift for prediction
+	this.m_Shift = new Matrix(new double[][]{covariance.getMeans()});
+
+	Matrix scatter = covariance.getScatter();
+
+	if (L >= RANDOMIZED_MIN_LABELS && k + RANDOMIZED_OVERSAMPLING < L) {
+	    m_v = MatrixUtils.randomizedTopEigenvectors(scatter, k,
+							RANDOMIZED_OVERSAMPLING,
+							RANDOMIZED_ITERATIONS,
+							new Random(RANDOMIZED_SEED));
+	} else {
+	    m_v = MatrixUtils.topEigenvectors(scatter, k);
+	}
+
+	// now the multiplication (last step of the algorithm), one row at a time,
+	// only over the non-zero labels
+	ArrayList<Attribute> attinfos = new ArrayList<Attribute>();
+
+	for (int i = 0; i < k; i++) {
+	    attinfos.add(new Attribute("att"+ i));
+	}
+
+	this.m_PatternInstances = new Instances("compressedlabels",
+						attinfos,
+						D.numInstances());
+
+	Instances compressed = new Instances(this.m_PatternInstances, D.numInstances());
+	double[][] v = m_v.getArray();
+
+	for (int i = 0; i < D.numInstances(); i++){
+	    Instance x = D.instance(i);
+	    double[] z = new double[k];
+	    for (int p = 0; p < x.numValues() && x.index(p) < L; p++){
+		double y = x.valueSparse(p);
+		if (y != 0.0) {
+		    for (int c = 0; c < k; c++){
+			z[c] += y * v[x.index(p)][c];
+		    }
+		}
+	    }
+	    compressed.add(new DenseInstance(1.0, z));
+	}
+
+	// fill result Instances
+	Instances result = Instances.mergeInstances(compressed, this.extractPart(D, false));
+
+	result.setClassIndex(k);
+	return result;
+    }
+
     /**
      * Transforms the predictions of the internal classifier back to the original labels.
      *
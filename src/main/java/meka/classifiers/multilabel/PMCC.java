@@ -15,7 +15,9 @@
 
 package meka.classifiers.multilabel;
 
+import meka.classifiers.multilabel.cc.CNodeCache;
 import meka.core.A;
+import meka.core.CCUtils;
 import meka.core.MLUtils;
 import meka.core.OptionUtils;
 import weka.classifiers.AbstractClassifier;
@@ -30,7 +32,7 @@ import java.util.*;
  * PMCC.java - Like MCC but creates a population of M chains at training time (from Is <i>candidate</i> chains, using Monte Carlo sampling), and uses this population for inference at test time; If you are looking for a 'more typical' majority-vote ensemble method, use something like EnsembleML or BaggingML with MCC.
  *
  * <p>
- * <b>NOTE:</b> this implementation was faster, because the chain was only rebuilt from the first node which was different -- this is no longer the case (due to updates to way classifier chains works, using the CNode class).
+ * <b>NOTE:</b> nodes are cached by their label and set of parents (see CNodeCache), so for each proposed chain only the nodes whose parents changed are rebuilt.
  * </p>
  *
  * @see meka.classifiers.multilabel.MCC
@@ -95,18 +97,10 @@ public class PMCC extends MCC {
 	}
 
 	/** 
-	 * BuildCC - Build a CC of chain-order 's' on dataset 'D'. 
+	 * BuildCC - Build a CC of chain-order 's' on dataset 'D' (through the node cache, if set).
 	 */
 	protected CC buildCC(int s[], Instances D) throws Exception {
-
-		// a new classifier chain
-		CC h = new CC();
-
-		// build this chain
-		h.prepareChain(s);
-		h.setClassifier(m_Classifier);
-		h.buildClassifier(new Instances(D));
-		return h;
+		return CCUtils.buildCC(s,D,m_Classifier,m_NodeCache);
 	}
 
 	/**
@@ -161,6 +155,9 @@ public class PMCC extends MCC {
 
 			//HashMap<String,CC> id2cc = new HashMap<String,CC>();
 
+			// (only retrain the nodes whose parents change)
+			useNodeCache(new CNodeCache(NODE_CACHE_FACTOR * L));
+
 			// Make CC
 			int s[] = A.make_sequence(L);
 		  	A.shuffle(s,m_R);
@@ -170,33 +167,44 @@ public class PMCC extends MCC {
 			//s[0] = s_;
 			if(getDebug()) System.out.println("s[0] = "+Arrays.toString(s));
 
-			for(int t = 0; t < m_Is; t++) {
+			for(int t = 0; t < m_Is; ) {
 
-				// propose a chain s' ~ pi(s'|s) 
-				int s_[] = (m_O > 0) ? 
-					  pi(Arrays.copyOf(s,s.length),m_R,t,m_Beta)	  :	// default cond. option - with temperature
-					  A.swap(Arrays.copyOf(s,s.length),m_R) ;	        // special simple option - swap two elements
+				// propose K chains s' ~ pi(s'|s) 
+				int K = Math.min(Math.max(m_K,1), m_Is - t);
+				int s_[][] = new int[K][];
+				for(int k = 0; k < K; k++) {
+					s_[k] = (m_O > 0) ? 
+						  pi(Arrays.copyOf(s,s.length),m_R,t+k,m_Beta)	  :	// default cond. option - with temperature
+						  A.swap(Arrays.copyOf(s,s.length),m_R) ;	        // special simple option - swap two elements
+				}
+				t += K;
 
-				// build h' with sequence s'
+				// build each h' with sequence s', and rate it (by its performance on the training data), in parallel
 				//CC h_ = rebuildCC(getClosest(id2cc,Arrays.toString(s_)),s_,D);
-				CC h_ = buildCC(Arrays.copyOf(s_,s_.length),D);
-				//id2cc.put(Arrays.toString(s_), h_);
-
-				// rate h' (by its performance on the training data)
-				double w_ = payoff(h_,D);
-
-				// accept h' weighted more than the weakest h in the population
-				int min = Utils.sort(w)[0]; // (min index)
-				if (w_ > w[min]) {
-					w[min] = w_;
-					h[min] = h_;
-					if (getDebug()) System.out.println(" accepted h_ with score "+w_+" > "+w[min]);
-					s = s_;
+				Object built[] = buildAndRate(s_,D,m_NodeCache);
+				CC h_[] = (CC[])built[0];
+				double w_[] = (double[])built[1];
+
+				for(int k = 0; k < K; k++) {
+					// accept h' weighted more than the weakest h in the population
+					int min = Utils.sort(w)[0]; // (min index)
+					if (w_[k] > w[min]) {
+						w[min] = w_[k];
+						h[min] = h_[k];
+						if (getDebug()) System.out.println(" accepted h_ with score "+w_[k]+" > "+w[min]);
+						s = s_[k];
+					}
+					else
+						if (getDebug()) System.out.println(" DENIED h_ with score "+w_[k]+" !> score "+w[min]);
 				}
-				else
-					if (getDebug()) System.out.println(" DENIED h_ with score "+w_+" !> score "+w[min]);
 			}
+			if (getDebug()) System.out.println("nodes trained: "+m_NodeCache.getMisses()+", reused: "+m_NodeCache.getHits());
 			if (getDebug()) System.out.println("---");
+			useNodeCache(null);
+			for(int m = 0; m < m_M; m++) {
+				if (h[m] != null)
+					CNodeCache.release(h[m].nodes);
+			}
 
 			// normalise weights
 			Utils.normalize(w);
@@ -201,6 +201,7 @@ public class PS extends LC implements Randomizable, TechnicalInformationHandler
 		// Transform
 		Instances D_ = PSUtils.PSTransformation(D,L,m_P,m_N); 
 		m_InstancesTemplate = new Instances(D_,0);
+		m_MetaLabels = PSUtils.decodeMetaLabels(m_InstancesTemplate.classAttribute());
 
 		// Info
 		if(getDebug()) System.out.println("("+m_InstancesTemplate.attribute(0).numValues()+" classes, "+D_.numInstances()+" ins. )");
@@ -73,7 +73,7 @@ public class PSt extends PS implements TechnicalInformationHandler {
 		//x_.setDataset(m_InstancesTemplate);
 
 		// Get a classification
-		return PSUtils.recombination_t(m_Classifier.distributionForInstance(x_),L,m_InstancesTemplate);
+		return PSUtils.recombination_t(m_Classifier.distributionForInstance(x_),L,getMetaLabels());
 	}
 
 	@Override
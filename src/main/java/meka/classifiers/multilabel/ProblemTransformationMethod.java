@@ -116,6 +116,21 @@ public abstract class ProblemTransformationMethod
 	@Override
 	public abstract double[] distributionForInstance(Instance i) throws Exception;
 
+	/**
+	 * Returns whether distributionForInstance(Instance) is the one implemented in class 'c', i.e., whether it has not been
+	 * overridden by a subclass. Batch predictions which follow the inference of 'c' are only valid in this case.
+	 * @param	c	a (super)class of this classifier
+	 * @return	true if distributionForInstance(Instance) is declared by 'c'
+	 */
+	protected boolean hasDistributionForInstanceOf(Class<?> c) {
+		try {
+			return getClass().getMethod("distributionForInstance", Instance.class).getDeclaringClass() == c;
+		}
+		catch (NoSuchMethodException e) {
+			return false;
+		}
+	}
+
 	@Override
 	public String getRevision() {
 	    return RevisionUtils.extract("$Revision: 9117 $");
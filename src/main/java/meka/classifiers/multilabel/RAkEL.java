@@ -74,6 +74,7 @@ public class RAkEL extends RAkELd {
 
 		m_InstancesTemplates = new Instances[m_M];
 		kMap = new int[m_M][m_K];
+		m_LabelIndices = new int[m_M][][];
 		m_Classifiers = AbstractClassifier.makeCopies(m_Classifier,m_M);
 		for(int i = 0; i < m_M; i++) {
 			kMap[i] = SuperLabelUtils.get_k_subset(L,m_K,random);
@@ -82,6 +83,7 @@ public class RAkEL extends RAkELd {
 			Instances D_i = SuperLabelUtils.makePartitionDataset(D,kMap[i],m_P,m_N);
 			m_Classifiers[i].buildClassifier(D_i);
 			m_InstancesTemplates[i] = new Instances(D_i,0);
+			m_LabelIndices[i] = mapBack(m_InstancesTemplates[i],kMap[i]);
 		}
 	}
 
@@ -55,6 +55,9 @@ public class RAkELd extends PS implements TechnicalInformationHandler {
 	int m_M = 10;
 	protected int kMap[][] = null;
 
+	/** for each model m and each of its class values, the (original) label indices it stands for (decoded once, at build time) */
+	protected int m_LabelIndices[][][] = null;
+
 	/**
 	 * Description to display in the GUI.
 	 * 
@@ -78,6 +81,7 @@ public class RAkELd extends PS implements TechnicalInformationHandler {
 		m_M = kMap.length;
 		m_Classifiers = AbstractClassifier.makeCopies(m_Classifier,m_M);
 		m_InstancesTemplates = new Instances[m_M];
+		m_LabelIndices = new int[m_M][][];
 
 		if (getDebug())
 			System.out.println("Building "+m_M+" models of "+m_K+" partitions:");
@@ -92,6 +96,7 @@ public class RAkELd extends PS implements TechnicalInformationHandler {
 
 			m_Classifiers[i].buildClassifier(D_i);
 			m_InstancesTemplates[i] = new Instances(D_i,0);
+			m_LabelIndices[i] = mapBack(m_InstancesTemplates[i],kMap[i]);
 
 		}
 
@@ -107,20 +112,18 @@ public class RAkELd extends PS implements TechnicalInformationHandler {
 
 		double y[] = new double[L];
 		//int c[] = new int[L]; // to scale it between 0 and 1
+		int labelIndices[][][] = getLabelIndices();
 
 		for(int m = 0; m < m_M; m++) {
 
 			// Transform instance
 			Instance x_m = PSUtils.convertInstance(x, L, m_InstancesTemplates[m]);
-			x_m.setDataset(m_InstancesTemplates[m]);
 
 			// Get a meta classification
 			int i_m = (int)m_Classifiers[m].classifyInstance(x_m);        // e.g., 2
-			int k_indices[] = mapBack(m_InstancesTemplates[m],i_m); // e.g., [3,8]
 
 			// Vote with classification
-			for (int i : k_indices) {
-				int index = kMap[m][i];
+			for (int index : labelIndices[m][i_m]) {                     // e.g., [3,8]
 				y[index] += 1.;
 			}
 
@@ -130,14 +133,69 @@ public class RAkELd extends PS implements TechnicalInformationHandler {
 	}
 
 	/**
-	 * mapBack: returns the original indices (encoded in the class attribute).
+	 * Predicts all instances of D at once: each model classifies the whole (converted) block in one go, and the
+	 * class values it predicts are only decoded (mapped back) once each.
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+
+		int L = D.classIndex();
+		double Y[][] = new double[D.numInstances()][L];
+		int labelIndices[][][] = getLabelIndices();
+
+		for(int m = 0; m < m_M; m++) {
+
+			// Transform instances
+			Instances D_m = F.keepLabelsView(D,L,new int[]{0},new double[]{Utils.missingValue()},m_InstancesTemplates[m]);
+
+			// Get the meta classifications
+			double c[] = MLUtils.classifyInstances(m_Classifiers[m],D_m);
+
+			// Vote with classifications
+			for(int n = 0; n < Y.length; n++) {
+				for (int index : labelIndices[m][(int)c[n]]) {
+					Y[n][index] += 1.;
+				}
+			}
+
+		}
+
+		return Y;
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(RAkELd.class);
+	}
+
+	/**
+	 * mapBack: returns, for each class value of 'template', the original label indices (encoded in the class attribute
+	 * relative to the partition 'k_indices').
 	 */
-	private int[] mapBack(Instances template, int i) {
-		try {
-			return MLUtils.toIntArray(template.classAttribute().value(i));
-		} catch(Exception e) {
-			return new int[]{};
+	protected int[][] mapBack(Instances template, int k_indices[]) {
+		int labelIndices[][] = PSUtils.decodeMetaLabels(template.classAttribute());
+		for(int[] indices : labelIndices) {
+			for(int i = 0; i < indices.length; i++) {
+				indices[i] = k_indices[indices[i]];
+			}
+		}
+		return labelIndices;
+	}
+
+	/**
+	 * GetLabelIndices - the decoded class values of all models (decoded now, if this model was built without them).
+	 */
+	protected int[][][] getLabelIndices() {
+		if (m_LabelIndices == null) {
+			int labelIndices[][][] = new int[m_M][][];
+			for(int m = 0; m < m_M; m++) {
+				labelIndices[m] = mapBack(m_InstancesTemplates[m],kMap[m]);
+			}
+			m_LabelIndices = labelIndices;
 		}
+		return m_LabelIndices;
 	}
 
 	/**
@@ -17,6 +17,8 @@ package meka.classifiers.multilabel.cc;
 
 import meka.core.A;
 import meka.core.F;
+import meka.core.LabelViewInstance;
+import meka.core.MLUtils;
 import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.classifiers.functions.SMO;
@@ -36,6 +38,9 @@ import java.util.Random;
  */
 public class CNode implements Serializable {
 
+	/** (the default one of the original class, so that nodes saved before 'keep' was added can still be read) */
+	private static final long serialVersionUID = 10029833814936077L;
+
 	private int j = -1;
 	private int d = -1;
 	private int inX[] = null;
@@ -44,6 +49,12 @@ public class CNode implements Serializable {
 	private Instance t_ = null;
 	private Classifier h = null;
 	private int map[] = null;
+	/** the labels kept by the transformation (parents and self, sorted), see #getKeep() */
+	private int keep[] = null;
+	/** whether this node may be used by several chains, from several threads (see CNodeCache); if so, predictions are made one at a time */
+	private transient volatile boolean shared = false;
+	/** a reusable transformed instance for each thread, see #transformReused(Instance, double[]) */
+	private transient volatile ThreadLocal<LabelViewInstance> x_ = null;
 
 	/**
 	 * CNode - A Node 'j', taking inputs from all parents inX and paY.
@@ -72,19 +83,30 @@ public class CNode implements Serializable {
 	public Instances transform(Instances D) throws Exception {
 		int L = D.classIndex();
 		d = D.numAttributes() - L;
-		int keep[] = A.append(this.paY,j);		// keep all parents and self!
+		keep = A.append(this.paY,j);		// keep all parents and self!
 		Arrays.sort(keep);
-		int remv[] = A.invert(keep,L); 	// i.e., remove the rest < L
-		Arrays.sort(remv);
 		map = new int[L];
 		for(int j = 0; j < L; j++) {
 			map[j] = Arrays.binarySearch(keep,j);
 		}
-		Instances D_ = F.remove(new Instances(D),remv, false); 
+		Instances D_ = F.keepLabelsView(D,L,keep);
 		D_.setClassIndex(map[this.j]);
 		return D_;
 	}
 
+	/**
+	 * GetKeep - the labels kept by the transformation; rebuilt from paY and j if not set (i.e., for a node saved before
+	 * it was stored).
+	 */
+	private int[] getKeep() {
+		if (keep == null) {
+			int k[] = A.append(this.paY,j);
+			Arrays.sort(k);
+			keep = k;
+		}
+		return keep;
+	}
+
 	/**
 	 * Build - Create transformation for this node, and train classifier of type H upon it.
 	 * The dataset should have class as index 'j', and remove all indices less than L *not* in paY.
@@ -102,18 +124,64 @@ public class CNode implements Serializable {
 		T.clear();
 	}
 
+	/**
+	 * Share - mark this node as (possibly) used by several chains at once, from several threads. The base classifier
+	 * is then only asked for one prediction at a time, since it is not necessarily thread-safe.
+	 */
+	void share() {
+		shared = true;
+	}
+
+	/**
+	 * Unshare - mark this node as used by a single chain again (see CNodeCache#release(CNode[])).
+	 */
+	void unshare() {
+		shared = false;
+	}
+
+	/** Whether this node is marked as shared (see #share()). */
+	boolean isShared() {
+		return shared;
+	}
+
+	/** The distribution of the classifier for the transformed instance x_ (see #share()). */
+	private double[] predict(Instance x_) throws Exception {
+		if (!shared)
+			return h.distributionForInstance(x_);
+		synchronized(h) {
+			return h.distributionForInstance(x_);
+		}
+	}
+
 	/**
 	 * The distribution this this node, given input x.
 	 * @return p( y_j = k | x , y_pred ) for k in {0,1}
 	 */
 	public double[] distribution(Instance x, double ypred[]) throws Exception {
-		Instance x_ = transform(x,ypred);
-		return h.distributionForInstance(x_);
+		Instance x_ = transformReused(x,ypred);
+		return predict(x_);
 	}
 
 	/** Same as #distribution(Instance, double[]), but the Instance is pre-transformed with ypred inside. */
 	public double[] distributionT(Instance x_) throws Exception {
-		return h.distributionForInstance(x_);
+		return predict(x_);
+	}
+
+	/**
+	 * The distribution of this node for each instance of D, given the predictions Y[i] for each D.instance(i).
+	 * All instances are transformed first, so 'h' can make use of its own batch prediction, if it has one.
+	 * @return p( y_j = k | x_i , Y[i] ) for k in {0,1}, for each i
+	 */
+	public double[][] distributions(Instances D, double Y[][]) throws Exception {
+		Instances T_ = new Instances(T,D.numInstances());
+		for(int i = 0; i < D.numInstances(); i++) {
+			T_.add(transform(D.instance(i),Y[i]));
+		}
+		if (!shared)
+			return MLUtils.distributionsForInstances(h,T_);
+		synchronized(h) {
+			return MLUtils.distributionsForInstances(h,T_);
+		}
 	}
 
 	/**
@@ -127,26 +195,61 @@ public class CNode implements Serializable {
 
 	/**
 	 * Transform - turn [y1,y2,y3,x1,x2] into [y1,y2,x1,x2].
+	 * The result is a view of x (which is not copied or modified), where the labels are the parents' values from ypred, and the class is missing.
 	 * @return transformed Instance
 	 */
 	public Instance transform(Instance x, double ypred[]) throws Exception {
-		x = (Instance)x.copy();
-		int L = x.classIndex();
-		int L_c = (paY.length + 1);
-		x.setDataset(null);
-		for(int j = 0; j < (L - L_c); j++) {
-			x.deleteAttributeAt(0);
+		int keep[] = getKeep();
+		LabelViewInstance x_ = new LabelViewInstance(x,x.classIndex(),keep,new double[keep.length]);
+		x_.setDataset(T);
+		setLabelValues(x_,ypred);
+		return x_;
+	}
+
+	/**
+	 * Transform - like #transform(Instance, double[]), but reusing the same (thread-confined) instance on every call,
+	 * so only O(|pa|) work is done, and nothing is allocated. The result is only valid until the next call (in the same thread).
+	 * @return transformed Instance
+	 */
+	protected Instance transformReused(Instance x, double ypred[]) throws Exception {
+		ThreadLocal<LabelViewInstance> views = x_;
+		if (views == null) {
+			synchronized(this) {
+				if (x_ == null)
+					x_ = new ThreadLocal<LabelViewInstance>();
+				views = x_;
+			}
 		}
-		for(int pa : paY) {
-			//System.out.println("x_["+map[pa]+"] <- "+ypred[pa]);
-			x.setValue(map[pa],ypred[pa]);
+		LabelViewInstance v = views.get();
+		if (v == null) {
+			v = (LabelViewInstance)transform(x,ypred);
+			views.set(v);
+		}
+		else {
+			v.setSource(x);
+			setLabelValues(v,ypred);
+		}
+		return v;
+	}
+
+	/** set the parents (and missing class) of the transformed x_ (which is over 'keep'), given ypred. */
+	private void setLabelValues(LabelViewInstance x_, double ypred[]) {
+		double v[] = x_.getLabelValues();
+		int keep[] = getKeep();
+		for(int k = 0; k < keep.length; k++) {
+			v[k] = (keep[k] == this.j) ? Utils.missingValue() : ypred[keep[k]];
 		}
-		x.setDataset(T);
-		x.setClassMissing();
-		return x;
 	}
 
 	public void updateTransform(Instance t_, double ypred[]) throws Exception {
+		if (t_ instanceof LabelViewInstance && ((LabelViewInstance)t_).getLabelValues() != null) {
+			// no need to copy the instance (as setValue would)
+			double v[] = ((LabelViewInstance)t_).getLabelValues();
+			for(int pa : this.paY) {
+				v[this.map[pa]] = ypred[pa];
+			}
+			return;
+		}
 		for(int pa : this.paY) {
 			t_.setValue(this.map[pa],ypred[pa]);
 		}
@@ -173,8 +276,8 @@ public class CNode implements Serializable {
 	 * @return argmax_{k in 0,1,...} p( y_j = k | x , y_pred )
 	 */
 	public double classify(Instance x, double ypred[]) throws Exception {
-		Instance x_ = transform(x,ypred);
-		return Utils.maxIndex(h.distributionForInstance(x_));
+		Instance x_ = transformReused(x,ypred);
+		return Utils.maxIndex(predict(x_));
 	}
 
 	/**
@@ -188,9 +291,7 @@ public class CNode implements Serializable {
 		int L = D.classIndex();
 		int keep[] = A.append(pa_c,c);			// keep all parents and self!
 		Arrays.sort(keep);
-		int remv[] = A.invert(keep,L); 	// i.e., remove the rest < L
-		Arrays.sort(remv);
-		Instances T = F.remove(new Instances(D),remv, false); 
+		Instances T = F.keepLabelsView(D,L,keep);
 		int map[] = new int[L];
 		for(int j = 0; j < L; j++) {
 			map[j] = Arrays.binarySearch(keep,j);
@@ -0,0 +1,174 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.classifiers.multilabel.cc;
+
+import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * CNodeCache.java - A bounded cache of trained nodes, keyed by (label, set of parents), for chain-order search
+ * (as in MCC, PMCC). A node is trained on the same data (the label, its parents, and the input attributes) whatever
+ * the order of its parents, so when a new chain is proposed, only the nodes whose parent set changed need to be trained;
+ * e.g., swapping two labels of a chain only changes the parent sets of the nodes between them.
+ * <br>
+ * All the nodes in a cache must be trained on the same dataset, with the same base classifier (it is up to the caller to
+ * use a new cache otherwise). Nodes are shared by the chains they are taken for; they are only read after being built
+ * (and make one prediction at a time, see CNode#share()). When full, the least-recently used node is evicted.
+ * Lookups are synchronized, so a cache can be used by several threads (although two threads may then both build the
+ * same missing node).
+ *
+ * @see meka.core.CCUtils#buildCC(int[], Instances, Classifier, CNodeCache)
+ */
+public class CNodeCache {
+
+	/**
+	 * The key of a node: its label, and the (sorted) set of its parents.
+	 */
+	protected static class Key {
+
+		protected final int j;
+
+		protected final int pa[];
+
+		protected final int hash;
+
+		protected Key(int j, int paY[]) {
+			this.j = j;
+			this.pa = paY.clone();
+			Arrays.sort(this.pa);
+			this.hash = 31 * j + Arrays.hashCode(this.pa);
+		}
+
+		@Override
+		public int hashCode() {
+			return hash;
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Key))
+				return false;
+			Key k = (Key)o;
+			return j == k.j && hash == k.hash && Arrays.equals(pa, k.pa);
+		}
+	}
+
+	/** the maximum number of nodes kept */
+	protected int m_Capacity;
+
+	/** the nodes, in access order */
+	protected LinkedHashMap<Key,CNode> m_Nodes;
+
+	/** the number of lookups which found a node, and which did not */
+	protected long m_Hits = 0, m_Misses = 0;
+
+	/**
+	 * CNodeCache - keeping up to 'capacity' nodes.
+	 * @param	capacity	the maximum number of nodes (at least 1)
+	 */
+	public CNodeCache(final int capacity) {
+		if (capacity < 1)
+			throw new IllegalArgumentException("Capacity must be at least 1: " + capacity);
+		m_Capacity = capacity;
+		m_Nodes = new LinkedHashMap<Key,CNode>(16, 0.75f, true) {
+			private static final long serialVersionUID = 4385346512412640919L;
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<Key,CNode> eldest) {
+				return size() > m_Capacity;
+			}
+		};
+	}
+
+	/**
+	 * Get - the node for label j with parents paY[] (in any order), or null if there is none in the cache.
+	 */
+	public synchronized CNode get(int j, int paY[]) {
+		CNode node = m_Nodes.get(new Key(j, paY));
+		if (node != null)
+			m_Hits++;
+		else
+			m_Misses++;
+		return node;
+	}
+
+	/**
+	 * Put - add the (built) node for label j with parents paY[].
+	 */
+	public synchronized void put(int j, int paY[], CNode node) {
+		node.share();
+		m_Nodes.put(new Key(j, paY), node);
+	}
+
+	/**
+	 * Build - the node for label j with parents paY[], from the cache if it is there, else built on D with
+	 * (a copy of) H, and added to the cache.
+	 * @param	j		the label index of the node
+	 * @param	paY		label indices going into the node
+	 * @param	D		the dataset (the same for all nodes of this cache)
+	 * @param	H		the base classifier (the same for all nodes of this cache)
+	 * @return	the built node
+	 */
+	public CNode build(int j, int paY[], Instances D, Classifier H) throws Exception {
+		CNode node = get(j, paY);
+		if (node == null) {
+			node = new CNode(j, null, paY);
+			node.build(D, H);
+			put(j, paY, node);
+		}
+		return node;
+	}
+
+	/**
+	 * Release - mark the nodes of a chain which was built through a cache as no longer shared, once the search is over
+	 * (i.e., when no other thread uses them any more), so that the final model does not make its predictions one at a time.
+	 * @param	nodes	the nodes of the chain (null entries are skipped)
+	 */
+	public static void release(CNode nodes[]) {
+		for(CNode node : nodes) {
+			if (node != null)
+				node.unshare();
+		}
+	}
+
+	/** The maximum number of nodes kept. */
+	public int getCapacity() {
+		return m_Capacity;
+	}
+
+	/** The number of nodes currently kept. */
+	public synchronized int size() {
+		return m_Nodes.size();
+	}
+
+	/** The number of lookups which found a node. */
+	public synchronized long getHits() {
+		return m_Hits;
+	}
+
+	/** The number of lookups which did not find a node. */
+	public synchronized long getMisses() {
+		return m_Misses;
+	}
+
+	/** Remove all nodes. */
+	public synchronized void clear() {
+		m_Nodes.clear();
+	}
+}
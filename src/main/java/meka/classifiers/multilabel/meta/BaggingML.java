@@ -17,7 +17,7 @@ package meka.classifiers.multilabel.meta;
 
 import meka.classifiers.multilabel.MultiLabelClassifier;
 import meka.classifiers.multilabel.ProblemTransformationMethod;
-import weka.core.Instance;
+import meka.core.F;
 import weka.core.Instances;
 import weka.core.Randomizable;
 import weka.core.RevisionUtils;
@@ -55,30 +55,52 @@ public class BaggingML extends MetaProblemTransformationMethod {
 	  	
 		if (getDebug()) System.out.print("-: Models: ");
 
-		train = new Instances(train);
 		m_Classifiers = ProblemTransformationMethod.makeCopies((MultiLabelClassifier) m_Classifier, m_NumIterations);
 
-		for(int i = 0; i < m_NumIterations; i++) {
-			Random r = new Random(m_Seed+i);
-			Instances bag = new Instances(train,0);
-			if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
-			if(getDebug()) System.out.print(""+i+" ");
+		buildMembers(train);
+		if (getDebug()) System.out.println(":-");
+	}
 
-			int ixs[] = new int[train.numInstances()];
-			for(int j = 0; j < ixs.length; j++) {
-				ixs[r.nextInt(ixs.length)]++;
-			}
-			for(int j = 0; j < ixs.length; j++) {
-				if (ixs[j] > 0) {
-					Instance instance = train.instance(j);
-					instance.setWeight(ixs[j]);
-					bag.add(instance);
-				}
-			}
+	@Override
+	protected Instances prepareMember(Instances train, int i) throws Exception {
+		if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
+		if(getDebug()) System.out.print(""+i+" ");
 
-			m_Classifiers[i].buildClassifier(bag);
+		// (all members share the same, read-only, training data)
+		return train;
+	}
+
+	/**
+	 * Builds member i on a bootstrap sample of the (shared) training data.
+	 * The sample is drawn as an index array plus a weight array (how many times each instance was drawn), and only
+	 * turned into a bag of weighted shallow copies just before training, so the training data is neither copied nor
+	 * modified, and the members can be built concurrently.
+	 */
+	@Override
+	protected void buildMember(int i, Instances train) throws Exception {
+		Random r = new Random(m_Seed+i);
+		int N = train.numInstances();
+
+		int ixs[] = new int[N];
+		for(int j = 0; j < N; j++) {
+			ixs[r.nextInt(N)]++;
 		}
-		if (getDebug()) System.out.println(":-");
+
+		int n = 0;
+		for(int j = 0; j < N; j++) {
+			if (ixs[j] > 0)
+				n++;
+		}
+		int idx[] = new int[n];
+		double w[] = new double[n];
+		for(int j = 0, k = 0; j < N; j++) {
+			if (ixs[j] > 0) {
+				idx[k] = j;
+				w[k++] = ixs[j];
+			}
+		}
+
+		m_Classifiers[i].buildClassifier(F.bag(train,idx,w));
 	}
 
 	@Override
@@ -53,20 +53,23 @@ public class BaggingMLdup extends MetaProblemTransformationMethod {
 		//m_Classifiers = (MultilabelClassifier[]) AbstractClassifier.makeCopies(m_Classifier, m_NumIterations);
 		m_Classifiers = ProblemTransformationMethod.makeCopies((ProblemTransformationMethod) m_Classifier, m_NumIterations);
 
-		for(int i = 0; i < m_NumIterations; i++) {
-			Random r = new Random(m_Seed+i);
-			Instances bag = new Instances(train,0);
-			if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
-			if(getDebug()) System.out.print(""+i+" ");
+		buildMembers(train);
+		if (getDebug()) System.out.println(":-");
+	}
 
-			int bag_no = (m_BagSizePercent*train.numInstances()/100);
-			//System.out.println(" bag no: "+bag_no);
-			while(bag.numInstances() < bag_no) {
-				bag.add(train.instance(r.nextInt(train.numInstances())));
-			}
-			m_Classifiers[i].buildClassifier(bag);
+	@Override
+	protected Instances prepareMember(Instances train, int i) throws Exception {
+		Random r = new Random(m_Seed+i);
+		Instances bag = new Instances(train,0);
+		if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
+		if(getDebug()) System.out.print(""+i+" ");
+
+		int bag_no = (m_BagSizePercent*train.numInstances()/100);
+		//System.out.println(" bag no: "+bag_no);
+		while(bag.numInstances() < bag_no) {
+			bag.add(train.instance(r.nextInt(train.numInstances())));
 		}
-		if (getDebug()) System.out.println(":-");
+		return bag;
 	}
 
 	@Override
@@ -99,40 +99,51 @@ public class ERFH extends MetaProblemTransformationMethod implements Randomizabl
 			System.out.print("Building " + m_NumIterations + " HOMER trees:");
 
 		m_Classifiers = new HOMER[m_NumIterations];
-		for (int i = 0; i < m_NumIterations; i++) {
-			Random r = new Random(m_Seed + i);
-			Instances bag = new Instances(D, 0);
-			for (int j = 0; j < D.numInstances(); j++)
-				bag.add(D.get(r.nextInt(D.numInstances())));
-
-			// Modify base single-label classifier
-			Classifier baseClassifier = ((SingleClassifierEnhancer) m_Classifier).getClassifier();
-			if (baseClassifier instanceof Randomizable) {
-				((Randomizable) baseClassifier).setSeed(m_Seed + i);
-			}
-			if (baseClassifier instanceof RandomForest) {
-				RandomForest rf = (RandomForest) baseClassifier;
-				rf.setMaxDepth(20 + r.nextInt(20));
-				rf.setBagSizePercent(80 + r.nextInt(21));
-				rf.setNumIterations(30 + r.nextInt(30));
-			}
-
-			// Modify i'th HOMER tree
-			HOMER homer = new HOMER();
-			homer.setDebug(getDebug());
-			homer.setClassifier(AbstractMultiLabelClassifier.makeCopy(m_Classifier));
-			homer.setLabelSplitter(new VariableKLabelSplitter(m_Seed + i));
-			homer.setSeed(m_Seed + i);
-			if (getDebug())
-				System.out.print(" " + i + ":\n");
-			m_Classifiers[i] = homer;
-			m_Classifiers[i].buildClassifier(bag);
-		}
+		buildMembers(D);
 
 		if (getDebug())
 			System.out.println();
 	}
 
+	/**
+	 * Draws the bootstrap sample of the i'th HOMER tree, and sets up the tree (with its own copy of the
+	 * modified base classifier).
+	 *
+	 * @param D the instances to train with
+	 * @param i the index of the tree
+	 * @return the bootstrap sample
+	 */
+	@Override
+	protected Instances prepareMember(Instances D, int i) throws Exception {
+		Random r = new Random(m_Seed + i);
+		Instances bag = new Instances(D, 0);
+		for (int j = 0; j < D.numInstances(); j++)
+			bag.add(D.get(r.nextInt(D.numInstances())));
+
+		// Modify base single-label classifier
+		Classifier baseClassifier = ((SingleClassifierEnhancer) m_Classifier).getClassifier();
+		if (baseClassifier instanceof Randomizable) {
+			((Randomizable) baseClassifier).setSeed(m_Seed + i);
+		}
+		if (baseClassifier instanceof RandomForest) {
+			RandomForest rf = (RandomForest) baseClassifier;
+			rf.setMaxDepth(20 + r.nextInt(20));
+			rf.setBagSizePercent(80 + r.nextInt(21));
+			rf.setNumIterations(30 + r.nextInt(30));
+		}
+
+		// Modify i'th HOMER tree
+		HOMER homer = new HOMER();
+		homer.setDebug(getDebug());
+		homer.setClassifier(AbstractMultiLabelClassifier.makeCopy(m_Classifier));
+		homer.setLabelSplitter(new VariableKLabelSplitter(m_Seed + i));
+		homer.setSeed(m_Seed + i);
+		if (getDebug())
+			System.out.print(" " + i + ":\n");
+		m_Classifiers[i] = homer;
+		return bag;
+	}
+
 	@Override
 	public double[] distributionForInstance(Instance x) throws Exception {
 		double[] p = super.distributionForInstance(x);
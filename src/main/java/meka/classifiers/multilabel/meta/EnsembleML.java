@@ -50,18 +50,21 @@ public class EnsembleML extends MetaProblemTransformationMethod {
 
 		train = new Instances(train);
 		m_Classifiers = ProblemTransformationMethod.makeCopies((ProblemTransformationMethod) m_Classifier, m_NumIterations);
-		int sub_size = (train.numInstances()*m_BagSizePercent/100);
-		for(int i = 0; i < m_NumIterations; i++) {
-			if(getDebug()) System.out.print(""+i+" ");
-			if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(i);
-			train.randomize(new Random(m_Seed+i));
-			Instances sub_train = new Instances(train,0,sub_size);
-			m_Classifiers[i].buildClassifier(sub_train);
-		}
+		buildMembers(train);
 
 		if (getDebug()) System.out.println(":-");
 	}
 
+	@Override
+	protected Instances prepareMember(Instances train, int i) throws Exception {
+		int sub_size = (train.numInstances()*m_BagSizePercent/100);
+		if(getDebug()) System.out.print(""+i+" ");
+		if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(i);
+		// (note: each member's ordering builds on the previous one's)
+		train.randomize(new Random(m_Seed+i));
+		return new Instances(train,0,sub_size);
+	}
+
 	@Override
 	public String getRevision() {
 	    return RevisionUtils.extract("$Revision: 9117 $");
@@ -564,7 +564,7 @@ public class HOMER extends ProblemTransformationMethod implements Randomizable,
 				}
 				catch (NumberFormatException e) {
 					Result r = meka.classifiers.multilabel.Evaluation.testClassifier(classifier, newInstances);
-					String threshStr = MLEvalUtils.getThreshold(r.predictions, newInstances, threshold);
+					String threshStr = MLEvalUtils.getThreshold(r.getPredictions(), newInstances, threshold);
 					this.thresholds = ThresholdUtils.thresholdStringToArray(threshStr, c);
 				}
 			}
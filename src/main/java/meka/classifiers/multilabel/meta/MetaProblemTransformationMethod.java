@@ -19,20 +19,27 @@ import meka.classifiers.multilabel.CC;
 import meka.classifiers.multilabel.MultiLabelClassifier;
 import meka.classifiers.multilabel.ProblemTransformationMethod;
 import meka.core.OptionUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
+import weka.classifiers.AbstractClassifier;
 import weka.core.Instance;
+import weka.core.Instances;
 import weka.core.Option;
 import weka.core.Randomizable;
 
 import java.util.ArrayList;
 import java.util.Enumeration;
 import java.util.List;
+import java.util.Random;
 import java.util.Vector;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
 
 /**
  * MultilabelMetaClassifier.java - For ensembles of multi-label methods.
  * @author Jesse Read (jmr30@cs.waikato.ac.nz)
  */
-public abstract class MetaProblemTransformationMethod extends ProblemTransformationMethod implements Randomizable {
+public abstract class MetaProblemTransformationMethod extends ProblemTransformationMethod implements Randomizable, ThreadLimiter {
 
 	/** for serialization. */
 	private static final long serialVersionUID = -6604797895790690612L;
@@ -41,6 +48,16 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 	protected int m_Seed = 1;
 	protected int m_NumIterations = 10;
 	protected int m_BagSizePercent = 67;
+	protected int m_NumThreads = getDefaultNumThreads();
+
+	/** the time (in msec) after which the idle threads of m_Executor end. */
+	protected static final long EXECUTOR_KEEP_ALIVE = 10000;
+
+	/** the pool for the batch predictions, kept from one batch to the next (created when first needed). */
+	protected transient ExecutorService m_Executor = null;
+
+	/** the number of threads of m_Executor. */
+	protected transient int m_ExecutorThreads = 0;
 
 	/**
 	 * Description to display in the GUI.
@@ -63,6 +80,63 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 		return "meka.classifiers.multilabel.CC";
 	}
 
+	/**
+	 * PrepareMember - Set up member i of the ensemble (e.g., its seed), and return the data to train it on.
+	 * This is called for i = 0,1,2,... in order, and always from the same thread, so it may depend on state
+	 * which is shared between members (such as a Random, or the order of D).
+	 * <br>
+	 * By default, member i is a copy of the base classifier (unless already set), with seed m_Seed+i (if Randomizable),
+	 * trained on a bootstrap sample of D (drawn with a Random of the same seed).
+	 * @param	D	the training data
+	 * @param	i	the member index
+	 * @return	the training data of member i
+	 */
+	protected Instances prepareMember(Instances D, int i) throws Exception {
+		if (m_Classifiers[i] == null) m_Classifiers[i] = (MultiLabelClassifier)AbstractClassifier.makeCopy(m_Classifier);
+		if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
+		if (getDebug()) System.out.print(""+i+" ");
+		return D.resample(new Random(m_Seed+i));
+	}
+
+	/**
+	 * BuildMember - Build member i of the ensemble on its training data D_i (as returned by prepareMember).
+	 * When multi-threaded, this is called concurrently for different members.
+	 * @param	i	the member index
+	 * @param	D_i	the training data of member i
+	 */
+	protected void buildMember(int i, Instances D_i) throws Exception {
+		m_Classifiers[i].buildClassifier(D_i);
+	}
+
+	/**
+	 * BuildMembers - Prepare and build all m_NumIterations members of the ensemble (the array m_Classifiers must already be set).
+	 * The members are prepared in order (in the calling thread), and built with up to getNumThreads() threads,
+	 * so the ensemble is the same as the one built sequentially. To limit memory use, at most two training sets
+	 * per thread are held at any time.
+	 * @param	D	the training data
+	 */
+	protected void buildMembers(final Instances D) throws Exception {
+		int numThreads = ThreadUtils.getActualNumThreads(m_NumThreads, m_NumIterations);
+		ThreadUtils.JobSource<Void> jobs = new ThreadUtils.JobSource<Void>() {
+			int i = 0;
+			@Override
+			public Callable<Void> next() throws Exception {
+				if (i == m_NumIterations)
+					return null;
+				final int member = i++;
+				final Instances D_i = prepareMember(D, member);
+				return new Callable<Void>() {
+					@Override
+					public Void call() throws Exception {
+						buildMember(member, D_i);
+						return null;
+					}
+				};
+			}
+		};
+		ThreadUtils.runAll(jobs, numThreads, 2 * numThreads);
+	}
+
 	@Override
 	public double[] distributionForInstance(Instance x) throws Exception {
 
@@ -83,6 +157,86 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 		return p;
 	}
 
+	/**
+	 * Predicts all instances of D at once, by letting each member of the ensemble predict the whole batch
+	 * (the members in parallel, when multi-threaded). The votes are always added up in member order.
+	 */
+	@Override
+	public double[][] distributionsForInstances(Instances D) throws Exception {
+		if (!implementsMoreEfficientBatchPrediction())
+			return super.distributionsForInstances(D);
+
+		double P[][] = new double[D.numInstances()][D.classIndex()];
+		List<double[][]> votes = predictMembers(D);
+
+		for(int i = 0; i < m_NumIterations; i++) {
+			double Y[][] = votes.get(i);
+			for(int n = 0; n < P.length; n++) {
+				for(int j = 0; j < Y[n].length; j++) {
+					P[n][j] += Y[n][j];
+				}
+			}
+		}
+
+		// turn votes into a [0,1] confidence for each label
+		for(int n = 0; n < P.length; n++) {
+			for(int j = 0; j < P[n].length; j++) {
+				P[n][j] = P[n][j]/m_NumIterations;
+			}
+		}
+
+		return P;
+	}
+
+	@Override
+	public boolean implementsMoreEfficientBatchPrediction() {
+		return hasDistributionForInstanceOf(MetaProblemTransformationMethod.class);
+	}
+
+	/**
+	 * PredictMembers - the batch predictions of each member of the ensemble for D, with up to getNumThreads() threads.
+	 * The threads are kept for the next batch (so that a test pass, which predicts batch after batch, uses one pool).
+	 * @param	D	the instances
+	 * @return	the predictions of member i, for i = 0,...,m_NumIterations-1
+	 */
+	protected List<double[][]> predictMembers(final Instances D) throws Exception {
+		int numThreads = ThreadUtils.getActualNumThreads(m_NumThreads, m_NumIterations);
+		List<double[][]> result = new ArrayList<>();
+		if (numThreads == ThreadUtils.SEQUENTIAL) {
+			for(int i = 0; i < m_NumIterations; i++)
+				result.add(m_Classifiers[i].distributionsForInstances(D));
+			return result;
+		}
+
+		List<Callable<double[][]>> jobs = new ArrayList<>();
+		for(int i = 0; i < m_NumIterations; i++) {
+			final MultiLabelClassifier h = m_Classifiers[i];
+			jobs.add(new Callable<double[][]>() {
+				@Override
+				public double[][] call() throws Exception {
+					return h.distributionsForInstances(D);
+				}
+			});
+		}
+		return ThreadUtils.runAll(jobs, getExecutor(numThreads));
+	}
+
+	/**
+	 * GetExecutor - the pool for the batch predictions, with the given number of threads. Its threads end when idle,
+	 * so it is never shut down (except when replaced by a pool of another size).
+	 * @param	numThreads	the actual number of threads
+	 * @return	the pool
+	 */
+	protected synchronized ExecutorService getExecutor(int numThreads) {
+		if (m_Executor == null || m_ExecutorThreads != numThreads) {
+			if (m_Executor != null)
+				m_Executor.shutdown();
+			m_Executor = ThreadUtils.newExecutor(numThreads, EXECUTOR_KEEP_ALIVE);
+			m_ExecutorThreads = numThreads;
+		}
+		return m_Executor;
+	}
+
 	public int getNumIterations() {
 		return m_NumIterations;
 	}
@@ -121,12 +275,55 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 		return "The seed value for randomizing the data.";
 	}
 
+	/**
+	 * Returns the default number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	protected int getDefaultNumThreads() {
+		return ThreadUtils.SEQUENTIAL;
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for building the members of the ensemble (and for batch predictions); -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	@Override
 	public Enumeration listOptions() {
 		Vector result = new Vector();
 		result.addElement(new Option("\tSets the number of models (default 10)", "I", 1, "-I <num>"));
 		result.addElement(new Option("\tSize of each bag, as a percentage of total training size (default 67)", "P", 1, "-P <size percentage>"));
 		result.addElement(new Option("\tRandom number seed for sampling (default 1)", "S", 1, "-S <seed>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + getDefaultNumThreads(), "num-threads");
 		OptionUtils.add(result, super.listOptions());
 		return OptionUtils.toEnumeration(result);
 	}
@@ -136,6 +333,7 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 		setSeed(OptionUtils.parse(options, 'S', 1));
 		setNumIterations(OptionUtils.parse(options, 'I', 10));
 		setBagSizePercent(OptionUtils.parse(options, 'P', 67));
+		setNumThreads(OptionUtils.parse(options, "num-threads", getDefaultNumThreads()));
 		super.setOptions(options);
 	}
 
@@ -145,6 +343,7 @@ public abstract class MetaProblemTransformationMethod extends ProblemTransformat
 		OptionUtils.add(result, 'S', getSeed());
 		OptionUtils.add(result, 'I', getNumIterations());
 		OptionUtils.add(result, 'P', getBagSizePercent());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		OptionUtils.add(result, super.getOptions());
 		return OptionUtils.toArray(result);
 	}
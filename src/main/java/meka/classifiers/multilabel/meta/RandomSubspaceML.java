@@ -51,6 +51,9 @@ public class RandomSubspaceML extends MetaProblemTransformationMethod implements
 	protected Instances m_InstancesTemplates[] = null;
 	protected Instance m_InstanceTemplates[] = null;
 
+	/** the random source shared by all members (while preparing them) */
+	protected transient Random m_R = null;
+
 	@Override
 	public void buildClassifier(Instances D) throws Exception {
 	  	testCapabilities(D);
@@ -62,49 +65,59 @@ public class RandomSubspaceML extends MetaProblemTransformationMethod implements
 
 		m_Classifiers = ProblemTransformationMethod.makeCopies((ProblemTransformationMethod) m_Classifier, m_NumIterations);
 
-		Random r = new Random(m_Seed);
+		m_R = new Random(m_Seed);
+		m_IndicesCut = new int[m_NumIterations][];
+
+		buildMembers(D);
+		m_R = null;
+		if (getDebug()) System.out.println(":-");
+	}
+
+	@Override
+	protected Instances prepareMember(Instances D, int i) throws Exception {
 
 		int N_sub = (D.numInstances()*m_BagSizePercent/100);
 
 		int L = D.classIndex();
 		int d = D.numAttributes() - L;
 		int d_new = d * m_AttSizePercent / 100;
-		m_IndicesCut = new int[m_NumIterations][];
 
-		for(int i = 0; i < m_NumIterations; i++) {
+		// Downsize the instance space (exactly like in EnsembleML.java)
 
-			// Downsize the instance space (exactly like in EnsembleML.java)
+		if (getDebug()) 
+			System.out.print("\t"+(i+1)+": ");
+		D.randomize(m_R);
+		Instances D_cut = new Instances(D,0,N_sub);
+		if (getDebug()) 
+			System.out.print("N="+D.numInstances()+" -> N'="+D_cut.numInstances()+", ");
 
-			if (getDebug()) 
-				System.out.print("\t"+(i+1)+": ");
-			D.randomize(r);
-			Instances D_cut = new Instances(D,0,N_sub);
-			if (getDebug()) 
-				System.out.print("N="+D.numInstances()+" -> N'="+D_cut.numInstances()+", ");
+		// Downsize attribute space
 
-			// Downsize attribute space
+		D_cut.setClassIndex(-1);
+		int indices_a[] = A.make_sequence(L,d+L);
+		A.shuffle(indices_a,m_R);
+		indices_a = Arrays.copyOfRange(indices_a,0,d-d_new);
+		Arrays.sort(indices_a);
+		m_IndicesCut[i] = A.invert(indices_a,D.numAttributes());
+		D_cut = F.remove(D_cut,indices_a,false);
+		D_cut.setClassIndex(L);
+		if (getDebug()) 
+			System.out.print(" A:="+(D.numAttributes() - L)+" -> A'="+(D_cut.numAttributes() - L)+" ("+m_IndicesCut[i][L]+",...,"+m_IndicesCut[i][m_IndicesCut[i].length-1]+")");
 
-			D_cut.setClassIndex(-1);
-			int indices_a[] = A.make_sequence(L,d+L);
-			A.shuffle(indices_a,r);
-			indices_a = Arrays.copyOfRange(indices_a,0,d-d_new);
-			Arrays.sort(indices_a);
-			m_IndicesCut[i] = A.invert(indices_a,D.numAttributes());
-			D_cut = F.remove(D_cut,indices_a,false);
-			D_cut.setClassIndex(L);
-			if (getDebug()) 
-				System.out.print(" A:="+(D.numAttributes() - L)+" -> A'="+(D_cut.numAttributes() - L)+" ("+m_IndicesCut[i][L]+",...,"+m_IndicesCut[i][m_IndicesCut[i].length-1]+")");
+		if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
+		if(getDebug()) System.out.println(".");
 
-			// Train multi-label classifier
+		return D_cut;
+	}
 
-			if (m_Classifiers[i] instanceof Randomizable) ((Randomizable)m_Classifiers[i]).setSeed(m_Seed+i);
-			if(getDebug()) System.out.println(".");
+	@Override
+	protected void buildMember(int i, Instances D_cut) throws Exception {
 
-			m_Classifiers[i].buildClassifier(D_cut);
-			m_InstanceTemplates[i] = D_cut.instance(1);
-			m_InstancesTemplates[i] = new Instances(D_cut,0);
-		}
-		if (getDebug()) System.out.println(":-");
+		// Train multi-label classifier
+
+		m_Classifiers[i].buildClassifier(D_cut);
+		m_InstanceTemplates[i] = D_cut.instance(1);
+		m_InstancesTemplates[i] = new Instances(D_cut,0);
 	}
 
 
@@ -20,12 +20,14 @@ import meka.classifiers.multilabel.ProblemTransformationMethod;
 import meka.classifiers.multilabel.MultiTargetCapable;
 import meka.core.*;
 import meka.filters.multilabel.SuperNodeFilter;
+import weka.classifiers.AbstractClassifier;
 import weka.classifiers.Classifier;
 import weka.core.*;
 import weka.core.TechnicalInformation.Field;
 import weka.core.TechnicalInformation.Type;
 
 import java.util.*;
+import java.util.concurrent.Callable;
 
 /**
  * SCC.java - Super Class Classifier (aka Super Node Classifier).
@@ -35,7 +37,7 @@ import java.util.*;
  * @author 	Jesse Read
  * @version	June 2012
  */
-public class SCC extends NSR implements Randomizable, MultiTargetClassifier, TechnicalInformationHandler {
+public class SCC extends NSR implements Randomizable, MultiTargetClassifier, TechnicalInformationHandler, ThreadLimiter {
 
 	private static final long serialVersionUID = 6517394813440480854L;
 
@@ -43,6 +45,8 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 
 	private int m_Iv = 0;
 	private int m_I = 1000;
+	private int m_K = 1;
+	private int m_NumThreads = ThreadUtils.SEQUENTIAL;
 
 	/* TODO make external options */
 	private static final int i_SPLIT = 67;
@@ -177,10 +181,29 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 	 * Train classifier <code>h</code>, on dataset <code>D</code>, under super-class partition <code>partition</code>.
 	 */
 	public void trainClassifier(Classifier h, Instances D, int partition[][]) throws Exception {
+		int P = drawP();
+		int N = drawN();
+		trainClassifier(D,partition,P,N);
+	}
+
+	/** The pruning value P to use (drawn at random, if m_P &lt; 0). */
+	private int drawP() {
+		return m_P >= 0 ? m_P : rand.nextInt(Math.abs(m_P));
+	}
+
+	/** The subsampling value N to use (drawn at random, if m_N &lt; 0). */
+	private int drawN() {
+		return m_N >= 0 ? m_N : rand.nextInt(Math.abs(m_N));
+	}
+
+	/**
+	 * Train the base classifier on dataset <code>D</code>, under super-class partition <code>partition</code>, with pruning values <code>p</code> and <code>n</code> (see SuperNodeFilter).
+	 */
+	protected void trainClassifier(Instances D, int partition[][], int p, int n) throws Exception {
 		f  = new SuperNodeFilter();
 		f.setIndices(partition);
-		f.setP(m_P >= 0 ? m_P : rand.nextInt(Math.abs(m_P)));
-		f.setN(m_N >= 0 ? m_N : rand.nextInt(Math.abs(m_N)));
+		f.setP(p);
+		f.setN(n);
 		Instances D_ = f.process(D);
 		//int K[] = MLUtils.getK(D_); <-- if some K[j] < 2, this is a problem!
 		if (getDebug()) {
@@ -204,13 +227,21 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 
 		trainClassifier(m_Classifier,D_train,partition);
 
+		return testClassifier(h,D_train,D_test);
+	}
+
+	/**
+	 * Test classifier h (already trained on D_train), on dataset D_test.
+	 */
+	protected Result testClassifier(Classifier h, Instances D_train, Instances D_test) throws Exception {
+
 		Result result = Evaluation.testClassifier((ProblemTransformationMethod)h, D_test);
 
 		if (h instanceof MultiTargetClassifier || Evaluation.isMT(D_test)) {
 			result.setInfo("Type","MT");
 		}
 		else if (h instanceof ProblemTransformationMethod) {
-			result.setInfo("Threshold", MLEvalUtils.getThreshold(result.predictions, D_train, "PCut1"));
+			result.setInfo("Threshold", MLEvalUtils.getThreshold(result.getPredictions(), D_train, "PCut1"));
 			result.setInfo("Type","ML");
 		}
 
@@ -232,6 +263,36 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 		return result;
 	}
 
+	/**
+	 * RatePartitions - build a copy of this classifier on <code>D_train</code> under each super-class partition <code>partitions[k]</code>
+	 * (with pruning values <code>P[k]</code> and <code>N[k]</code>), and rate it on <code>D_test</code> as testClassifier does; with up to
+	 * getNumThreads() threads.
+	 * @return	the rating of each partition
+	 */
+	protected double[] ratePartitions(int partitions[][][], int P[], int N[], final Instances D_train, final Instances D_test) throws Exception {
+		List<Callable<Double>> jobs = new ArrayList<>();
+		for(int k = 0; k < partitions.length; k++) {
+			final SCC h = (SCC)AbstractClassifier.makeCopy(this);
+			h.setDebug(false);
+			final int partition[][] = partitions[k];
+			final int P_k = P[k];
+			final int N_k = N[k];
+			jobs.add(new Callable<Double>() {
+				@Override
+				public Double call() throws Exception {
+					h.trainClassifier(D_train,partition,P_k,N_k);
+					return (Double)h.testClassifier(h.m_Classifier,D_train,D_test).getMeasurement(i_ErrFn);
+				}
+			});
+		}
+		List<Double> results = ThreadUtils.runAll(jobs, m_NumThreads);
+		double w[] = new double[results.size()];
+		for(int k = 0; k < w.length; k++) {
+			w[k] = results.get(k);
+		}
+		return w;
+	}
+
 	@Override
 	public void buildClassifier(Instances D) throws Exception {
 
@@ -299,25 +360,40 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 		/*
 		 * METHOD 2
 		 * refine the set we started with above, with a few iterations.
-		 * we mutate a set, and accept whenever the classification performance is GREATER
+		 * we mutate a set (K at a time, built and evaluated in parallel), and accept the best whenever the classification performance is GREATER
 		 */
 		if (m_Iv > 0) {
 			if (getDebug()) System.out.println("4. REFINING THE INITIAL SET WITH SOME OLD-FASHIONED INTERNAL EVAL");
 			// Build & evaluate the classifier with the latest partition
-			result_1 = testClassifier((ProblemTransformationMethod)m_Classifier,D_train,D_test,partition);
-			w = (Double)result_1.getMeasurement(i_ErrFn);
+			w = ratePartitions(new int[][][]{partition},new int[]{drawP()},new int[]{drawN()},D_train,D_test)[0];
 			if (getDebug()) System.out.println("@0 : "+SuperLabelUtils.toString(partition)+ "\t("+w+")");
-			for(int i = 0; i < m_Iv; i++) {
-				int partition_[][] = mutateCombinations(MatrixUtils.deep_copy(partition),rand);
-				// Build the classifier with the new combination
-				trainClassifier(m_Classifier,D_train,partition);
-				// Evaluate on D_test
-				Result result_2 = testClassifier((ProblemTransformationMethod)m_Classifier,D_train,D_test,partition_);
-				double w_ = (Double)result_2.getMeasurement(i_ErrFn);
-				if (w_ > w) {
-					w = w_;
-					partition = partition_;
-					if (getDebug()) System.out.println("@"+(i+1)+"' : "+SuperLabelUtils.toString(partition)+ "\t("+w+")");
+			for(int i = 0; i < m_Iv; ) {
+				int K = Math.min(Math.max(m_K,1), m_Iv - i);
+				int partitions_[][][] = new int[K][][];
+				int P[] = new int[K];
+				int N_[] = new int[K];
+				for(int k = 0; k < K; k++) {
+					partitions_[k] = mutateCombinations(MatrixUtils.deep_copy(partition),rand);
+					// (the values for retraining on the current partition, which was done here before and had no effect; still
+					// drawn, so that with K = 1 the random stream, and hence the partition found, stays the same)
+					drawP();
+					drawN();
+					P[k] = drawP();
+					N_[k] = drawN();
+				}
+				// Build the classifier with each new combination, and evaluate on D_test
+				double w_[] = ratePartitions(partitions_,P,N_,D_train,D_test);
+				// the best one (the first, if tied)
+				int best = 0;
+				for(int k = 1; k < K; k++) {
+					if (w_[k] > w_[best])
+						best = k;
+				}
+				i += K;
+				if (w_[best] > w) {
+					w = w_[best];
+					partition = partitions_[best];
+					if (getDebug()) System.out.println("@"+(i-K+best+1)+"' : "+SuperLabelUtils.toString(partition)+ "\t("+w+")");
 				}
 			}
 		}
@@ -393,6 +469,51 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 		return "the number of internal-validation iterations";
 	}
 
+	public void setCandidates(int k) {
+		m_K = k;
+	}
+
+	public int getCandidates() {
+		return m_K;
+	}
+
+	public String candidatesTipText() {
+		return "the number of candidate partitions proposed at each internal-validation iteration, built and evaluated in parallel";
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public void setNumThreads(int value) {
+		if (value >= -1)
+			m_NumThreads = value;
+		else
+			System.err.println("Number of threads must be >= -1, provided: " + value);
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	@Override
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for building and evaluating the candidate partitions; -1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	public static void main(String args[]) {
 		ProblemTransformationMethod.evaluation(new SCC(), args);
 	}
@@ -409,6 +530,8 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 		Vector result = new Vector();
 		result.addElement(new Option("\tSets the number of simulated annealing iterations\n\tdefault: 1000", "I", 1, "-I <value>"));
 		result.addElement(new Option("\tSets the number of internal-validation iterations\n\tdefault: 0", "V", 1, "-V <value>"));
+		result.addElement(new Option("\tSets the number of candidate partitions per internal-validation iteration\n\tdefault: 1", "K", 1, "-K <value>"));
+		OptionUtils.addOption(result, numThreadsTipText(), "" + ThreadUtils.SEQUENTIAL, "num-threads");
 		OptionUtils.add(result, super.listOptions());
 		return OptionUtils.toEnumeration(result);
 	}
@@ -417,6 +540,8 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 	public void setOptions(String[] options) throws Exception {
 		setI(OptionUtils.parse(options, 'I', 1000));
 		setIv(OptionUtils.parse(options, 'V', 0));
+		setCandidates(OptionUtils.parse(options, 'K', 1));
+		setNumThreads(OptionUtils.parse(options, "num-threads", ThreadUtils.SEQUENTIAL));
 		super.setOptions(options);
 	}
 
@@ -425,6 +550,8 @@ public class SCC extends NSR implements Randomizable, MultiTargetClassifier, Tec
 		List<String> result = new ArrayList<>();
 		OptionUtils.add(result, 'I', getI());
 		OptionUtils.add(result, 'V', getIv());
+		OptionUtils.add(result, 'K', getCandidates());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		OptionUtils.add(result, super.getOptions());
 		return OptionUtils.toArray(result);
 	}
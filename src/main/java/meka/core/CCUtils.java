@@ -16,6 +16,7 @@
 package meka.core;
 
 import meka.classifiers.multilabel.CC;
+import meka.classifiers.multilabel.cc.CNodeCache;
 import weka.classifiers.Classifier;
 import weka.core.Instance;
 import weka.core.Instances;
@@ -35,10 +36,29 @@ public abstract class CCUtils {
 		// a new classifier chain
 		CC h = new CC();
 
+		// build this chain (CC does not modify D, and its nodes only view it, so no need to copy it here)
+		h.prepareChain(chain);
+		h.setClassifier(g);
+		h.buildClassifier(D);
+		return h;
+	}
+
+	/**
+	 * BuildCC - Given a base classifier 'g', build a new CC classifier on data D, given chain order 'chain', taking
+	 * the nodes from 'cache' where possible (only the nodes whose label and set of parents are not cached are trained).
+	 * @see CNodeCache
+	 */
+	public static CC buildCC(int chain[], Instances D, Classifier g, CNodeCache cache) throws Exception {
+
+		// a new classifier chain
+		CC h = new CC();
+
 		// build this chain
 		h.prepareChain(chain);
 		h.setClassifier(g);
-		h.buildClassifier(new Instances(D));
+		h.useNodeCache(cache);
+		h.buildClassifier(D);
+		h.useNodeCache(null);
 		return h;
 	}
 
@@ -0,0 +1,146 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * ConfidenceMatrix - An N x L matrix of (real-valued) predictions, stored row by row in large flat double[] blocks,
+ * rather than as one double[] object per row.
+ * <br>
+ * Rows are copied in when added, and copied out again by get(i); use get(i,j) and getColumn(j) to read values
+ * without creating row objects.
+ *
+ * @see Result
+ * @see LabelMatrix
+ */
+public class ConfidenceMatrix extends AbstractList<double[]> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = 2609145437412860313L;
+
+	/** the number of rows stored per block */
+	public static final int BLOCK_ROWS = 1024;
+
+	/** the number of columns (-1 until the first row is added) */
+	protected int m_Width = -1;
+
+	/** the number of rows */
+	protected int m_Size = 0;
+
+	/** the blocks, each holding BLOCK_ROWS rows */
+	protected ArrayList<double[]> m_Blocks = new ArrayList<double[]>();
+
+	/**
+	 * ConfidenceMatrix - an empty matrix, the width is taken from the first row added.
+	 */
+	public ConfidenceMatrix() {
+	}
+
+	/**
+	 * ConfidenceMatrix - an empty matrix with L columns.
+	 */
+	public ConfidenceMatrix(int L) {
+		if (L > 0)
+			m_Width = L;
+	}
+
+	/** The number of columns (-1 if not yet known). */
+	public int width() {
+		return m_Width;
+	}
+
+	@Override
+	public int size() {
+		return m_Size;
+	}
+
+	@Override
+	public boolean add(double[] row) {
+		if (m_Width < 0)
+			m_Width = row.length;
+		else if (row.length != m_Width)
+			throw new IllegalArgumentException("Expected a row of length "+m_Width+", but got "+row.length+"!");
+		int b = m_Size / BLOCK_ROWS;
+		if (b == m_Blocks.size())
+			m_Blocks.add(new double[BLOCK_ROWS * m_Width]);
+		System.arraycopy(row, 0, m_Blocks.get(b), (m_Size % BLOCK_ROWS) * m_Width, m_Width);
+		m_Size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public double[] get(int i) {
+		checkIndex(i);
+		double row[] = new double[m_Width];
+		System.arraycopy(m_Blocks.get(i / BLOCK_ROWS), (i % BLOCK_ROWS) * m_Width, row, 0, m_Width);
+		return row;
+	}
+
+	@Override
+	public double[] set(int i, double[] row) {
+		double old[] = get(i);
+		if (row.length != m_Width)
+			throw new IllegalArgumentException("Expected a row of length "+m_Width+", but got "+row.length+"!");
+		System.arraycopy(row, 0, m_Blocks.get(i / BLOCK_ROWS), (i % BLOCK_ROWS) * m_Width, m_Width);
+		return old;
+	}
+
+	/**
+	 * Get - the value in the i-th row and j-th column.
+	 */
+	public double get(int i, int j) {
+		checkIndex(i);
+		return m_Blocks.get(i / BLOCK_ROWS)[(i % BLOCK_ROWS) * m_Width + j];
+	}
+
+	/**
+	 * GetColumn - all values of the j-th column.
+	 */
+	public double[] getColumn(int j) {
+		double col[] = new double[m_Size];
+		for(int i = 0; i < m_Size; i++) {
+			col[i] = m_Blocks.get(i / BLOCK_ROWS)[(i % BLOCK_ROWS) * m_Width + j];
+		}
+		return col;
+	}
+
+	/**
+	 * ToMatrix - all rows as an N x L array.
+	 */
+	public double[][] toMatrix() {
+		double M[][] = new double[m_Size][];
+		for(int i = 0; i < m_Size; i++) {
+			M[i] = get(i);
+		}
+		return M;
+	}
+
+	@Override
+	public void clear() {
+		m_Blocks.clear();
+		m_Size = 0;
+		modCount++;
+	}
+
+	/** Make sure that i is a valid row index. */
+	protected void checkIndex(int i) {
+		if (i < 0 || i >= m_Size)
+			throw new IndexOutOfBoundsException("Index: "+i+", Size: "+m_Size);
+	}
+}
@@ -0,0 +1,392 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import weka.classifiers.evaluation.ThresholdCurve;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * CurveUtils - Threshold (ROC and precision-recall) curves on primitive arrays.
+ * <br>
+ * Gives the same curves (and areas) as Weka's ThresholdCurve on MLUtils.toWekaPredictions(y,p), but without
+ * creating a Prediction object for each prediction and an Instance for each point of the curve: the confidences
+ * of the relevant and irrelevant examples are sorted once (separately), and merged, one point per distinct
+ * confidence. Each point only stores the true/false positive counts and the threshold; Instances (as expected by
+ * the GUI) are only created on request, optionally down-sampled to a maximum number of points.
+ *
+ * @see ThresholdCurve
+ */
+public abstract class CurveUtils {
+
+	/** the number of values of a point in a curve (as Instances), see ThresholdCurve */
+	public static final int NUM_VALUES = 13;
+
+	/**
+	 * Curve - a threshold curve, stored as primitive arrays.
+	 * Point i is the performance when predicting 'relevant' for all confidences &gt;= threshold(i), the last point
+	 * being the 'zero point' (nothing predicted relevant).
+	 */
+	public static class Curve implements Serializable {
+
+		private static final long serialVersionUID = 2391853370217693514L;
+
+		/** the number of relevant (positive) examples */
+		protected int numPos;
+
+		/** the number of irrelevant (negative) examples */
+		protected int numNeg;
+
+		/** the number of true positives at each point */
+		protected int tp[];
+
+		/** the number of false positives at each point */
+		protected int fp[];
+
+		/** the (ascending) threshold at each point */
+		protected double threshold[];
+
+		/**
+		 * Curve - the curve for the (sorted) confidences of the relevant examples pos[] and the irrelevant examples neg[].
+		 */
+		protected Curve(double pos[], double neg[]) {
+			numPos = pos.length;
+			numNeg = neg.length;
+			int n = numPos + numNeg;
+			tp = new int[n + 1];
+			fp = new int[n + 1];
+			threshold = new double[n + 1];
+
+			// walk through both arrays, one point per group of equal confidences
+			int TP = numPos;
+			int FP = numNeg;
+			int i = 0;
+			int k = 0;
+			int size = 0;
+			while (i < numPos || k < numNeg) {
+				double v = (k >= numNeg || (i < numPos && pos[i] <= neg[k])) ? pos[i] : neg[k];
+				tp[size] = TP;
+				fp[size] = FP;
+				threshold[size] = v;
+				size++;
+				while (i < numPos && pos[i] == v) {
+					i++;
+					TP--;
+				}
+				while (k < numNeg && neg[k] == v) {
+					k++;
+					FP--;
+				}
+			}
+
+			// the zero point
+			if (size > 0) {
+				tp[size] = 0;
+				fp[size] = 0;
+				threshold[size] = threshold[size - 1] + 10e-6;
+				size++;
+			}
+
+			if (size < n + 1) {
+				tp = Arrays.copyOf(tp, size);
+				fp = Arrays.copyOf(fp, size);
+				threshold = Arrays.copyOf(threshold, size);
+			}
+		}
+
+		/**
+		 * Curve - a copy of 'curve', keeping only the points at indices[].
+		 */
+		protected Curve(Curve curve, int indices[]) {
+			numPos = curve.numPos;
+			numNeg = curve.numNeg;
+			tp = new int[indices.length];
+			fp = new int[indices.length];
+			threshold = new double[indices.length];
+			for(int i = 0; i < indices.length; i++) {
+				tp[i] = curve.tp[indices[i]];
+				fp[i] = curve.fp[indices[i]];
+				threshold[i] = curve.threshold[indices[i]];
+			}
+		}
+
+		/** The number of points in this curve. */
+		public int size() {
+			return tp.length;
+		}
+
+		/** The number of relevant (positive) examples. */
+		public int numPositives() {
+			return numPos;
+		}
+
+		/** The number of irrelevant (negative) examples. */
+		public int numNegatives() {
+			return numNeg;
+		}
+
+		/** The number of true positives at point i. */
+		public int truePositives(int i) {
+			return tp[i];
+		}
+
+		/** The number of false positives at point i. */
+		public int falsePositives(int i) {
+			return fp[i];
+		}
+
+		/** The threshold at point i. */
+		public double threshold(int i) {
+			return threshold[i];
+		}
+
+		/** The precision at point i (0 if nothing is predicted relevant, as TwoClassStats). */
+		public double precision(int i) {
+			double TP = tp[i];
+			double FP = fp[i];
+			return (TP + FP == 0) ? 0.0 : TP / (TP + FP);
+		}
+
+		/** The recall (true positive rate) at point i (0 if there are no relevant examples, as TwoClassStats). */
+		public double recall(int i) {
+			double TP = tp[i];
+			double FN = numPos - tp[i];
+			return (TP + FN == 0) ? 0.0 : TP / (TP + FN);
+		}
+
+		/**
+		 * Values - the values of point i, as in the Instances of ThresholdCurve: TP, FN, FP, TN, FP rate, TP rate,
+		 * precision, recall, fallout, F-measure, sample size, lift, threshold (see TwoClassStats, which also gives 0
+		 * for the rates where the denominator is 0).
+		 */
+		public double[] values(int i) {
+			double TP = tp[i];
+			double FP = fp[i];
+			double TN = numNeg - fp[i];
+			double FN = numPos - tp[i];
+			double precision = precision(i);
+			double recall = recall(i);
+			double v[] = new double[NUM_VALUES];
+			v[0] = TP;
+			v[1] = FN;
+			v[2] = FP;
+			v[3] = TN;
+			v[4] = (FP + TN == 0) ? 0.0 : FP / (FP + TN);
+			v[5] = recall;
+			v[6] = precision;
+			v[7] = recall;
+			v[8] = (TP + FP == 0) ? 0.0 : FP / (TP + FP);
+			v[9] = (precision + recall == 0) ? 0.0 : 2 * precision * recall / (precision + recall);
+			double ss = (TP + FP) / (TP + FP + TN + FN);
+			v[10] = ss;
+			double expectedByChance = ss * (TP + FN);
+			v[11] = (expectedByChance < 1) ? Utils.missingValue() : TP / expectedByChance;
+			v[12] = threshold[i];
+			return v;
+		}
+
+		/**
+		 * AreaUnderROC - the area under the ROC curve (as ThresholdCurve.getROCArea).
+		 */
+		public double areaUnderROC() {
+			int n = size();
+			double area = 0.0;
+			double cumNeg = 0.0;
+			double totalPos = tp[0];
+			double totalNeg = fp[0];
+			for(int i = 0; i < n; i++) {
+				double cip, cin;
+				if (i < n - 1) {
+					cip = tp[i] - tp[i + 1];
+					cin = fp[i] - fp[i + 1];
+				}
+				else {
+					cip = tp[n - 1];
+					cin = fp[n - 1];
+				}
+				// trapezoid
+				area += cip * (cumNeg + (0.5 * cin));
+				cumNeg += cin;
+			}
+			return area / (totalNeg * totalPos);
+		}
+
+		/**
+		 * AreaUnderPRC - the area under the precision-recall curve (as ThresholdCurve.getPRCArea).
+		 */
+		public double areaUnderPRC() {
+			int n = size();
+			double area = 0.0;
+			double xlast = recall(n - 1);
+			for(int i = n - 2; i >= 0; i--) {
+				double recall = recall(i);
+				area += precision(i) * (recall - xlast);
+				xlast = recall;
+			}
+			return (area == 0) ? Utils.missingValue() : area;
+		}
+
+		/**
+		 * ThresholdIndex - the index of the point with the threshold closest to (and not above) t
+		 * (as ThresholdCurve.getThresholdInstance).
+		 * @return the index, or -1 if t is not in [0,1]
+		 */
+		public int thresholdIndex(double t) {
+			if (t < 0 || t > 1.0)
+				return -1;
+			if (size() == 1)
+				return 0;
+			// the thresholds are already sorted
+			int lo = 0;
+			int hi = size() - 1;
+			while (hi - lo > 1) {
+				int mid = lo + (hi - lo) / 2;
+				double midval = threshold[mid];
+				if (t > midval) {
+					lo = mid;
+				}
+				else if (t < midval) {
+					hi = mid;
+				}
+				else {
+					while ((mid > 0) && (threshold[mid - 1] == t))
+						mid--;
+					return mid;
+				}
+			}
+			return lo;
+		}
+
+		/**
+		 * Downsample - a curve with at most 'maxPoints' of these points, evenly spaced, including the first and the last.
+		 * @param maxPoints the maximum number of points (at least 2), or &lt;= 0 for all points
+		 * @return this curve, if it is not larger than 'maxPoints'
+		 */
+		public Curve downsample(int maxPoints) {
+			int n = size();
+			if (maxPoints <= 0 || n <= maxPoints)
+				return this;
+			maxPoints = Math.max(maxPoints, 2);
+			int indices[] = new int[maxPoints];
+			for(int k = 0; k < maxPoints; k++) {
+				indices[k] = (int)Math.round((double)k * (n - 1) / (maxPoints - 1));
+			}
+			return new Curve(this, indices);
+		}
+
+		/**
+		 * ToInstances - this curve as Instances, as created by ThresholdCurve (e.g., for plotting).
+		 */
+		public Instances toInstances() {
+			Instances result = new Instances(makeHeader(), size());
+			for(int i = 0; i < size(); i++) {
+				result.add(new DenseInstance(1.0, values(i)));
+			}
+			return result;
+		}
+	}
+
+	/**
+	 * MakeHeader - the (empty) Instances of a curve, as created by ThresholdCurve.
+	 */
+	public static Instances makeHeader() {
+		ArrayList<Attribute> atts = new ArrayList<Attribute>();
+		atts.add(new Attribute(ThresholdCurve.TRUE_POS_NAME));
+		atts.add(new Attribute(ThresholdCurve.FALSE_NEG_NAME));
+		atts.add(new Attribute(ThresholdCurve.FALSE_POS_NAME));
+		atts.add(new Attribute(ThresholdCurve.TRUE_NEG_NAME));
+		atts.add(new Attribute(ThresholdCurve.FP_RATE_NAME));
+		atts.add(new Attribute(ThresholdCurve.TP_RATE_NAME));
+		atts.add(new Attribute(ThresholdCurve.PRECISION_NAME));
+		atts.add(new Attribute(ThresholdCurve.RECALL_NAME));
+		atts.add(new Attribute(ThresholdCurve.FALLOUT_NAME));
+		atts.add(new Attribute(ThresholdCurve.FMEASURE_NAME));
+		atts.add(new Attribute(ThresholdCurve.SAMPLE_SIZE_NAME));
+		atts.add(new Attribute(ThresholdCurve.LIFT_NAME));
+		atts.add(new Attribute(ThresholdCurve.THRESHOLD_NAME));
+		return new Instances(ThresholdCurve.RELATION_NAME, atts, 100);
+	}
+
+	/**
+	 * GetCurve - the threshold curve for true values y[] and confidences p[], with missing values as in Metrics.align(y,p),
+	 * i.e., missing labels (-1) are skipped, and missing predictions (-1 or NaN) count as irrelevant examples predicted 0.0.
+	 * @return the curve, or null if all labels are missing
+	 */
+	public static Curve getCurve(int y[], double p[]) {
+		int numPos = 0;
+		int numNeg = 0;
+		for(int i = 0; i < y.length; i++) {
+			if (y[i] == -1)
+				continue;
+			if (y[i] == 1 && p[i] != -1.0 && !Double.isNaN(p[i]))
+				numPos++;
+			else
+				numNeg++;
+		}
+		if (numPos + numNeg == 0)
+			return null;
+
+		double pos[] = new double[numPos];
+		double neg[] = new double[numNeg];
+		int i_pos = 0;
+		int i_neg = 0;
+		for(int i = 0; i < y.length; i++) {
+			if (y[i] == -1)
+				continue;
+			if (p[i] == -1.0 || Double.isNaN(p[i]))
+				// as align(y,p): missing predictions leave an empty (0,0) entry
+				neg[i_neg++] = 0.0;
+			else if (y[i] == 1)
+				pos[i_pos++] = p[i];
+			else
+				neg[i_neg++] = p[i];
+		}
+		Arrays.sort(pos);
+		Arrays.sort(neg);
+		return new Curve(pos, neg);
+	}
+
+	/**
+	 * GetCurves - the threshold curve of each label (null where all values of the label are missing).
+	 * @param Y				true values
+	 * @param P				confidences
+	 * @param numThreads	the number of threads (labels processed in parallel): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	public static Curve[] getCurves(final int Y[][], final double P[][], int numThreads) {
+		int L = Y[0].length;
+		final Curve curves[] = new Curve[L];
+
+		List<Runnable> tasks = new ArrayList<>();
+		for(int j = 0; j < L; j++) {
+			final int label = j;
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					curves[label] = getCurve(MatrixUtils.getCol(Y, label), MatrixUtils.getCol(P, label));
+				}
+			});
+		}
+		ThreadUtils.runTasks(tasks, numThreads);
+		return curves;
+	}
+}
@@ -21,6 +21,8 @@ import weka.filters.Filter;
 import weka.filters.unsupervised.attribute.Remove;
 import weka.filters.unsupervised.attribute.Reorder;
 
+import java.util.Arrays;
+
 /**
  * F.java - transform/Filter Operations on instances.
  * Transform 'D' and 'x' in many different ways wrt the labels. 
@@ -138,4 +140,62 @@ public abstract class F {
 		int to_remove[] = A.invert(j,L);
 		return remove(D,to_remove,false);
 	}
+
+	/**
+	 * Keep Labels (View) - Like keepLabels(D,L,j), but without copying the instances of D.
+	 * The header is created with the Remove filter (as in keepLabels), and each instance is a LabelViewInstance
+	 * onto the corresponding instance of D. Thus D should not be modified while the result is in use.
+	 * @param	D		Dataset
+	 * @param	L 		number of labels
+	 * @param	j		indices of labels to keep
+	 * @return	New dataset with labels removed, backed by the instances of D.
+	 * @see LabelViewInstance
+	 */
+	public static Instances keepLabelsView(Instances D, int L, int j[]) throws Exception {
+		int keep[] = Arrays.copyOf(j,j.length);
+		Arrays.sort(keep);
+		return keepLabelsView(D,L,keep,null,keepLabels(new Instances(D,0),L,keep));
+	}
+
+	/**
+	 * Keep Labels (View) - Like keepLabelsView(D,L,j), but onto an existing header 'template' (e.g., the one a
+	 * classifier was trained with), and optionally with fixed values 'v[]' for the kept labels (e.g., missing
+	 * values, for test instances).
+	 * @param	D			Dataset
+	 * @param	L 			number of labels
+	 * @param	j			(sorted) indices of labels to keep
+	 * @param	v			values of the kept labels (null, to read them from the instances of D)
+	 * @param	template	the header of the new dataset
+	 * @return	New dataset with the header of 'template', backed by the instances of D.
+	 */
+	public static Instances keepLabelsView(Instances D, int L, int j[], double v[], Instances template) {
+		Instances D_ = new Instances(template,D.numInstances());
+		LabelViewInstance x_ = null;
+		for(int i = 0; i < D.numInstances(); i++) {
+			if (x_ == null)
+				x_ = new LabelViewInstance(D.instance(i),L,j,v);
+			else
+				x_.setSource(D.instance(i));
+			D_.add(x_); // (adds a copy of the view)
+		}
+		return D_;
+	}
+
+	/**
+	 * Bag - A weighted sample of D, given as indices idx[] into D with weights w[], e.g., a bootstrap sample (where w[k]
+	 * is the number of times instance idx[k] was drawn). The instances of D are not modified: each instance in the bag
+	 * is a shallow copy (sharing its attribute values with D, as Instances.add does) with its own weight.
+	 * @param	D		Dataset
+	 * @param	idx		indices of the instances in the bag
+	 * @param	w		their weights
+	 * @return	The bag, backed by the attribute values of D.
+	 */
+	public static Instances bag(Instances D, int idx[], double w[]) {
+		Instances bag = new Instances(D,idx.length);
+		for(int k = 0; k < idx.length; k++) {
+			bag.add(D.instance(idx[k]));
+			bag.lastInstance().setWeight(w[k]);
+		}
+		return bag;
+	}
 }
@@ -0,0 +1,126 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import weka.core.Instance;
+import weka.core.matrix.Matrix;
+
+import java.io.Serializable;
+
+/**
+ * LabelCovariance - The means and the (L x L) scatter matrix of the labels in 1/-1 coding (a label is 1 if its value is
+ * 1, and -1 otherwise, as in PLST), accumulated one instance at a time.
+ * <br>
+ * Only the number of times each label, and each pair of labels, is 1 is counted; so memory is O(L^2) (independent of
+ * the number of instances) and each update costs O(LC^2), where LC is the number of relevant labels of the instance.
+ * The counts are exact, and the scatter matrix is computed from them at the end (rather than being summed up), so
+ * there is no loss of precision over (very) long streams.
+ *
+ * @see MatrixUtils#topEigenvectors(Matrix, int)
+ */
+public class LabelCovariance implements Serializable {
+
+	private static final long serialVersionUID = -1580428264063557812L;
+
+	/** the number of labels */
+	protected int L;
+
+	/** the number of instances added so far */
+	protected long N = 0;
+
+	/** C[j][k] (k &ge; j) is the number of instances where y[j] = 1 and y[k] = 1 */
+	protected long C[][];
+
+	/** a buffer for the relevant labels of an instance */
+	protected int y[];
+
+	/**
+	 * LabelCovariance - for L labels.
+	 */
+	public LabelCovariance(int L) {
+		this.L = L;
+		this.C = new long[L][L];
+		this.y = new int[L];
+	}
+
+	/** The number of labels. */
+	public int numLabels() {
+		return L;
+	}
+
+	/** The number of instances added so far. */
+	public long numInstances() {
+		return N;
+	}
+
+	/**
+	 * Update - add the labels (the first L attributes) of instance x.
+	 */
+	public void update(Instance x) {
+		int n = 0;
+		for(int p = 0; p < x.numValues() && x.index(p) < L; p++) {
+			if (x.valueSparse(p) == 1.0)
+				y[n++] = x.index(p);
+		}
+		update(y, n);
+	}
+
+	/**
+	 * Update - add an instance with the (sorted) relevant labels y[0], ..., y[n-1].
+	 */
+	public void update(int y[], int n) {
+		for(int a = 0; a < n; a++) {
+			long C_j[] = C[y[a]];
+			for(int b = a; b < n; b++) {
+				C_j[y[b]]++;
+			}
+		}
+		N++;
+	}
+
+	/**
+	 * GetMeans - the mean of each label (in 1/-1 coding).
+	 */
+	public double[] getMeans() {
+		double mu[] = new double[L];
+		for(int j = 0; j < L; j++) {
+			mu[j] = (2.0 * C[j][j] - N) / N;
+		}
+		return mu;
+	}
+
+	/**
+	 * GetScatter - the scatter matrix S = (Y - mu)^T (Y - mu) of the labels Y (in 1/-1 coding), centered on their means mu;
+	 * i.e., N times the (biased) covariance matrix.
+	 * <br>
+	 * The right singular vectors of (Y - mu) are the eigenvectors of S.
+	 */
+	public Matrix getScatter() {
+		// with z = 2y - 1: sum_i z[j] = 2 C[j][j] - N, and sum_i z[j] z[k] = N - 2 (C[j][j] + C[k][k]) + 4 C[j][k]
+		double s[] = new double[L];
+		for(int j = 0; j < L; j++) {
+			s[j] = 2.0 * C[j][j] - N;
+		}
+		double S[][] = new double[L][L];
+		for(int j = 0; j < L; j++) {
+			for(int k = j; k < L; k++) {
+				double zz = N - 2.0 * (C[j][j] + C[k][k]) + 4.0 * C[j][k];
+				S[j][k] = S[k][j] = zz - s[j] * s[k] / N;
+			}
+		}
+		return new Matrix(S);
+	}
+}
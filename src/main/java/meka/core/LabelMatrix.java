@@ -0,0 +1,249 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.RandomAccess;
+
+/**
+ * LabelMatrix - An N x L matrix of true label values, stored row by row in large blocks.
+ * <br>
+ * As long as all values are 0, 1 or -1 (missing), i.e., multi-label data, each row is bit-packed into
+ * ceil(L/64) longs (plus as many again for the missing values, but only for blocks that contain any).
+ * As soon as any other value is added (multi-target data), the matrix switches to flat int[] blocks.
+ *
+ * @see Result
+ * @see ConfidenceMatrix
+ */
+public class LabelMatrix extends AbstractList<int[]> implements RandomAccess, Serializable {
+
+	private static final long serialVersionUID = -4383337432695432937L;
+
+	/** the number of rows stored per block */
+	public static final int BLOCK_ROWS = 1024;
+
+	/** the number of columns (-1 until the first row is added) */
+	protected int m_Width = -1;
+
+	/** the number of longs per (bit-packed) row */
+	protected int m_Words = 0;
+
+	/** the number of rows */
+	protected int m_Size = 0;
+
+	/** bit-packed rows: the relevant labels */
+	protected ArrayList<long[]> m_Ones = new ArrayList<long[]>();
+
+	/** bit-packed rows: the missing labels (a null entry if there are none in that block) */
+	protected ArrayList<long[]> m_Missing = new ArrayList<long[]>();
+
+	/** int rows, once there are values other than 0, 1 and -1 (otherwise null) */
+	protected ArrayList<int[]> m_Values = null;
+
+	/**
+	 * LabelMatrix - an empty matrix, the width is taken from the first row added.
+	 */
+	public LabelMatrix() {
+	}
+
+	/**
+	 * LabelMatrix - an empty matrix with L columns.
+	 */
+	public LabelMatrix(int L) {
+		if (L > 0)
+			setWidth(L);
+	}
+
+	/** Set the number of columns. */
+	protected void setWidth(int L) {
+		m_Width = L;
+		m_Words = (L + 63) / 64;
+	}
+
+	/** The number of columns (-1 if not yet known). */
+	public int width() {
+		return m_Width;
+	}
+
+	/** Whether the rows are stored bit-packed (i.e., all values are 0, 1 or -1). */
+	public boolean isBitPacked() {
+		return m_Values == null;
+	}
+
+	@Override
+	public int size() {
+		return m_Size;
+	}
+
+	/** Whether all values in y[] can be stored bit-packed. */
+	protected static boolean isBinary(int y[]) {
+		for(int v : y) {
+			if (v < -1 || v > 1)
+				return false;
+		}
+		return true;
+	}
+
+	/** Switch from bit-packed to int rows. */
+	protected void unpack() {
+		ArrayList<int[]> values = new ArrayList<int[]>(m_Ones.size());
+		for(int i = 0; i < m_Size; i++) {
+			if (i % BLOCK_ROWS == 0)
+				values.add(new int[BLOCK_ROWS * m_Width]);
+			System.arraycopy(get(i), 0, values.get(i / BLOCK_ROWS), (i % BLOCK_ROWS) * m_Width, m_Width);
+		}
+		m_Values = values;
+		m_Ones = null;
+		m_Missing = null;
+	}
+
+	/** Write row y[] into the i-th row (the blocks must already exist). */
+	protected void write(int i, int y[]) {
+		int b = i / BLOCK_ROWS;
+		if (m_Values != null) {
+			System.arraycopy(y, 0, m_Values.get(b), (i % BLOCK_ROWS) * m_Width, m_Width);
+			return;
+		}
+		int off = (i % BLOCK_ROWS) * m_Words;
+		long ones[] = m_Ones.get(b);
+		long missing[] = m_Missing.get(b);
+		for(int w = 0; w < m_Words; w++) {
+			ones[off + w] = 0L;
+			if (missing != null)
+				missing[off + w] = 0L;
+		}
+		for(int j = 0; j < m_Width; j++) {
+			if (y[j] == 1) {
+				ones[off + (j >>> 6)] |= 1L << j;
+			}
+			else if (y[j] == -1) {
+				if (missing == null) {
+					missing = new long[BLOCK_ROWS * m_Words];
+					m_Missing.set(b, missing);
+				}
+				missing[off + (j >>> 6)] |= 1L << j;
+			}
+		}
+	}
+
+	@Override
+	public boolean add(int[] y) {
+		if (m_Width < 0)
+			setWidth(y.length);
+		else if (y.length != m_Width)
+			throw new IllegalArgumentException("Expected a row of length "+m_Width+", but got "+y.length+"!");
+		if (m_Values == null && !isBinary(y))
+			unpack();
+		if (m_Size % BLOCK_ROWS == 0) {
+			if (m_Values != null) {
+				m_Values.add(new int[BLOCK_ROWS * m_Width]);
+			}
+			else {
+				m_Ones.add(new long[BLOCK_ROWS * m_Words]);
+				m_Missing.add(null);
+			}
+		}
+		write(m_Size, y);
+		m_Size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public int[] get(int i) {
+		checkIndex(i);
+		int y[] = new int[m_Width];
+		int b = i / BLOCK_ROWS;
+		if (m_Values != null) {
+			System.arraycopy(m_Values.get(b), (i % BLOCK_ROWS) * m_Width, y, 0, m_Width);
+			return y;
+		}
+		int off = (i % BLOCK_ROWS) * m_Words;
+		long ones[] = m_Ones.get(b);
+		long missing[] = m_Missing.get(b);
+		for(int j = 0; j < m_Width; j++) {
+			if ((ones[off + (j >>> 6)] & (1L << j)) != 0)
+				y[j] = 1;
+			else if (missing != null && (missing[off + (j >>> 6)] & (1L << j)) != 0)
+				y[j] = -1;
+		}
+		return y;
+	}
+
+	@Override
+	public int[] set(int i, int[] y) {
+		int old[] = get(i);
+		if (y.length != m_Width)
+			throw new IllegalArgumentException("Expected a row of length "+m_Width+", but got "+y.length+"!");
+		if (m_Values == null && !isBinary(y))
+			unpack();
+		write(i, y);
+		return old;
+	}
+
+	/**
+	 * Get - the value in the i-th row and j-th column.
+	 */
+	public int get(int i, int j) {
+		checkIndex(i);
+		int b = i / BLOCK_ROWS;
+		if (m_Values != null)
+			return m_Values.get(b)[(i % BLOCK_ROWS) * m_Width + j];
+		int w = (i % BLOCK_ROWS) * m_Words + (j >>> 6);
+		if ((m_Ones.get(b)[w] & (1L << j)) != 0)
+			return 1;
+		long missing[] = m_Missing.get(b);
+		return (missing != null && (missing[w] & (1L << j)) != 0) ? -1 : 0;
+	}
+
+	/**
+	 * GetColumn - all values of the j-th column.
+	 */
+	public int[] getColumn(int j) {
+		int col[] = new int[m_Size];
+		for(int i = 0; i < m_Size; i++) {
+			col[i] = get(i, j);
+		}
+		return col;
+	}
+
+	/**
+	 * ToMatrix - all rows as an N x L array.
+	 */
+	public int[][] toMatrix() {
+		int Y[][] = new int[m_Size][];
+		for(int i = 0; i < m_Size; i++) {
+			Y[i] = get(i);
+		}
+		return Y;
+	}
+
+	@Override
+	public void clear() {
+		m_Ones = new ArrayList<long[]>();
+		m_Missing = new ArrayList<long[]>();
+		m_Values = null;
+		m_Size = 0;
+		modCount++;
+	}
+
+	/** Make sure that i is a valid row index. */
+	protected void checkIndex(int i) {
+		if (i < 0 || i >= m_Size)
+			throw new IndexOutOfBoundsException("Index: "+i+", Size: "+m_Size);
+	}
+}
@@ -24,6 +24,11 @@ import java.util.Set;
 /**
  * Comparator - A fast sparse labelset representation.
  * e.g. [0,2,3] -- the indices of relevant labels.
+ * <br>
+ * The hash code, and (for up to MAX_BITS labels) a bitset of the indices, are computed once and cached, so that
+ * hashing, contains(j), subsetof(..) and intersects(..) do not need to go over the indices again.
+ * The cache is tied to the indices[] array: assigning a new array to 'indices' is fine, but the contents of the
+ * array should not be changed in place after the labelset has been used.
  * @author 	Jesse Read 
  * @version	March 2014
  */
@@ -34,6 +39,65 @@ public class LabelSet implements Comparator, Serializable {
 
 	public int indices[];  // indices of relevant labels, e.g., [1,5,7]
 
+	/** the largest number of labels for which we keep a bitset (i.e., 16 words) */
+	public static final int MAX_BITS = 1024;
+
+	/** hash code and bitset of the indices[] array they were computed for */
+	private transient Cache m_Cache = null;
+
+	/**
+	 * Cache - the (immutable) cached hash code and bitset of an indices[] array.
+	 */
+	private static final class Cache {
+
+		/** the array this cache was computed for */
+		final int indices[];
+
+		/** Arrays.hashCode(indices) */
+		final int hash;
+
+		/** bit j is set iff j is in indices; null if the indices are not strictly increasing, or too large */
+		final long bits[];
+
+		Cache(int indices[]) {
+			this.indices = indices;
+			this.hash = Arrays.hashCode(indices);
+			this.bits = toBits(indices);
+		}
+	}
+
+	/**
+	 * ToBits - the bitset of the (sorted) indices, e.g., [0,2,3] to {1101}, or null if they do not fit (or are not sorted).
+	 */
+	private static long[] toBits(int indices[]) {
+		if (indices == null)
+			return null;
+		int n = indices.length;
+		if (n == 0)
+			return new long[0];
+		if (indices[0] < 0 || indices[n-1] >= MAX_BITS)
+			return null;
+		long bits[] = new long[(indices[n-1] >> 6) + 1];
+		for(int i = 0; i < n; i++) {
+			if (i > 0 && indices[i] <= indices[i-1])
+				return null;
+			bits[indices[i] >> 6] |= 1L << indices[i];
+		}
+		return bits;
+	}
+
+	/**
+	 * Cache - the cache for the current indices[] (rebuilt if a new array was assigned).
+	 */
+	private Cache cache() {
+		Cache c = m_Cache;
+		if (c == null || c.indices != indices) {
+			c = new Cache(indices);
+			m_Cache = c;
+		}
+		return c;
+	}
+
 	public LabelSet() {
 	}
 
@@ -79,6 +143,9 @@ public class LabelSet implements Comparator, Serializable {
 	*/
 
 	public final boolean contains(int j) {
+		long bits[] = cache().bits;
+		if (bits != null)
+			return j >= 0 && (j >> 6) < bits.length && (bits[j >> 6] & (1L << j)) != 0;
 		return Arrays.binarySearch(indices,j) < 0 ? false : true;
 	}
 
@@ -92,12 +159,14 @@ public class LabelSet implements Comparator, Serializable {
 
 	@Override
 	public final int hashCode() {
-		return Arrays.hashCode(indices);
+		return cache().hash;
 	}
 
 	@Override
 	public boolean equals(Object o) {
 		LabelSet l2 = (LabelSet)o;
+		if (hashCode() != l2.hashCode())
+			return false;
 		if (indices.length != l2.indices.length)
 			return false;
 		else {
@@ -138,8 +207,75 @@ public class LabelSet implements Comparator, Serializable {
 			} 
 	} 
 
+	/**
+	 * SubsetOf - returns the number of labels in this labelset if it is a subset of 'y', and -1 otherwise.
+	 * @see LabelSet#subset(int[],int[])
+	 */
 	public final int subsetof(LabelSet y) {
-		return subset(this.indices,y.indices);
+		long b1[] = cache().bits;
+		long b2[] = y.cache().bits;
+		if (b1 == null || b2 == null)
+			return subset(this.indices,y.indices);
+		if (b1.length > b2.length)
+			return -1;
+		for(int w = 0; w < b1.length; w++) {
+			if ((b1[w] & ~b2[w]) != 0)
+				return -1;
+		}
+		return indices.length;
+	}
+
+	/**
+	 * Intersects - returns true if this labelset and 'y' have at least one label in common.
+	 */
+	public final boolean intersects(LabelSet y) {
+		long b1[] = cache().bits;
+		long b2[] = y.cache().bits;
+		if (b1 == null || b2 == null)
+			return intersection(this.indices,y.indices) > 0;
+		for(int w = Math.min(b1.length,b2.length)-1; w >= 0; w--) {
+			if ((b1[w] & b2[w]) != 0)
+				return true;
+		}
+		return false;
+	}
+
+	/**
+	 * IntersectionSize - returns the number of labels this labelset and 'y' have in common.
+	 */
+	public final int intersectionSize(LabelSet y) {
+		long b1[] = cache().bits;
+		long b2[] = y.cache().bits;
+		if (b1 == null || b2 == null)
+			return intersection(this.indices,y.indices);
+		int n = 0;
+		for(int w = Math.min(b1.length,b2.length)-1; w >= 0; w--) {
+			n += Long.bitCount(b1[w] & b2[w]);
+		}
+		return n;
+	}
+
+	/**
+	 * Intersection - returns the number of elements that the sorted arrays y1[] and y2[] have in common.
+	 */
+	public final static int intersection(int y1[], int y2[]) {
+		int n = 0;
+		int j = 0;
+		int k = 0;
+		while (j < y1.length && k < y2.length) {
+			if (y1[j] == y2[k]) {
+				n++;
+				j++;
+				k++;
+			}
+			else if (y1[j] < y2[k]) {
+				j++;
+			}
+			else {
+				k++;
+			}
+		}
+		return n;
 	}
 
 	/**
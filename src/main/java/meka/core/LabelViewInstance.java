@@ -0,0 +1,282 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import weka.core.AbstractInstance;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+
+/**
+ * LabelViewInstance.java - A read-only view of a multi-label instance [y_1,...,y_L,x_1,...,x_d] that
+ * exposes only some of the labels, i.e., [y_j,...,y_k,x_1,...,x_d], without copying the feature space.
+ * <br>
+ * This is the view equivalent of F.keepLabels(D,L,j[]) / MLUtils.keepAttributesAt(x,j[],L): the kept labels
+ * come first (in sorted order), followed by the d input attributes of the source instance.
+ * The label values are either read from the source instance, or from a separate (small) array, e.g., to plug
+ * in the predictions of parent nodes in a chain.
+ * <br>
+ * The weight is the view's own (initialised from the source). Any other modification (setValue, deleteAttributeAt, ...)
+ * first turns the view into a private dense copy, so the source instance is never changed.
+ * Copying a view (as done by Instances.add(Instance)) is O(1) in the number of attributes.
+ *
+ * @see F#keepLabelsView(weka.core.Instances, int, int[])
+ */
+public class LabelViewInstance extends AbstractInstance {
+
+	private static final long serialVersionUID = -1825316127281536483L;
+
+	/** the instance we are a view of */
+	protected Instance m_Source;
+
+	/** the number of labels in the source instance */
+	protected int m_L;
+
+	/** the (sorted) label indices of the source instance that are kept */
+	protected int m_Labels[];
+
+	/** the values of the kept labels (if null, they are read from the source instance) */
+	protected double m_LabelValues[];
+
+	/** sparse sources only: position of the first value with index &gt;= L (-1 = not yet located) */
+	protected int m_Offset = -1;
+
+	/**
+	 * LabelViewInstance - view 'source', keeping only the labels 'labels[]'.
+	 * @param	source	a multi-label instance, with L labels at the beginning
+	 * @param	L		the number of labels in 'source'
+	 * @param	labels	the (sorted) label indices to keep
+	 */
+	public LabelViewInstance(Instance source, int L, int labels[]) {
+		this(source, L, labels, null);
+	}
+
+	/**
+	 * LabelViewInstance - view 'source', keeping only the labels 'labels[]', with label values taken from 'labelValues[]'.
+	 * Note that 'labelValues' is used directly (not copied), so changes made to it by the caller are visible through this view.
+	 * @param	source		a multi-label instance, with L labels at the beginning
+	 * @param	L			the number of labels in 'source'
+	 * @param	labels		the (sorted) label indices to keep
+	 * @param	labelValues	the values of the kept labels (null, to read them from 'source')
+	 */
+	public LabelViewInstance(Instance source, int L, int labels[], double labelValues[]) {
+		m_L = L;
+		m_Labels = labels;
+		m_LabelValues = labelValues;
+		setSource(source);
+	}
+
+	/**
+	 * Copy constructor. Shares the source instance, but not the label values or any materialized values.
+	 * @param	view	the view to copy
+	 */
+	protected LabelViewInstance(LabelViewInstance view) {
+		m_Source = view.m_Source;
+		m_L = view.m_L;
+		m_Labels = view.m_Labels;
+		m_LabelValues = (view.m_LabelValues != null) ? view.m_LabelValues.clone() : null;
+		m_Offset = view.m_Offset;
+		m_AttValues = (view.m_AttValues != null) ? view.m_AttValues.clone() : null;
+		m_Weight = view.m_Weight;
+		m_Dataset = view.m_Dataset;
+	}
+
+	/**
+	 * SetSource - point this view at a different source instance (with the same structure), e.g., to reuse
+	 * the same view for each test instance. Takes the weight of the new source, and drops any private values.
+	 * @param	source	the new source instance
+	 */
+	public void setSource(Instance source) {
+		m_Source = source;
+		m_Weight = source.weight();
+		m_AttValues = null;
+		m_Offset = -1;
+	}
+
+	/**
+	 * GetSource - the instance we are a view of.
+	 */
+	public Instance getSource() {
+		return m_Source;
+	}
+
+	/**
+	 * GetLabelValues - the array with the values of the kept labels (null if they are read from the source).
+	 */
+	public double[] getLabelValues() {
+		return m_LabelValues;
+	}
+
+	/** Whether we iterate over the source's sparse values. */
+	protected boolean isSparse() {
+		return m_AttValues == null && m_Source instanceof SparseInstance;
+	}
+
+	/** The position of the first non-label value in the (sparse) source. */
+	protected int offset() {
+		if (m_Offset < 0) {
+			int p = 0;
+			int n = m_Source.numValues();
+			while (p < n && m_Source.index(p) < m_L)
+				p++;
+			m_Offset = p;
+		}
+		return m_Offset;
+	}
+
+	/** Turn this view into a private dense copy (if it is not one already). */
+	protected void materialize() {
+		if (m_AttValues == null)
+			m_AttValues = toDoubleArray();
+	}
+
+	@Override
+	public int numAttributes() {
+		if (m_AttValues != null)
+			return m_AttValues.length;
+		return m_Labels.length + m_Source.numAttributes() - m_L;
+	}
+
+	@Override
+	public double value(int attIndex) {
+		if (m_AttValues != null)
+			return m_AttValues[attIndex];
+		int k = m_Labels.length;
+		if (attIndex < k)
+			return (m_LabelValues != null) ? m_LabelValues[attIndex] : m_Source.value(m_Labels[attIndex]);
+		return m_Source.value(m_L + attIndex - k);
+	}
+
+	@Override
+	public int numValues() {
+		if (!isSparse())
+			return numAttributes();
+		return m_Labels.length + m_Source.numValues() - offset();
+	}
+
+	@Override
+	public int index(int position) {
+		int k = m_Labels.length;
+		if (!isSparse() || position < k)
+			return position;
+		return m_Source.index(offset() + position - k) - m_L + k;
+	}
+
+	@Override
+	public double valueSparse(int indexOfIndex) {
+		int k = m_Labels.length;
+		if (!isSparse() || indexOfIndex < k)
+			return value(indexOfIndex);
+		return m_Source.valueSparse(offset() + indexOfIndex - k);
+	}
+
+	@Override
+	public double[] toDoubleArray() {
+		if (m_AttValues != null)
+			return m_AttValues.clone();
+		int k = m_Labels.length;
+		double v[] = new double[numAttributes()];
+		for(int j = 0; j < k; j++) {
+			v[j] = value(j);
+		}
+		if (m_Source instanceof SparseInstance) {
+			for(int p = offset(); p < m_Source.numValues(); p++) {
+				v[m_Source.index(p) - m_L + k] = m_Source.valueSparse(p);
+			}
+		}
+		else {
+			for(int i = k; i < v.length; i++) {
+				v[i] = m_Source.value(m_L + i - k);
+			}
+		}
+		return v;
+	}
+
+	@Override
+	public void setValue(int attIndex, double value) {
+		materialize();
+		m_AttValues[attIndex] = value;
+	}
+
+	@Override
+	public void setValueSparse(int indexOfIndex, double value) {
+		setValue(index(indexOfIndex), value);
+	}
+
+	@Override
+	public void replaceMissingValues(double[] array) {
+		if ((array == null) || (array.length != numAttributes()))
+			throw new IllegalArgumentException("Unequal number of attributes!");
+		materialize();
+		for(int i = 0; i < m_AttValues.length; i++) {
+			if (Utils.isMissingValue(m_AttValues[i]))
+				m_AttValues[i] = array[i];
+		}
+	}
+
+	@Override
+	protected void forceDeleteAttributeAt(int position) {
+		materialize();
+		double v[] = new double[m_AttValues.length - 1];
+		System.arraycopy(m_AttValues, 0, v, 0, position);
+		System.arraycopy(m_AttValues, position + 1, v, position, v.length - position);
+		m_AttValues = v;
+	}
+
+	@Override
+	protected void forceInsertAttributeAt(int position) {
+		materialize();
+		double v[] = new double[m_AttValues.length + 1];
+		System.arraycopy(m_AttValues, 0, v, 0, position);
+		v[position] = Utils.missingValue();
+		System.arraycopy(m_AttValues, position, v, position + 1, m_AttValues.length - position);
+		m_AttValues = v;
+	}
+
+	@Override
+	public Object copy() {
+		return new LabelViewInstance(this);
+	}
+
+	@Override
+	public Instance copy(double[] values) {
+		DenseInstance result = new DenseInstance(m_Weight, values);
+		result.setDataset(m_Dataset);
+		return result;
+	}
+
+	@Override
+	public Instance mergeInstance(Instance inst) {
+		return new DenseInstance(m_Weight, toDoubleArray()).mergeInstance(inst);
+	}
+
+	@Override
+	public String toStringNoWeight(int afterDecimalPoint) {
+		StringBuilder text = new StringBuilder();
+		for(int i = 0; i < numAttributes(); i++) {
+			if (i > 0)
+				text.append(",");
+			text.append(toString(i, afterDecimalPoint));
+		}
+		return text.toString();
+	}
+
+	@Override
+	public String toStringNoWeight() {
+		return toStringNoWeight(AbstractInstance.s_numericAfterDecimalPoint);
+	}
+}
@@ -0,0 +1,139 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import java.io.Serializable;
+
+/**
+ * LatencyHistogram - A histogram of latencies (in nanoseconds, e.g., from System.nanoTime()), with a fixed number
+ * of log-linear buckets: values below 2^B are counted exactly, and above that, each power of two is split into
+ * 2^B buckets. So the memory is constant (whatever the number of values recorded), recording is O(1), and
+ * percentiles are given to within a relative error of 2^-B (about 3%).
+ */
+public class LatencyHistogram implements Serializable {
+
+	private static final long serialVersionUID = -4851364000963637180L;
+
+	/** the number of bits of precision (i.e., 2^B buckets per power of two) */
+	protected static final int B = 5;
+
+	/** the number of buckets per power of two */
+	protected static final int S = 1 << B;
+
+	/** the counts, per bucket */
+	protected long counts[] = new long[(64 - B) * S];
+
+	/** the number of values recorded */
+	protected long N = 0;
+
+	/** the sum of the values recorded */
+	protected double sum = 0.0;
+
+	/** the smallest value recorded */
+	protected long min = Long.MAX_VALUE;
+
+	/** the largest value recorded */
+	protected long max = 0;
+
+	/** The bucket of value v (&gt;= 0). */
+	protected static int bucket(long v) {
+		if (v < S)
+			return (int)v;
+		int e = 63 - Long.numberOfLeadingZeros(v);  // v is in [2^e, 2^(e+1))
+		return (e - B + 1) * S + (int)((v >>> (e - B)) - S);
+	}
+
+	/** The largest value that falls into bucket b. */
+	protected static long upperBound(int b) {
+		if (b < S)
+			return b;
+		int e = b / S + B - 1;
+		long lower = ((long)(S + b % S)) << (e - B);
+		return lower + (1L << (e - B)) - 1;
+	}
+
+	/**
+	 * Record - add a latency of 'nanos' nanoseconds (negative values are counted as 0).
+	 */
+	public void record(long nanos) {
+		if (nanos < 0)
+			nanos = 0;
+		counts[bucket(nanos)]++;
+		N++;
+		sum += nanos;
+		if (nanos < min)
+			min = nanos;
+		if (nanos > max)
+			max = nanos;
+	}
+
+	/**
+	 * Add - add all the values recorded by another histogram.
+	 */
+	public void add(LatencyHistogram other) {
+		for(int b = 0; b < counts.length; b++) {
+			counts[b] += other.counts[b];
+		}
+		N += other.N;
+		sum += other.sum;
+		min = Math.min(min, other.min);
+		max = Math.max(max, other.max);
+	}
+
+	/** The number of values recorded. */
+	public long numValues() {
+		return N;
+	}
+
+	/** The sum of the values recorded (in nanoseconds). */
+	public double getSum() {
+		return sum;
+	}
+
+	/** The mean of the values recorded (in nanoseconds; NaN if none). */
+	public double getMean() {
+		return (N > 0) ? sum / (double)N : Double.NaN;
+	}
+
+	/** The smallest value recorded (in nanoseconds; 0 if none). */
+	public long getMin() {
+		return (N > 0) ? min : 0;
+	}
+
+	/** The largest value recorded (in nanoseconds; 0 if none). */
+	public long getMax() {
+		return max;
+	}
+
+	/**
+	 * Percentile - the value (in nanoseconds) below which the fraction q of the recorded values fall (0 if none),
+	 * e.g., q = 0.99 for the 99th percentile.
+	 */
+	public long getPercentile(double q) {
+		if (N == 0)
+			return 0;
+		long rank = (long)Math.ceil(Math.max(0.0, Math.min(1.0, q)) * (double)N);
+		if (rank < 1)
+			rank = 1;
+		long seen = 0;
+		for(int b = 0; b < counts.length; b++) {
+			seen += counts[b];
+			if (seen >= rank)
+				return Math.max(Math.min(upperBound(b), max), min);
+		}
+		return max;
+	}
+}
@@ -26,18 +26,32 @@ import java.util.*;
  */
 public abstract class MLEvalUtils {
 
+	/** the maximum number of points of the (per label and micro-averaged) curve data kept with the statistics; larger curves are down-sampled (the areas under the curves are always calculated from all points) */
+	public static final int MAX_CURVE_POINTS = 10000;
+
 	/**
 	 * GetThreshold - Get a threshold from a Threshold OPtion string 'top'.
 	 * @param	Y	label space; for calculating a threshold with PCut
 	 * @param	D	training data; for calculating a threshold with PCut
 	 * @param	top Threshold OPtion (either "PCut1", "PCutL" or a real value e.g. "0.5" or L real values e.g. "[0.1, 0.2, 0.8]" for L = 3
 	 */
-	public static String getThreshold(ArrayList<double[]> Y, Instances D, String top) throws Exception {
+	public static String getThreshold(List<double[]> Y, Instances D, String top) throws Exception {
+		return getThreshold(Y,D,top,ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * GetThreshold - Get a threshold from a Threshold OPtion string 'top'.
+	 * @param	Y	label space; for calculating a threshold with PCut
+	 * @param	D	training data; for calculating a threshold with PCut
+	 * @param	top Threshold OPtion (either "PCut1", "PCutL" or a real value e.g. "0.5" or L real values e.g. "[0.1, 0.2, 0.8]" for L = 3
+	 * @param	numThreads	the number of threads for "PCutL" (labels calibrated in parallel): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	public static String getThreshold(List<double[]> Y, Instances D, String top, int numThreads) throws Exception {
 		if (top.equals("PCut1") || top.equals("c")) {			// Proportional Cut threshold (1 general threshold)
 			return String.valueOf(ThresholdUtils.calibrateThreshold(Y,MLUtils.labelCardinality(D)));
 		}	
 		else if (top.equals("PCutL") || top.equals("C")) {		// Proportional Cut thresholds (one for each Label)
-			return Arrays.toString(ThresholdUtils.calibrateThresholds(Y,MLUtils.labelCardinalities(D)));
+			return Arrays.toString(ThresholdUtils.calibrateThresholds(Y,MLUtils.labelCardinalities(D),numThreads));
 		}
 		else {
 			// Set our own threshold (we assume top = "0.5" or top = "[0.1,...,0.3]" (we make no checks here!)
@@ -54,8 +68,21 @@ public abstract class MLEvalUtils {
 	 * @return	        the evaluation statistics
 	 */
 	public static HashMap<String,Object> getMLStats(double Rpred[][], int Y[][], String t, String vop) {
+		return getMLStats(Rpred,Y,t,vop,ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * GetMLStats - Given predictions and corresponding true values and a threshold string, retreive statistics.
+	 * @param	Rpred	predictions (may be real-valued confidences)
+	 * @param	Y   	corresponding true values
+	 * @param	t		a threshold string, e.g. "0.387"
+	 * @param	vop		the verbosity option, e.g. "5"
+	 * @param	numThreads	the number of threads for the curve-based statistics (labels processed in parallel): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 * @return	        the evaluation statistics
+	 */
+	public static HashMap<String,Object> getMLStats(double Rpred[][], int Y[][], String t, String vop, int numThreads) {
 		double ts[] = ThresholdUtils.thresholdStringToArray(t,Y[0].length);
-		return getMLStats(Rpred,Y,ts,vop);
+		return getMLStats(Rpred,Y,ts,vop,numThreads);
 	}
 
 	/**
@@ -66,48 +93,100 @@ public abstract class MLEvalUtils {
 	 * @return	    the evaluation statistics
 	 */
 	public static HashMap<String,Object> getMLStats(double Rpred[][], int Y[][], double t[], String vop) {
+		return getMLStats(Rpred,Y,t,vop,ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * GetMLStats - Given predictions and corresponding true values and a threshold string, retreive statistics.
+	 * @param	Rpred	predictions (may be double-valued confidences in the multi-label case)
+	 * @param	Y   	corresponding true values
+	 * @param	t		a vector of thresholds, e.g. [0.1,0.1,0.1] or [0.1,0.5,0.4,0.001]
+	 * @param	numThreads	the number of threads for the curve-based statistics (labels processed in parallel): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 * @return	    the evaluation statistics
+	 */
+	public static HashMap<String,Object> getMLStats(double Rpred[][], int Y[][], double t[], String vop, int numThreads) {
 
 		int N = Y.length; 
 		int L = Y[0].length;
 
 		int V = MLUtils.getIntegerOption(vop,1); // default 1
 
-		int Ypred[][] = ThresholdUtils.threshold(Rpred,t);
+		// (the log loss by D is limited by the number of rows that are not all-missing)
+		int N_valid = 0;
+		for(int i = 0; i < N; i++) {
+			if (!Metrics.allMissing(Y[i]))
+				N_valid++;
+		}
+
+		// a single pass over the data for all threshold- and ranking-based metrics
+		MetricAccumulator acc = new MetricAccumulator(L,t,N_valid);
+		acc.setRanking(V > 1);
+		acc.setLevenshtein(V > 2);
+		for(int i = 0; i < N; i++) {
+			acc.update(Y[i],Rpred[i]);
+		}
+
+		return getMLStats(acc,Rpred,Y,V,numThreads);
+	}
+
+	/**
+	 * GetMLStats - Retreive statistics from an accumulator, e.g., filled while streaming through the data, without
+	 * keeping the predictions. The curve-based statistics (AUPRC, AUROC, curve data) need all the predictions, and
+	 * are therefore not included.
+	 * @param	acc		a (multi-label) accumulator, with all predictions added
+	 * @param	vop		the verbosity option, e.g. "5"
+	 * @return	        the evaluation statistics
+	 */
+	public static HashMap<String,Object> getMLStats(MetricAccumulator acc, String vop) {
+		return getMLStats(acc,null,null,MLUtils.getIntegerOption(vop,1),ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * GetMLStats - Retreive statistics from an accumulator; and the curve-based statistics from Rpred and Y (if given).
+	 */
+	private static HashMap<String,Object> getMLStats(MetricAccumulator acc, double Rpred[][], int Y[][], int V, int numThreads) {
+
+		int N = acc.numInstances();
+		int L = acc.getL();
 
 		HashMap<String,Object> results = new LinkedHashMap<String,Object>();
 
 		results.put("Number of test instances (N)"			,(int)N);
-		results.put("Accuracy"			,Metrics.P_Accuracy(Y,Ypred));
-		results.put("Jaccard index"		,Metrics.P_Accuracy(Y,Ypred));
-		results.put("Hamming score"		,Metrics.P_Hamming(Y,Ypred));
-		results.put("Exact match"		,Metrics.P_ExactMatch(Y,Ypred));
+		results.put("Accuracy"			,acc.P_Accuracy());
+		results.put("Jaccard index"		,acc.P_Accuracy());
+		results.put("Hamming score"		,acc.P_Hamming());
+		results.put("Exact match"		,acc.P_ExactMatch());
 
 		if (V > 1) {
 
-			results.put("Jaccard distance"	,Metrics.L_JaccardDist(Y,Ypred));
-			results.put("Hamming loss"		,Metrics.L_Hamming(Y,Ypred));
-			results.put("ZeroOne loss"		,Metrics.L_ZeroOne(Y,Ypred));
-			results.put("Harmonic score"	,Metrics.P_Harmonic(Y,Ypred));
-			results.put("One error"			,Metrics.L_OneError(Y,Rpred));
-			results.put("Rank loss"			,Metrics.L_RankLoss(Y,Rpred));
-			results.put("Avg precision"		,Metrics.P_AveragePrecision(Y,Rpred));
-			results.put("Log Loss (lim. L)"	,Metrics.L_LogLossL(Y,Rpred));
-			results.put("Log Loss (lim. D)"	,Metrics.L_LogLossD(Y,Rpred));
+			results.put("Jaccard distance"	,1. - acc.P_Accuracy());
+			results.put("Hamming loss"		,acc.L_Hamming());
+			results.put("ZeroOne loss"		,acc.L_ZeroOne());
+			results.put("Harmonic score"	,acc.P_Harmonic());
+			results.put("One error"			,acc.L_OneError());
+			results.put("Rank loss"			,acc.L_RankLoss());
+			results.put("Avg precision"		,acc.P_AveragePrecision());
+			results.put("Log Loss (lim. L)"	,acc.L_LogLossL());
+			results.put("Log Loss (lim. D)"	,acc.L_LogLossD());
 			if (V > 3) {
-				results.put("Micro Precision"		,Metrics.P_PrecisionMicro(Y,Ypred));
-				results.put("Micro Recall"			,Metrics.P_RecallMicro(Y,Ypred));
-				results.put("Macro Precision"		,Metrics.P_PrecisionMacro(Y,Ypred));
-				results.put("Macro Recall"			,Metrics.P_RecallMacro(Y,Ypred));
+				results.put("Micro Precision"		,acc.P_PrecisionMicro());
+				results.put("Micro Recall"			,acc.P_RecallMicro());
+				results.put("Macro Precision"		,acc.P_PrecisionMacro());
+				results.put("Macro Recall"			,acc.P_RecallMacro());
+			}
+			results.put("F1 (micro averaged)"				,acc.P_FmicroAvg());
+			results.put("F1 (macro averaged by example)"	,acc.P_FmacroAvgD());
+			results.put("F1 (macro averaged by label)"		,acc.P_FmacroAvgL());
+			if (Y != null) {
+				// the threshold curve of each label (computed once, the labels in parallel if numThreads allows)
+				CurveUtils.Curve curves[] = CurveUtils.getCurves(Y,Rpred,numThreads);
+				results.put("AUPRC (macro averaged)"		    ,Metrics.P_macroAUPRC(curves));
+				results.put("AUROC (macro averaged)"		    ,Metrics.P_macroAUROC(curves));
+				// This will not be displayed to text output, rather as a graph
+				results.put("Curve Data"		                ,Metrics.curveData(curves,MAX_CURVE_POINTS));
+				results.put("Macro Curve Data"		            ,Metrics.curveDataMacroAveraged(curves));
+				results.put("Micro Curve Data"		            ,Metrics.curveDataMicroAveraged(Y,Rpred,MAX_CURVE_POINTS));
 			}
-			results.put("F1 (micro averaged)"				,Metrics.P_FmicroAvg(Y,Ypred));
-			results.put("F1 (macro averaged by example)"	,Metrics.P_FmacroAvgD(Y,Ypred));
-			results.put("F1 (macro averaged by label)"		,Metrics.P_FmacroAvgL(Y,Ypred));
-			results.put("AUPRC (macro averaged)"		    ,Metrics.P_macroAUPRC(Y,Rpred));
-			results.put("AUROC (macro averaged)"		    ,Metrics.P_macroAUROC(Y,Rpred));
-			// This will not be displayed to text output, rather as a graph
-			results.put("Curve Data"		                ,Metrics.curveData(Y,Rpred));
-			results.put("Macro Curve Data"		            ,Metrics.curveDataMacroAveraged(Y,Rpred));
-			results.put("Micro Curve Data"		            ,Metrics.curveDataMicroAveraged(Y,Rpred));
 
 			if (V > 2) {
 				results.put("Label indices              "	,A.make_sequence(L));
@@ -116,10 +195,10 @@ public abstract class MLEvalUtils {
 				double Pr[] = new double[L];
 				double Re[] = new double[L];
 				for(int j = 0; j < L; j++) {
-					HL[j] = Metrics.P_Hamming(Y,Ypred,j);
-					HA[j] = Metrics.P_Harmonic(Y,Ypred,j);
-					Pr[j] = Metrics.P_Precision(Y,Ypred,j);
-					Re[j] = Metrics.P_Recall(Y,Ypred,j);
+					HL[j] = acc.P_Hamming(j);
+					HA[j] = acc.P_Harmonic(j);
+					Pr[j] = acc.P_Precision(j);
+					Re[j] = acc.P_Recall(j);
 				}
 				results.put("Accuracy (per label)"	        ,HL);
 				if (V > 3) {
@@ -130,19 +209,19 @@ public abstract class MLEvalUtils {
 			}
 
 			if (V > 2) {
-				results.put("Empty labelvectors (predicted)"	,MLUtils.emptyVectors(Ypred));
-				results.put("Label cardinality (predicted)"		,MLUtils.labelCardinality(Ypred));
-				results.put("Levenshtein distance", Metrics.L_LevenshteinDistance(Y, Ypred));
+				results.put("Empty labelvectors (predicted)"	,acc.emptyVectors());
+				results.put("Label cardinality (predicted)"		,acc.labelCardinalityPredicted());
+				results.put("Levenshtein distance", acc.L_LevenshteinDistance());
 				if (V > 3) {
 					// Label cardinality
-					results.put("Label cardinality (difference)"		,MLUtils.labelCardinality(Y)-MLUtils.labelCardinality(Ypred));
+					results.put("Label cardinality (difference)"		,acc.labelCardinality()-acc.labelCardinalityPredicted());
 					double diff_LC[] = new double[L];
 					double true_LC[] = new double[L];
 					double pred_LC[] = new double[L];
 					for(int j = 0; j < L; j++) {
-						diff_LC[j] = MLUtils.labelCardinality(Y,j) - MLUtils.labelCardinality(Ypred,j);
-						true_LC[j] = MLUtils.labelCardinality(Y,j);
-						pred_LC[j] = MLUtils.labelCardinality(Ypred,j);
+						diff_LC[j] = acc.labelCardinality(j) - acc.labelCardinalityPredicted(j);
+						true_LC[j] = acc.labelCardinality(j);
+						pred_LC[j] = acc.labelCardinalityPredicted(j);
 					}
 					results.put("avg. relevance (test set)"		,true_LC);
 					results.put("avg. relevance (predicted)     "		,pred_LC);
@@ -161,29 +240,49 @@ public abstract class MLEvalUtils {
 	 */
 	public static HashMap<String,Object> getMTStats(double Rpred[][], int Y[][], String vop) {
 
-		// just a question of rounding for now, could use A.toIntArray(..)
-		int Ypred[][] = ThresholdUtils.round(Rpred);
-
 		int N = Y.length;
 		int L = Y[0].length;
 		int V = MLUtils.getIntegerOption(vop,1); // default 1
 
+		// just a question of rounding for now (no thresholds), all in a single pass over the data
+		MetricAccumulator acc = new MetricAccumulator(L,null);
+		acc.setLevenshtein(V > 2);
+		for(int i = 0; i < N; i++) {
+			acc.update(Y[i],Rpred[i]);
+		}
+
+		return getMTStats(acc,vop);
+	}
+
+	/**
+	 * GetMTStats - Retreive multi-target evaluation statistics from an accumulator, e.g., filled while streaming
+	 * through the data, without keeping the predictions.
+	 * @param	acc		a (multi-target) accumulator, with all predictions added
+	 * @param	vop		the verbosity option, e.g. "5"
+	 * @return	        the evaluation statistics
+	 */
+	public static HashMap<String,Object> getMTStats(MetricAccumulator acc, String vop) {
+
+		int N = acc.numInstances();
+		int L = acc.getL();
+		int V = MLUtils.getIntegerOption(vop,1); // default 1
+
 		HashMap<String,Object> output = new LinkedHashMap<String,Object>();
 		output.put("N(test)"            ,(double)N);
 		output.put("L"					,(double)L);
-		output.put("Hamming score"		,Metrics.P_Hamming(Y,Ypred));
-		output.put("Exact match"		,Metrics.P_ExactMatch(Y,Ypred));
+		output.put("Hamming score"		,acc.P_Hamming());
+		output.put("Exact match"		,acc.P_ExactMatch());
 
 		if (V > 1) {
-			output.put("Hamming loss"		,Metrics.L_Hamming(Y,Ypred));
-			output.put("ZeroOne loss"		,Metrics.L_ZeroOne(Y,Ypred));
+			output.put("Hamming loss"		,acc.L_Hamming());
+			output.put("ZeroOne loss"		,acc.L_ZeroOne());
 		}
 		if (V > 2) {
-			output.put("Levenshtein distance", Metrics.L_LevenshteinDistance(Y, Ypred));
+			output.put("Levenshtein distance", acc.L_LevenshteinDistance());
 
 			double HL[] = new double[L];
 			for(int j = 0; j < L; j++) {
-				HL[j] = Metrics.P_Hamming(Y,Ypred,j);
+				HL[j] = acc.P_Hamming(j);
 			}
 			output.put("Label indices              "	,A.make_sequence(L));
 			output.put("Accuracy (per label)"	        ,HL);
@@ -197,19 +296,26 @@ public abstract class MLEvalUtils {
 	/**
 	 * Combine Predictions - Combine together various results (for example, from cross-validation)
 	 * into one, simply by appending predictions and true values together, and averaging together their 'vals'.
+	 * The predictions are stored compactly if there are many of them (see Result#isCompactSize(int,int)).
 	 * @param folds	an array of Results
 	 * @return a combined Result
 	 */
 	public static Result combinePredictions(Result folds[]) { 
-		Result r = new Result();
+		Result r = new Result(folds[0].L);
 
 		// set info
 		r.info = folds[0].info;
 
+		int N = 0;
+		for(int f = 0; f < folds.length; f++) {
+			N += folds[f].size();
+		}
+		r.setCompact(Result.isCompactSize(N, r.L));
+
 		// append all predictions and true values
 		for(int f = 0; f < folds.length; f++) {
-			r.predictions.addAll(folds[f].predictions);
-			r.actuals.addAll(folds[f].actuals);
+			r.getPredictions().addAll(folds[f].getPredictions());
+			r.getActuals().addAll(folds[f].getActuals());
 		}
 
 		r.vals = folds[0].vals;
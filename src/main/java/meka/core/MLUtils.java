@@ -15,7 +15,9 @@
 
 package meka.core;
 
+import weka.classifiers.Classifier;
 import weka.core.Attribute;
+import weka.core.BatchPredictor;
 import weka.core.Instance;
 import weka.core.Instances;
 import weka.core.Utils;
@@ -374,7 +376,7 @@ public abstract class MLUtils {
 	/** 
 	 * LabelCardinalities - return the frequency of each label of dataset D.
 	 */
-	public static final double[] labelCardinalities(ArrayList<int[]> Y) {
+	public static final double[] labelCardinalities(List<int[]> Y) {
 	    // TODO what about missing values here? Seems like only used with predictions?
 	    int L = ((int[]) Y.get(0)).length;
 	    double lc[] = new double[L];
@@ -926,6 +928,53 @@ public abstract class MLUtils {
 			x.setValue(j,0.0);
 	}
 
+	/**
+	 * DistributionsForInstances - Get the distribution of classifier 'h' for each instance of D, as a batch if 'h'
+	 * implements batch prediction more efficiently, and otherwise instance by instance.
+	 * @param	h	a (trained) classifier
+	 * @param	D	the instances
+	 * @return	the distribution for each instance of D
+	 */
+	public static double[][] distributionsForInstances(Classifier h, Instances D) throws Exception {
+		if (h instanceof BatchPredictor && ((BatchPredictor)h).implementsMoreEfficientBatchPrediction())
+			return ((BatchPredictor)h).distributionsForInstances(D);
+		double P[][] = new double[D.numInstances()][];
+		for(int i = 0; i < P.length; i++) {
+			P[i] = h.distributionForInstance(D.instance(i));
+		}
+		return P;
+	}
+
+	/**
+	 * ClassifyInstances - Classify each instance of D with classifier 'h', in a batch if 'h' implements batch
+	 * prediction more efficiently (taking the argmax of each distribution, as AbstractClassifier.classifyInstance
+	 * does), and otherwise instance by instance.
+	 * @param	h	a (trained) classifier
+	 * @param	D	the instances
+	 * @return	the classification for each instance of D
+	 */
+	public static double[] classifyInstances(Classifier h, Instances D) throws Exception {
+		double c[] = new double[D.numInstances()];
+		if (h instanceof BatchPredictor && ((BatchPredictor)h).implementsMoreEfficientBatchPrediction()) {
+			double P[][] = ((BatchPredictor)h).distributionsForInstances(D);
+			for(int i = 0; i < c.length; i++) {
+				if (D.classAttribute().isNumeric()) {
+					c[i] = P[i][0];
+				}
+				else {
+					int max = Utils.maxIndex(P[i]);
+					c[i] = (P[i][max] > 0) ? max : Utils.missingValue();
+				}
+			}
+		}
+		else {
+			for(int i = 0; i < c.length; i++) {
+				c[i] = h.classifyInstance(D.instance(i));
+			}
+		}
+		return c;
+	}
+
 	/**
 	 * GetXfromD - Extract attributes as a double X[][] from Instances D.
 	 * TODO: getXfromInstances would be a better name.
@@ -1267,18 +1316,53 @@ public abstract class MLUtils {
          * @return The ranking of the predictions with equal ranks.
 	 */
 	public static final int[] predictionsToRanking(double[] predictions) {
-            int[] res = new int[predictions.length];
-            for (int i = 0; i < predictions.length ; i++ ) {
-                int countHigherOrEqual = 0;
-                for (int j = 0; j < predictions.length ; j++ ) {
-                    if (predictions[i] <= predictions[j]) {
-                        countHigherOrEqual ++;
-                    }
-                    
+            // NaN is not <= anything: it gets rank -1, and does not count towards the ranks of the others
+            int n = 0;
+            for (int i = 0; i < predictions.length; i++) {
+                if (!Double.isNaN(predictions[i])) {
+                    n++;
                 }
+            }
+            if (n == predictions.length) {
+                return predictionsToRanking(predictions, Utils.sort(predictions));
+            }
+
+            int[] idx = new int[n];
+            double[] values = new double[n];
+            for (int i = 0, k = 0; i < predictions.length; i++) {
+                if (!Double.isNaN(predictions[i])) {
+                    idx[k] = i;
+                    values[k++] = predictions[i];
+                }
+            }
+            int[] r = predictionsToRanking(values, Utils.sort(values));
+
+            int[] res = new int[predictions.length];
+            Arrays.fill(res, -1);
+            for (int k = 0; k < n; k++) {
+                res[idx[k]] = r[k];
+            }
+            return res;
+        }
 
-                res[i] = countHigherOrEqual -1;
-                
+	/**
+         * Transforms the predictions into a ranking array (as above), given their ascending 
+         * order, i.e., Utils.sort(predictions), so that the predictions need not be sorted twice.
+         * O(L) instead of O(L^2): all entries in a group of equal predictions get the rank of 
+         * the first (lowest) entry in that group.
+         * 
+         * @param predictions The predictions array (without NaN values).
+         * @param order The indices of the predictions in ascending order.
+         * @return The ranking of the predictions with equal ranks.
+	 */
+	public static final int[] predictionsToRanking(double[] predictions, int[] order) {
+            int[] res = new int[predictions.length];
+            int first = 0;
+            for (int i = 0; i < order.length; i++) {
+                if (i > 0 && predictions[order[i]] != predictions[order[i-1]]) {
+                    first = i;
+                }
+                res[order[i]] = predictions.length - 1 - first;
             }
             return res;
         }
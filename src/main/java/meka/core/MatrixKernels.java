@@ -0,0 +1,390 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * MatrixKernels - Dense matrix kernels on double[][] (row-major) arrays: cache-blocked matrix products (also with either
+ * side transposed, without copying it), fused products with the sigmoid, and element-wise operations.
+ * <br>
+ * Each kernel writes into a given result matrix (which is allocated if null), so that buffers can be re-used; the
+ * element-wise operations may be done in place (the result may be one of the arguments). Large kernels are split by
+ * rows of the result over a fork/join pool (the common one, by default; see setNumThreads), unless already called
+ * from one of the threads of a ThreadUtils pool. Each element is computed by a single thread, summing in the same
+ * (ascending) order as the plain triple loop (and Jama), so the results do not depend on the blocking nor on the
+ * number of threads.
+ *
+ * @see MatrixUtils
+ */
+public class MatrixKernels {
+
+	/** block sizes (of the inner dimension, and of the columns of the result) */
+	protected static final int BLOCK_K = 64;
+	protected static final int BLOCK_J = 256;
+
+	/** the number of rows of the result computed together, over each block */
+	protected static final int BLOCK_I = 16;
+
+	/** the minimum number of multiply-adds (or element operations) of a kernel for it to be split over threads */
+	protected static final long PARALLEL_MIN_WORK = 1 << 16;
+
+	/** the pool that large kernels are split over (null for sequential execution) */
+	protected static volatile ForkJoinPool pool = ForkJoinPool.commonPool();
+
+	/**
+	 * SetNumThreads - Set the number of threads that large kernels are split over.
+	 * @param	numThreads	-1 = the common fork/join pool (the default); 0/1 = sequential execution; otherwise a pool of
+	 * its own, of (up to) that many threads (a pool of its own set before is shut down)
+	 */
+	public static synchronized void setNumThreads(int numThreads) {
+		ForkJoinPool previous = pool;
+		if (numThreads == ThreadUtils.ALL)
+			pool = ForkJoinPool.commonPool();
+		else if (ThreadUtils.isMultiThreaded(numThreads))
+			pool = new ForkJoinPool(ThreadUtils.getActualNumThreads(numThreads, ThreadUtils.getAvailableProcessors()));
+		else
+			pool = null;
+		if (previous != null && previous != ForkJoinPool.commonPool())
+			previous.shutdown();
+	}
+
+	/**
+	 * GetNumThreads - The number of threads that large kernels are split over (1 if sequential).
+	 */
+	public static int getNumThreads() {
+		ForkJoinPool pool = MatrixKernels.pool;
+		return (pool == null) ? ThreadUtils.SEQUENTIAL : pool.getParallelism();
+	}
+
+	/**
+	 * A block of rows from ... to-1 of a result.
+	 */
+	protected interface RowBlock {
+		void run(int from, int to);
+	}
+
+	/**
+	 * Computes the rows from ... to-1 of a result, splitting them in halves (down to 'grain' rows) over the fork/join pool.
+	 */
+	protected static class RowTask extends RecursiveAction {
+
+		private static final long serialVersionUID = -4296301638440523478L;
+
+		protected final RowBlock block;
+		protected final int from, to, grain;
+
+		protected RowTask(RowBlock block, int from, int to, int grain) {
+			this.block = block;
+			this.from = from;
+			this.to = to;
+			this.grain = grain;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from <= grain) {
+				block.run(from, to);
+				return;
+			}
+			int mid = (from + to) >>> 1;
+			invokeAll(new RowTask(block, from, mid, grain), new RowTask(block, mid, to, grain));
+		}
+	}
+
+	/**
+	 * Run rows 0 ... n-1 of a kernel of 'work' operations in all; in parallel if it is worth it, and if not already
+	 * running in parallel (in a thread of a ThreadUtils pool, e.g., building the members of an ensemble).
+	 */
+	protected static void forRows(int n, long work, RowBlock block) {
+		if (n == 0)
+			return;
+		ForkJoinPool pool = MatrixKernels.pool;
+		int parallelism = (pool == null) ? ThreadUtils.SEQUENTIAL : pool.getParallelism();
+		if (work < PARALLEL_MIN_WORK || n < 2 || parallelism < 2 || ThreadUtils.isWorkerThread()) {
+			block.run(0, n);
+			return;
+		}
+		int grain = Math.max(1, n / (4 * parallelism));
+		try {
+			pool.invoke(new RowTask(block, 0, n, grain));
+		}
+		catch (RejectedExecutionException e) {
+			// the pool was replaced (and shut down) meanwhile
+			block.run(0, n);
+		}
+	}
+
+	/** C, or a new rows x cols matrix if C is null (or of other dimensions). */
+	protected static double[][] result(double C[][], int rows, int cols) {
+		if (C == null || C.length != rows || (rows > 0 && C[0].length != cols))
+			return new double[rows][cols];
+		return C;
+	}
+
+	/**
+	 * Multiply - C = A B.
+	 * @param	A	n x p
+	 * @param	B	p x q
+	 * @param	C	n x q result (allocated if null); must not be A or B
+	 * @return	C
+	 */
+	public static double[][] multiply(final double A[][], final double B[][], double C[][]) {
+		final int n = A.length;
+		final int p = B.length;
+		final int q = (p > 0) ? B[0].length : 0;
+		if (n > 0 && A[0].length != p)
+			throw new IllegalArgumentException(" A.cols ("+A[0].length+") != B.rows ("+p+") ");
+		final double C_[][] = result(C, n, q);
+		forRows(n, (long)n * p * q, (from, to) -> multiplyRows(A, B, C_, from, to));
+		return C_;
+	}
+
+	/** Rows from ... to-1 of C = A B, blocked over the rows of B (k) and the columns of C (j). */
+	private static void multiplyRows(double A[][], double B[][], double C[][], int from, int to) {
+		int p = B.length;
+		int q = C[0].length;
+		for(int i = from; i < to; i++) {
+			Arrays.fill(C[i], 0.0);
+		}
+		for(int i0 = from; i0 < to; i0 += BLOCK_I) {
+			int i1 = Math.min(i0 + BLOCK_I, to);
+			for(int k0 = 0; k0 < p; k0 += BLOCK_K) {
+				int k1 = Math.min(k0 + BLOCK_K, p);
+				for(int j0 = 0; j0 < q; j0 += BLOCK_J) {
+					int j1 = Math.min(j0 + BLOCK_J, q);
+					for(int i = i0; i < i1; i++) {
+						double a[] = A[i];
+						double c[] = C[i];
+						for(int k = k0; k < k1; k++) {
+							double a_k = a[k];
+							double b[] = B[k];
+							for(int j = j0; j < j1; j++) {
+								c[j] += a_k * b[j];
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * TransposeMultiply - C = A^T B (without transposing A).
+	 * @param	A	n x p
+	 * @param	B	n x q
+	 * @param	C	p x q result (allocated if null); must not be A or B
+	 * @return	C
+	 */
+	public static double[][] transposeMultiply(final double A[][], final double B[][], double C[][]) {
+		final int n = A.length;
+		final int p = (n > 0) ? A[0].length : 0;
+		final int q = (B.length > 0) ? B[0].length : 0;
+		if (B.length != n)
+			throw new IllegalArgumentException(" A.rows ("+n+") != B.rows ("+B.length+") ");
+		final double C_[][] = result(C, p, q);
+		forRows(p, (long)n * p * q, (from, to) -> transposeMultiplyRows(A, B, C_, from, to));
+		return C_;
+	}
+
+	/** Rows from ... to-1 of C = A^T B, blocked over the rows of A and B (r) and the columns of C (j). */
+	private static void transposeMultiplyRows(double A[][], double B[][], double C[][], int from, int to) {
+		int n = A.length;
+		int q = C[0].length;
+		for(int i = from; i < to; i++) {
+			Arrays.fill(C[i], 0.0);
+		}
+		for(int i0 = from; i0 < to; i0 += BLOCK_I) {
+			int i1 = Math.min(i0 + BLOCK_I, to);
+			for(int r0 = 0; r0 < n; r0 += BLOCK_K) {
+				int r1 = Math.min(r0 + BLOCK_K, n);
+				for(int j0 = 0; j0 < q; j0 += BLOCK_J) {
+					int j1 = Math.min(j0 + BLOCK_J, q);
+					for(int i = i0; i < i1; i++) {
+						double c[] = C[i];
+						for(int r = r0; r < r1; r++) {
+							double a_ri = A[r][i];
+							double b[] = B[r];
+							for(int j = j0; j < j1; j++) {
+								c[j] += a_ri * b[j];
+							}
+						}
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * MultiplyTranspose - C = A B^T (without transposing B).
+	 * @param	A	n x p
+	 * @param	B	q x p
+	 * @param	C	n x q result (allocated if null); must not be A or B
+	 * @return	C
+	 */
+	public static double[][] multiplyTranspose(final double A[][], final double B[][], double C[][]) {
+		return multiplyTranspose(A, B, C, false);
+	}
+
+	/**
+	 * MultiplyTransposeSigma - C = sigma(A B^T), fused (the sigmoid is applied to each element as it is computed).
+	 * @param	A	n x p
+	 * @param	B	q x p
+	 * @param	C	n x q result (allocated if null); must not be A or B
+	 * @return	C
+	 */
+	public static double[][] multiplyTransposeSigma(final double A[][], final double B[][], double C[][]) {
+		return multiplyTranspose(A, B, C, true);
+	}
+
+	private static double[][] multiplyTranspose(final double A[][], final double B[][], double C[][], final boolean sigma) {
+		final int n = A.length;
+		final int q = B.length;
+		final int p = (n > 0) ? A[0].length : 0;
+		if (q > 0 && B[0].length != p)
+			throw new IllegalArgumentException(" A.cols ("+p+") != B.cols ("+B[0].length+") ");
+		final double C_[][] = result(C, n, q);
+		forRows(n, (long)n * p * q, (from, to) -> {
+			// blocks of rows of A and of B (i.e., of C), each element a dot product
+			for(int i0 = from; i0 < to; i0 += BLOCK_I) {
+				int i1 = Math.min(i0 + BLOCK_I, to);
+				for(int j0 = 0; j0 < q; j0 += BLOCK_I) {
+					int j1 = Math.min(j0 + BLOCK_I, q);
+					for(int i = i0; i < i1; i++) {
+						double a[] = A[i];
+						double c[] = C_[i];
+						for(int j = j0; j < j1; j++) {
+							double b[] = B[j];
+							double s = 0.0;
+							for(int k = 0; k < p; k++) {
+								s += a[k] * b[k];
+							}
+							c[j] = sigma ? MatrixUtils.sigma(s) : s;
+						}
+					}
+				}
+			}
+		});
+		return C_;
+	}
+
+	/**
+	 * MultiplySigma - C = sigma(A B + b), fused (the bias and the sigmoid are applied to each row as it is computed).
+	 * @param	A	n x p
+	 * @param	B	p x q
+	 * @param	b	q bias values (added to each row), or null for none
+	 * @param	C	n x q result (allocated if null); must not be A or B
+	 * @return	C
+	 */
+	public static double[][] multiplySigma(final double A[][], final double B[][], final double b[], double C[][]) {
+		final int n = A.length;
+		final int p = B.length;
+		final int q = (p > 0) ? B[0].length : 0;
+		if (n > 0 && A[0].length != p)
+			throw new IllegalArgumentException(" A.cols ("+A[0].length+") != B.rows ("+p+") ");
+		final double C_[][] = result(C, n, q);
+		forRows(n, (long)n * p * q, (from, to) -> {
+			for(int i0 = from; i0 < to; i0 += BLOCK_I) {
+				int i1 = Math.min(i0 + BLOCK_I, to);
+				multiplyRows(A, B, C_, i0, i1);
+				// (while the rows are still in cache)
+				for(int i = i0; i < i1; i++) {
+					double c[] = C_[i];
+					for(int j = 0; j < q; j++) {
+						c[j] = MatrixUtils.sigma((b != null) ? c[j] + b[j] : c[j]);
+					}
+				}
+			}
+		});
+		return C_;
+	}
+
+	/**
+	 * Add - C = A + B (element-wise).
+	 * @param	C	result (allocated if null); may be A or B
+	 * @return	C
+	 */
+	public static double[][] add(final double A[][], final double B[][], double C[][]) {
+		final double C_[][] = result(C, A.length, (A.length > 0) ? A[0].length : 0);
+		forRows(A.length, (long)A.length * ((A.length > 0) ? A[0].length : 0), (from, to) -> {
+			for(int i = from; i < to; i++) {
+				double a[] = A[i], b[] = B[i], c[] = C_[i];
+				for(int j = 0; j < c.length; j++) {
+					c[j] = a[j] + b[j];
+				}
+			}
+		});
+		return C_;
+	}
+
+	/**
+	 * Subtract - C = A - B (element-wise).
+	 * @param	C	result (allocated if null); may be A or B
+	 * @return	C
+	 */
+	public static double[][] subtract(final double A[][], final double B[][], double C[][]) {
+		final double C_[][] = result(C, A.length, (A.length > 0) ? A[0].length : 0);
+		forRows(A.length, (long)A.length * ((A.length > 0) ? A[0].length : 0), (from, to) -> {
+			for(int i = from; i < to; i++) {
+				double a[] = A[i], b[] = B[i], c[] = C_[i];
+				for(int j = 0; j < c.length; j++) {
+					c[j] = a[j] - b[j];
+				}
+			}
+		});
+		return C_;
+	}
+
+	/**
+	 * Sigma - C = sigma(A) (element-wise).
+	 * @param	C	result (allocated if null); may be A
+	 * @return	C
+	 */
+	public static double[][] sigma(final double A[][], double C[][]) {
+		final double C_[][] = result(C, A.length, (A.length > 0) ? A[0].length : 0);
+		// (the exponential counts for more than one operation)
+		forRows(A.length, 16L * A.length * ((A.length > 0) ? A[0].length : 0), (from, to) -> {
+			for(int i = from; i < to; i++) {
+				double a[] = A[i], c[] = C_[i];
+				for(int j = 0; j < c.length; j++) {
+					c[j] = MatrixUtils.sigma(a[j]);
+				}
+			}
+		});
+		return C_;
+	}
+
+	/**
+	 * DSigma - C = dsigma(A) (element-wise), the derivative of the sigmoid.
+	 * @param	C	result (allocated if null); may be A
+	 * @return	C
+	 */
+	public static double[][] dsigma(final double A[][], double C[][]) {
+		final double C_[][] = result(C, A.length, (A.length > 0) ? A[0].length : 0);
+		forRows(A.length, 16L * A.length * ((A.length > 0) ? A[0].length : 0), (from, to) -> {
+			for(int i = from; i < to; i++) {
+				double a[] = A[i], c[] = C_[i];
+				for(int j = 0; j < c.length; j++) {
+					c[j] = MatrixUtils.dsigma(a[j]);
+				}
+			}
+		});
+		return C_;
+	}
+}
@@ -22,6 +22,7 @@ package meka.core;
 
 import weka.core.DenseInstance;
 import weka.core.Instances;
+import weka.core.matrix.EigenvalueDecomposition;
 import weka.core.matrix.Matrix;
 
 import java.util.Arrays;
@@ -263,16 +264,12 @@ public class MatrixUtils {
 		return v;
 	}
 
+	/**
+	 * Subtract - A - B (element-wise), as a new matrix.
+	 * @see MatrixKernels#subtract(double[][], double[][], double[][])
+	 */
 	public static double[][] subtract(double[][] A, double[][] B) {
-		//if (A.length != bRows) // no can do
-		//	throw new IllegalArgumentException(" A.cols ("+aCols+") != B.rows ("+bRows+") ");
-		double[][] C = new double[A.length][A[0].length];
-		for (int i = 0; i < A.length; i++) {
-			for (int j = 0; j < A[i].length; j++ ) {
-				C[i][j] = A[i][j] - B[i][j];
-			}
-		}
-		return C;
+		return MatrixKernels.subtract(A, B, null);
 	}
 
 	/**
@@ -321,15 +318,10 @@ public class MatrixUtils {
 
 	/**
 	 * Sigmoid function applied to matrix (2D array)
+	 * @see MatrixKernels#sigma(double[][], double[][])
 	 */
 	public static final double[][] sigma(double A[][]) {
-		double X[][] = new double[A.length][A[0].length];
-		for(int i = 0; i < A.length; i++) {
-			for(int j = 0; j < A[i].length; j++) {
-				X[i][j] = sigma(A[i][j]);
-			}
-		}
-		return X;
+		return MatrixKernels.sigma(A, null);
 	}
 
 	/**
@@ -360,29 +352,17 @@ public class MatrixUtils {
 
 	/**
 	 * Derivative of the sigmoid function applied to Matrix
+	 * @see MatrixKernels#dsigma(double[][], double[][])
 	 */
 	public static final double[][] dsigma(double A[][]) {
-		double X[][] = new double[A.length][A[0].length];
-		for(int i = 0; i < A.length; i++) {
-			for(int j = 0; j < A[i].length; j++) {
-				X[i][j] = dsigma(A[i][j]);
-			}
-		}
-		return X;
+		return MatrixKernels.dsigma(A, null);
 	}
 
 	/**
 	 * Derivative of the sigmoid function applied to Jama Matrix
 	 */
 	public static final Jama.Matrix dsigma(Jama.Matrix A) {
-		double A_[][] = A.getArray();
-		double X[][] = new double[A_.length][A_[0].length];
-		for(int i = 0; i < A_.length; i++) {
-			for(int j = 0; j < A_[i].length; j++) {
-				X[i][j] = dsigma(A_[i][j]);
-			}
-		}
-		return new Jama.Matrix(X);
+		return new Jama.Matrix(dsigma(A.getArray()));
 	}
 
 	/**
@@ -501,40 +481,29 @@ public class MatrixUtils {
 		return new Jama.Matrix(threshold(M.getArray(), t));
 	}
 
+	/**
+	 * TransposeMultiply - A^T B, as a new matrix (A is not transposed).
+	 * @see MatrixKernels#transposeMultiply(double[][], double[][], double[][])
+	 */
 	public static double[][] transposeMultiply(double[][] A, double[][] B) {
-        double[][] At = getTranspose(A);
-        return multiply(At, B);
-    }
+		return MatrixKernels.transposeMultiply(A, B, null);
+	}
 
+	/**
+	 * MultiplyTranspose - A B^T, as a new matrix (B is not transposed).
+	 * @see MatrixKernels#multiplyTranspose(double[][], double[][], double[][])
+	 */
 	public static double[][] multiplyTranspose(double[][] A, double[][] B) {
-        double[][] Bt = getTranspose(B);
-        return multiply(A, Bt);
-    }
+		return MatrixKernels.multiplyTranspose(A, B, null);
+	}
 
 	/**
 	 * Multiply - multiply matrices A and B together.
+	 * @see MatrixKernels#multiply(double[][], double[][], double[][])
 	 */
 	public static double[][] multiply(final double[][] A, final double[][] B) {
-
-		int aRows = A.length;
-		int aCols = A[0].length;
-		int bRows = B.length;
-		int bCols = B[0].length;
-
-		if (aCols != bRows) // no can do
-			throw new IllegalArgumentException(" A.cols ("+aCols+") != B.rows ("+bRows+") ");
-
-		double C[][] = new double[aRows][bCols];
-
-		for (int i = 0; i < aRows; i++) {
-			for (int k = 0; k < aCols; k++) {
-				for(int j = 0; j < bCols; j++) {
-					C[i][j] += A[i][k] * B[k][j];
-				}
-			}
-		}
-        return C;
-    }
+		return MatrixKernels.multiply(A, B, null);
+	}
 
 	/**
 	 * Multiply - multiply vectors a and b together.
@@ -554,15 +523,13 @@ public class MatrixUtils {
         return C;
     }
 
+	/**
+	 * Add - A + B (element-wise), as a new matrix.
+	 * @see MatrixKernels#add(double[][], double[][], double[][])
+	 */
 	public static double[][] add(double[][] A, double[][] B) {
-        double[][] C = new double[A.length][A[0].length];
-        for (int i = 0; i < A.length; i++) {
-            for (int j = 0; j < A[i].length; j++ ) {
-                C[i][j] = A[i][j] + B[i][j];
-            }
-        }
-        return C;
-    }
+		return MatrixKernels.add(A, B, null);
+	}
 
 	public static double[][] add(double[][] A, double v) {
         double[][] C = new double[A.length][A[0].length];
@@ -662,4 +629,64 @@ public class MatrixUtils {
 		}
 		return new int[]{i_max,j_max};
 	}
+
+	/**
+	 * TopEigenvectors - the eigenvectors of the symmetric matrix C for its k largest eigenvalues.
+	 * <br>
+	 * For C = X^T X, these are the first k right singular vectors of X (up to sign), i.e., the V of the SVD of X, without
+	 * decomposing X itself.
+	 * @param	C	a symmetric (L x L) matrix
+	 * @param	k	the number of eigenvectors (at most L)
+	 * @return	an L x k matrix, with the eigenvectors as columns, by decreasing eigenvalue
+	 */
+	public static Matrix topEigenvectors(Matrix C, int k) {
+		int L = C.getRowDimension();
+		if (k < 0 || k > L)
+			throw new IllegalArgumentException("Number of eigenvectors must be between 0 and " + L + ": " + k);
+		EigenvalueDecomposition eig = C.eig();
+		final double lambda[] = eig.getRealEigenvalues();
+		double U[][] = eig.getV().getArray();
+		// (stable) sort by decreasing eigenvalue
+		Integer order[] = new Integer[L];
+		for(int j = 0; j < L; j++) {
+			order[j] = j;
+		}
+		Arrays.sort(order, (a, b) -> Double.compare(lambda[b], lambda[a]));
+		double V[][] = new double[L][k];
+		for(int i = 0; i < L; i++) {
+			for(int c = 0; c < k; c++) {
+				V[i][c] = U[i][order[c]];
+			}
+		}
+		return new Matrix(V);
+	}
+
+	/**
+	 * RandomizedTopEigenvectors - approximately, the eigenvectors of the symmetric positive semi-definite matrix C for
+	 * its k largest eigenvalues, by randomized subspace iteration (Halko, Martinsson and Tropp, 2011):
+	 * C is applied to k+oversampling random vectors (iterations+1 times, re-orthonormalized in between), and the
+	 * eigenvectors are taken from C projected onto the resulting subspace. This costs O(L^2 (k+oversampling) iterations)
+	 * rather than the O(L^3) of a full decomposition, and is accurate when the spectrum of C decays quickly beyond k.
+	 * @param	C				a symmetric positive semi-definite (L x L) matrix
+	 * @param	k				the number of eigenvectors (at most L)
+	 * @param	oversampling	the number of extra random vectors (e.g., 10)
+	 * @param	iterations		the number of power iterations (e.g., 4)
+	 * @param	r				random number generator (for the random vectors)
+	 * @return	an L x k matrix, with the eigenvectors as columns, by decreasing eigenvalue
+	 */
+	public static Matrix randomizedTopEigenvectors(Matrix C, int k, int oversampling, int iterations, Random r) {
+		int L = C.getRowDimension();
+		if (k < 0 || k > L)
+			throw new IllegalArgumentException("Number of eigenvectors must be between 0 and " + L + ": " + k);
+		int l = Math.min(k + Math.max(oversampling, 0), L);
+		Matrix Q = C.times(new Matrix(randn(L, l, r))).qr().getQ();
+		for(int t = 0; t < iterations; t++) {
+			Q = C.times(Q).qr().getQ();
+		}
+		// C ~ Q B Q^T, with the (l x l) B = Q^T C Q
+		Matrix B = Q.transpose().times(C).times(Q);
+		// (symmetrize the rounding errors away)
+		B = B.plus(B.transpose()).times(0.5);
+		return Q.times(topEigenvectors(B, k));
+	}
 }
@@ -0,0 +1,569 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+import weka.core.Utils;
+
+import java.io.Serializable;
+
+/**
+ * MetricAccumulator - Accumulates the (threshold-based) evaluation metrics of Metrics one prediction at a time,
+ * i.e., without having to keep all predictions in memory. Gives the same values as the corresponding Metrics.* functions
+ * (including their treatment of missing labels), as long as the predictions are added in the same order.
+ * <br>
+ * Multi-label: give the thresholds, and add the confidences (or the already thresholded 0/1 predictions).
+ * Multi-target: give no thresholds (null), and the confidences are rounded. Only the metrics that Metrics defines for
+ * multi-target data are available (Hamming, ZeroOne, Levenshtein, and per-label accuracy).
+ * <br>
+ * When adding confidences (multi-label), the ranking-based metrics (one error, rank loss, average precision) and the
+ * log losses are accumulated as well, from a single sort of each row.
+ * Ranking-based metrics and the Levenshtein distance are the expensive ones (per row), and can be switched off.
+ *
+ * @see Metrics
+ * @see Result#setAccumulator(MetricAccumulator)
+ */
+public class MetricAccumulator implements Serializable {
+
+	private static final long serialVersionUID = -3027446307049421963L;
+
+	/** the number of labels */
+	protected int L;
+
+	/** the thresholds (null for multi-target, i.e., rounding) */
+	protected double t[];
+
+	/** the number of rows */
+	protected int N = 0;
+
+	/** the number of rows that are not all-missing */
+	protected int N_valid = 0;
+
+	/** the expected number of rows that are not all-missing (for the limit of the log loss by D; 0 if not known) */
+	protected int N_expected = 0;
+
+	/** whether to accumulate the ranking-based metrics and log losses */
+	protected boolean ranking = true;
+
+	/** whether to accumulate the Levenshtein distance */
+	protected boolean levenshtein_ = true;
+
+	// example-based (summed over the rows which are not all-missing)
+	protected double accuracy = 0.0;
+	protected double hamming = 0.0;
+	protected double zeroOne = 0.0;
+	protected double harmonic = 0.0;
+	protected int N_harmonic = 0;
+	protected double f1 = 0.0;
+	protected double levenshtein = 0.0;
+
+	// ranking-based and log loss (over the rows which are not all-missing, and added with confidences)
+	protected int N_ranked = 0;
+	protected int oneError = 0;
+	protected double rankLoss = 0.0;
+	protected double avgPrecision = 0.0;
+	protected double coverage = 0.0;
+	protected double logLossL = 0.0;
+	protected double logLossD = 0.0;
+	protected int missing = 0;
+
+	// over all rows
+	protected double sumTrue = 0.0;
+	protected double sumPred = 0.0;
+	protected int empty = 0;
+
+	// label-based (note: tp, fp, fn on the raw values; the rest on the 'aligned' values, see Metrics.align)
+	protected long TP[], FP[], FN[];
+	protected long N_j[], err_j[];
+	protected long N0_j[], N1_j[], acc0_j[], acc1_j[];
+	protected double sumTrue_j[], sumPred_j[];
+
+	/**
+	 * MetricAccumulator - for L labels and thresholds t[] (null for multi-target data).
+	 */
+	public MetricAccumulator(int L, double t[]) {
+		this.L = L;
+		this.t = t;
+		TP = new long[L];
+		FP = new long[L];
+		FN = new long[L];
+		N_j = new long[L];
+		err_j = new long[L];
+		N0_j = new long[L];
+		N1_j = new long[L];
+		acc0_j = new long[L];
+		acc1_j = new long[L];
+		sumTrue_j = new double[L];
+		sumPred_j = new double[L];
+	}
+
+	/**
+	 * MetricAccumulator - for L labels and thresholds t[] (null for multi-target data), where N rows (which are not
+	 * all-missing) are expected; to get the log loss limited by D, i.e., log(N).
+	 */
+	public MetricAccumulator(int L, double t[], int N) {
+		this(L,t);
+		this.N_expected = N;
+	}
+
+	/** Whether to accumulate the ranking-based metrics and log losses (default: true; only when adding confidences). */
+	public void setRanking(boolean ranking) {
+		this.ranking = ranking;
+	}
+
+	/** Whether the ranking-based metrics and log losses are accumulated. */
+	public boolean getRanking() {
+		return ranking;
+	}
+
+	/** Whether to accumulate the Levenshtein distance (default: true). */
+	public void setLevenshtein(boolean levenshtein) {
+		this.levenshtein_ = levenshtein;
+	}
+
+	/** Whether the Levenshtein distance is accumulated. */
+	public boolean getLevenshtein() {
+		return levenshtein_;
+	}
+
+	/** The number of labels. */
+	public int getL() {
+		return L;
+	}
+
+	/** The thresholds (null for multi-target data). */
+	public double[] getThresholds() {
+		return t;
+	}
+
+	/** Whether this is a multi-label accumulator (i.e., with thresholds). */
+	public boolean isMultiLabel() {
+		return t != null;
+	}
+
+	/** The number of predictions added so far. */
+	public int numInstances() {
+		return N;
+	}
+
+	/**
+	 * Update - add the confidences rpred[] for the true values y[].
+	 */
+	public void update(int y[], double rpred[]) {
+		int ypred[] = new int[L];
+		for(int j = 0; j < L; j++) {
+			ypred[j] = (t != null) ? ((rpred[j] >= t[j]) ? 1 : 0) : (int)Math.round(rpred[j]);
+		}
+		update(y,ypred);
+		if (t != null && ranking)
+			updateRanking(y,rpred);
+	}
+
+	/**
+	 * UpdateRanking - add the ranking-based metrics and log losses for confidences rpred[] and true values y[].
+	 */
+	protected void updateRanking(int y[], double rpred[]) {
+
+		int m = 0;
+		for(int j = 0; j < L; j++) {
+			if (y[j] == -1)
+				m++;
+		}
+		missing += m;
+		if (m == L)
+			// all missing
+			return;
+
+		N_ranked++;
+
+		oneError += (int)Metrics.L_OneError(y,rpred);
+
+		double CL = Math.log((double)L);
+		double CD = Math.log((double)N_expected);
+		for(int j = 0; j < L; j++) {
+			if (y[j] == -1)
+				continue;
+			logLossL += Metrics.L_LogLoss(y[j],rpred[j],CL);
+			logLossD += Metrics.L_LogLoss(y[j],rpred[j],CD);
+		}
+
+		// align (as Metrics.align(y,rpred)), and sort once
+		int y_[] = new int[L - m];
+		double p_[] = new double[L - m];
+		int k = 0;
+		for(int j = 0; j < L; j++) {
+			if (y[j] == -1)
+				continue;
+			if (rpred[j] != -1.0 && !Double.isNaN(rpred[j])) {
+				y_[k] = y[j];
+				p_[k] = rpred[j];
+				k++;
+			}
+		}
+		int order[] = Utils.sort(p_);
+
+		rankLoss += Metrics.L_RankLoss(y_,order);
+
+		int r[] = MLUtils.predictionsToRanking(p_,order);
+		avgPrecision += Metrics.P_AveragePrecision(y_,r);
+		coverage += Metrics.L_Coverage(y_,r);
+	}
+
+	/**
+	 * Update - add the (thresholded) predictions ypred[] for the true values y[].
+	 */
+	public void update(int y[], int ypred[]) {
+
+		N++;
+
+		// over all rows
+		boolean none = true;
+		for(int j = 0; j < L; j++) {
+			sumTrue += y[j];
+			sumTrue_j[j] += y[j];
+			sumPred += ypred[j];
+			sumPred_j[j] += ypred[j];
+			if (ypred[j] > 0)
+				none = false;
+		}
+		if (none)
+			empty++;
+
+		// one pass over the labels: raw counts, and 'aligned' counts (missing true values are dropped,
+		// missing predictions are counted as a correct 0, as Metrics.align(y,ypred) does)
+		int aligned = 0, union = 0, inter = 0, err = 0;
+		int n[] = new int[2], acc[] = new int[2];
+		int tp = 0, fp = 0, fn = 0;
+		boolean binary = true;
+		for(int j = 0; j < L; j++) {
+			if (ypred[j] == 1) {
+				if (y[j] == 1) {
+					tp++;
+					TP[j]++;
+				}
+				else if (y[j] == 0) {
+					fp++;
+					FP[j]++;
+				}
+			}
+			else if (ypred[j] == 0 && y[j] == 1) {
+				fn++;
+				FN[j]++;
+			}
+			if (y[j] == -1)
+				continue;
+			int a = (ypred[j] == -1) ? 0 : y[j];
+			int b = (ypred[j] == -1) ? 0 : ypred[j];
+			aligned++;
+			N_j[j]++;
+			if (a != b) {
+				err++;
+				err_j[j]++;
+			}
+			if (a == 1 || b == 1)
+				union++;
+			if (a == 1 && b == 1)
+				inter++;
+			if (a == 0 || a == 1) {
+				n[a]++;
+				if (a == b)
+					acc[a]++;
+				if (a == 0) {
+					N0_j[j]++;
+					if (a == b)
+						acc0_j[j]++;
+				}
+				else {
+					N1_j[j]++;
+					if (a == b)
+						acc1_j[j]++;
+				}
+			}
+			else {
+				binary = false;
+			}
+		}
+
+		if (aligned == 0)
+			// all missing
+			return;
+
+		N_valid++;
+		accuracy += (union > 0) ? (double)inter / (double)union : 1.0;
+		hamming += (double)err / (double)aligned;
+		zeroOne += (err > 0) ? 1. : 0.;
+		if (levenshtein_)
+			levenshtein += Metrics.L_LevenshteinDistance(y,ypred);
+
+		if (binary) {
+			double h = 2. / ((1. / ((double)acc[0] / (double)n[0])) + (1. / ((double)acc[1] / (double)n[1])));
+			if (!Double.isNaN(h)) {
+				harmonic += h;
+				N_harmonic++;
+			}
+		}
+
+		f1 += F1(tp,fp,fn);
+	}
+
+	/** Precision from the counts (as Metrics.P_Precision). */
+	protected static double precision(double tp, double fp) {
+		if (tp == 0.0 && fp == 0.0)
+			return 0.0;
+		return tp / (tp + fp);
+	}
+
+	/** Recall from the counts (as Metrics.P_Recall). */
+	protected static double recall(double tp, double fn) {
+		if (tp == 0.0 && fn == 0.0)
+			return 0.0;
+		return tp / (tp + fn);
+	}
+
+	/** F1 from the counts (as Metrics.F1). */
+	protected static double F1(double tp, double fp, double fn) {
+		double p = precision(tp,fp);
+		double r = recall(tp,fn);
+		if ( p == 0.0 && r == 0.0)
+			return 0.0;
+		return 2. * p * r / (p + r);
+	}
+
+	/** As Metrics.P_Accuracy(Y,Ypred) (Jaccard index). Multi-label only. */
+	public double P_Accuracy() {
+		return accuracy / (double)N_valid;
+	}
+
+	/** As Metrics.L_Hamming(Y,Ypred). */
+	public double L_Hamming() {
+		return hamming / (double)N_valid;
+	}
+
+	/** As Metrics.P_Hamming(Y,Ypred). */
+	public double P_Hamming() {
+		return 1. - L_Hamming();
+	}
+
+	/** As Metrics.L_ZeroOne(Y,Ypred). */
+	public double L_ZeroOne() {
+		return zeroOne / (double)N_valid;
+	}
+
+	/** As Metrics.P_ExactMatch(Y,Ypred). */
+	public double P_ExactMatch() {
+		return 1. - L_ZeroOne();
+	}
+
+	/** As Metrics.P_Harmonic(Y,Ypred). Multi-label only. */
+	public double P_Harmonic() {
+		return harmonic / (double)N_harmonic;
+	}
+
+	/** As Metrics.L_LevenshteinDistance(Y,Ypred). */
+	public double L_LevenshteinDistance() {
+		if (N_valid == 0)
+			return Double.NaN;
+		return levenshtein / (double)N_valid;
+	}
+
+	/** As Metrics.L_OneError(Y,Rpred). Multi-label only. */
+	public double L_OneError() {
+		if (N_ranked == 0)
+			return Double.NaN;
+		return (double)oneError / (double)N_ranked;
+	}
+
+	/** As Metrics.L_RankLoss(Y,Rpred). Multi-label only. */
+	public double L_RankLoss() {
+		return rankLoss / (double)N_ranked;
+	}
+
+	/** As Metrics.P_AveragePrecision(Y,Rpred). Multi-label only. */
+	public double P_AveragePrecision() {
+		return avgPrecision / (double)N_ranked;
+	}
+
+	/** As Metrics.L_Coverage(Y,Rpred). Multi-label only. */
+	public double L_Coverage() {
+		return coverage / (double)N_ranked;
+	}
+
+	/** As Metrics.L_LogLossL(Y,Rpred). Multi-label only. */
+	public double L_LogLossL() {
+		if (N_ranked == 0)
+			return Double.NaN;
+		return logLossL / (((double)N_ranked * (double)L) - (double)missing);
+	}
+
+	/** As Metrics.L_LogLossD(Y,Rpred). Multi-label only, and only if the number of rows was given in advance. */
+	public double L_LogLossD() {
+		if (N_ranked == 0 || N_expected <= 0)
+			return Double.NaN;
+		return logLossD / (((double)N_ranked * (double)L) - (double)missing);
+	}
+
+	/** As Metrics.P_FmacroAvgD(Y,Ypred). Multi-label only. */
+	public double P_FmacroAvgD() {
+		if (N_valid == 0)
+			return Double.NaN;
+		return f1 / (double)N_valid;
+	}
+
+	/** The total number of true positives, false positives, and false negatives. */
+	protected double[] microCounts() {
+		double c[] = new double[3];
+		for(int j = 0; j < L; j++) {
+			c[0] += TP[j];
+			c[1] += FP[j];
+			c[2] += FN[j];
+		}
+		return c;
+	}
+
+	/** The number of labels that are not missing in every row. */
+	protected int numPresentLabels() {
+		int present = 0;
+		for(int j = 0; j < L; j++) {
+			if (N_j[j] > 0)
+				present++;
+		}
+		return present;
+	}
+
+	/** As Metrics.P_PrecisionMicro(Y,Ypred). Multi-label only. */
+	public double P_PrecisionMicro() {
+		if (numPresentLabels() == 0)
+			return Double.NaN;
+		double c[] = microCounts();
+		return precision(c[0],c[1]);
+	}
+
+	/** As Metrics.P_RecallMicro(Y,Ypred). Multi-label only. */
+	public double P_RecallMicro() {
+		if (numPresentLabels() == 0)
+			return Double.NaN;
+		double c[] = microCounts();
+		return recall(c[0],c[2]);
+	}
+
+	/** As Metrics.P_FmicroAvg(Y,Ypred). Multi-label only. */
+	public double P_FmicroAvg() {
+		if (numPresentLabels() == 0)
+			return Double.NaN;
+		double c[] = microCounts();
+		return F1(c[0],c[1],c[2]);
+	}
+
+	/** As Metrics.P_PrecisionMacro(Y,Ypred). Multi-label only. */
+	public double P_PrecisionMacro() {
+		double m = 0.0;
+		int present = 0;
+		for(int j = 0; j < L; j++) {
+			if (N_j[j] == 0)
+				continue;
+			present++;
+			m += precision(TP[j],FP[j]);
+		}
+		if (present == 0)
+			return Double.NaN;
+		return m / present;
+	}
+
+	/** As Metrics.P_RecallMacro(Y,Ypred). Multi-label only. */
+	public double P_RecallMacro() {
+		double m = 0.0;
+		int present = 0;
+		for(int j = 0; j < L; j++) {
+			if (N_j[j] == 0)
+				continue;
+			present++;
+			m += recall(TP[j],FN[j]);
+		}
+		if (present == 0)
+			return Double.NaN;
+		return m / present;
+	}
+
+	/** As Metrics.P_FmacroAvgL(Y,Ypred). Multi-label only. */
+	public double P_FmacroAvgL() {
+		double F[] = new double[L];
+		int present = 0;
+		for(int j = 0; j < L; j++) {
+			if (N_j[j] == 0)
+				continue;
+			present++;
+			if (TP[j] > 0) {
+				double prec = (double)TP[j] / ((double)TP[j]+(double)FP[j]);
+				double recall = (double)TP[j] / ((double)TP[j]+(double)FN[j]);
+				F[j] = 2 * ((prec*recall) / (prec+recall));
+			}
+		}
+		if (present == 0)
+			return Double.NaN;
+		return (double) A.sum(F) / (double) present;
+	}
+
+	/** As Metrics.P_Hamming(Y,Ypred,j). */
+	public double P_Hamming(int j) {
+		if (N_j[j] == 0)
+			return Double.NaN;
+		return 1. - (double)err_j[j] / (double)N_j[j];
+	}
+
+	/** As Metrics.P_Harmonic(Y,Ypred,j). Multi-label only. */
+	public double P_Harmonic(int j) {
+		double a0 = (double)acc0_j[j] / (double)N0_j[j];
+		double a1 = (double)acc1_j[j] / (double)N1_j[j];
+		return 2. / ((1. / a0) + (1. / a1));
+	}
+
+	/** As Metrics.P_Precision(Y,Ypred,j). Multi-label only. */
+	public double P_Precision(int j) {
+		if (N_j[j] == 0)
+			return Double.NaN;
+		return precision(TP[j],FP[j]);
+	}
+
+	/** As Metrics.P_Recall(Y,Ypred,j). Multi-label only. */
+	public double P_Recall(int j) {
+		if (N_j[j] == 0)
+			return Double.NaN;
+		return recall(TP[j],FN[j]);
+	}
+
+	/** As MLUtils.emptyVectors(Ypred). */
+	public double emptyVectors() {
+		return (double)empty / (double)N;
+	}
+
+	/** As MLUtils.labelCardinality(Y). */
+	public double labelCardinality() {
+		return sumTrue / (double)N;
+	}
+
+	/** As MLUtils.labelCardinality(Ypred). */
+	public double labelCardinalityPredicted() {
+		return sumPred / (double)N;
+	}
+
+	/** As MLUtils.labelCardinality(Y,j). */
+	public double labelCardinality(int j) {
+		return sumTrue_j[j] / (double)N;
+	}
+
+	/** As MLUtils.labelCardinality(Ypred,j). */
+	public double labelCardinalityPredicted(int j) {
+		return sumPred_j[j] / (double)N;
+	}
+}
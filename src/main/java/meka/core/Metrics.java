@@ -15,13 +15,11 @@
 
 package meka.core;
 
-import weka.classifiers.evaluation.ThresholdCurve;
-import weka.core.Instance;
+import weka.core.DenseInstance;
 import weka.core.Instances;
 import weka.core.Utils;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.Arrays;
 
 /**
  * Metrics.java - Evaluation Metrics. 
@@ -812,8 +810,7 @@ public abstract class Metrics {
                 missing ++;
 		continue;
 	    }
-	    if(Y[i][Utils.maxIndex(Rpred[i])] == 0)
-		one_error++;
+	    one_error += (int)L_OneError(Y[i],Rpred[i]);
 	}
 
         N-= missing;
@@ -825,6 +822,14 @@ public abstract class Metrics {
         
 	return (double)one_error/(double)N;
     }
+
+    /**
+     * OneError - 1 if the top-ranked label is not relevant, 0 otherwise (a single pass, no sorting needed).
+     */
+    public static double L_OneError(int y[], double rpred[]) {
+	// works with missing
+	return (y[Utils.maxIndex(rpred)] == 0) ? 1.0 : 0.0;
+    }
     
     public static double P_AveragePrecision(int Y[][], double Rpred[][]) {
 	// works with missing
@@ -882,39 +887,60 @@ public abstract class Metrics {
      */
     public static double P_AveragePrecision(int y[], int r[]) {
 	// works with missing
-        double avg_prec = 0;
-	
+	// O(m log m) for m relevant labels: sort the ranks of the relevant labels once, then 's'
+	// (the number of relevant labels ranked at or before 'j') is found by binary search
         int L = y.length;
 
-        List<Integer> ones = new ArrayList<Integer>();
+        int m = 0;
         for (int j = 0; j < L; j++) {
             if (y[j] == 1) {
-                ones.add(j);
+                m++;
             }
         }
 
-
-        
-        if (ones.size() <= 0) {
+        if (m <= 0) {
 	    return 1.0;
         }
 
-	for (int j : ones) {
+        int ranks[] = new int[m];
+        for (int j = 0, k = 0; j < L; j++) {
+            if (y[j] == 1) {
+                ranks[k++] = r[j];
+            }
+        }
+        Arrays.sort(ranks);
 
-            // 's' = the percentage of relevant labels ranked before 'j'
-	    double s = 0.0;
-	    for (int k : ones) {
-		if (r[k] <= r[j]) {
-		    s++; 
-		}
+        // summed in label order (as before), for numerically identical results
+        double avg_prec = 0;
+	for (int j = 0; j < L; j++) {
+	    if (y[j] != 1) {
+		continue;
 	    }
+            // 's' = the number of relevant labels ranked before (or with) 'j'
+	    double s = upperBound(ranks, r[j]);
             // 's' divided by the position of 'j'
 	    avg_prec += (s / (1+r[j]));
-
 	}
-	avg_prec /= ones.size();
+	avg_prec /= m;
 	return avg_prec;
     }
+
+    /**
+     * The number of values in the sorted array a[] that are &lt;= v.
+     */
+    private static int upperBound(int a[], int v) {
+	int lo = 0;
+	int hi = a.length;
+	while (lo < hi) {
+	    int mid = (lo + hi) >>> 1;
+	    if (a[mid] <= v) {
+		lo = mid + 1;
+	    } else {
+		hi = mid;
+	    }
+	}
+	return lo;
+    }
     //////////////////////////////////////////////////////////////////////////
     
     public static double L_RankLoss(int Y[][], double Rpred[][]) {
@@ -947,6 +973,8 @@ public abstract class Metrics {
     /**
      * Rank Loss - the average fraction of labels which are not correctly ordered.
      * Thanks to Noureddine Yacine NAIR BENREKIA for providing bug fix for this.
+     * A single pass over the ranking, O(L): each relevant label is misordered with respect to all irrelevant labels
+     * that come after it in r.
      * @param	y	0/1 labels         [0,   0,   1   ]
      * @param	r	ranking position   [1,   2,   0   ]
      * @return	Ranking Loss
@@ -955,72 +983,98 @@ public abstract class Metrics {
 	
 
 	int L = y.length;
-	ArrayList<Integer> tI = new ArrayList<Integer>();
-	ArrayList<Integer> fI = new ArrayList<Integer>();
+	int t = 0;
 	for (int j = 0; j < L; j++) {
 	    if (y[j] == 1) {
-		tI.add(j);
-	    } else {
-		fI.add(j);
+		t++;
 	    }
 	}
-
-	if (!tI.isEmpty() && !fI.isEmpty()) {
-	    int c = 0; 
-	    for (int k : tI) {
-		for (int l : fI) {
-		    if (position(k,r) < position(l,r)) {
-			c++;
-		    }
+	int f = L - t;
+
+	if (t > 0 && f > 0) {
+	    long c = 0;
+	    int f_remaining = f;
+	    for (int i = 0; i < L; i++) {
+		if (y[r[i]] == 1) {
+		    c += f_remaining;
+		} else {
+		    f_remaining--;
 		}
 	    }
-	    return (double) c / (double)(tI.size() * fI.size());
+	    return (double) c / (double)((long)t * (long)f);
 	} else {
 	    return 0.0;
 	}
     }
 
-    private static int position(int index, int r[]) {
-	int i = 0;
-	while (r[i]!=index)
-	    i++;
-	return i;
+    /**
+     * Coverage - how many steps are needed, on average, to go down the ranking in order to cover all relevant labels.
+     * Labels with equal confidence are counted pessimistically (see MLUtils.predictionsToRanking).
+     */
+    public static double L_Coverage(int Y[][], double Rpred[][]) {
+	// works with missing
+	int N = Y.length;
+	double loss = 0.0;
+	for(int i = 0; i < Y.length; i++) {
+	    if(allMissing(Y[i])){
+		N--;
+		continue;
+	    }
+
+	    loss += L_Coverage(Y[i],Rpred[i]);
+	}
+	return loss/(double)N;
+    }
+
+    /**
+     * Coverage - the (0-based) ranking position of the lowest ranked relevant label, for an instance.
+     */
+    public static double L_Coverage(int y[], double rpred[]) {
+	// works with missing
+        double[][] aligned = align(y,rpred);
+
+        return L_Coverage(toIntArray(aligned[0]), MLUtils.predictionsToRanking(aligned[1]));
+    }
+
+    /**
+     * Coverage - the (0-based) ranking position of the lowest ranked relevant label (0 if there are none).
+     * @param	y	0/1 labels         [0,   0,   1   ]
+     * @param	r	ranking position   [1,   2,   0   ] (see MLUtils.predictionsToRanking)
+     * @return	Coverage
+     */
+    public static double L_Coverage(int y[], int r[]) {
+	int c = 0;
+	for (int j = 0; j < y.length; j++) {
+	    if (y[j] == 1 && r[j] > c) {
+		c = r[j];
+	    }
+	}
+	return c;
     }
 
 
     /**
      * Helper function, returns macro AUROC (roc = true) or macro RPC (roc = false)
      */
-    private static double getMacro(int Y[][], double P[][], boolean roc){
+    private static double getMacro(CurveUtils.Curve curves[], boolean roc){
 
         // works with missing
-	int L = Y[0].length;
+	int L = curves.length;
 	double AUC[] = new double[L];
 
         int missing = 0;
         
 	for(int j = 0; j < L; j++) {
-	    if(allMissing(MatrixUtils.getCol(Y, j))){
+	    // if there are only missing values in a column, curves[j] is null
+	    if(curves[j] == null){
                 missing ++;
 		continue;
 	    }
-	    ThresholdCurve curve = new ThresholdCurve();
-
-            double[][] aligned = align(MatrixUtils.getCol(Y, j),
-                                       MatrixUtils.getCol(P, j));
-            
-	    Instances result =
-                curve.getCurve(MLUtils.toWekaPredictions(toIntArray(aligned[0]),
-                                                         aligned[1]));
             if (roc) {
-                AUC[j] = ThresholdCurve.getROCArea(result);
+                AUC[j] = curves[j].areaUnderROC();
             } else {
-                AUC[j] = ThresholdCurve.getPRCArea(result);
+                AUC[j] = curves[j].areaUnderPRC();
             }
-//            System.out.println(Arrays.toString(MatrixUtils.getCol(Y, j)));
-//            System.out.println(Arrays.toString(MatrixUtils.getCol(P, j)));
-//
-//            System.out.println(AUC[j]);
         }
 
         L -= missing;
@@ -1036,48 +1090,61 @@ public abstract class Metrics {
 
     /** Calculate AUPRC: Area Under the Precision-Recall curve. */
     public static double P_macroAUPRC(int Y[][], double P[][]) {
-	return getMacro(Y,P,false);
+	return P_macroAUPRC(CurveUtils.getCurves(Y,P,ThreadUtils.SEQUENTIAL));
+    }
+
+    /** Calculate AUPRC: Area Under the Precision-Recall curve, from the curves of each label (see CurveUtils.getCurves). */
+    public static double P_macroAUPRC(CurveUtils.Curve curves[]) {
+	return getMacro(curves,false);
     }
 
     /** Calculate AUROC: Area Under the ROC curve. */
     public static double P_macroAUROC(int Y[][], double P[][]) {
-        return getMacro(Y,P,true);
+        return P_macroAUROC(CurveUtils.getCurves(Y,P,ThreadUtils.SEQUENTIAL));
+    }
+
+    /** Calculate AUROC: Area Under the ROC curve, from the curves of each label (see CurveUtils.getCurves). */
+    public static double P_macroAUROC(CurveUtils.Curve curves[]) {
+        return getMacro(curves,true);
     }
 
     /** Get Data for Plotting PR and ROC curves. */
     public static Instances curveDataMicroAveraged(int Y[][], double P[][]) {
+	return curveDataMicroAveraged(Y,P,0);
+    }
+
+    /** Get Data for Plotting PR and ROC curves, with at most 'maxPoints' points (&lt;= 0 for all of them). */
+    public static Instances curveDataMicroAveraged(int Y[][], double P[][], int maxPoints) {
 	//works with missing
 	
 	int y[] = MatrixUtils.flatten(Y);
 	double p[] = MatrixUtils.flatten(P);
 
-	double[][] aligned = align(y, p);
-
-	y = toIntArray(aligned[0]);
-	p = aligned[1];
-	
-	ThresholdCurve curve = new ThresholdCurve();
-	return curve.getCurve(MLUtils.toWekaPredictions(y,p));
+	CurveUtils.Curve curve = CurveUtils.getCurve(y,p);
+	return (curve == null) ? null : curve.downsample(maxPoints).toInstances();
     }
 
     /** Get Data for Plotting PR and ROC curves. */
     public static Instances curveDataMacroAveraged(int Y[][], double P[][]) {
+	return curveDataMacroAveraged(CurveUtils.getCurves(Y,P,ThreadUtils.SEQUENTIAL));
+    }
+
+    /** Get Data for Plotting PR and ROC curves, from the curves of each label (see CurveUtils.getCurves). */
+    public static Instances curveDataMacroAveraged(CurveUtils.Curve curves[]) {
 	
 	// Note: 'Threshold' contains the probability threshold that gives rise to the previous performance values.
 
-	Instances curveData[] = curveData(Y,P);
-
-	int L = curveData.length;
+	int L = curves.length;
 
 	int noNullIndex = -1;
 
 	
-	for (int i = 0; i < curveData.length; i++) {
-	    if (curveData[i] == null) {
+	for (int i = 0; i < curves.length; i++) {
+	    if (curves[i] == null) {
 		L--;
 	    } else {
 		if (noNullIndex == -1) {
-		    // checking for the first curveData that is not null (=does not consist of
+		    // checking for the first curve that is not null (=does not consist of
 		    // only missing values or 0s)
 		    noNullIndex = i;
 		}
@@ -1088,80 +1155,65 @@ public abstract class Metrics {
 	}
 
 	
-	Instances avgCurve = new Instances(curveData[noNullIndex],0);
+	Instances avgCurve = CurveUtils.makeHeader();
 	int D = avgCurve.numAttributes();
 
 	for (double t = 0.0; t < 1.; t+=0.01) {
-	    Instance x = (Instance)curveData[noNullIndex].instance(0).copy();
-	    //System.out.println("x1\n"+x);
+	    double x[] = curves[noNullIndex].values(0);
 	    boolean firstloop = true;
 	    for(int j = 0; j < L; j++) {
 
-		// if there are only missing values in a column, curveData[j] is null
+		// if there are only missing values in a column, curves[j] is null
 		
-		if (curveData[j] == null) {
+		if (curves[j] == null) {
 		    continue;
 		}
 
-		int i = ThresholdCurve.getThresholdInstance(curveData[j],t);
+		double v[] = curves[j].values(curves[j].thresholdIndex(t));
 		if (firstloop) {
 		    // reset
 		    for (int a = 0; a < D; a++) {
-			x.setValue(a,curveData[j].instance(i).value(a) * 1./L);
+			x[a] = v[a] * 1./L;
 		    }
 		    firstloop = false;
 		}
 		else {
 		    // add
 		    for (int a = 0; a < D; a++) {
-			double v = x.value(a);
-			x.setValue(a,v + curveData[j].instance(i).value(a) * 1./L);
+			x[a] = x[a] + v[a] * 1./L;
 		    }
 		}
 	    }
-	    //System.out.println("x2\n"+x);
-	    avgCurve.add(x);
+	    avgCurve.add(new DenseInstance(1.0, x));
 	}
 
-	/*
-	  System.out.println(avgCurve);
-	  System.exit(1);
-
-	  // Average everything
-	  for (int i = 0; i < avgCurve.numInstances(); i++) {
-	  for(int j = 0; j < L; j++) {
-	  for (int a = 0; a < D; a++) {
-	  double o = avgCurve.instance(i).value(a);
-	  avgCurve.instance(i).setValue(a, o / L);
-	  }
-	  }
-	  }
-	*/
 	return avgCurve;
     }
 
     /** Get Data for Plotting PR and ROC curves. */
     public static Instances curveData(int y[], double p[]) {
 	// works with missing
-	double[][] aligned = align(y, p);
-
-	y = toIntArray(aligned[0]);
-	p = aligned[1];
-
-
-	
-	ThresholdCurve curve = new ThresholdCurve();
-	return curve.getCurve(MLUtils.toWekaPredictions(y,p));
+	CurveUtils.Curve curve = CurveUtils.getCurve(y,p);
+	return (curve == null) ? null : curve.toInstances();
     }
 
     /** Get Data for Plotting PR and ROC curves. */
     public static Instances[] curveData(int Y[][], double P[][]) {
+	return curveData(CurveUtils.getCurves(Y,P,ThreadUtils.SEQUENTIAL),0);
+    }
+
+    /** 
+     * Get Data for Plotting PR and ROC curves, from the curves of each label (see CurveUtils.getCurves), 
+     * with at most 'maxPoints' points per label (&lt;= 0 for all of them).
+     */
+    public static Instances[] curveData(CurveUtils.Curve curves[], int maxPoints) {
 	// works with missing
-	int L = Y[0].length;
+	int L = curves.length;
 	Instances curveData[] = new Instances[L];
 	for(int j = 0; j < L; j++) {
-	    Instances cd = curveData(MatrixUtils.getCol(Y, j), MatrixUtils.getCol(P, j));
-	    curveData[j] = cd; 
+	    if (curves[j] != null) {
+		curveData[j] = curves[j].downsample(maxPoints).toInstances();
+	    }
 	}
 	return curveData;
     }
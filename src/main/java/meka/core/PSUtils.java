@@ -16,8 +16,10 @@
 package meka.core;
 
 import weka.core.Attribute;
+import weka.core.DenseInstance;
 import weka.core.Instance;
 import weka.core.Instances;
+import weka.core.SparseInstance;
 import weka.core.Utils;
 
 import java.util.*;
@@ -60,7 +62,7 @@ public abstract class PSUtils {
 		Set<LabelSet> subsets = new HashSet<LabelSet>();
 		for(LabelSet s : set) {
 				// is it a subset?
-				int m = LabelSet.subset(s.indices,y.indices);
+				int m = s.subsetof(y);
 				if (m > 0) {
 					// it is!
 					subsets.add(s);
@@ -76,7 +78,7 @@ public abstract class PSUtils {
 		SortedSet<LabelSet> subsets = new TreeSet<LabelSet>(cmp);
 		for(LabelSet s : set) {
 				// is it a subset?
-				int m = LabelSet.subset(s.indices,y.indices);
+				int m = s.subsetof(y);
 				if (m > 0) {
 					// it is!
 					subsets.add(s);
@@ -207,7 +209,8 @@ public abstract class PSUtils {
 
 		for(int i = 0; i < D.numInstances(); i++) {
 			LabelSet m = new LabelSet(MLUtils.toSubIndicesSet(D.instance(i), indices)); 
-			map.put(m, map.containsKey(m) ? map.get(m) + 1 : 1);
+			Integer c = map.get(m);
+			map.put(m, c == null ? 1 : c+1);
 		}
 		return map;
 	}
@@ -291,6 +294,60 @@ public abstract class PSUtils {
 	}
 
 
+	/**
+	 * DecodeMetaLabels - decode (once) the label indices encoded in each value of a PS/LC class attribute.
+	 * Values that cannot be decoded are mapped to the empty set.
+	 * @param	classAttribute	the class attribute of a PS/LC template, with values e.g., "[]", "[1,3]", "[2]"
+	 * @return	the label indices of each value, e.g., [[],[1,3],[2]]
+	 */
+	public static int[][] decodeMetaLabels(Attribute classAttribute) {
+		int meta_labels[][] = new int[classAttribute.numValues()][];
+		for(int k = 0; k < meta_labels.length; k++) {
+			try {
+				meta_labels[k] = MLUtils.toIntArray(classAttribute.value(k));
+			} catch(Exception e) {
+				meta_labels[k] = new int[]{};
+			}
+		}
+		return meta_labels;
+	}
+
+	/**
+	 * Convert Distribution - Given the posterior across combinations, return the labels of the most likely one.
+	 * @param	p			the posterior of the super classes (combinations), e.g., P([1,3],[2]) = [1,0]
+	 * @param	L 			the number of labels
+	 * @param	meta_labels	the decoded class values, e.g., [[1,3],[2]]
+	 * @return	the distribution across labels, e.g., P(1,2,3) = [1,0,1]
+	 * @see		PSUtils#decodeMetaLabels(Attribute)
+	 */
+	public static final double[] recombination(double p[], int L, int meta_labels[][]) {
+		double y[] = new double[L];
+		for(int j : meta_labels[Utils.maxIndex(p)]) {
+			y[j] = 1.0;
+		}
+		return y;
+	}
+
+	/**
+	 * Convert Distribution - Given the posterior across combinations, return the distribution across labels,
+	 * i.e., the product of the (sparse) label-by-combination matrix with 'p'.
+	 * @param	p			the posterior of the super classes (combinations), e.g., P([1,3],[2]) = [0.3,0.7]
+	 * @param	L 			the number of labels
+	 * @param	meta_labels	the decoded class values, e.g., [[1,3],[2]]
+	 * @return	the distribution across labels, e.g., P(1,2,3) = [0.3,0.7,0.3]
+	 * @see		PSUtils#decodeMetaLabels(Attribute)
+	 */
+	public static final double[] recombination_t(double p[], int L, int meta_labels[][]) {
+		double y[] = new double[L];
+		for(int k = 0; k < p.length; k++) {
+			double p_k = p[k];
+			for(int j : meta_labels[k]) {
+				y[j] += p_k;
+			}
+		}
+		return y;
+	}
+
 	public static final LabelSet[] makeLabelSetMap(Instances T) {
 		int L_ = 4;
 		return new LabelSet[L_];
@@ -357,11 +414,39 @@ public abstract class PSUtils {
 	 * Convert a multi-label instance into a multi-class instance, according to a template.
 	 */
 	public static Instance convertInstance(Instance x, int L, Instances template) {
-		Instance x_ = (Instance) x.copy(); 
-		x_.setDataset(null);
-		for (int i = 0; i < L; i++)
-			x_.deleteAttributeAt(0);
-		x_.insertAttributeAt(0);
+		Instance x_;
+		if (x.getClass() == DenseInstance.class) {
+			// [y_1,...,y_L,x_1,...,x_d] -> [?,x_1,...,x_d], in one copy
+			int d = x.numAttributes() - L;
+			double v[] = new double[d + 1];
+			v[0] = Utils.missingValue();
+			for(int i = 0; i < d; i++) {
+				v[i + 1] = x.value(L + i);
+			}
+			x_ = new DenseInstance(x.weight(), v);
+		}
+		else if (x.getClass() == SparseInstance.class) {
+			// shift the (sparse) values of the attributes, skipping the labels
+			int n = x.numValues();
+			int p = 0;
+			while (p < n && x.index(p) < L)
+				p++;
+			double v[] = new double[n - p + 1];
+			int indices[] = new int[n - p + 1];
+			v[0] = Utils.missingValue();
+			for(int i = 1; p < n; i++, p++) {
+				v[i] = x.valueSparse(p);
+				indices[i] = x.index(p) - L + 1;
+			}
+			x_ = new SparseInstance(x.weight(), v, indices, x.numAttributes() - L + 1);
+		}
+		else {
+			x_ = (Instance) x.copy(); 
+			x_.setDataset(null);
+			for (int i = 0; i < L; i++)
+				x_.deleteAttributeAt(0);
+			x_.insertAttributeAt(0);
+		}
 		x_.setDataset(template);
 		return x_;
 	}
@@ -23,15 +23,22 @@ import weka.core.Utils;
 
 import java.io.BufferedWriter;
 import java.io.FileWriter;
+import java.io.IOException;
+import java.io.ObjectInputStream;
 import java.io.PrintWriter;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Set;
 
 /**
  * Result - Stores predictions alongside true labels, for evaluation. 
+ * The predictions and true labels are stored as one array per instance (in the lists predictions and actuals), or, if set
+ * (see #setCompact(boolean)), in compact (block-wise) matrices, see ConfidenceMatrix and LabelMatrix.
+ * Optionally, a MetricAccumulator is updated with every result added; in which case it is also possible not to store
+ * the individual predictions at all (and so evaluate on very large test sets with bounded memory).
  * For more on the evaluation and threshold selection implemented here; see: 
  * <p>
  * Jesse Read, Bernhard Pfahringer, Geoff Holmes, Eibe Frank. <i>Classifier Chains for Multi-label Classification</i>. Machine Learning Journal. Springer (2011).<br>
@@ -47,8 +54,10 @@ public class Result implements Serializable {
 	/** The number of label (target) variables in the problem */
 	public int L = 0;
 
+	/** the prediction confidences of each instance (null if stored compactly, see #setCompact(boolean)) */
 	public ArrayList<double[]> predictions = null;
 	// TODO, store in sparse fashion with either LabelSet or LabelVector
+	/** the true values of each instance (null if stored compactly, see #setCompact(boolean)) */
 	public ArrayList<int[]> actuals = null;
 
 	public HashMap<String,String> info = new LinkedHashMap<String,String>();  // stores general dataset/classifier info
@@ -56,6 +65,21 @@ public class Result implements Serializable {
 	public HashMap<String,Object> vals = new LinkedHashMap<String,Object>();  // stores non-predictive evaluation stats
 	public HashMap<String,String> model = new LinkedHashMap<String,String>(); // stores the model itself
 
+	/** updated with each result added (null if none) */
+	protected MetricAccumulator accumulator = null;
+
+	/** whether to store the individual predictions and true values */
+	protected boolean storePredictions = true;
+
+	/** the prediction confidences of each instance, if stored compactly (otherwise null) */
+	protected ConfidenceMatrix compactPredictions = null;
+
+	/** the true values of each instance, if stored compactly (otherwise null) */
+	protected LabelMatrix compactActuals = null;
+
+	/** the number of values (instances x labels) from which on Evaluation stores the predictions and true values compactly */
+	public static final long COMPACT_SIZE = 1000000L;
+
 	public Result() {
 		predictions = new ArrayList<double[]>();
 		actuals = new ArrayList<int[]>();
@@ -73,9 +97,83 @@ public class Result implements Serializable {
 		this.L = L;
 	}
 
+	/**
+	 * ReadObject - the fields added since a Result was first serialized (accumulator, storePredictions and the compact
+	 * storage) are set to their defaults when reading an older Result.
+	 */
+	@SuppressWarnings("unchecked")
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		ObjectInputStream.GetField fields = in.readFields();
+		L = fields.get("L", 0);
+		predictions = (ArrayList<double[]>)fields.get("predictions", null);
+		actuals = (ArrayList<int[]>)fields.get("actuals", null);
+		info = (HashMap<String,String>)fields.get("info", null);
+		output = (HashMap<String,Object>)fields.get("output", null);
+		vals = (HashMap<String,Object>)fields.get("vals", null);
+		model = (HashMap<String,String>)fields.get("model", null);
+		accumulator = (MetricAccumulator)fields.get("accumulator", null);
+		storePredictions = fields.get("storePredictions", true);
+		compactPredictions = (ConfidenceMatrix)fields.get("compactPredictions", null);
+		compactActuals = (LabelMatrix)fields.get("compactActuals", null);
+	}
+
+	/**
+	 * SetCompact - Whether to store the predictions and true values compactly, in a ConfidenceMatrix and LabelMatrix,
+	 * rather than as one array per instance in the lists predictions and actuals (which are then null). Any results
+	 * already stored are moved over. When compact, rows are copied in by addResult, and copied out by rowConfidence
+	 * and rowTrue (so modifying a row returned does not change the stored one).
+	 */
+	public void setCompact(boolean compact) {
+		if (compact && compactPredictions == null) {
+			compactPredictions = new ConfidenceMatrix(L);
+			compactActuals = new LabelMatrix(L);
+			compactPredictions.addAll(predictions);
+			compactActuals.addAll(actuals);
+			predictions = null;
+			actuals = null;
+		}
+		else if (!compact && compactPredictions != null) {
+			predictions = new ArrayList<double[]>(compactPredictions);
+			actuals = new ArrayList<int[]>(compactActuals);
+			compactPredictions = null;
+			compactActuals = null;
+		}
+	}
+
+	/**
+	 * IsCompactSize - Whether the predictions and true values of N instances with L labels are many enough (at least
+	 * COMPACT_SIZE values) to be stored compactly, see #setCompact(boolean).
+	 */
+	public static boolean isCompactSize(int N, int L) {
+		return (long)N * L >= COMPACT_SIZE;
+	}
+
+	/**
+	 * IsCompact - Whether the predictions and true values are stored compactly, see #setCompact(boolean).
+	 */
+	public boolean isCompact() {
+		return compactPredictions != null;
+	}
+
+	/**
+	 * GetPredictions - The prediction confidences of each instance, either the list predictions, or the compact
+	 * matrix (see #setCompact(boolean)). Only to be read; use addResult to add to it.
+	 */
+	public List<double[]> getPredictions() {
+		return (compactPredictions != null) ? compactPredictions : predictions;
+	}
+
+	/**
+	 * GetActuals - The true values of each instance, either the list actuals, or the compact matrix (see
+	 * #setCompact(boolean)). Only to be read; use addResult to add to it.
+	 */
+	public List<int[]> getActuals() {
+		return (compactActuals != null) ? compactActuals : actuals;
+	}
+
 	/** The number of value-prediction pairs stared in this Result */
 	public int size() {
-		return predictions.size();
+		return getPredictions().size();
 	}
 
 	/**
@@ -117,23 +215,64 @@ public class Result implements Serializable {
 	 * @param real  an instance containing the true label values
 	 */
 	public void addResult(double pred[], Instance real) {
-		predictions.add(pred);
-		actuals.add(MLUtils.toIntArray(real,pred.length));
-		
+		addResult(pred, MLUtils.toIntArray(real,pred.length));
+	}
+
+	/**
+	 * AddResult - Add an entry.
+	 * @param pred	predictions
+	 * @param y		the true label values (as given by MLUtils.toIntArray(real,L))
+	 */
+	public void addResult(double pred[], int y[]) {
+		if (accumulator != null)
+			accumulator.update(y,pred);
+		if (storePredictions) {
+			getPredictions().add(pred);
+			getActuals().add(y);
+		}
+	}
+
+	/**
+	 * SetAccumulator - Set an accumulator to update with every result added from now on (null for none).
+	 */
+	public void setAccumulator(MetricAccumulator accumulator) {
+		this.accumulator = accumulator;
+	}
+
+	/**
+	 * GetAccumulator - The accumulator updated with every result added (null if none).
+	 */
+	public MetricAccumulator getAccumulator() {
+		return accumulator;
+	}
+
+	/**
+	 * SetStorePredictions - Whether to store the individual predictions and true values (true by default).
+	 * If not, only the accumulator (if any) is updated, and metrics can only be taken from there.
+	 */
+	public void setStorePredictions(boolean store) {
+		this.storePredictions = store;
+	}
+
+	/**
+	 * GetStorePredictions - Whether the individual predictions and true values are stored.
+	 */
+	public boolean getStorePredictions() {
+		return storePredictions;
 	}
 
 	/**
 	 * RowActual - Retrieve the true values for the i-th instance.
 	 */
 	public int[] rowTrue(int i) {
-		return actuals.get(i);
+		return getActuals().get(i);
 	}
 
 	/**
 	 * RowConfidence - Retrieve the prediction confidences for the i-th instance.
 	 */
 	public double[] rowConfidence(int i) {
-		return predictions.get(i);
+		return getPredictions().get(i);
 	}
 
 	/**
@@ -163,6 +302,8 @@ public class Result implements Serializable {
 	 * Similar to M.getCol(Y,j)
 	 */
 	public double[] colConfidence(int j) {
+		if (compactPredictions != null)
+			return compactPredictions.getColumn(j);
 		double y[] = new double[predictions.size()];
 		for(int i = 0; i < predictions.size(); i++) {
 			y[i] = rowConfidence(i)[j];
@@ -174,8 +315,8 @@ public class Result implements Serializable {
 	 * AllPredictions - Retrieve all prediction confidences in an L * N matrix (2d array).
 	 */
 	public double[][] allPredictions() {
-		double Y[][] = new double[predictions.size()][];
-		for(int i = 0; i < predictions.size(); i++) {
+		double Y[][] = new double[size()][];
+		for(int i = 0; i < Y.length; i++) {
 			Y[i] = rowConfidence(i);
 		}
 		return Y;
@@ -185,8 +326,8 @@ public class Result implements Serializable {
 	 * AllPredictions - Retrieve all predictions (according to threshold t) in an L * N matrix.
 	 */
 	public int[][] allPredictions(double t) {
-		int Y[][] = new int[predictions.size()][];
-		for(int i = 0; i < predictions.size(); i++) {
+		int Y[][] = new int[size()][];
+		for(int i = 0; i < Y.length; i++) {
 			Y[i] = rowPrediction(i,t);
 		}
 		return Y;
@@ -196,8 +337,8 @@ public class Result implements Serializable {
 	 * AllTrueValues - Retrieve all true values in an L x N matrix.
 	 */
 	public int[][] allTrueValues() {
-		int Y[][] = new int[actuals.size()][];
-		for(int i = 0; i < actuals.size(); i++) {
+		int Y[][] = new int[getActuals().size()][];
+		for(int i = 0; i < Y.length; i++) {
 			Y[i] = rowTrue(i);
 		}
 		return Y;
@@ -282,12 +423,27 @@ public class Result implements Serializable {
 	 * GetStats.
 	 * Return the evaluation statistics given predictions and real values stored in r.
 	 * In the multi-label case, a Threshold category must exist, containing a string defining the type of threshold we want to use/calibrate.
+	 * If the predictions are not stored, the statistics are taken from the accumulator (without the curve-based ones).
 	 */
 	public static HashMap<String,Object> getStats(Result r, String vop) {
+		return getStats(r, vop, ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * GetStats - As getStats(r,vop), with up to 'numThreads' threads for the curve-based statistics (-1 = # of
+	 * CPUs/cores; 0/1 = sequential execution).
+	 */
+	public static HashMap<String,Object> getStats(Result r, String vop, int numThreads) {
+		if (!r.getStorePredictions() && r.getAccumulator() != null) {
+			if (r.getAccumulator().isMultiLabel())
+				return MLEvalUtils.getMLStats(r.getAccumulator(), vop);
+			else
+				return MLEvalUtils.getMTStats(r.getAccumulator(), vop);
+		}
 		if (r.getInfo("Type").startsWith("MT"))
 			return MLEvalUtils.getMTStats(r.allPredictions(),r.allTrueValues(), vop);
 		else 
-			return MLEvalUtils.getMLStats(r.allPredictions(), r.allTrueValues(), r.getInfo("Threshold"), vop);
+			return MLEvalUtils.getMLStats(r.allPredictions(), r.allTrueValues(), r.getInfo("Threshold"), vop, numThreads);
 	}
 
 	/**
@@ -381,7 +537,7 @@ public class Result implements Serializable {
 	 */
 	public static String getResultAsString(Result result, int adp) {
 		StringBuilder sb = new StringBuilder();
-		double N = (double)result.predictions.size();
+		double N = (double)result.size();
 		sb.append("|==== PREDICTIONS (N="+N+") =====>\n");
 		for(int i = 0; i < N; i++) {
 			sb.append("|");
@@ -391,14 +547,14 @@ public class Result implements Serializable {
 			//System.out.println("|"+A.toString(result.rowPrediction(i)));
 			//System.out.println("|"+MLUtils.toIndicesSet(result.rowPrediction(i)));
 			if (adp == 0 && !result.getInfo("Type").equalsIgnoreCase("MT")) {
-				LabelSet y = new LabelSet(MLUtils.toIndicesSet(result.actuals.get(i)));
+				LabelSet y = new LabelSet(MLUtils.toIndicesSet(result.rowTrue(i)));
 				sb.append(y).append(" ");
 				LabelSet ypred = new LabelSet(MLUtils.toIndicesSet(result.rowPrediction(i)));
 				sb.append(ypred).append("\n");
 			}
 			else {
-				sb.append(A.toString(result.actuals.get(i))).append(" ");
-				sb.append(A.toString(result.predictions.get(i),adp)).append("\n");
+				sb.append(A.toString(result.rowTrue(i))).append(" ");
+				sb.append(A.toString(result.rowConfidence(i),adp)).append("\n");
 			}
 		}
 		sb.append("|==============================<\n");
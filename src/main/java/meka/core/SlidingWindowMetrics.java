@@ -0,0 +1,248 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import java.io.Serializable;
+
+/**
+ * SlidingWindowMetrics - The example-based evaluation metrics over the last W predictions of a stream, updated one
+ * prediction at a time. Each row's contribution is kept in a ring buffer, so memory is O(W) (independent of L and the
+ * length of the stream), and each update costs O(L).
+ * <br>
+ * The values are those of MetricAccumulator (i.e., of the corresponding Metrics.* functions), computed on the rows
+ * in the window. Multi-label: give the thresholds. Multi-target: give no thresholds (null), and the confidences are
+ * rounded; only the Hamming and ZeroOne based metrics are available.
+ * <br>
+ * The running sums are recomputed from the buffer once per W updates, so rounding errors do not build up over
+ * (very) long streams.
+ *
+ * @see MetricAccumulator
+ */
+public class SlidingWindowMetrics implements Serializable {
+
+	private static final long serialVersionUID = 4262188003460919306L;
+
+	/** the number of labels */
+	protected int L;
+
+	/** the thresholds (null for multi-target, i.e., rounding) */
+	protected double t[];
+
+	/** the window size */
+	protected int W;
+
+	/** the number of rows added so far */
+	protected long N = 0;
+
+	// the contributions of the rows in the window (as a ring buffer, at position N % W)
+	protected boolean valid[];
+	protected double accuracy[];
+	protected double hamming[];
+	protected double zeroOne[];
+	protected double f1[];
+	protected int tp[], fp[], fn[];
+
+	// their sums
+	protected int sumValid = 0;
+	protected double sumAccuracy = 0.0;
+	protected double sumHamming = 0.0;
+	protected double sumZeroOne = 0.0;
+	protected double sumF1 = 0.0;
+	protected long sumTP = 0, sumFP = 0, sumFN = 0;
+
+	/**
+	 * SlidingWindowMetrics - over the last W rows, for L labels and thresholds t[] (null for multi-target data).
+	 */
+	public SlidingWindowMetrics(int L, double t[], int W) {
+		if (W < 1)
+			throw new IllegalArgumentException("Window size must be at least 1: " + W);
+		this.L = L;
+		this.t = t;
+		this.W = W;
+		valid = new boolean[W];
+		accuracy = new double[W];
+		hamming = new double[W];
+		zeroOne = new double[W];
+		f1 = new double[W];
+		tp = new int[W];
+		fp = new int[W];
+		fn = new int[W];
+	}
+
+	/** The window size. */
+	public int getWindowSize() {
+		return W;
+	}
+
+	/** Whether these are multi-label metrics (i.e., with thresholds). */
+	public boolean isMultiLabel() {
+		return t != null;
+	}
+
+	/** The number of rows currently in the window. */
+	public int numInstances() {
+		return (int)Math.min(N, W);
+	}
+
+	/** The number of rows added so far (in total). */
+	public long numInstancesSeen() {
+		return N;
+	}
+
+	/**
+	 * Update - add the confidences rpred[] for the true values y[] (dropping the oldest row, if the window is full).
+	 */
+	public void update(int y[], double rpred[]) {
+		int ypred[] = new int[L];
+		for(int j = 0; j < L; j++) {
+			ypred[j] = (t != null) ? ((rpred[j] >= t[j]) ? 1 : 0) : (int)Math.round(rpred[j]);
+		}
+		update(y,ypred);
+	}
+
+	/**
+	 * Update - add the (thresholded) predictions ypred[] for the true values y[] (dropping the oldest row, if the window is full).
+	 */
+	public void update(int y[], int ypred[]) {
+
+		int i = (int)(N % W);
+		if (N >= W)
+			remove(i);
+
+		// as MetricAccumulator.update(y,ypred)
+		int aligned = 0, union = 0, inter = 0, err = 0;
+		int tp_ = 0, fp_ = 0, fn_ = 0;
+		for(int j = 0; j < L; j++) {
+			if (ypred[j] == 1) {
+				if (y[j] == 1)
+					tp_++;
+				else if (y[j] == 0)
+					fp_++;
+			}
+			else if (ypred[j] == 0 && y[j] == 1) {
+				fn_++;
+			}
+			if (y[j] == -1)
+				continue;
+			int a = (ypred[j] == -1) ? 0 : y[j];
+			int b = (ypred[j] == -1) ? 0 : ypred[j];
+			aligned++;
+			if (a != b)
+				err++;
+			if (a == 1 || b == 1)
+				union++;
+			if (a == 1 && b == 1)
+				inter++;
+		}
+
+		tp[i] = tp_;
+		fp[i] = fp_;
+		fn[i] = fn_;
+		valid[i] = aligned > 0;
+		if (valid[i]) {
+			accuracy[i] = (union > 0) ? (double)inter / (double)union : 1.0;
+			hamming[i] = (double)err / (double)aligned;
+			zeroOne[i] = (err > 0) ? 1. : 0.;
+			f1[i] = MetricAccumulator.F1(tp_,fp_,fn_);
+		}
+		else {
+			accuracy[i] = hamming[i] = zeroOne[i] = f1[i] = 0.0;
+		}
+		add(i);
+
+		N++;
+
+		if (N % W == 0)
+			resum();
+	}
+
+	/** Add the contribution of row i of the buffer to the sums. */
+	protected void add(int i) {
+		sumTP += tp[i];
+		sumFP += fp[i];
+		sumFN += fn[i];
+		if (valid[i]) {
+			sumValid++;
+			sumAccuracy += accuracy[i];
+			sumHamming += hamming[i];
+			sumZeroOne += zeroOne[i];
+			sumF1 += f1[i];
+		}
+	}
+
+	/** Take the contribution of row i of the buffer off the sums. */
+	protected void remove(int i) {
+		sumTP -= tp[i];
+		sumFP -= fp[i];
+		sumFN -= fn[i];
+		if (valid[i]) {
+			sumValid--;
+			sumAccuracy -= accuracy[i];
+			sumHamming -= hamming[i];
+			sumZeroOne -= zeroOne[i];
+			sumF1 -= f1[i];
+		}
+	}
+
+	/** Recompute the sums from the buffer. */
+	protected void resum() {
+		sumValid = 0;
+		sumAccuracy = sumHamming = sumZeroOne = sumF1 = 0.0;
+		sumTP = sumFP = sumFN = 0;
+		for(int i = 0; i < numInstances(); i++) {
+			add(i);
+		}
+	}
+
+	/** As MetricAccumulator.P_Accuracy() (Jaccard index), over the window. Multi-label only. */
+	public double P_Accuracy() {
+		return sumAccuracy / (double)sumValid;
+	}
+
+	/** As MetricAccumulator.L_Hamming(), over the window. */
+	public double L_Hamming() {
+		return sumHamming / (double)sumValid;
+	}
+
+	/** As MetricAccumulator.P_Hamming(), over the window. */
+	public double P_Hamming() {
+		return 1. - L_Hamming();
+	}
+
+	/** As MetricAccumulator.L_ZeroOne(), over the window. */
+	public double L_ZeroOne() {
+		return sumZeroOne / (double)sumValid;
+	}
+
+	/** As MetricAccumulator.P_ExactMatch(), over the window. */
+	public double P_ExactMatch() {
+		return 1. - L_ZeroOne();
+	}
+
+	/** As MetricAccumulator.P_FmacroAvgD(), over the window. Multi-label only. */
+	public double P_FmacroAvgD() {
+		if (sumValid == 0)
+			return Double.NaN;
+		return sumF1 / (double)sumValid;
+	}
+
+	/** As MetricAccumulator.P_FmicroAvg(), over the window (NaN if there are no valid rows). Multi-label only. */
+	public double P_FmicroAvg() {
+		if (sumValid == 0)
+			return Double.NaN;
+		return MetricAccumulator.F1(sumTP,sumFP,sumFN);
+	}
+}
@@ -23,7 +23,11 @@ import weka.classifiers.functions.SMO;
 import weka.core.Instance;
 import weka.core.Instances;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Random;
 
 /**
@@ -220,8 +224,9 @@ public abstract class StatUtils {
 		// @todo, can prune here to make even faster by pruning this.
 		HashMap<LabelSet,Integer> map = MLUtils.countCombinationsSparse(D,L);
 
-		for (LabelSet y : map.keySet()) {
-			int c = map.get(y);
+		for (Map.Entry<LabelSet,Integer> e : map.entrySet()) {
+			LabelSet y = e.getKey();
+			int c = e.getValue();
 			for(int j = 0; j < y.indices.length; j++) {
 				int j_ = y.indices[j];
 				C[j_][j_] += c;
@@ -240,34 +245,7 @@ public abstract class StatUtils {
 	 * Actually, if we don't prune, this is not even approximate -- it is the real empirical P.
 	 */
 	public static double[][] getApproxP(Instances D) {
-		int N = D.numInstances();
-		int L = D.classIndex();
-		double P[][] = new double[L][L];
-		// @todo, can prune here to make even faster by pruning this.
-		HashMap<LabelSet,Integer> map = MLUtils.countCombinationsSparse(D,L);
-
-		for (LabelSet y : map.keySet()) {
-			for(int j = 0; j < y.indices.length; j++) {
-				int y_j = y.contains(j) ? 1 : 0;
-				if (y_j > 0) {
-					P[j][j] += (double)y_j;                           // C[j==1] ++
-					for(int k = j+1; k < y.indices.length; k++) {
-						int y_k = y.contains(j) ? 1 : 0;
-						P[j][k] += (double)y_k;                       // C[j==1,k==1] ++
-					}
-				}
-			}
-		}
-
-		// @todo use getP(C,N) instead
-		for(int j = 0; j < L; j++) {
-			P[j][j] = Math.max(P[j][j]/(double)N,0.0001);
-			for(int k = j+1; k < L; k++) {
-				P[j][k] = Math.max(P[j][k]/(double)N,0.0001);
-			}
-		}
-
-		return P;
+		return getP(getApproxC(D),D.numInstances());
 	}
 
 	public static double[][] getP(int C[][], int N) {
@@ -289,23 +267,127 @@ public abstract class StatUtils {
 	 * @return 	C[][] where C[j][k] is the number of times where Y[i][j] = 1 and y[i][k] = 1 over all i = 1,...,N
 	 */
 	public static int[][] getC(Instances D) {
+		return getC(D, ThreadUtils.SEQUENTIAL);
+	}
 
-		int L = D.classIndex();
+	/**
+	 * GetC - Get pairwise co-ocurrence counts from the training data D.
+	 * Only the pairs of relevant labels of each instance are counted, i.e., O(N*LC^2) rather than O(N*L^2) for sparse label vectors
+	 * (instances with label values other than 0/1 are counted over all pairs).
+	 * In parallel, each thread counts a block of rows of C.
+	 * <br>
+	 * NOTE multi-label only
+	 * @param	D			dataset
+	 * @param	numThreads	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 * @return 	C[][] where C[j][k] is the number of times where Y[i][j] = 1 and y[i][k] = 1 over all i = 1,...,N
+	 */
+	public static int[][] getC(final Instances D, int numThreads) {
+
+		final int L = D.classIndex();
 		int N = D.numInstances();
 
-		int C[][] = new int[L][L];
+		final int C[][] = new int[L][L];
 
+		// the relevant labels of each instance (null if it is not 0/1), and the work needed for each row of C
+		final int Y[][] = new int[N][];
+		long w[] = new long[L];
+		int y[] = new int[L];
 		for(int i = 0; i < N; i++) {
-			for(int j = 0; j < L; j++) {
-				C[j][j] += (int)D.instance(i).value(j);                                            // C[j==1] ++
-				for(int k = j+1; k < L; k++) {
-					C[j][k] += (D.instance(i).value(j) + D.instance(i).value(k) >= 2.0) ? 1 : 0;   // C[j==1,k==1] ++
-				}
+			Instance x = D.instance(i);
+			int n = 0;
+			boolean binary = true;
+			for(int p = 0; p < x.numValues() && x.index(p) < L; p++) {
+				double v = x.valueSparse(p);
+				if (v == 1.0)
+					y[n++] = x.index(p);
+				else if (v != 0.0 && !Double.isNaN(v))
+					binary = false;
+			}
+			if (binary) {
+				Y[i] = Arrays.copyOf(y,n);
+				for(int a = 0; a < n; a++)
+					w[y[a]] += n - a;
+			}
+			else {
+				for(int j = 0; j < L; j++)
+					w[j] += L - j;
+			}
+		}
+
+		numThreads = ThreadUtils.getActualNumThreads(numThreads, L);
+		if (numThreads == ThreadUtils.SEQUENTIAL) {
+			countC(C,Y,D,0,L);
+			return C;
+		}
+
+		// blocks of rows with (about) the same amount of work
+		long total = 0;
+		for(int j = 0; j < L; j++)
+			total += w[j];
+		if (total == 0)
+			return C;
+		int numBlocks = Math.min(L, numThreads * 4);
+		List<int[]> blocks = new ArrayList<>();
+		int start = 0;
+		long sum = 0;
+		for(int j = 0; j < L; j++) {
+			sum += w[j];
+			if (sum * numBlocks >= total * (blocks.size() + 1) || j == L - 1) {
+				blocks.add(new int[]{start, j + 1});
+				start = j + 1;
 			}
 		}
+
+		List<Runnable> tasks = new ArrayList<>();
+		for(final int block[] : blocks) {
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					countC(C,Y,D,block[0],block[1]);
+				}
+			});
+		}
+		ThreadUtils.runTasks(tasks, numThreads);
+
 		return C;
 	}
 
+	/**
+	 * CountC - Add the co-occurrences to the rows from ... to-1 of C.
+	 * @param	C		count matrix
+	 * @param	Y		the (sorted) relevant labels of each instance, or null to use the instance in D
+	 * @param	D		dataset
+	 * @param	from	first row
+	 * @param	to		last row (exclusive)
+	 */
+	private static void countC(int C[][], int Y[][], Instances D, int from, int to) {
+		int L = C.length;
+		for(int i = 0; i < Y.length; i++) {
+			int y[] = Y[i];
+			if (y == null) {
+				Instance x = D.instance(i);
+				for(int j = from; j < to; j++) {
+					double v_j = x.value(j);
+					C[j][j] += (int)v_j;                                                    // C[j==1] ++
+					for(int k = j+1; k < L; k++) {
+						C[j][k] += (v_j + x.value(k) >= 2.0) ? 1 : 0;                       // C[j==1,k==1] ++
+					}
+				}
+				continue;
+			}
+			int a = Arrays.binarySearch(y,from);
+			if (a < 0)
+				a = -a - 1;
+			for(; a < y.length && y[a] < to; a++) {
+				int C_j[] = C[y[a]];
+				C_j[y[a]]++;                                                                // C[j==1] ++
+				for(int b = a+1; b < y.length; b++) {
+					C_j[y[b]]++;                                                            // C[j==1,k==1] ++
+				}
+			}
+		}
+	}
+
 	/**
 	 * I - Mutual Information I(y_j;y_k).
 	 * multi-label only -- count version
@@ -420,12 +502,27 @@ public abstract class StatUtils {
 	 * @return I(Y_j;Y_k) in dataset D.
 	 */
 	public static double I(Instances D, int j, int k) {
+		return I(MLUtils.getYfromD(D),j,D.attribute(j).numValues(),k,D.attribute(k).numValues());
+	}
+
+	/**
+	 * I - Mutual Information.
+	 * <br>
+	 * NOTE Multi-target friendly (does not assume binary labels).
+	 * @param	Y	label matrix
+	 * @param	j	1st label index
+	 * @param	V_j	number of values of the 1st label
+	 * @param	k	2nd label index
+	 * @param	V_k	number of values of the 2nd label
+	 * @return I(Y_j;Y_k) in Y.
+	 */
+	public static double I(double Y[][], int j, int V_j, int k, int V_k) {
 		double I = 0.0;
-		for(int x = 0; x < D.attribute(j).numValues(); x++) {
-			double p_x = p(D,j,x);
-			for(int y = 0; y < D.attribute(k).numValues(); y++) {
-				double p_y = p(D,k,y);
-				double p_xy = P(D,j,x,k,y);
+		for(int x = 0; x < V_j; x++) {
+			double p_x = p(Y,j,x);
+			for(int y = 0; y < V_k; y++) {
+				double p_y = p(Y,k,y);
+				double p_xy = P(Y,j,x,k,y);
 				I += p_xy * Math.log ( p_xy / ( p_x * p_y) );
 			}
 		}
@@ -440,11 +537,12 @@ public abstract class StatUtils {
 	 * @return a L*L matrix representing Unconditional Depndence.
 	 */
 	public static double[][] I(Instances D, int L) {
+		double Y[][] = MLUtils.getYfromD(D);
 		double M[][] = new double[L][L];
 		for(int j = 0; j < L; j++) {
 			for(int k = j+1; k < L; k++) {
 				// get I(Y_j;X_k)
-				M[j][k] = I(D,j,k);
+				M[j][k] = I(Y,j,D.attribute(j).numValues(),k,D.attribute(k).numValues());
 			}
 		}
 		return M;
@@ -482,16 +580,57 @@ public abstract class StatUtils {
 	 * @return	The chi-square statistic matrix X
 	 */
 	public static double[][] chi2 (Instances D) {
-		int L = D.classIndex();
+		return chi2(getC(D),D.numInstances());
+	}
+
+	/**
+	 * Chi^2 - Do the chi-squared test on all pairs of labels, from co-occurrence counts.
+	 * (The same as chi2(D) on binary labels, up to rounding).
+	 * @see #chi2(Instances, int, int)
+	 * @param	C	count matrix, e.g., from getC(D)
+	 * @param	N	number of instances
+	 * @return	The chi-square statistic matrix X
+	 */
+	public static double[][] chi2 (int C[][], int N) {
+		int L = C.length;
 		double X[][] = new double[L][L];
 		for(int j = 0; j < L; j++) {
 			for(int k = j+1; k < L; k++) {
-				X[j][k] = chi2(D,j,k);
+				double chi2 = 0.0;
+				for(int j_ = 0; j_ < 2; j_++) {
+					for(int k_ = 0; k_ < 2; k_++) {
+						double E = p(C,N,j,j_) * p(C,N,k,k_);	// Expected vaule P(Y_j = j_)P(Y_k = k_)
+						double O = P(C,N,j,j_,k,k_);				// Observed value P(Y_j = j_, Y_k = k_)
+						chi2 += ( ((O - E) * (O - E)) / E );
+					}
+				}
+				X[j][k] = chi2;
 			}
 		}
 		return X;
 	}
 
+	/**
+	 * p - Empirical prior P(Y_j==v), from co-occurrence counts (as p(Y,j,v)).
+	 */
+	private static double p(int C[][], int N, int j, int v) {
+		int n = (v == 1) ? C[j][j] : N - C[j][j];
+		return (0.0001 + n) / N;
+	}
+
+	/**
+	 * P - Empirical joint P(Y_j==v,Y_k==w) for j &lt; k, from co-occurrence counts (as P(Y,j,v,k,w)).
+	 */
+	private static double P(int C[][], int N, int j, int v, int k, int w) {
+		int n_jk = C[j][k];
+		int n;
+		if (v == 1)
+			n = (w == 1) ? n_jk : C[j][j] - n_jk;
+		else
+			n = (w == 1) ? C[k][k] - n_jk : N - C[j][j] - C[k][k] + n_jk;
+		return (0.0001 + n) / N;
+	}
+
 	/**
 	 * Chi^2 - Chi-squared test.
 	 * If they are correlated, this means unconditional dependence!
@@ -534,6 +673,17 @@ public abstract class StatUtils {
 	 * @return a L*L matrix representing Unconditional Depndence.
 	 */
 	public static double[][] margDepMatrix(Instances D, String op) {
+		return margDepMatrix(D, op, ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * MargDepMatrix - Get an Unconditional Depndency Matrix.
+	 * @param	D			dataset
+	 * @param	op			how we will measure the dependency
+	 * @param	numThreads	the number of threads for counting co-occurrences: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 * @return a L*L matrix representing Unconditional Depndence.
+	 */
+	public static double[][] margDepMatrix(Instances D, String op, int numThreads) {
 
 		int L = D.classIndex();
 		int N = D.numInstances();
@@ -550,7 +700,7 @@ public abstract class StatUtils {
 		}
 		// Mutual information -- binary (multi-label) approximation
 		if (op.equals("Ib")) {
-			int C[][] = getC(D);
+			int C[][] = getC(D,numThreads);
 			//System.out.println(""+M.toString(C));
 			double P[][] = getP(C,N);
 			//System.out.println(""+M.toString(P));
@@ -566,7 +716,7 @@ public abstract class StatUtils {
 		}
 		// Conditional information -- binary (multi-label)
 		if (op.equals("H")) {
-			int C[][] = getC(D);
+			int C[][] = getC(D,numThreads);
 			return H(C,N);
 		}
 		// Conditional information -- fast binary (multi-label) approximation
@@ -576,11 +726,11 @@ public abstract class StatUtils {
 		}
 		// Chi-squared
 		if (op.equals("X")) {
-			return chi2(D);
+			return chi2(getC(D,numThreads),N);
 		}
 		// Frequencies (cheap)
 		if (op.equals("F")) {
-			double F[][] = F(D);
+			double F[][] = F(getC(D,numThreads),N);
 			//System.out.println(""+M.toString(F));
 			return F;
 		}
@@ -627,25 +777,29 @@ public abstract class StatUtils {
 	 */
 	public static double[][] H(Instances D) {
 		int C[][] = getC(D);
-		return H(C, D.classIndex());
-	}
-
-	private static double f (Instances Y,int j,int k) {
-
-		double E = p(Y,j,1) * p(Y,k,1); 			// Expected vaule P(Y_j = j_)P(Y_k = k_)
-		double O = P(Y,j,1,k,1);					// Observed value P(Y_j = j_, Y_k = k_)
-		return E/O;
+		return H(C, D.numInstances());
 	}
 
 	/**
 	 * F - Relative frequency matrix (between p(j),p(k) and p(j,k)) in dataset D.
 	 */
 	public static double[][] F(Instances D) {
-		int L = D.classIndex();
+		return F(getC(D),D.numInstances());
+	}
+
+	/**
+	 * F - Relative frequency matrix (between p(j),p(k) and p(j,k)), from co-occurrence counts.
+	 * @param	C	count matrix, e.g., from getC(D)
+	 * @param	N	number of instances
+	 */
+	public static double[][] F(int C[][], int N) {
+		int L = C.length;
 		double M[][] = new double[L][L];
 		for(int j = 0; j < L; j++) {
 			for(int k = j+1; k < L; k++) {
-				M[j][k] = Math.abs(1. - f(D,j,k));
+				double E = p(C,N,j,1) * p(C,N,k,1); 	// Expected vaule P(Y_j = j_)P(Y_k = k_)
+				double O = P(C,N,j,1,k,1);			// Observed value P(Y_j = j_, Y_k = k_)
+				M[j][k] = Math.abs(1. - E/O);
 			}
 		}
 		return M;
@@ -20,6 +20,20 @@
 
 package meka.core;
 
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
 /**
  * Thread and multi-process related methods.
  *
@@ -34,6 +48,22 @@ public class ThreadUtils {
 	/** the number of threads used to be considered sequential. */
 	public final static int SEQUENTIAL = 1;
 
+	/** set (in each of its threads) for the pools created by newExecutor. */
+	private final static ThreadLocal<Boolean> WORKER = new ThreadLocal<Boolean>();
+
+	/**
+	 * A source of jobs, which are created one at a time.
+	 */
+	public interface JobSource<T> {
+
+		/**
+		 * Creates the next job.
+		 *
+		 * @return              the job, null if there are no more jobs
+		 */
+		Callable<T> next() throws Exception;
+	}
+
 	/**
 	 * Returns the available number of processors on the machine.
 	 *
@@ -65,6 +95,203 @@ public class ThreadUtils {
 		return result;
 	}
 
+	/**
+	 * Returns a fixed pool of the given number of daemon threads (so that a job that never finishes cannot keep the
+	 * JVM alive).
+	 *
+	 * @param numThreads        the actual number of threads
+	 * @return                  the executor
+	 */
+	public static ExecutorService newExecutor(int numThreads) {
+		return Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+			private final ThreadFactory m_Factory = Executors.defaultThreadFactory();
+			@Override
+			public Thread newThread(final Runnable r) {
+				Thread result = m_Factory.newThread(new Runnable() {
+					@Override
+					public void run() {
+						WORKER.set(Boolean.TRUE);
+						r.run();
+					}
+				});
+				result.setDaemon(true);
+				return result;
+			}
+		});
+	}
+
+	/**
+	 * Returns a fixed pool of the given number of daemon threads, like {@link #newExecutor(int)}, whose threads end
+	 * after being idle for the given time. Such a pool can be kept and reused for many batches of jobs (e.g., with
+	 * {@link #runAll(List, ExecutorService)}), without having to be shut down.
+	 *
+	 * @param numThreads        the actual number of threads
+	 * @param keepAlive         the time (in msec) after which an idle thread ends
+	 * @return                  the executor
+	 */
+	public static ExecutorService newExecutor(int numThreads, long keepAlive) {
+		ThreadPoolExecutor result = (ThreadPoolExecutor) newExecutor(numThreads);
+		result.setKeepAliveTime(keepAlive, TimeUnit.MILLISECONDS);
+		result.allowCoreThreadTimeOut(true);
+		return result;
+	}
+
+	/**
+	 * Returns whether the current thread is one of the threads of a pool created by {@link #newExecutor(int)}, i.e.,
+	 * whether the calling code is already run in parallel (so that it need not be split over threads again).
+	 *
+	 * @return                  true if a worker thread
+	 */
+	public static boolean isWorkerThread() {
+		return WORKER.get() != null;
+	}
+
+	/**
+	 * Runs the jobs with up to the given number of threads, and returns their results (in the order of the jobs).
+	 * If sequential, the jobs are run one after the other in the calling thread. If a job fails, its exception
+	 * is rethrown (the first one, in the order of the jobs).
+	 *
+	 * @param jobs              the jobs to run
+	 * @param numThreads        the requested number of threads (-1 for # of cores/cpus)
+	 * @return                  the results of the jobs
+	 */
+	public static <T> List<T> runAll(List<? extends Callable<T>> jobs, int numThreads) throws Exception {
+		final Iterator<? extends Callable<T>> iter = jobs.iterator();
+		return runAll(new JobSource<T>() {
+			@Override
+			public Callable<T> next() {
+				return iter.hasNext() ? iter.next() : null;
+			}
+		}, getActualNumThreads(numThreads, jobs.size()), Integer.MAX_VALUE);
+	}
+
+	/**
+	 * Runs the jobs with up to the given number of threads, and returns their results (in the order of the jobs).
+	 * The jobs are created by the source in the calling thread (so creating a job may do some of the work, e.g.,
+	 * prepare its data, in order), and only while fewer than the given number of them are waiting or running; this
+	 * bounds the memory held by the jobs. If sequential, the jobs are run one after the other in the calling thread.
+	 * If a job fails, no further jobs are started, and its exception is rethrown (the first one, in the order of the jobs).
+	 *
+	 * @param jobs              the source of the jobs to run
+	 * @param numThreads        the requested number of threads (-1 for # of cores/cpus)
+	 * @param maxPending        the maximum number of jobs waiting or running at any time
+	 * @return                  the results of the jobs
+	 */
+	public static <T> List<T> runAll(JobSource<T> jobs, int numThreads, int maxPending) throws Exception {
+		List<T> result = new ArrayList<>();
+		Callable<T> job;
+
+		numThreads = getActualNumThreads(numThreads, getAvailableProcessors());
+		if (numThreads == SEQUENTIAL) {
+			while ((job = jobs.next()) != null)
+				result.add(job.call());
+			return result;
+		}
+
+		ExecutorService executor = newExecutor(numThreads);
+		final Semaphore pending = new Semaphore(Math.max(1, maxPending));
+		final AtomicBoolean failed = new AtomicBoolean(false);
+		try {
+			List<Future<T>> futures = new ArrayList<>();
+			while (!failed.get()) {
+				pending.acquire();
+				job = jobs.next();
+				if (job == null)
+					break;
+				final Callable<T> job_ = job;
+				futures.add(executor.submit(new Callable<T>() {
+					@Override
+					public T call() throws Exception {
+						try {
+							return job_.call();
+						}
+						catch (Exception e) {
+							failed.set(true);
+							throw e;
+						}
+						finally {
+							pending.release();
+						}
+					}
+				}));
+			}
+			for (Future<T> future : futures) {
+				try {
+					result.add(future.get());
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+			}
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the jobs in the given executor (which is not shut down), and returns their results (in the order of
+	 * the jobs). If a job fails, the jobs not yet started are cancelled, and its exception is rethrown (the first
+	 * one, in the order of the jobs).
+	 *
+	 * @param jobs              the jobs to run
+	 * @param executor          the executor to run them in
+	 * @return                  the results of the jobs
+	 */
+	public static <T> List<T> runAll(List<? extends Callable<T>> jobs, ExecutorService executor) throws Exception {
+		List<T> result = new ArrayList<>();
+		List<Future<T>> futures = new ArrayList<>();
+		try {
+			for (Callable<T> job : jobs)
+				futures.add(executor.submit(job));
+			for (Future<T> future : futures) {
+				try {
+					result.add(future.get());
+				}
+				catch (ExecutionException e) {
+					if (e.getCause() instanceof Exception)
+						throw (Exception) e.getCause();
+					throw e;
+				}
+			}
+		}
+		finally {
+			for (Future<T> future : futures)
+				future.cancel(false);
+		}
+		return result;
+	}
+
+	/**
+	 * Runs the tasks with up to the given number of threads, like {@link #runAll(List, int)}, for tasks that throw no
+	 * checked exceptions: if a task fails, its exception is rethrown as is.
+	 *
+	 * @param tasks             the tasks to run
+	 * @param numThreads        the requested number of threads (-1 for # of cores/cpus)
+	 */
+	public static void runTasks(List<? extends Runnable> tasks, int numThreads) {
+		List<Callable<Object>> jobs = new ArrayList<>(tasks.size());
+		for (Runnable task : tasks)
+			jobs.add(Executors.callable(task));
+		try {
+			runAll(jobs, numThreads);
+		}
+		catch (RuntimeException e) {
+			throw e;
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted while running the tasks", e);
+		}
+		catch (Exception e) {
+			// cannot happen, a Runnable throws no checked exceptions
+			throw new IllegalStateException(e);
+		}
+	}
+
 	/**
 	 * Returns whether the number of threads represent a multi-threaded setup.
 	 *
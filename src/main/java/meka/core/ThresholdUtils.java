@@ -17,7 +17,7 @@ package meka.core;
 
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
+import java.util.List;
 
 /**
  * ThresholdUtils - Helpful functions for calibrating thresholds.
@@ -43,68 +43,301 @@ public abstract class ThresholdUtils {
 
 	/**
 	 * CalibrateThreshold - Calibrate a threshold using PCut: the threshold which results in the best approximation of the label cardinality of the training set.
+	 * The confidences are neither copied nor sorted: the (at most two) confidences needed are found by selection, in a few passes over Y.
 	 * @param	Y			labels
 	 * @param	LC_train	label cardinality of the training set
 	 */
-	public static double calibrateThreshold(ArrayList<double[]> Y, double LC_train) {
+	public static double calibrateThreshold(List<double[]> Y, double LC_train) {
 
 		if (Y.size() <= 0)
 			return 0.5;
 
 		int N = Y.size();
-		ArrayList<Double> big = new ArrayList<Double>();
+		int M = 0;
 		for (double y[] : Y) {
-			for (double y_ : y) {
-				big.add(y_);
-			}
+			M += y.length;
 		}
-		Collections.sort(big);
 
-		int i = big.size() - (int) Math.round(LC_train * (double) N);
+		return pCut(N, M, LC_train, select(Y, M, pCutRanks(N, M, LC_train)));
+	}
+
+	/**
+	 * CalibrateThreshold - Calibrate a threshold using PCut, on the confidences y[] of a single label.
+	 * Note that y[] is reordered (partially sorted).
+	 * @param	y			confidences
+	 * @param	LC_train	frequency of the label in the training data
+	 */
+	public static double calibrateThreshold(double y[], double LC_train) {
+
+		if (y.length <= 0)
+			return 0.5;
 
-		if (N == big.size()) { // special cases
+		int N = y.length;
+		return pCut(N, N, LC_train, select(y, N, pCutRanks(N, N, LC_train)));
+	}
+
+	/**
+	 * CalibrateThreshold - Calibrate a vector of thresholds (one for each label) using PCut: the threshold t[j] which results in the best approximation of the frequency of the j-th label in the training data.
+	 * @param	Y			labels
+	 * @param	LC_train	average frequency of each label
+	 */
+	public static double[] calibrateThresholds(List<double[]> Y, double LC_train[]) { 
+		return calibrateThresholds(Y, LC_train, ThreadUtils.SEQUENTIAL);
+	}
+
+	/**
+	 * CalibrateThreshold - Calibrate a vector of thresholds (one for each label) using PCut: the threshold t[j] which results in the best approximation of the frequency of the j-th label in the training data.
+	 * Only one column of confidences is copied at a time (per thread).
+	 * @param	Y			labels
+	 * @param	LC_train	average frequency of each label
+	 * @param	numThreads	the number of threads (labels calibrated in parallel): -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	public static double[] calibrateThresholds(final List<double[]> Y, final double LC_train[], int numThreads) { 
+
+		int L = LC_train.length;
+		final double t[] = new double[L];
+
+		List<Runnable> tasks = new ArrayList<>();
+		for(int j = 0; j < L; j++) {
+			final int label = j;
+			tasks.add(new Runnable() {
+				@Override
+				public void run() {
+					t[label] = calibrateThreshold(column(Y,label),LC_train[label]);
+				}
+			});
+		}
+		ThreadUtils.runTasks(tasks, numThreads);
+
+		return t;
+	}
+
+	/**
+	 * Column - a copy of the j-th column of Y.
+	 */
+	private static double[] column(List<double[]> Y, int j) {
+		if (Y instanceof ConfidenceMatrix)
+			return ((ConfidenceMatrix)Y).getColumn(j);
+		double y_j[] = new double[Y.size()];
+		int i = 0;
+		for(double y[] : Y) {
+			y_j[i++] = y[j];
+		}
+		return y_j;
+	}
+
+	/**
+	 * PCutRanks - the ranks (in the sorted confidences) used by PCut, for N examples with M confidences in total.
+	 */
+	private static int[] pCutRanks(int N, int M, double LC_train) {
+
+		int i = M - (int) Math.round(LC_train * (double) N);
+
+		if (N == M) { // special cases
 			if (i + 1 == N) // only one!
-				return (big.get(N - 2) + big.get(N - 1)) / 2.0;
+				return new int[]{N - 2, N - 1};
 			if (i + 1 >= N) // zero!
-				return 1.0;
+				return new int[0];
 			else
-				return Math.max(((big.get(i) + big.get(i + 1)) / 2.0), 0.00001);
+				return new int[]{i, i + 1};
 		}
 
 		// special cases for low LC
-		if (i == big.size() || i + 1 == big.size()) {
-			return Math.max((big.get(big.size() - 2) + big.get(big.size() - 1)) / 2.0, 0.00001);
+		if (i == M || i + 1 == M) {
+			return new int[]{M - 2, M - 1};
 		}
 
-		return Math.max((big.get(i) + big.get(Math.max(i + 1, N - 1))) / 2.0, 0.00001);
+		return new int[]{i, Math.max(i + 1, N - 1)};
 	}
 
 	/**
-	 * CalibrateThreshold - Calibrate a vector of thresholds (one for each label) using PCut: the threshold t[j] which results in the best approximation of the frequency of the j-th label in the training data.
-	 * @param	Y			labels
-	 * @param	LC_train	average frequency of each label
+	 * PCut - the PCut threshold, given the confidences v[] at the ranks returned by pCutRanks(N,M,LC_train).
 	 */
-	public static double[] calibrateThresholds(ArrayList<double[]> Y, double LC_train[]) { 
+	private static double pCut(int N, int M, double LC_train, double v[]) {
 
-		int L = LC_train.length;
-		double t[] = new double[L];
+		int i = M - (int) Math.round(LC_train * (double) N);
 
-		ArrayList<double[]> Y_[] = new ArrayList[L];
-		for(int j = 0; j < L; j++) {
-			Y_[j] = new ArrayList<double[]>();
+		if (N == M) { // special cases
+			if (i + 1 == N) // only one!
+				return (v[0] + v[1]) / 2.0;
+			if (i + 1 >= N) // zero!
+				return 1.0;
 		}
 
+		return Math.max((v[0] + v[1]) / 2.0, 0.00001);
+	}
+
+	/**
+	 * Select - the values of a[0..n-1] at the given ranks, as if a[] were sorted (with NaN last, as Arrays.sort).
+	 * Quickselect, O(n) on average for each rank. Note that a[] is reordered.
+	 */
+	protected static double[] select(double a[], int n, int ranks[]) {
+
+		// move any NaN to the end
+		int m = n;
+		for(int i = 0; i < m; ) {
+			if (Double.isNaN(a[i]))
+				swap(a, i, --m);
+			else
+				i++;
+		}
+
+		double v[] = new double[ranks.length];
+		for(int r = 0; r < ranks.length; r++) {
+			if (ranks[r] < 0 || ranks[r] >= n)
+				throw new IndexOutOfBoundsException("Rank " + ranks[r] + " out of bounds for " + n + " values");
+			v[r] = (ranks[r] < m) ? quickSelect(a, 0, m - 1, ranks[r]) : Double.NaN;
+		}
+		return v;
+	}
+
+	/**
+	 * Select - the values of all the M confidences in Y at the given ranks, as if they were sorted (with NaN last).
+	 * Without copying all of them: a histogram of the confidences locates the ranks, and only the confidences
+	 * in the bins of these ranks are collected, to select from.
+	 */
+	protected static double[] select(List<double[]> Y, int M, int ranks[]) {
+
+		for(int rank : ranks) {
+			if (rank < 0 || rank >= M)
+				throw new IndexOutOfBoundsException("Rank " + rank + " out of bounds for " + M + " values");
+		}
+
+		// the range
+		double min = Double.POSITIVE_INFINITY;
+		double max = Double.NEGATIVE_INFINITY;
+		int m = 0;
 		for(double y[] : Y) {
-			for(int j = 0; j < L; j++) {
-				Y_[j].add(new double[]{y[j]});
+			for(double y_ : y) {
+				if (Double.isNaN(y_))
+					continue;
+				m++;
+				if (y_ < min)
+					min = y_;
+				if (y_ > max)
+					max = y_;
 			}
 		}
 
-		for(int j = 0; j < L; j++) {
-			t[j] = calibrateThreshold(Y_[j],LC_train[j]);
+		double v[] = new double[ranks.length];
+		double range = max - min;
+		if (m == 0 || range == 0.0 || Double.isInfinite(range) || Double.isNaN(range)) {
+			if (m > 0 && range == 0.0) {
+				// all the same
+				for(int r = 0; r < ranks.length; r++)
+					v[r] = (ranks[r] < m) ? min : Double.NaN;
+				return v;
+			}
+			// no (finite) range to bin
+			double a[] = new double[M];
+			int i = 0;
+			for(double y[] : Y) {
+				System.arraycopy(y, 0, a, i, y.length);
+				i += y.length;
+			}
+			return select(a, M, ranks);
 		}
 
-		return t;
+		// the histogram
+		int B = Math.min(m, 1 << 16);
+		double scale = B / range;
+		int count[] = new int[B];
+		for(double y[] : Y) {
+			for(double y_ : y) {
+				if (!Double.isNaN(y_))
+					count[bin(y_, min, scale, B)]++;
+			}
+		}
+
+		// the bin (and the rank within it) of each rank
+		int bins[] = new int[ranks.length];
+		int offsets[] = new int[ranks.length];
+		int below[] = new int[B];
+		for(int b = 1; b < B; b++) {
+			below[b] = below[b - 1] + count[b - 1];
+		}
+		for(int r = 0; r < ranks.length; r++) {
+			if (ranks[r] >= m) {
+				bins[r] = -1;
+				continue;
+			}
+			int b = 0;
+			while (below[b] + count[b] <= ranks[r])
+				b++;
+			bins[r] = b;
+			offsets[r] = ranks[r] - below[b];
+		}
+
+		// collect the values of these bins
+		double values[][] = new double[B][];
+		for(int b : bins) {
+			if (b >= 0 && values[b] == null)
+				values[b] = new double[count[b]];
+		}
+		int filled[] = new int[B];
+		for(double y[] : Y) {
+			for(double y_ : y) {
+				if (Double.isNaN(y_))
+					continue;
+				int b = bin(y_, min, scale, B);
+				if (values[b] != null)
+					values[b][filled[b]++] = y_;
+			}
+		}
+
+		for(int r = 0; r < ranks.length; r++) {
+			if (bins[r] < 0)
+				v[r] = Double.NaN;
+			else
+				v[r] = select(values[bins[r]], count[bins[r]], new int[]{offsets[r]})[0];
+		}
+		return v;
+	}
+
+	/** The histogram bin of value x (monotone in x). */
+	private static int bin(double x, double min, double scale, int B) {
+		return Math.min((int)((x - min) * scale), B - 1);
+	}
+
+	/**
+	 * QuickSelect - the k-th smallest of a[lo..hi] (without NaN), with three-way partitioning (to deal with many ties).
+	 */
+	private static double quickSelect(double a[], int lo, int hi, int k) {
+		while (lo < hi) {
+			double pivot = median(a[lo], a[(lo + hi) >>> 1], a[hi]);
+			// a[lo..lt-1] < pivot, a[lt..gt] == pivot, a[gt+1..hi] > pivot
+			int lt = lo;
+			int gt = hi;
+			int i = lo;
+			while (i <= gt) {
+				if (a[i] < pivot)
+					swap(a, lt++, i++);
+				else if (a[i] > pivot)
+					swap(a, i, gt--);
+				else
+					i++;
+			}
+			if (k < lt)
+				hi = lt - 1;
+			else if (k > gt)
+				lo = gt + 1;
+			else
+				return a[k];
+		}
+		return a[k];
+	}
+
+	private static double median(double a, double b, double c) {
+		if (a < b)
+			return (b < c) ? b : ((a < c) ? c : a);
+		else
+			return (a < c) ? a : ((b < c) ? c : b);
+	}
+
+	private static void swap(double a[], int i, int j) {
+		double tmp = a[i];
+		a[i] = a[j];
+		a[j] = tmp;
 	}
 
 	/**
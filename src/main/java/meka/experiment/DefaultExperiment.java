@@ -22,6 +22,8 @@ package meka.experiment;
 
 import meka.classifiers.multilabel.MultiLabelClassifier;
 import meka.core.OptionUtils;
+import meka.core.ThreadLimiter;
+import meka.core.ThreadUtils;
 import meka.events.LogListener;
 import meka.events.LogObject;
 import meka.experiment.datasetproviders.DatasetProvider;
@@ -32,6 +34,8 @@ import meka.experiment.evaluationstatistics.IncrementalEvaluationStatisticsHandl
 import meka.experiment.evaluationstatistics.KeyValuePairs;
 import meka.experiment.evaluators.CrossValidation;
 import meka.experiment.evaluators.Evaluator;
+import meka.experiment.evaluators.EvaluatorJob;
+import meka.experiment.evaluators.SplittableEvaluator;
 import meka.experiment.events.*;
 import weka.classifiers.AbstractClassifier;
 import weka.core.Instances;
@@ -39,16 +43,26 @@ import weka.core.Option;
 import weka.core.Utils;
 
 import java.util.*;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Default experiment which executes experiments on the local machine.
+ * <br>
+ * When using multiple threads, all (dataset, classifier, fold/run) combinations are turned into
+ * independent jobs (see {@link SplittableEvaluator}) that share a single work-stealing pool,
+ * and statistics are passed on as soon as each job finishes.
  *
  * @author FracPete (fracpete at waikato dot ac dot nz)
  * @version $Revision$
  */
 public class DefaultExperiment
 		extends LogObject
-		implements Experiment {
+		implements Experiment, ThreadLimiter {
 
 	private static final long serialVersionUID = 8654760249461885158L;
 
@@ -88,6 +102,15 @@ public class DefaultExperiment
 	/** the collected statistics. */
 	protected List<EvaluationStatistics> m_Statistics = new ArrayList<>();
 
+	/** the number of threads to use for the evaluation jobs. */
+	protected int m_NumThreads = getDefaultNumThreads();
+
+	/** the actual number of threads in use. */
+	protected int m_ActualNumThreads;
+
+	/** the pool that executes the evaluation jobs. */
+	protected transient ExecutorService m_Executor;
+
 	/**
 	 * Sets the notes.
 	 *
@@ -259,6 +282,49 @@ public class DefaultExperiment
 		return "The handler for the statistics (load/save).";
 	}
 
+	/**
+	 * Returns the default number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	protected int getDefaultNumThreads() {
+		return ThreadUtils.SEQUENTIAL;
+	}
+
+	/**
+	 * Sets the number of threads to use.
+	 *
+	 * @param value 	the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	public void setNumThreads(int value) {
+		if (value >= -1) {
+			m_NumThreads = value;
+		}
+		else {
+			log("Number of threads must be >= -1, provided: " + value);
+		}
+	}
+
+	/**
+	 * Returns the number of threads to use.
+	 *
+	 * @return 		the number of threads: -1 = # of CPUs/cores; 0/1 = sequential execution
+	 */
+	public int getNumThreads() {
+		return m_NumThreads;
+	}
+
+	/**
+	 * Returns the tip text for this property.
+	 *
+	 * @return 		tip text for this property suitable for
+	 * 			displaying in the GUI or for listing the options.
+	 */
+	public String numThreadsTipText() {
+		return "The number of threads to use for evaluating all datasets, classifiers and folds/runs in parallel; "
+				+ "-1 = number of CPUs/cores; 0 or 1 = sequential execution.";
+	}
+
 	/**
 	 * Adds the execution stage listener.
 	 *
@@ -387,6 +453,7 @@ public class DefaultExperiment
 		OptionUtils.addOption(result, datasetProviderTipText(), getDefaultDatasetProvider().getClass().getName(), 'D');
 		OptionUtils.addOption(result, evaluatorTipText(), getDefaultEvaluator().getClass().getName(), 'E');
 		OptionUtils.addOption(result, statisticsHandlerTipText(), getDefaultStatisticsHandler().getClass().getName(), 'S');
+		OptionUtils.addOption(result, numThreadsTipText(), "" + getDefaultNumThreads(), "num-threads");
 		return OptionUtils.toEnumeration(result);
 	}
 
@@ -403,6 +470,7 @@ public class DefaultExperiment
 		setDatasetProvider((DatasetProvider) OptionUtils.parse(options, 'D', getDefaultDatasetProvider()));
 		setEvaluator((Evaluator) OptionUtils.parse(options, 'E', getDefaultEvaluator()));
 		setStatisticsHandler((EvaluationStatisticsHandler) OptionUtils.parse(options, 'S', getDefaultStatisticsHandler()));
+		setNumThreads(OptionUtils.parse(options, "num-threads", getDefaultNumThreads()));
 	}
 
 	/**
@@ -418,6 +486,7 @@ public class DefaultExperiment
 		OptionUtils.add(result, 'D', getDatasetProvider());
 		OptionUtils.add(result, 'E', getEvaluator());
 		OptionUtils.add(result, 'S', getStatisticsHandler());
+		OptionUtils.add(result, "num-threads", getNumThreads());
 		return OptionUtils.toArray(result);
 	}
 
@@ -483,25 +552,17 @@ public class DefaultExperiment
 	}
 
 	/**
-	 * Runs the experiment.
+	 * Evaluates all datasets and classifiers, one after the other.
 	 *
-	 * @return          null if successfully run, otherwise error message
+	 * @param incremental   whether the statistics handler gets updated incrementally
+	 * @return              null if successfully run, otherwise error message
 	 */
-	public String run() {
+	protected String runSequential(boolean incremental) {
 		String                      result;
 		Instances                   dataset;
 		List<EvaluationStatistics>  stats;
-		boolean                     incremental;
-
-		debug("pre: run");
-
-		result      = null;
-		m_Running   = true;
-		incremental = (m_StatisticsHandler instanceof IncrementalEvaluationStatisticsHandler) &&
-				(((IncrementalEvaluationStatisticsHandler) m_StatisticsHandler).supportsIncrementalUpdate());
-		debug("Incremental statistics? " + incremental);
 
-		notifyExecutionStageListeners(ExecutionStageEvent.Stage.RUNNING);
+		result = null;
 
 		while (m_DatasetProvider.hasNext()) {
 			// next dataset
@@ -578,6 +639,219 @@ public class DefaultExperiment
 				break;
 		}
 
+		return result;
+	}
+
+	/**
+	 * Returns the jobs for evaluating the classifier on the dataset. Splittable evaluators
+	 * return one job per fold/run (created as the iterator is advanced), any other evaluator
+	 * gets wrapped in a single job.
+	 *
+	 * @param classifier    the classifier to evaluate (gets copied)
+	 * @param dataset       the dataset to evaluate on
+	 * @return              the jobs
+	 * @throws Exception    if copying the classifier or initializing the evaluator fails
+	 */
+	protected Iterator<EvaluatorJob> createJobs(MultiLabelClassifier classifier, final Instances dataset) throws Exception {
+		final MultiLabelClassifier  current;
+		final Evaluator             evaluator;
+		String                      msg;
+
+		current = (MultiLabelClassifier) AbstractClassifier.makeCopy(classifier);
+
+		if (m_Evaluator instanceof SplittableEvaluator) {
+			msg = handleError(m_Evaluator, m_Evaluator.initialize());
+			if (msg != null)
+				throw new IllegalStateException(msg);
+			return ((SplittableEvaluator) m_Evaluator).createJobs(current, dataset);
+		}
+
+		// evaluators keep state, hence every job needs its own
+		evaluator = (Evaluator) OptionUtils.shallowCopy(m_Evaluator);
+		for (LogListener l: getLogListeners())
+			evaluator.addLogListener(l);
+		msg = handleError(evaluator, evaluator.initialize());
+		if (msg != null)
+			throw new IllegalStateException(msg);
+		return Collections.<EvaluatorJob>singletonList(new EvaluatorJob() {
+			protected List<EvaluationStatistics> doCall() throws Exception {
+				return evaluator.evaluate(current, dataset);
+			}
+		}).iterator();
+	}
+
+	/**
+	 * Passes on the statistics of a finished job.
+	 *
+	 * @param stats         the statistics, can be null
+	 * @param incremental   whether the statistics handler gets updated incrementally
+	 */
+	protected void collect(List<EvaluationStatistics> stats, boolean incremental) {
+		if ((stats == null) || stats.isEmpty())
+			return;
+		m_Statistics.addAll(stats);
+		if (incremental)
+			((IncrementalEvaluationStatisticsHandler) m_StatisticsHandler).append(stats);
+		notifyStatisticsNotificationListeners(stats);
+	}
+
+	/**
+	 * Evaluates all datasets and classifiers by submitting their evaluation jobs to a single pool.
+	 * The jobs (and the datasets) are only created once fewer than twice as many jobs as threads are
+	 * waiting or running, which bounds the memory they hold. Finished statistics are passed on as they
+	 * come in, in the calling thread (hence the statistics handler does not need to be threadsafe). Once
+	 * all jobs have finished, the collected statistics are put back in the same order as with sequential
+	 * execution.
+	 *
+	 * @param incremental   whether the statistics handler gets updated incrementally
+	 * @return              null if successfully run, otherwise error message
+	 */
+	protected String runParallel(boolean incremental) {
+		String                                                  result;
+		Instances                                               dataset;
+		MultiLabelClassifier                                    classifier;
+		List<EvaluationStatistics>                              stats;
+		List<List<EvaluationStatistics>>                        ordered;
+		HashMap<Future<List<EvaluationStatistics>>,Integer>     indices;
+		CompletionService<List<EvaluationStatistics>>           completion;
+		Future<List<EvaluationStatistics>>                      future;
+		Iterator<EvaluatorJob>                                  jobs;
+		int                                                     next;
+		int                                                     maxPending;
+		boolean                                                 exhausted;
+
+		result     = null;
+		dataset    = null;
+		jobs       = null;
+		next       = m_Classifiers.length;
+		maxPending = 2 * m_ActualNumThreads;
+		exhausted  = false;
+		ordered    = new ArrayList<>();
+		indices    = new HashMap<>();
+		m_Executor = ThreadUtils.newExecutor(m_ActualNumThreads);
+		completion = new ExecutorCompletionService<>(m_Executor);
+
+		try {
+			while (m_Running && !m_Stopping) {
+				// create and submit jobs, while few enough are pending
+				while (m_Running && !m_Stopping && !exhausted && (indices.size() < maxPending)) {
+					if ((jobs != null) && jobs.hasNext()) {
+						indices.put(completion.submit(jobs.next()), ordered.size());
+						ordered.add(null);
+						continue;
+					}
+					jobs = null;
+
+					if (next == m_Classifiers.length) {
+						if (!m_DatasetProvider.hasNext()) {
+							exhausted = true;
+							break;
+						}
+						// next dataset
+						debug("pre: next-dataset");
+						dataset = m_DatasetProvider.next();
+						debug("post: next-dataset");
+						if (dataset == null) {
+							result = "Failed to obtain next dataset!";
+							log(result);
+							m_Running = false;
+							break;
+						}
+						log("Using dataset: " + dataset.relationName());
+						next = 0;
+						continue;
+					}
+
+					// next classifier
+					classifier = m_Classifiers[next++];
+					if (incremental) {
+						if (!((IncrementalEvaluationStatisticsHandler) m_StatisticsHandler).requires(classifier, dataset)) {
+							log("Already present, skipping: " + Utils.toCommandLine(classifier) + " --> " + dataset.relationName());
+							stats = ((IncrementalEvaluationStatisticsHandler) m_StatisticsHandler).retrieve(classifier, dataset);
+							ordered.add(stats);
+							m_Statistics.addAll(stats);
+							notifyStatisticsNotificationListeners(stats);
+							continue;
+						}
+					}
+
+					try {
+						debug("pre: create jobs");
+						jobs = createJobs(classifier, dataset);
+						debug("post: create jobs");
+					}
+					catch (Exception e) {
+						result = handleException("Failed to set up evaluation of dataset '" + dataset.relationName() + "' with classifier: " + Utils.toCommandLine(classifier), e);
+						m_Running = false;
+						break;
+					}
+
+					notifyIterationNotificationListeners(classifier, dataset);
+					log("Using classifier: " + OptionUtils.toCommandLine(classifier));
+				}
+
+				// all done?
+				if (indices.isEmpty())
+					break;
+
+				// pass on the next finished job
+				future = completion.poll(100, TimeUnit.MILLISECONDS);
+				if (future == null)
+					continue;
+				stats = future.get();
+				ordered.set(indices.remove(future), stats);
+				collect(stats, incremental);
+			}
+		}
+		catch (ExecutionException e) {
+			result = handleException("Failed to execute evaluation job", e.getCause());
+			m_Running = false;
+		}
+		catch (InterruptedException e) {
+			m_Running = false;
+		}
+		finally {
+			m_Executor.shutdownNow();
+			m_Executor = null;
+		}
+
+		// same order as sequential execution
+		if (m_Running && !m_Stopping) {
+			m_Statistics.clear();
+			for (List<EvaluationStatistics> s: ordered) {
+				if (s != null)
+					m_Statistics.addAll(s);
+			}
+		}
+
+		return result;
+	}
+
+	/**
+	 * Runs the experiment.
+	 *
+	 * @return          null if successfully run, otherwise error message
+	 */
+	public String run() {
+		String                      result;
+		boolean                     incremental;
+
+		debug("pre: run");
+
+		result      = null;
+		m_Running   = true;
+		incremental = (m_StatisticsHandler instanceof IncrementalEvaluationStatisticsHandler) &&
+				(((IncrementalEvaluationStatisticsHandler) m_StatisticsHandler).supportsIncrementalUpdate());
+		debug("Incremental statistics? " + incremental);
+
+		notifyExecutionStageListeners(ExecutionStageEvent.Stage.RUNNING);
+
+		m_ActualNumThreads = ThreadUtils.getActualNumThreads(m_NumThreads, ThreadUtils.getAvailableProcessors());
+		log("Number of threads (" + ThreadUtils.SEQUENTIAL + " = sequential): " + m_ActualNumThreads);
+		if (m_ActualNumThreads == ThreadUtils.SEQUENTIAL)
+			result = runSequential(incremental);
+		else
+			result = runParallel(incremental);
 
 		if (m_Running && !m_Stopping) {
 			if (!incremental)
@@ -623,6 +897,11 @@ public class DefaultExperiment
 		notifyExecutionStageListeners(ExecutionStageEvent.Stage.STOPPING);
 
 		m_Evaluator.stop();
+		if (m_Executor != null) {
+			debug("pre: shutdownNow");
+			m_Executor.shutdownNow();
+			debug("post: shutdownNow");
+		}
 
 		debug("post: stop");
 	}
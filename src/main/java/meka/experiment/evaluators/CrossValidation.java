@@ -43,7 +43,7 @@ import java.util.concurrent.*;
  */
 public class CrossValidation
   extends AbstractEvaluator
-  implements Randomizable, ThreadLimiter {
+  implements Randomizable, ThreadLimiter, SplittableEvaluator {
 
 	private static final long serialVersionUID = 6318297857792961890L;
 
@@ -407,6 +407,69 @@ public class CrossValidation
 		return result;
 	}
 
+	/**
+	 * Returns the independent jobs, one per fold, that make up the cross-validation.
+	 * The folds are only split off when their jobs are asked for.
+	 *
+	 * @param classifier    the classifier to evaluate
+	 * @param dataset       the dataset to evaluate on
+	 * @return              the jobs
+	 */
+	public Iterator<EvaluatorJob> createJobs(final MultiLabelClassifier classifier, final Instances dataset) {
+		final Random        rand;
+		final Instances     data;
+		final int           numFolds;
+		final boolean       preserveOrder;
+
+		rand          = new Random(m_Seed);
+		data          = new Instances(dataset);
+		numFolds      = m_NumFolds;
+		preserveOrder = m_PreserveOrder;
+		if (!preserveOrder)
+			data.randomize(rand);
+
+		return new Iterator<EvaluatorJob>() {
+			int i = 1;
+			@Override
+			public boolean hasNext() {
+				return (i <= numFolds);
+			}
+			@Override
+			public EvaluatorJob next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final int index = i++;
+				final Instances train;
+				final Instances test;
+				final MultiLabelClassifier current;
+				if (preserveOrder)
+					train = data.trainCV(numFolds, index - 1);
+				else
+					train = data.trainCV(numFolds, index - 1, rand);
+				test = data.testCV(numFolds, index - 1);
+				current = (MultiLabelClassifier) OptionUtils.shallowCopy(classifier);
+				return new EvaluatorJob() {
+					protected List<EvaluationStatistics> doCall() throws Exception {
+						List<EvaluationStatistics> result = new ArrayList<>();
+						log("Executing fold #" + index + "...");
+						try {
+							Result res = Evaluation.evaluateModel(current, train, test, m_Threshold, m_Verbosity);
+							EvaluationStatistics stats = new EvaluationStatistics(classifier, dataset, res);
+							stats.put(KEY_FOLD, index);
+							result.add(stats);
+						}
+						catch (Exception e) {
+							handleException(
+									"Failed to evaluate dataset '" + dataset.relationName() + "' with classifier: " + Utils.toCommandLine(classifier), e);
+						}
+						log("...finished fold #" + index);
+						return result;
+					}
+				};
+			}
+		};
+	}
+
 	/**
 	 * Returns the evaluation statistics generated for the dataset (parallel execution).
 	 *
@@ -416,55 +479,19 @@ public class CrossValidation
 	 */
 	protected List<EvaluationStatistics> evaluateParallel(final MultiLabelClassifier classifier, final Instances dataset) {
 		List<EvaluationStatistics>      result;
-		ArrayList<EvaluatorJob>	        jobs;
-		EvaluatorJob		            job;
+		List<EvaluatorJob>	            jobs;
 		int                             i;
-		Random                          rand;
-		Instances                       data;
 
 		result = new ArrayList<>();
 
 		debug("pre: create jobs");
 		jobs = new ArrayList<>();
-		rand = new Random(m_Seed);
-		data = new Instances(dataset);
-		if (!m_PreserveOrder)
-			data.randomize(rand);
-		for (i = 1; i <= m_NumFolds; i++) {
-			final int index = i;
-			final Instances train;
-			final Instances test;
-			final MultiLabelClassifier current;
-			if (m_PreserveOrder)
-				train = data.trainCV(m_NumFolds, index - 1);
-			else
-				train = data.trainCV(m_NumFolds, index - 1, rand);
-			test = data.testCV(m_NumFolds, index - 1);
-			current = (MultiLabelClassifier) OptionUtils.shallowCopy(classifier);
-			job = new EvaluatorJob() {
-				protected List<EvaluationStatistics> doCall() throws Exception {
-					List<EvaluationStatistics> result = new ArrayList<>();
-					log("Executing fold #" + index + "...");
-					try {
-						Result res = Evaluation.evaluateModel(current, train, test, m_Threshold, m_Verbosity);
-						EvaluationStatistics stats = new EvaluationStatistics(classifier, dataset, res);
-						stats.put(KEY_FOLD, index);
-						result.add(stats);
-					}
-					catch (Exception e) {
-						handleException(
-								"Failed to evaluate dataset '" + dataset.relationName() + "' with classifier: " + Utils.toCommandLine(classifier), e);
-					}
-					log("...finished fold #" + index);
-					return result;
-				}
-			};
-			jobs.add(job);
-		}
+		for (Iterator<EvaluatorJob> iter = createJobs(classifier, dataset); iter.hasNext(); )
+			jobs.add(iter.next());
 		debug("post: create jobs");
 
 		// execute jobs
-		m_Executor = Executors.newFixedThreadPool(m_ActualNumThreads);
+		m_Executor = ThreadUtils.newExecutor(m_ActualNumThreads);
 		debug("pre: submit");
 		try {
 			for (i = 0; i < jobs.size(); i++)
@@ -31,11 +31,13 @@ import weka.core.Option;
 import weka.core.Randomizable;
 
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Enumeration;
+import java.util.Iterator;
 import java.util.List;
+import java.util.NoSuchElementException;
 import java.util.Vector;
 import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
 import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 
@@ -47,7 +49,7 @@ import java.util.concurrent.TimeUnit;
  */
 public class RepeatedRuns
 		extends AbstractMetaEvaluator
-		implements ThreadLimiter {
+		implements ThreadLimiter, SplittableEvaluator {
 
 	private static final long serialVersionUID = -1230107553603089463L;
 
@@ -281,6 +283,80 @@ public class RepeatedRuns
 		return result;
 	}
 
+	/**
+	 * Adds the run number to the statistics.
+	 *
+	 * @param stats         the statistics to update, can be null
+	 * @param run           the run number
+	 * @return              the statistics
+	 */
+	protected List<EvaluationStatistics> addRun(List<EvaluationStatistics> stats, int run) {
+		if (stats != null) {
+			for (EvaluationStatistics stat: stats)
+				stat.put(KEY_RUN, run);
+		}
+		return stats;
+	}
+
+	/**
+	 * Returns the independent jobs that make up the repeated runs. If the base evaluator
+	 * can be split up as well, its jobs are returned (one per run and fold), otherwise
+	 * one job per run. The evaluator of a run is only set up when its jobs are asked for.
+	 *
+	 * @param classifier    the classifier to evaluate
+	 * @param dataset       the dataset to evaluate on
+	 * @return              the jobs
+	 */
+	public Iterator<EvaluatorJob> createJobs(final MultiLabelClassifier classifier, final Instances dataset) {
+		final int   upper;
+
+		upper = m_UpperRuns;
+
+		return new Iterator<EvaluatorJob>() {
+			int i = m_LowerRuns;
+			int run;
+			Iterator<EvaluatorJob> jobs;
+			@Override
+			public boolean hasNext() {
+				while (((jobs == null) || !jobs.hasNext()) && (i <= upper))
+					jobs = nextRun(i++);
+				return (jobs != null) && jobs.hasNext();
+			}
+			@Override
+			public EvaluatorJob next() {
+				if (!hasNext())
+					throw new NoSuchElementException();
+				final int index = run;
+				final EvaluatorJob job = jobs.next();
+				return new EvaluatorJob() {
+					protected List<EvaluationStatistics> doCall() throws Exception {
+						return addRun(job.call(), index);
+					}
+				};
+			}
+			/** Sets up the evaluator of the run, and returns its jobs. */
+			protected Iterator<EvaluatorJob> nextRun(final int index) {
+				final Evaluator evaluator = (Evaluator) OptionUtils.shallowCopy(m_Evaluator);
+				for (LogListener l: getLogListeners())
+					evaluator.addLogListener(l);
+				if (evaluator instanceof Randomizable)
+					((Randomizable) evaluator).setSeed(index);
+				evaluator.initialize();
+				run = index;
+				if (evaluator instanceof SplittableEvaluator)
+					return ((SplittableEvaluator) evaluator).createJobs(classifier, dataset);
+				return Collections.<EvaluatorJob>singletonList(new EvaluatorJob() {
+					protected List<EvaluationStatistics> doCall() throws Exception {
+						log("Executing run #" + index + "...");
+						List<EvaluationStatistics> stats = evaluator.evaluate(classifier, dataset);
+						log("...finished run #" + index);
+						return stats;
+					}
+				}).iterator();
+			}
+		};
+	}
+
 	/**
 	 * Executes the runs in sequential order.
 	 *
@@ -309,7 +385,7 @@ public class RepeatedRuns
 					if (evaluator instanceof Randomizable)
 						((Randomizable) evaluator).setSeed(index);
 					evaluator.initialize();
-					List<EvaluationStatistics> stats = m_Evaluator.evaluate(classifier, dataset);
+					List<EvaluationStatistics> stats = evaluator.evaluate(classifier, dataset);
 					for (LogListener l: m_LogListeners)
 						evaluator.removeLogListener(l);
 					log("...finished run #" + index + ((stats == null) ? "" : " with error"));
@@ -321,7 +397,7 @@ public class RepeatedRuns
 		debug("post: create jobs");
 
 		// execute jobs
-		m_Executor = Executors.newFixedThreadPool(m_ActualNumThreads);
+		m_Executor = ThreadUtils.newExecutor(m_ActualNumThreads);
 		debug("pre: submit");
 		try {
 			for (i = 0; i < jobs.size(); i++)
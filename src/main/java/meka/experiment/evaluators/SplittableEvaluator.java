@@ -0,0 +1,49 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+/**
+ * SplittableEvaluator.java
+ * Copyright (C) 2026 University of Waikato, Hamilton, NZ
+ */
+
+package meka.experiment.evaluators;
+
+import meka.classifiers.multilabel.MultiLabelClassifier;
+import weka.core.Instances;
+
+import java.util.Iterator;
+
+/**
+ * Interface for evaluators that can split up their evaluation into independent jobs
+ * (e.g., one per fold or run), which can then be scheduled by the experiment itself.
+ *
+ * @version $Revision$
+ */
+public interface SplittableEvaluator
+  extends Evaluator {
+
+	/**
+	 * Returns the independent jobs that make up the evaluation of the classifier on the dataset.
+	 * Concatenating the results of the jobs (in order) gives the same statistics as
+	 * {@link #evaluate(MultiLabelClassifier, Instances)}. The evaluator has to be initialized.
+	 * The jobs are created (e.g., their folds split off) one at a time, as the iterator is advanced,
+	 * so that a scheduler only holds the data of the jobs it is about to run.
+	 *
+	 * @param classifier    the classifier to evaluate
+	 * @param dataset       the dataset to evaluate on
+	 * @return              the jobs
+	 */
+	public Iterator<EvaluatorJob> createJobs(MultiLabelClassifier classifier, Instances dataset);
+}
@@ -16,6 +16,7 @@
 package rbms;
 
 import Jama.Matrix;
+import meka.core.MatrixKernels;
 import meka.core.MatrixUtils;
 import weka.core.*;
 
@@ -138,7 +139,7 @@ public class RBM {
 	 * @return	P(Z|X) 
 	 */
 	public Matrix prob_Z(Matrix X) {
-		Matrix P_Z = MatrixUtils.sigma( X.times(W) );     // (this is the activation function)
+		Matrix P_Z = new Matrix(MatrixKernels.multiplySigma(X.getArray(), W.getArray(), null, null));     // (this is the activation function)
 		MatrixUtils.fillCol(P_Z.getArray(), 0, 1.0); 	  	  // fix bias ... set first col to 1.0
 		return P_Z;
 	}
@@ -217,7 +218,7 @@ public class RBM {
 	 * @return	P(X|Z) 
 	 */
 	public Matrix prob_X(Matrix Z) {
-		Matrix X = new Matrix(MatrixUtils.sigma(Z.times(W.transpose()).getArray()));   // (this is the activation function)
+		Matrix X = new Matrix(MatrixKernels.multiplyTransposeSigma(Z.getArray(), W.getArray(), null));   // (this is the activation function)
 		MatrixUtils.fillCol(X.getArray(), 0, 1.0);											// fix bias - set first col to 1.0
 		return X;
 	}
@@ -478,13 +479,13 @@ public class RBM {
 
 		// POSITIVE
 		Matrix Z_0 = prob_Z(X_0);                                             // sample up                              		
-		Matrix E_pos = X_0.transpose().times(Z_0);								// positive energy, H_1 * V_1
+		Matrix E_pos = new Matrix(MatrixKernels.transposeMultiply(X_0.getArray(), Z_0.getArray(), null));	// positive energy, H_1 * V_1
 
 		// NEGATIVE
 		Matrix X_1 = prob_X(Z_0);												// go down -- can either sample down 
 		//Matrix X_1 = Mat.threshold(prob_X(Z_0),0.5);							// ... or just go down
 		Matrix pZ_1 = prob_Z(X_1);                               				// go back up again
-		Matrix E_neg = X_1.transpose().times(pZ_1);								// negative energy, P(Z_1) * X_1
+		Matrix E_neg = new Matrix(MatrixKernels.transposeMultiply(X_1.getArray(), pZ_1.getArray(), null));	// negative energy, P(Z_1) * X_1
 
 		// CALCULATE ERROR (Optional!)
 		//double _Err = Mat.meanSquaredError(X_0.getArray(),X_1.getArray());			// @note: this take some milliseconds to calculate
@@ -504,13 +505,13 @@ public class RBM {
 
 		// POSITIVE
 		Matrix Z_0 = sample_Z(X_0);                                             // sample up                              		
-		Matrix E_pos = X_0.transpose().times(Z_0);								// positive energy, H_1 * V_1
+		Matrix E_pos = new Matrix(MatrixKernels.transposeMultiply(X_0.getArray(), Z_0.getArray(), null));	// positive energy, H_1 * V_1
 
 		// NEGATIVE
 		Matrix X_1 = sample_X(Z_0);												// go down -- can either sample down 
 		//Matrix X_1 = Mat.threshold(prob_X(Z_0),0.5);							// ... or just go down
 		Matrix pZ_1 = prob_Z(X_1);                               				// go back up again
-		Matrix E_neg = X_1.transpose().times(pZ_1);								// negative energy, P(Z_1) * X_1
+		Matrix E_neg = new Matrix(MatrixKernels.transposeMultiply(X_1.getArray(), pZ_1.getArray(), null));	// negative energy, P(Z_1) * X_1
 
 		// CALCULATE ERROR (Optional!)
 		double _Err = MatrixUtils.meanSquaredError(X_0.getArray(), X_1.getArray());			// @note: this take some milliseconds to calculate
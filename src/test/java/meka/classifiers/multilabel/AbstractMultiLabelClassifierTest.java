@@ -21,6 +21,10 @@
 package meka.classifiers.multilabel;
 
 import meka.classifiers.AbstractMekaClassifierTest;
+import weka.classifiers.AbstractClassifier;
+import weka.core.Instances;
+import weka.filters.Filter;
+import weka.filters.unsupervised.instance.NonSparseToSparse;
 
 /**
  * Ancestor for multi-label tests.
@@ -39,4 +43,40 @@ public abstract class AbstractMultiLabelClassifierTest
 	public AbstractMultiLabelClassifierTest(String name) {
 		super(name);
 	}
+
+	/**
+	 * Checks that the predictions made in a batch (distributionsForInstances) are the same as the ones made one
+	 * instance at a time (distributionForInstance), on dense and on sparse test data.
+	 */
+	public void testBatchPredictions() throws Exception {
+		Instances train[] = getRegressionData(getRegressionTrainFiles());
+		Instances test[] = getRegressionData(getRegressionTestFiles());
+		MultiLabelClassifier setups[] = getRegressionSetups();
+
+		for (int i = 0; i < setups.length; i++) {
+			Instances D_train = new Instances(train[i], 0, Math.min(200, train[i].numInstances()));
+			Instances D_test = new Instances(test[i], 0, Math.min(50, test[i].numInstances()));
+			NonSparseToSparse filter = new NonSparseToSparse();
+			filter.setInputFormat(D_test);
+			Instances D_sparse = Filter.useFilter(D_test, filter);
+			D_sparse.setClassIndex(D_test.classIndex());
+
+			// two copies, built the same way (in case predicting draws random numbers)
+			MultiLabelClassifier h1 = (MultiLabelClassifier) AbstractClassifier.makeCopy(setups[i]);
+			MultiLabelClassifier h2 = (MultiLabelClassifier) AbstractClassifier.makeCopy(setups[i]);
+			h1.buildClassifier(D_train);
+			h2.buildClassifier(D_train);
+
+			for (Instances D : new Instances[]{D_test, D_sparse}) {
+				double Y[][] = h1.distributionsForInstances(D);
+				assertEquals("Number of predictions", D.numInstances(), Y.length);
+				for (int n = 0; n < D.numInstances(); n++) {
+					double y[] = h2.distributionForInstance(D.instance(n));
+					assertEquals("Number of labels", y.length, Y[n].length);
+					for (int j = 0; j < y.length; j++)
+						assertEquals("Prediction " + n + "," + j, y[j], Y[n][j], 1e-12);
+				}
+			}
+		}
+	}
 }
@@ -25,6 +25,8 @@ import meka.classifiers.AbstractMekaClassifierTest;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 
+import java.util.Arrays;
+
 /**
  * Tests BCC. Run from the command line with:<p/>
  * java meka.classifiers.multilabel.BCCTest
@@ -66,6 +68,25 @@ public class BCCTest
 	  //Assert.assertEquals("Result 1", D.classIndex(), 3);
   }
 
+  /**
+   * The dependencies measured in parallel give the same tree as the ones measured sequentially.
+   */
+  public void testNumThreads() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    Instances D_train = new Instances(D, 0, 400);
+    Instances D_test = new Instances(D, 400, D.numInstances() - 400);
+    BCC h1 = new BCC();
+    h1.setDependencyType("Ib");
+    h1.setNumThreads(1);
+    h1.buildClassifier(D_train);
+    BCC h2 = new BCC();
+    h2.setDependencyType("Ib");
+    h2.setNumThreads(4);
+    h2.buildClassifier(D_train);
+    for (int i = 0; i < D_test.numInstances(); i++)
+      assertTrue("Same distribution", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+  }
+
   public static Test suite() {
     return new TestSuite(BCCTest.class);
   }
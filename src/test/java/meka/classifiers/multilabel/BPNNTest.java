@@ -22,7 +22,11 @@ package meka.classifiers.multilabel;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import meka.classifiers.AbstractMekaClassifierTest;
+import meka.core.MLUtils;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.Arrays;
 
 /**
  * Tests BPNN. Run from the command line with:<p/>
@@ -53,6 +57,42 @@ public class BPNNTest
     return new BPNN();
   }
 
+  /**
+   * An epoch with a batch size of 1 is the same as back-propagating each instance in turn.
+   */
+  public void testUpdate() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    double X[][] = MLUtils.getXfromD(new Instances(D, 0, 100));
+    double Y[][] = MLUtils.getYfromD(new Instances(D, 0, 100));
+    BPNN h1 = new BPNN();
+    h1.setSeed(1);
+    h1.setE(0);
+    h1.buildClassifier(D);
+    BPNN h2 = (BPNN) weka.classifiers.AbstractClassifier.makeCopy(h1);
+    for (int e = 0; e < 3; e++) {
+      h1.update(X, Y);
+      for (int i = 0; i < X.length; i++)
+        h2.backPropagate(new double[][]{X[i]}, new double[][]{Y[i]});
+    }
+    for (int l = 0; l < h1.W.length; l++)
+      assertTrue("Same weights", Arrays.deepEquals(h1.W[l].getArray(), h2.W[l].getArray()));
+  }
+
+  /**
+   * Training in mini-batches gives the same network on one or several threads.
+   */
+  public void testMiniBatch() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    BPNN h1 = new BPNN();
+    h1.setOptions(new String[]{"-H", "20", "-E", "10", "-B", "16", "-num-threads", "1"});
+    h1.buildClassifier(D);
+    BPNN h2 = new BPNN();
+    h2.setOptions(new String[]{"-H", "20", "-E", "10", "-B", "16", "-num-threads", "4"});
+    h2.buildClassifier(D);
+    for (int l = 0; l < h1.W.length; l++)
+      assertTrue("Same weights", Arrays.deepEquals(h1.W[l].getArray(), h2.W[l].getArray()));
+  }
+
   public static Test suite() {
     return new TestSuite(BPNNTest.class);
   }
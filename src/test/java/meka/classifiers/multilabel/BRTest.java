@@ -24,6 +24,8 @@ import junit.framework.TestSuite;
 import weka.classifiers.Classifier;
 import weka.core.Instances;
 
+import java.util.Arrays;
+
 /**
  * Tests BR. Run from the command line with:<p/>
  * java meka.classifiers.multilabel.BRTest
@@ -65,6 +67,23 @@ public class BRTest
 	  //Assert.assertEquals("Result 1", D.classIndex(), 3);
   }
 
+  /**
+   * The per-label models built in parallel predict the same as the ones built sequentially.
+   */
+  public void testNumThreads() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    Instances D_train = new Instances(D, 0, 400);
+    Instances D_test = new Instances(D, 400, D.numInstances() - 400);
+    BR h1 = new BR();
+    h1.setNumThreads(1);
+    h1.buildClassifier(D_train);
+    BR h2 = new BR();
+    h2.setNumThreads(4);
+    h2.buildClassifier(D_train);
+    for (int i = 0; i < D_test.numInstances(); i++)
+      assertTrue("Same distribution", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+  }
+
   public static Test suite() {
     return new TestSuite(BRTest.class);
   }
@@ -18,19 +18,27 @@ package meka.classifiers.multilabel;
 import junit.framework.Test;
 import junit.framework.TestCase;
 import junit.framework.TestSuite;
+import meka.classifiers.multilabel.incremental.BRUpdateable;
 import meka.classifiers.multilabel.incremental.CCUpdateable;
 import meka.classifiers.incremental.IncrementalEvaluation;
 import meka.classifiers.multilabel.incremental.meta.BaggingMLUpdateable;
 import meka.classifiers.multilabel.meta.BaggingML;
+import meka.core.MLEvalUtils;
 import meka.core.MLUtils;
 import meka.core.Metrics;
 import meka.core.Result;
 import weka.classifiers.functions.Logistic;
 import weka.classifiers.functions.SMO;
 import weka.classifiers.lazy.IBk;
+import weka.classifiers.trees.J48;
 import weka.core.Instances;
 import weka.core.converters.ConverterUtils.DataSource;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 /**
  * EvaluationTests. Run from the command line with:<p/>
  * java meka.classifiers.multilabel.EvaluationTests
@@ -155,6 +163,51 @@ public class EvaluationTests extends TestCase {
 		// compare with non-ss
 	}
 
+	public void testStreamingEvaluation() {
+		// Stream Music, and compare with the in-memory prequential evaluation
+		Result r1 = null, r2 = null;
+		Instances D = loadInstances("Music.arff");
+		try {
+			BRUpdateable h = new BRUpdateable();
+			r1 = IncrementalEvaluation.evaluateModelPrequentialBasic(h,D,20,1.0,"0.5","3");
+			DataSource source = IncrementalEvaluation.openDataset("src/test/resources/Music.arff");
+			Instances header = source.getStructure();
+			MLUtils.prepareData(header);
+			h = new BRUpdateable();
+			r2 = IncrementalEvaluation.evaluateModelPrequentialStream(h,source,header,20,1.0,"0.5","3");
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("Streaming evaluation failed: " + e);
+		}
+		assertEquals(0, r2.size());
+		for (String m : new String[]{"Number of test instances (N)", "Accuracy", "Hamming score", "Exact match", "Rank loss", "Avg precision", "Levenshtein distance"})
+			assertEquals("Streaming: " + m, r1.getMeasurement(m), r2.getMeasurement(m));
+		assertFalse(r2.output.containsKey("AUROC (macro averaged)"));
+	}
+
+	public void testPipelinedEvaluation() {
+		// Stream Music through the pipeline (with small queues), and compare with the streaming prequential evaluation
+		Result r1 = null, r2 = null;
+		try {
+			DataSource source = IncrementalEvaluation.openDataset("src/test/resources/Music.arff");
+			Instances header = source.getStructure();
+			MLUtils.prepareData(header);
+			r1 = IncrementalEvaluation.evaluateModelPrequentialStream(new BRUpdateable(),source,header,20,1.0,"0.5","3");
+			source = IncrementalEvaluation.openDataset("src/test/resources/Music.arff");
+			header = source.getStructure();
+			MLUtils.prepareData(header);
+			r2 = IncrementalEvaluation.evaluateModelPrequentialPipelined(new BRUpdateable(),source,header,20,1.0,"0.5","3",4);
+		} catch(Exception e) {
+			e.printStackTrace();
+			fail("Pipelined evaluation failed: " + e);
+		}
+		for (String m : new String[]{"Number of test instances (N)", "Accuracy", "Hamming score", "Exact match", "Rank loss", "Avg precision", "Levenshtein distance"})
+			assertEquals("Pipelined: " + m, r1.getMeasurement(m), r2.getMeasurement(m));
+		assertTrue(r2.output.containsKey("Accuracy (window)"));
+		assertTrue(r2.vals.containsKey("Test latency 99% (us)"));
+		assertEquals(((Instances)r1.getMeasurement("Results sampled over time")).numInstances(), ((Instances)r2.getMeasurement("Results sampled over time")).numInstances());
+	}
+
 	// TESTS
 	public void testMetrics() {
 		double log_loss_L = 0.0;
@@ -177,6 +230,72 @@ public class EvaluationTests extends TestCase {
 		assertTrue("PCutL Thresholds OK?", r.info.get("Threshold").equals("[0.4, 0.4, 0.4, 0.4, 0.6, 0.6]") );
 	}
 
+	/** Asserts that the statistics are the same (arrays and Instances compared by content). */
+	protected static void assertSameOutput(String msg, Map<String,Object> output1, Map<String,Object> output2) {
+		assertEquals(msg, output1.keySet(), output2.keySet());
+		for(String m : output1.keySet()) {
+			Object v1 = output1.get(m);
+			Object v2 = output2.get(m);
+			if (v1 instanceof Instances)
+				assertEquals(msg + ": " + m, v1.toString(), String.valueOf(v2));
+			else
+				assertTrue(msg + ": " + m, Arrays.deepEquals(new Object[]{v1}, new Object[]{v2}));
+		}
+	}
+
+	public void testCVNumThreads() throws Exception {
+		Instances D = loadInstances("Music.arff");
+		CC h1 = new CC();
+		h1.setClassifier(new J48());
+		CC h2 = new CC();
+		h2.setClassifier(new J48());
+		Map<Integer,Object[]> perFold1 = new HashMap<>();
+		Map<Integer,Object[]> perFold2 = new HashMap<>();
+		Result r1 = Evaluation.cvModel(h1, D, 5, "PCut1", "7", perFold1, 1);
+		Result r2 = Evaluation.cvModel(h2, D, 5, "PCut1", "7", perFold2, 4);
+		// the same folds
+		assertEquals(perFold1.keySet(), perFold2.keySet());
+		for(int i : perFold1.keySet()) {
+			Result f1 = (Result)perFold1.get(i)[2];
+			Result f2 = (Result)perFold2.get(i)[2];
+			assertEquals(((Instances)perFold1.get(i)[1]).toString(), ((Instances)perFold2.get(i)[1]).toString());
+			List<double[]> P1 = f1.getPredictions();
+			List<double[]> P2 = f2.getPredictions();
+			assertEquals(P1.size(), P2.size());
+			for(int n = 0; n < P1.size(); n++) {
+				assertTrue("Fold " + i + ": same prediction", Arrays.equals(P1.get(n), P2.get(n)));
+				assertTrue("Fold " + i + ": same labels", Arrays.equals(f1.getActuals().get(n), f2.getActuals().get(n)));
+			}
+		}
+		// the same averaged results
+		assertEquals(r1.info.get("Threshold"), r2.info.get("Threshold"));
+		assertSameOutput("Averaged", r1.output, r2.output);
+	}
+
+	public void testCompactPredictions() throws Exception {
+		Instances D = loadInstances("Music.arff");
+		Instances D_train = new Instances(D,0,400);
+		Instances D_test = new Instances(D,400,D.numInstances()-400);
+		CC h = new CC();
+		h.setClassifier(new J48());
+		h.buildClassifier(D_train);
+		Result r1 = Evaluation.testClassifier(h, D_test, false);
+		Result r2 = Evaluation.testClassifier(h, D_test, true);
+		assertFalse(r1.isCompact());
+		assertTrue(r2.isCompact());
+		assertTrue(Arrays.deepEquals(r1.allPredictions(), r2.allPredictions()));
+		assertTrue(Arrays.deepEquals(r1.allTrueValues(), r2.allTrueValues()));
+		// (and so when combined)
+		Result r = MLEvalUtils.combinePredictions(new Result[]{r1, r2});
+		assertEquals(2 * D_test.numInstances(), r.size());
+		assertTrue(Arrays.equals(r2.rowConfidence(0), r.rowConfidence(D_test.numInstances())));
+		for(Result r_ : new Result[]{r1, r2}) {
+			r_.setInfo("Type","ML");
+			r_.setInfo("Threshold","0.5");
+		}
+		assertSameOutput("Compact", Result.getStats(r1, "6"), Result.getStats(r2, "6"));
+	}
+
 	public static Result cvEvaluateClassifier(MultiLabelClassifier h) {
 		return cvEvaluateClassifier(h,"0.5");
 	}
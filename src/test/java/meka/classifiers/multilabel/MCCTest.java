@@ -23,6 +23,9 @@ import junit.framework.Test;
 import junit.framework.TestSuite;
 import meka.classifiers.AbstractMekaClassifierTest;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.Arrays;
 
 /**
  * Tests MCC. Run from the command line with:<p/>
@@ -53,6 +56,24 @@ public class MCCTest
     return new MCC();
   }
 
+  /**
+   * Proposing several candidate chains per step, built on several threads, gives the same chain as on a single thread.
+   */
+  public void testParallelCandidates() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    Instances D_train = new Instances(D, 0, 200);
+    Instances D_test = new Instances(D, 200, 50);
+    MCC h1 = new MCC();
+    h1.setOptions(new String[]{"-Is", "12", "-K", "4", "-num-threads", "1"});
+    h1.buildClassifier(D_train);
+    MCC h2 = new MCC();
+    h2.setOptions(new String[]{"-Is", "12", "-K", "4", "-num-threads", "4"});
+    h2.buildClassifier(D_train);
+    assertTrue("Same chain", Arrays.equals(h1.retrieveChain(), h2.retrieveChain()));
+    for (int i = 0; i < D_test.numInstances(); i++)
+      assertTrue("Same distribution", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+  }
+
   public static Test suite() {
     return new TestSuite(MCCTest.class);
   }
@@ -22,6 +22,14 @@ package meka.classifiers.multilabel;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import weka.classifiers.Classifier;
+import weka.classifiers.rules.ZeroR;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SelectedTag;
+
+import java.util.ArrayList;
+import java.util.Arrays;
 
 /**
  * Tests PCC. Run from the command line with:<p/>
@@ -52,6 +60,91 @@ public class PCCTest
     return new PCC();
   }
 
+  /**
+   * Returns a PCC with the given inference method.
+   */
+  protected PCC newPCC(int inference) {
+    PCC result = new PCC();
+    result.setInference(new SelectedTag(inference, PCC.TAGS_INFERENCE));
+    return result;
+  }
+
+  /**
+   * The (default) depth-first search gives the same predictions as exhaustive search.
+   */
+  public void testDFSMatchesExhaustive() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    Instances D_train = new Instances(D, 0, 300);
+    Instances D_test = new Instances(D, 300, 100);
+    PCC h1 = newPCC(PCC.INFERENCE_EXHAUSTIVE);
+    h1.buildClassifier(D_train);
+    PCC h2 = newPCC(PCC.INFERENCE_DFS);
+    h2.buildClassifier(D_train);
+    for (int i = 0; i < D_test.numInstances(); i++)
+      assertTrue("Same distribution", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+  }
+
+  /**
+   * Of several equally probable combinations, depth-first search keeps the one that exhaustive search tries first.
+   */
+  public void testDFSTies() throws Exception {
+    // every combination of the 3 labels occurs once, so (with ZeroR) all of them are equally probable
+    ArrayList<Attribute> atts = new ArrayList<>();
+    for (int j = 0; j < 3; j++)
+      atts.add(new Attribute("y" + j, Arrays.asList("0", "1")));
+    atts.add(new Attribute("x"));
+    Instances D = new Instances("ties: -C 3", atts, 8);
+    D.setClassIndex(3);
+    for (int i = 0; i < 8; i++)
+      D.add(new DenseInstance(1.0, new double[]{i % 2, (i / 2) % 2, i / 4, i}));
+    PCC h = new PCC();
+    h.setClassifier(new ZeroR());
+    h.buildClassifier(D);
+    for (int i = 0; i < D.numInstances(); i++) {
+      double y1[] = h.exhaustive(D.instance(i), new int[]{2, 2, 2}).y;
+      double y2[] = h.dfs(D.instance(i), new PCC.Path(3), new PCC.Path(new double[3], new double[3], 0.0, 3)).y;
+      assertTrue("First combination", Arrays.equals(new double[3], y1));
+      assertTrue("Same combination", Arrays.equals(y1, y2));
+    }
+  }
+
+  /**
+   * With all combinations of many labels equally probable, the (exact) searches still only expand a few paths.
+   */
+  public void testUniformConfidences() throws Exception {
+    // each label is 0 in one instance and 1 in the other, so (with ZeroR) all 2^30 combinations are equally probable
+    int L = 30;
+    ArrayList<Attribute> atts = new ArrayList<>();
+    for (int j = 0; j < L; j++)
+      atts.add(new Attribute("y" + j, Arrays.asList("0", "1")));
+    atts.add(new Attribute("x"));
+    Instances D = new Instances("uniform: -C " + L, atts, 2);
+    D.setClassIndex(L);
+    for (int i = 0; i < 2; i++) {
+      double x[] = new double[L + 1];
+      Arrays.fill(x, i);
+      D.add(new DenseInstance(1.0, x));
+    }
+    PCC h = new PCC();
+    h.setClassifier(new ZeroR());
+    h.buildClassifier(D);
+    long start = System.currentTimeMillis();
+    for (int i = 0; i < D.numInstances(); i++) {
+      int expanded[] = new int[1];
+      PCC.Path best = h.dfs(D.instance(i), new PCC.Path(L), new PCC.Path(new double[L], new double[L], 0.0, L), expanded);
+      // (the first combination, as exhaustive search would keep)
+      assertTrue("First combination", Arrays.equals(new double[L], best.y));
+      assertEquals(Math.pow(0.5, L), best.w, 0.0);
+      assertTrue("Expanded " + expanded[0] + " paths", expanded[0] <= 2 * L);
+      assertTrue("First combination", Arrays.equals(new double[L], h.astar(D.instance(i), L).y));
+      for (int inference : new int[]{PCC.INFERENCE_DFS, PCC.INFERENCE_ASTAR, PCC.INFERENCE_BEAM}) {
+        h.setInference(new SelectedTag(inference, PCC.TAGS_INFERENCE));
+        assertEquals(L, h.distributionForInstance(D.instance(i)).length);
+      }
+    }
+    assertTrue("Bounded time", System.currentTimeMillis() - start < 10000);
+  }
+
   public static Test suite() {
     return new TestSuite(PCCTest.class);
   }
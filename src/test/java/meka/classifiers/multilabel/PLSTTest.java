@@ -22,6 +22,9 @@ package meka.classifiers.multilabel;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+
+import java.util.Arrays;
 
 /**
  * Tests PLST. Run from the command line with:<p/>
@@ -53,6 +56,26 @@ public class PLSTTest
 		return plst;
 	}
 
+	/**
+	 * Computing the transformation from the label covariance gives the same predictions as from the SVD.
+	 */
+	public void testCovariance() throws Exception {
+		Instances D = EvaluationTests.loadInstances("Music.arff");
+		Instances D_train = new Instances(D, 0, 400);
+		Instances D_test = new Instances(D, 400, D.numInstances() - 400);
+		for (int size : new int[]{3, 6}) {
+			PLST h1 = new PLST();
+			h1.setSize(size);
+			h1.buildClassifier(D_train);
+			PLST h2 = new PLST();
+			h2.setSize(size);
+			h2.setCovariance(true);
+			h2.buildClassifier(D_train);
+			for (int i = 0; i < D_test.numInstances(); i++)
+				assertTrue("Same prediction", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+		}
+	}
+
 	public static Test suite() {
 		return new TestSuite(PLSTTest.class);
 	}
@@ -0,0 +1,92 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.classifiers.multilabel.cc;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import meka.classifiers.multilabel.CC;
+import meka.core.CCUtils;
+import meka.core.MLUtils;
+import weka.classifiers.trees.J48;
+import weka.core.Instances;
+import weka.core.converters.ConverterUtils.DataSource;
+
+import java.util.Arrays;
+
+/**
+ * Tests the cache of chain nodes.
+ *
+ * @version $Revision$
+ */
+public class CNodeCacheTest extends TestCase {
+
+    public void testKeys() {
+        CNodeCache cache = new CNodeCache(2);
+        CNode a = new CNode(3, null, new int[]{1, 4});
+        CNode b = new CNode(3, null, new int[]{});
+        cache.put(3, new int[]{1, 4}, a);
+        cache.put(3, new int[]{}, b);
+        assertSame(a, cache.get(3, new int[]{4, 1}));
+        assertNull(cache.get(1, new int[]{3, 4}));
+        assertNull(cache.get(3, new int[]{1}));
+        // 'a' was used more recently than 'b', so 'b' goes
+        cache.put(0, new int[]{}, new CNode(0, null, new int[]{}));
+        assertEquals(2, cache.size());
+        assertSame(a, cache.get(3, new int[]{1, 4}));
+        assertNull(cache.get(3, new int[]{}));
+        assertEquals(2, cache.getHits());
+        assertEquals(3, cache.getMisses());
+    }
+
+    public void testChainSwap() throws Exception {
+        Instances D = DataSource.read("src/test/resources/Music.arff");
+        MLUtils.prepareData(D);
+        int L = D.classIndex();
+        CNodeCache cache = new CNodeCache(4 * L);
+        int s[] = new int[]{0, 1, 2, 3, 4, 5};
+        CCUtils.buildCC(s, D, new J48(), cache);
+        assertEquals(L, cache.getMisses());
+
+        // swap positions 1 and 3: only the nodes at positions 1..3 have a different set of parents
+        int s_[] = new int[]{0, 3, 2, 1, 4, 5};
+        CC h1 = CCUtils.buildCC(s_, D, new J48(), cache);
+        assertEquals(L + 3, cache.getMisses());
+        assertEquals(3, cache.getHits());
+
+        CC h2 = CCUtils.buildCC(s_, D, new J48());
+        for (int i = 0; i < D.numInstances(); i += 10)
+            assertTrue(Arrays.equals(h2.distributionForInstance(D.instance(i)), h1.distributionForInstance(D.instance(i))));
+    }
+
+    public void testRelease() throws Exception {
+        Instances D = DataSource.read("src/test/resources/Music.arff");
+        MLUtils.prepareData(D);
+        CNodeCache cache = new CNodeCache(2);
+        CNode node = cache.build(2, new int[]{0}, D, new J48());
+        assertTrue(node.isShared());
+        CNodeCache.release(new CNode[]{null, node});
+        assertFalse(node.isShared());
+    }
+
+    public static Test suite() {
+        return new TestSuite(CNodeCacheTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
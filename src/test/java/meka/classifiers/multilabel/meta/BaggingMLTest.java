@@ -22,7 +22,12 @@ package meka.classifiers.multilabel.meta;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 import meka.classifiers.multilabel.AbstractMultiLabelClassifierTest;
+import meka.classifiers.multilabel.EvaluationTests;
 import weka.classifiers.Classifier;
+import weka.core.Instances;
+import weka.core.Utils;
+
+import java.util.Arrays;
 
 /**
  * Tests BaggingML. Run from the command line with:<p/>
@@ -53,6 +58,34 @@ public class BaggingMLTest
     return new BaggingML();
   }
 
+  /**
+   * Builds the ensemble with the given number of threads.
+   */
+  protected BaggingML build(Instances D, int numThreads) throws Exception {
+    BaggingML h = new BaggingML();
+    h.setOptions(Utils.splitOptions("-I 10 -num-threads " + numThreads + " -W meka.classifiers.multilabel.CC -- -W weka.classifiers.trees.J48"));
+    h.buildClassifier(D);
+    return h;
+  }
+
+  public void testNumThreads() throws Exception {
+    Instances D = EvaluationTests.loadInstances("Music.arff");
+    Instances D_train = new Instances(D, 0, 400);
+    Instances D_test = new Instances(D, 400, D.numInstances() - 400);
+    BaggingML h1 = build(D_train, 1);
+    BaggingML h2 = build(D_train, 4);
+    // the same ensemble
+    assertEquals(h1.getModel(), h2.getModel());
+    // the same votes, one by one and in batches (the members predicting in parallel)
+    double P1[][] = h1.distributionsForInstances(D_test);
+    for (int n = 0; n < 2; n++) {
+      double P2[][] = h2.distributionsForInstances(D_test);
+      assertTrue("Same batch votes", Arrays.deepEquals(P1, P2));
+    }
+    for (int i = 0; i < D_test.numInstances(); i++)
+      assertTrue("Same votes", Arrays.equals(h1.distributionForInstance(D_test.instance(i)), h2.distributionForInstance(D_test.instance(i))));
+  }
+
   public static Test suite() {
     return new TestSuite(BaggingMLTest.class);
   }
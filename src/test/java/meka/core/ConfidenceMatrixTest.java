@@ -0,0 +1,123 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests ConfidenceMatrix, against the rows it was given.
+ *
+ * @version $Revision$
+ */
+public class ConfidenceMatrixTest extends TestCase {
+
+    /** Rows across more than one block (with NaN, which must be kept as is). */
+    protected static double[][] randomRows(int N, int L, Random r) {
+        double M[][] = new double[N][L];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < L; j++)
+                M[i][j] = (r.nextInt(20) == 0) ? Double.NaN : r.nextDouble();
+        }
+        return M;
+    }
+
+    public void testRows() {
+        double M[][] = randomRows(2 * ConfidenceMatrix.BLOCK_ROWS + 5, 7, new Random(1));
+        ConfidenceMatrix C = new ConfidenceMatrix();
+        assertEquals(-1, C.width());
+        for (double row[] : M)
+            C.add(row);
+        assertEquals(7, C.width());
+        assertEquals(M.length, C.size());
+        for (int i = 0; i < M.length; i++) {
+            assertTrue(Arrays.equals(M[i], C.get(i)));
+            for (int j = 0; j < 7; j++)
+                assertEquals(M[i][j], C.get(i, j), 0.0);
+        }
+        assertTrue(Arrays.deepEquals(M, C.toMatrix()));
+        // rows are copied in and out
+        C.get(3)[0] = -1.0;
+        M[4][0] = -1.0;
+        assertFalse(C.get(3)[0] == -1.0);
+        assertFalse(C.get(4)[0] == -1.0);
+    }
+
+    public void testGetColumn() {
+        double M[][] = randomRows(ConfidenceMatrix.BLOCK_ROWS + 1, 3, new Random(2));
+        ConfidenceMatrix C = new ConfidenceMatrix(3);
+        C.addAll(Arrays.asList(M));
+        for (int j = 0; j < 3; j++) {
+            double col[] = C.getColumn(j);
+            assertEquals(M.length, col.length);
+            for (int i = 0; i < M.length; i++)
+                assertEquals(M[i][j], col[i], 0.0);
+        }
+    }
+
+    public void testSet() {
+        ConfidenceMatrix C = new ConfidenceMatrix(2);
+        C.add(new double[]{0.1, 0.2});
+        C.add(new double[]{0.3, 0.4});
+        assertTrue(Arrays.equals(new double[]{0.3, 0.4}, C.set(1, new double[]{0.5, 0.6})));
+        assertTrue(Arrays.equals(new double[]{0.5, 0.6}, C.get(1)));
+        try {
+            C.add(new double[3]);
+            fail("Expected an exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            C.get(2);
+            fail("Expected an exception");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+        C.clear();
+        assertEquals(0, C.size());
+    }
+
+    public void testSerialization() throws Exception {
+        double M[][] = randomRows(ConfidenceMatrix.BLOCK_ROWS + 1, 4, new Random(3));
+        ConfidenceMatrix C = new ConfidenceMatrix();
+        C.addAll(Arrays.asList(M));
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(C);
+        out.close();
+        ConfidenceMatrix C_ = (ConfidenceMatrix) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertEquals(4, C_.width());
+        assertTrue(Arrays.deepEquals(M, C_.toMatrix()));
+    }
+
+    public static Test suite() {
+        return new TestSuite(ConfidenceMatrixTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.SparseInstance;
+import weka.core.matrix.Matrix;
+
+import java.util.Random;
+
+/**
+ * Tests the label covariance, and the V of the SVD of the (shifted) label matrix obtained from it.
+ *
+ * @version $Revision$
+ */
+public class LabelCovarianceTest extends TestCase {
+
+    private static final double EPS = 1e-9;
+
+    /** Labels from a few latent factors (so the spectrum of the covariance decays), and some features. */
+    private static double[][] makeLabels(int N, int L, int F, Random rand) {
+        double W[][] = MatrixUtils.randn(F, L, rand);
+        double Y[][] = new double[N][L + 2];
+        for (int i = 0; i < N; i++) {
+            double u[] = new double[F];
+            for (int f = 0; f < F; f++)
+                u[f] = rand.nextGaussian();
+            for (int j = 0; j < L; j++) {
+                double a = 0.3 * rand.nextGaussian();
+                for (int f = 0; f < F; f++)
+                    a += u[f] * W[f][j];
+                Y[i][j] = (a > 1.0) ? 1.0 : 0.0;
+            }
+            Y[i][L] = rand.nextDouble();
+            Y[i][L + 1] = 1.0;
+        }
+        return Y;
+    }
+
+    /** The 1/-1 coded labels, shifted by their means. */
+    private static Matrix shift(double Y[][], int L) {
+        int N = Y.length;
+        double Z[][] = new double[N][L];
+        for (int j = 0; j < L; j++) {
+            double mu = 0.0;
+            for (int i = 0; i < N; i++)
+                mu += (Y[i][j] == 1.0) ? 1.0 : -1.0;
+            mu /= N;
+            for (int i = 0; i < N; i++)
+                Z[i][j] = ((Y[i][j] == 1.0) ? 1.0 : -1.0) - mu;
+        }
+        return new Matrix(Z);
+    }
+
+    /** Asserts that the columns of U and V are the same, up to sign. */
+    private static void assertSameColumns(Matrix U, Matrix V, double eps) {
+        assertEquals(U.getRowDimension(), V.getRowDimension());
+        for (int c = 0; c < V.getColumnDimension(); c++) {
+            double dot = 0.0;
+            for (int j = 0; j < V.getRowDimension(); j++)
+                dot += U.get(j, c) * V.get(j, c);
+            assertEquals("Column " + c, 1.0, Math.abs(dot), eps);
+        }
+    }
+
+    public void testScatter() {
+        Random rand = new Random(1);
+        int N = 300, L = 8;
+        double Y[][] = makeLabels(N, L, 2, rand);
+        LabelCovariance dense = new LabelCovariance(L);
+        LabelCovariance sparse = new LabelCovariance(L);
+        for (int i = 0; i < N; i++) {
+            Instance x = new DenseInstance(1.0, Y[i]);
+            dense.update(x);
+            sparse.update(new SparseInstance(x));
+        }
+        assertEquals(N, dense.numInstances());
+        Matrix Z = shift(Y, L);
+        Matrix S = Z.transpose().times(Z);
+        double mu[] = dense.getMeans();
+        for (int j = 0; j < L; j++) {
+            double sum = 0.0;
+            for (int i = 0; i < N; i++)
+                sum += (Y[i][j] == 1.0) ? 1.0 : -1.0;
+            assertEquals(sum / N, mu[j], EPS);
+            for (int k = 0; k < L; k++) {
+                assertEquals(S.get(j, k), dense.getScatter().get(j, k), 1e-6);
+                assertEquals(dense.getScatter().get(j, k), sparse.getScatter().get(j, k), 0.0);
+            }
+        }
+    }
+
+    public void testTopEigenvectors() {
+        Random rand = new Random(2);
+        int N = 400, L = 10, k = 4;
+        double Y[][] = makeLabels(N, L, 3, rand);
+        LabelCovariance covariance = new LabelCovariance(L);
+        for (int i = 0; i < N; i++)
+            covariance.update(new DenseInstance(1.0, Y[i]));
+        Matrix V = shift(Y, L).svd().getV().getMatrix(0, L - 1, 0, k - 1);
+        assertSameColumns(V, MatrixUtils.topEigenvectors(covariance.getScatter(), k), 1e-6);
+    }
+
+    public void testRandomizedTopEigenvectors() {
+        Random rand = new Random(3);
+        int N = 1000, L = 150, k = 3;
+        double Y[][] = makeLabels(N, L, k, rand);
+        LabelCovariance covariance = new LabelCovariance(L);
+        for (int i = 0; i < N; i++)
+            covariance.update(new DenseInstance(1.0, Y[i]));
+        Matrix S = covariance.getScatter();
+        Matrix V = MatrixUtils.topEigenvectors(S, k);
+        Matrix U = MatrixUtils.randomizedTopEigenvectors(S, k, 10, 4, new Random(1));
+        assertEquals(k, U.getColumnDimension());
+        assertSameColumns(V, U, 1e-3);
+    }
+
+    public static Test suite() {
+        return new TestSuite(LabelCovarianceTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
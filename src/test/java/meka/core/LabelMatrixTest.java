@@ -0,0 +1,151 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests LabelMatrix, against the rows it was given (bit-packed, with missing values, and as ints).
+ *
+ * @version $Revision$
+ */
+public class LabelMatrixTest extends TestCase {
+
+    /** Rows of values from -1 (missing) to K-1, across more than one block. */
+    protected static int[][] randomRows(int N, int L, int K, Random r) {
+        int Y[][] = new int[N][L];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < L; j++)
+                Y[i][j] = r.nextInt(K + 1) - 1;
+        }
+        return Y;
+    }
+
+    protected static void assertRows(int Y[][], LabelMatrix M) {
+        assertEquals(Y.length, M.size());
+        for (int i = 0; i < Y.length; i++) {
+            assertTrue("Row " + i, Arrays.equals(Y[i], M.get(i)));
+            for (int j = 0; j < Y[i].length; j++)
+                assertEquals(Y[i][j], M.get(i, j));
+        }
+        for (int j = 0; j < M.width(); j++) {
+            int col[] = M.getColumn(j);
+            for (int i = 0; i < Y.length; i++)
+                assertEquals(Y[i][j], col[i]);
+        }
+        assertTrue(Arrays.deepEquals(Y, M.toMatrix()));
+    }
+
+    public void testBitPacked() {
+        // (more than 64 labels, i.e., more than one word per row)
+        for (int L : new int[]{1, 6, 64, 70, 130}) {
+            int Y[][] = randomRows(LabelMatrix.BLOCK_ROWS + 3, L, 2, new Random(L));
+            LabelMatrix M = new LabelMatrix();
+            for (int y[] : Y)
+                M.add(y);
+            assertEquals(L, M.width());
+            assertTrue(M.isBitPacked());
+            assertRows(Y, M);
+        }
+    }
+
+    public void testNoMissing() {
+        int Y[][] = randomRows(LabelMatrix.BLOCK_ROWS + 3, 5, 2, new Random(1));
+        for (int y[] : Y) {
+            for (int j = 0; j < y.length; j++)
+                y[j] = Math.max(y[j], 0);
+        }
+        LabelMatrix M = new LabelMatrix(5);
+        M.addAll(Arrays.asList(Y));
+        assertRows(Y, M);
+        // a missing value, in a block without any so far
+        Y[2][3] = -1;
+        M.set(2, Y[2]);
+        assertRows(Y, M);
+    }
+
+    public void testUnpack() {
+        // (multi-target values, the first one only after some bit-packed rows)
+        int Y[][] = randomRows(LabelMatrix.BLOCK_ROWS + 3, 4, 2, new Random(2));
+        int Y_[][] = randomRows(LabelMatrix.BLOCK_ROWS, 4, 3, new Random(3));
+        LabelMatrix M = new LabelMatrix();
+        M.addAll(Arrays.asList(Y));
+        assertTrue(M.isBitPacked());
+        M.addAll(Arrays.asList(Y_));
+        assertFalse(M.isBitPacked());
+        int all[][] = new int[Y.length + Y_.length][];
+        System.arraycopy(Y, 0, all, 0, Y.length);
+        System.arraycopy(Y_, 0, all, Y.length, Y_.length);
+        assertRows(all, M);
+        // also when set
+        LabelMatrix M_ = new LabelMatrix(4);
+        M_.addAll(Arrays.asList(Y));
+        assertTrue(Arrays.equals(Y[5], M_.set(5, new int[]{0, 4, -1, 1})));
+        Y[5] = new int[]{0, 4, -1, 1};
+        assertFalse(M_.isBitPacked());
+        assertRows(Y, M_);
+    }
+
+    public void testInvalid() {
+        LabelMatrix M = new LabelMatrix(3);
+        try {
+            M.add(new int[2]);
+            fail("Expected an exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        try {
+            M.get(0);
+            fail("Expected an exception");
+        }
+        catch (IndexOutOfBoundsException e) {
+            // expected
+        }
+    }
+
+    public void testSerialization() throws Exception {
+        for (int K : new int[]{2, 3}) {
+            int Y[][] = randomRows(LabelMatrix.BLOCK_ROWS + 1, 6, K, new Random(K));
+            LabelMatrix M = new LabelMatrix();
+            M.addAll(Arrays.asList(Y));
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream out = new ObjectOutputStream(bytes);
+            out.writeObject(M);
+            out.close();
+            LabelMatrix M_ = (LabelMatrix) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+            assertEquals(M.isBitPacked(), M_.isBitPacked());
+            assertRows(Y, M_);
+        }
+    }
+
+    public static Test suite() {
+        return new TestSuite(LabelMatrixTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Random;
+import java.util.TreeSet;
+
+/**
+ * Tests the (cached, bitset-backed) labelset operations against the plain sparse ones.
+ *
+ * @version $Revision$
+ */
+public class LabelSetTest extends TestCase {
+
+    private static int[] randomSet(Random rand, int L, double p) {
+        TreeSet<Integer> set = new TreeSet<Integer>();
+        for (int j = 0; j < L; j++)
+            if (rand.nextDouble() < p)
+                set.add(j);
+        int y[] = new int[set.size()];
+        int i = 0;
+        for (int j : set)
+            y[i++] = j;
+        return y;
+    }
+
+    public void testOperations() {
+        Random rand = new Random(1);
+        for (int it = 0; it < 2000; it++) {
+            // also cover labelsets that are too large for a bitset
+            int L = (it % 4 == 0) ? LabelSet.MAX_BITS + 1 + rand.nextInt(200) : 1 + rand.nextInt(150);
+            int y1[] = randomSet(rand, L, rand.nextDouble() * 0.3);
+            int y2[] = randomSet(rand, L, rand.nextDouble());
+            if (it % 3 == 0)
+                y1 = LabelSet.minus(y2, randomSet(rand, L, 0.5));
+            LabelSet s1 = new LabelSet(y1);
+            LabelSet s2 = new LabelSet(y2);
+
+            assertEquals(LabelSet.subset(y1, y2), s1.subsetof(s2));
+            assertEquals(LabelSet.subset(y2, y1), s2.subsetof(s1));
+            int common = LabelSet.intersection(y1, y2);
+            assertEquals(common, s1.intersectionSize(s2));
+            assertEquals(common > 0, s1.intersects(s2));
+            for (int j = -1; j <= L; j++)
+                assertEquals(Arrays.binarySearch(y1, j) >= 0, s1.contains(j));
+            assertEquals(Arrays.hashCode(y1), s1.hashCode());
+            assertEquals(Arrays.equals(y1, y2), s1.equals(s2));
+        }
+    }
+
+    public void testReassign() {
+        LabelSet s = new LabelSet(new int[]{1, 3, 5});
+        LabelSet t = new LabelSet(new int[]{3});
+        assertTrue(s.contains(5));
+        assertEquals(1, t.subsetof(s));
+        s.minus(t);
+        assertEquals("[1, 5]", s.toString());
+        assertFalse(s.contains(3));
+        assertEquals(-1, t.subsetof(s));
+        assertEquals(Arrays.hashCode(new int[]{1, 5}), s.hashCode());
+        assertEquals(new LabelSet(new int[]{1, 5}), s);
+    }
+
+    public static Test suite() {
+        return new TestSuite(LabelSetTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
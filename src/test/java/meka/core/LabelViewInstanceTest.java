@@ -0,0 +1,155 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import meka.classifiers.multilabel.EvaluationTests;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Tests LabelViewInstance, against the copies made by F.keepLabels.
+ *
+ * @version $Revision$
+ */
+public class LabelViewInstanceTest extends TestCase {
+
+    /** 3 labels, 4 features (mostly zero, for the sparse instances) */
+    private static final double VALUES[] = {1, 0, 1, 0, 2.5, 0, -1};
+
+    /** the labels kept */
+    private static final int KEEP[] = {0, 2};
+
+    /** the values of a view of VALUES, keeping KEEP */
+    private static final double EXPECTED[] = {1, 1, 0, 2.5, 0, -1};
+
+    private static Instances header() {
+        ArrayList<Attribute> atts = new ArrayList<>();
+        for (int j = 0; j < 3; j++)
+            atts.add(new Attribute("y" + j, Arrays.asList("0", "1")));
+        for (int i = 0; i < 4; i++)
+            atts.add(new Attribute("x" + i));
+        Instances D = new Instances("test: -C 3", atts, 0);
+        D.setClassIndex(3);
+        return D;
+    }
+
+    /** The values of x, as given by its (sparse) numValues/index/valueSparse. */
+    private static double[] sparseValues(Instance x) {
+        double v[] = new double[x.numAttributes()];
+        for (int p = 0; p < x.numValues(); p++) {
+            if (p > 0)
+                assertTrue("Ascending indices", x.index(p) > x.index(p - 1));
+            v[x.index(p)] = x.valueSparse(p);
+        }
+        return v;
+    }
+
+    public void testValues() {
+        for (Instance source : new Instance[]{new DenseInstance(1.0, VALUES), new SparseInstance(1.0, VALUES)}) {
+            source.setDataset(header());
+            LabelViewInstance x = new LabelViewInstance(source, 3, KEEP);
+            assertEquals(EXPECTED.length, x.numAttributes());
+            for (int i = 0; i < EXPECTED.length; i++)
+                assertEquals(EXPECTED[i], x.value(i), 0.0);
+            assertTrue(Arrays.equals(EXPECTED, x.toDoubleArray()));
+            assertTrue(Arrays.equals(EXPECTED, sparseValues(x)));
+            if (source instanceof SparseInstance)
+                assertEquals("Only the non-zero features", KEEP.length + 2, x.numValues());
+        }
+    }
+
+    public void testLabelValues() {
+        for (Instance source : new Instance[]{new DenseInstance(1.0, VALUES), new SparseInstance(1.0, VALUES)}) {
+            double y[] = {0.0, 0.0};
+            LabelViewInstance x = new LabelViewInstance(source, 3, KEEP, y);
+            assertEquals(0.0, x.value(0), 0.0);
+            // (not copied)
+            y[1] = 1.0;
+            assertEquals(1.0, x.value(1), 0.0);
+            assertEquals(2.5, x.value(3), 0.0);
+            assertTrue(Arrays.equals(x.toDoubleArray(), sparseValues(x)));
+        }
+    }
+
+    public void testCopyOnWrite() {
+        for (Instance source : new Instance[]{new DenseInstance(1.0, VALUES), new SparseInstance(1.0, VALUES)}) {
+            LabelViewInstance x = new LabelViewInstance(source, 3, KEEP);
+            Instance before = (Instance) x.copy();
+            x.setValue(0, 0.0);
+            x.setValue(3, 7.0);
+            x.setWeight(2.0);
+            // the source is never changed
+            assertTrue(Arrays.equals(VALUES, source.toDoubleArray()));
+            assertEquals(1.0, source.weight(), 0.0);
+            // nor a copy made before
+            assertTrue(Arrays.equals(EXPECTED, before.toDoubleArray()));
+            assertEquals(1.0, before.weight(), 0.0);
+            double changed[] = EXPECTED.clone();
+            changed[0] = 0.0;
+            changed[3] = 7.0;
+            assertTrue(Arrays.equals(changed, x.toDoubleArray()));
+            assertTrue(Arrays.equals(changed, sparseValues(x)));
+            // a copy made after is independent of the view
+            Instance after = (Instance) x.copy();
+            x.setValue(1, 0.0);
+            assertTrue(Arrays.equals(changed, after.toDoubleArray()));
+            assertEquals(2.0, after.weight(), 0.0);
+        }
+    }
+
+    public void testSetSource() {
+        LabelViewInstance x = new LabelViewInstance(new DenseInstance(1.0, VALUES), 3, KEEP);
+        x.setValue(0, 0.0);
+        double values[] = VALUES.clone();
+        values[2] = 0.0;
+        x.setSource(new SparseInstance(3.0, values));
+        assertEquals(3.0, x.weight(), 0.0);
+        double expected[] = EXPECTED.clone();
+        expected[1] = 0.0;
+        assertTrue(Arrays.equals(expected, x.toDoubleArray()));
+        assertTrue(Arrays.equals(expected, sparseValues(x)));
+    }
+
+    public void testKeepLabelsView() throws Exception {
+        Instances D = EvaluationTests.loadInstances("Music.arff");
+        int L = D.classIndex();
+        int keep[] = {1, 3, 4};
+        Instances D_copy = F.keepLabels(new Instances(D), L, keep);
+        Instances D_view = F.keepLabelsView(D, L, keep);
+        assertEquals(D_copy.numAttributes(), D_view.numAttributes());
+        assertEquals(D_copy.classIndex(), D_view.classIndex());
+        assertEquals(D_copy.numInstances(), D_view.numInstances());
+        for (int i = 0; i < D.numInstances(); i++)
+            assertTrue("Instance " + i, Arrays.equals(D_copy.instance(i).toDoubleArray(), D_view.instance(i).toDoubleArray()));
+    }
+
+    public static Test suite() {
+        return new TestSuite(LabelViewInstanceTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
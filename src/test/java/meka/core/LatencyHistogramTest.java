@@ -0,0 +1,86 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the latency histogram, against exact percentiles.
+ *
+ * @version $Revision$
+ */
+public class LatencyHistogramTest extends TestCase {
+
+    public void testBuckets() {
+        long prev = -1;
+        for (int b = 0; b < (64 - LatencyHistogram.B) * LatencyHistogram.S; b++) {
+            long u = LatencyHistogram.upperBound(b);
+            assertTrue(prev + 1 <= u);
+            assertEquals(b, LatencyHistogram.bucket(prev + 1));
+            assertEquals(b, LatencyHistogram.bucket(u));
+            prev = u;
+        }
+        assertEquals(Long.MAX_VALUE, prev);
+    }
+
+    public void testPercentiles() {
+        Random rand = new Random(1);
+        int N = 10000;
+        long v[] = new long[N];
+        LatencyHistogram h = new LatencyHistogram();
+        for (int i = 0; i < N; i++) {
+            v[i] = (long) Math.exp(rand.nextDouble() * 20);   // 1ns .. 0.5s
+            h.record(v[i]);
+        }
+        Arrays.sort(v);
+        assertEquals(N, h.numValues());
+        assertEquals(v[0], h.getMin());
+        assertEquals(v[N - 1], h.getMax());
+        for (double q : new double[]{0.0, 0.1, 0.5, 0.9, 0.99, 0.999, 1.0}) {
+            long exact = v[Math.max(0, (int) Math.ceil(q * N) - 1)];
+            long approx = h.getPercentile(q);
+            assertTrue(approx >= exact);
+            assertTrue(approx - exact <= exact / LatencyHistogram.S);
+        }
+    }
+
+    public void testAdd() {
+        LatencyHistogram h1 = new LatencyHistogram();
+        LatencyHistogram h2 = new LatencyHistogram();
+        h1.record(10);
+        h2.record(1000);
+        h2.record(-5);
+        h1.add(h2);
+        assertEquals(3, h1.numValues());
+        assertEquals(0, h1.getMin());
+        assertEquals(1000, h1.getMax());
+        assertEquals(10, h1.getPercentile(0.5));
+        assertEquals(0, new LatencyHistogram().getPercentile(0.5));
+    }
+
+    public static Test suite() {
+        return new TestSuite(LatencyHistogramTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
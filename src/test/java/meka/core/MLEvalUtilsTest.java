@@ -0,0 +1,310 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Instances;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Random;
+
+/**
+ * Tests the statistics of MLEvalUtils (accumulated in a single pass, see MetricAccumulator), against the
+ * corresponding Metrics.* functions, on random data with missing labels, all-missing rows, and NaN and tied confidences.
+ *
+ * @version $Revision$
+ */
+public class MLEvalUtilsTest extends TestCase {
+
+    /** the number of random data sets per test */
+    private static final int TRIALS = 50;
+
+    /** the confidences, drawn from a small set (for many ties) */
+    private static final double CONFIDENCES[] = {0.0, 0.25, 0.5, 0.75, 1.0};
+
+    /** the thresholds */
+    private static final double THRESHOLDS[] = {0.25, 0.5, 0.75};
+
+    /**
+     * Random true values in 0..K-1, with missing values (-1), all-missing rows, and (sometimes) an all-missing label.
+     * The first row has at least one label which is not missing.
+     */
+    private static int[][] randomY(Random r, int N, int L, int K) {
+        int Y[][] = new int[N][L];
+        int missingLabel = r.nextBoolean() ? r.nextInt(L) : -1;
+        for (int i = 0; i < N; i++) {
+            boolean allMissing = (i > 0) && (r.nextDouble() < 0.1);
+            for (int j = 0; j < L; j++) {
+                if (allMissing || (j == missingLabel && L > 1) || (i > 0 && r.nextDouble() < 0.2))
+                    Y[i][j] = -1;
+                else
+                    Y[i][j] = r.nextInt(K);
+            }
+            if (i == 0 && Metrics.allMissing(Y[i]))
+                Y[i][(missingLabel + 1) % L] = 0;
+        }
+        return Y;
+    }
+
+    /**
+     * Random multi-label confidences: mostly tied, some arbitrary, and some NaN.
+     */
+    private static double[][] randomConfidences(Random r, int N, int L) {
+        double Rpred[][] = new double[N][L];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < L; j++) {
+                double p = r.nextDouble();
+                if (p < 0.05)
+                    Rpred[i][j] = Double.NaN;
+                else if (p < 0.7)
+                    Rpred[i][j] = CONFIDENCES[r.nextInt(CONFIDENCES.length)];
+                else
+                    Rpred[i][j] = r.nextDouble();
+            }
+        }
+        return Rpred;
+    }
+
+    /**
+     * Random multi-target predictions around 0..K-1 (to be rounded), and some NaN.
+     */
+    private static double[][] randomPredictions(Random r, int N, int L, int K) {
+        double Rpred[][] = new double[N][L];
+        for (int i = 0; i < N; i++) {
+            for (int j = 0; j < L; j++) {
+                if (r.nextDouble() < 0.05)
+                    Rpred[i][j] = Double.NaN;
+                else
+                    Rpred[i][j] = r.nextInt(K) + (r.nextDouble() - 0.5) * 0.8;
+            }
+        }
+        return Rpred;
+    }
+
+    /**
+     * The multi-label statistics, computed directly with Metrics.* (as MLEvalUtils did before the MetricAccumulator).
+     */
+    private static HashMap<String,Object> expectedMLStats(double Rpred[][], int Y[][], double t[], int V) {
+        int N = Y.length;
+        int L = Y[0].length;
+        int Ypred[][] = ThresholdUtils.threshold(Rpred, t);
+
+        HashMap<String,Object> results = new LinkedHashMap<String,Object>();
+        results.put("Number of test instances (N)", (int) N);
+        results.put("Accuracy", Metrics.P_Accuracy(Y, Ypred));
+        results.put("Jaccard index", Metrics.P_Accuracy(Y, Ypred));
+        results.put("Hamming score", Metrics.P_Hamming(Y, Ypred));
+        results.put("Exact match", Metrics.P_ExactMatch(Y, Ypred));
+        if (V > 1) {
+            results.put("Jaccard distance", Metrics.L_JaccardDist(Y, Ypred));
+            results.put("Hamming loss", Metrics.L_Hamming(Y, Ypred));
+            results.put("ZeroOne loss", Metrics.L_ZeroOne(Y, Ypred));
+            results.put("Harmonic score", Metrics.P_Harmonic(Y, Ypred));
+            results.put("One error", Metrics.L_OneError(Y, Rpred));
+            results.put("Rank loss", Metrics.L_RankLoss(Y, Rpred));
+            results.put("Avg precision", Metrics.P_AveragePrecision(Y, Rpred));
+            results.put("Log Loss (lim. L)", Metrics.L_LogLossL(Y, Rpred));
+            results.put("Log Loss (lim. D)", Metrics.L_LogLossD(Y, Rpred));
+            if (V > 3) {
+                results.put("Micro Precision", Metrics.P_PrecisionMicro(Y, Ypred));
+                results.put("Micro Recall", Metrics.P_RecallMicro(Y, Ypred));
+                results.put("Macro Precision", Metrics.P_PrecisionMacro(Y, Ypred));
+                results.put("Macro Recall", Metrics.P_RecallMacro(Y, Ypred));
+            }
+            results.put("F1 (micro averaged)", Metrics.P_FmicroAvg(Y, Ypred));
+            results.put("F1 (macro averaged by example)", Metrics.P_FmacroAvgD(Y, Ypred));
+            results.put("F1 (macro averaged by label)", Metrics.P_FmacroAvgL(Y, Ypred));
+            results.put("AUPRC (macro averaged)", Metrics.P_macroAUPRC(Y, Rpred));
+            results.put("AUROC (macro averaged)", Metrics.P_macroAUROC(Y, Rpred));
+            results.put("Curve Data", Metrics.curveData(Y, Rpred));
+            results.put("Macro Curve Data", Metrics.curveDataMacroAveraged(Y, Rpred));
+            results.put("Micro Curve Data", Metrics.curveDataMicroAveraged(Y, Rpred));
+            if (V > 2) {
+                results.put("Label indices              ", A.make_sequence(L));
+                double HL[] = new double[L];
+                double HA[] = new double[L];
+                double Pr[] = new double[L];
+                double Re[] = new double[L];
+                for (int j = 0; j < L; j++) {
+                    HL[j] = Metrics.P_Hamming(Y, Ypred, j);
+                    HA[j] = Metrics.P_Harmonic(Y, Ypred, j);
+                    Pr[j] = Metrics.P_Precision(Y, Ypred, j);
+                    Re[j] = Metrics.P_Recall(Y, Ypred, j);
+                }
+                results.put("Accuracy (per label)", HL);
+                if (V > 3) {
+                    results.put("Harmonic (per label)", HA);
+                    results.put("Precision (per label)", Pr);
+                    results.put("Recall (per label)", Re);
+                }
+                results.put("Empty labelvectors (predicted)", MLUtils.emptyVectors(Ypred));
+                results.put("Label cardinality (predicted)", MLUtils.labelCardinality(Ypred));
+                results.put("Levenshtein distance", Metrics.L_LevenshteinDistance(Y, Ypred));
+                if (V > 3) {
+                    results.put("Label cardinality (difference)", MLUtils.labelCardinality(Y) - MLUtils.labelCardinality(Ypred));
+                    double diff_LC[] = new double[L];
+                    double true_LC[] = new double[L];
+                    double pred_LC[] = new double[L];
+                    for (int j = 0; j < L; j++) {
+                        diff_LC[j] = MLUtils.labelCardinality(Y, j) - MLUtils.labelCardinality(Ypred, j);
+                        true_LC[j] = MLUtils.labelCardinality(Y, j);
+                        pred_LC[j] = MLUtils.labelCardinality(Ypred, j);
+                    }
+                    results.put("avg. relevance (test set)", true_LC);
+                    results.put("avg. relevance (predicted)     ", pred_LC);
+                    results.put("avg. relevance (difference)     ", diff_LC);
+                }
+            }
+        }
+        return results;
+    }
+
+    /**
+     * The multi-target statistics, computed directly with Metrics.*.
+     */
+    private static HashMap<String,Object> expectedMTStats(double Rpred[][], int Y[][], int V) {
+        int N = Y.length;
+        int L = Y[0].length;
+        int Ypred[][] = ThresholdUtils.round(Rpred);
+
+        HashMap<String,Object> output = new LinkedHashMap<String,Object>();
+        output.put("N(test)", (double) N);
+        output.put("L", (double) L);
+        output.put("Hamming score", Metrics.P_Hamming(Y, Ypred));
+        output.put("Exact match", Metrics.P_ExactMatch(Y, Ypred));
+        if (V > 1) {
+            output.put("Hamming loss", Metrics.L_Hamming(Y, Ypred));
+            output.put("ZeroOne loss", Metrics.L_ZeroOne(Y, Ypred));
+        }
+        if (V > 2) {
+            output.put("Levenshtein distance", Metrics.L_LevenshteinDistance(Y, Ypred));
+            double HL[] = new double[L];
+            for (int j = 0; j < L; j++)
+                HL[j] = Metrics.P_Hamming(Y, Ypred, j);
+            output.put("Label indices              ", A.make_sequence(L));
+            output.put("Accuracy (per label)", HL);
+        }
+        return output;
+    }
+
+    private static void assertSameValue(String msg, double expected, double actual) {
+        if (Double.isNaN(expected) || Double.isInfinite(expected))
+            assertEquals(msg, Double.valueOf(expected), Double.valueOf(actual));
+        else
+            assertEquals(msg, expected, actual, 1e-9 * Math.max(1.0, Math.abs(expected)));
+    }
+
+    private static void assertSameInstances(String msg, Instances expected, Instances actual) {
+        if (expected == null)
+            assertNull(msg, actual);
+        else
+            assertEquals(msg, expected.toString(), actual.toString());
+    }
+
+    /**
+     * Asserts the same keys (in the same order), and the same value for each key.
+     */
+    private static void assertSameStats(String msg, HashMap<String,Object> expected, HashMap<String,Object> actual) {
+        assertEquals(msg, new ArrayList<String>(expected.keySet()), new ArrayList<String>(actual.keySet()));
+        for (String key : expected.keySet()) {
+            Object e = expected.get(key);
+            Object a = actual.get(key);
+            String m = msg + ", " + key;
+            if (e instanceof Number) {
+                assertTrue(m, a instanceof Number);
+                assertSameValue(m, ((Number) e).doubleValue(), ((Number) a).doubleValue());
+            }
+            else if (e instanceof double[]) {
+                double ev[] = (double[]) e;
+                double av[] = (double[]) a;
+                assertEquals(m, ev.length, av.length);
+                for (int j = 0; j < ev.length; j++)
+                    assertSameValue(m + "[" + j + "]", ev[j], av[j]);
+            }
+            else if (e instanceof int[]) {
+                assertTrue(m, Arrays.equals((int[]) e, (int[]) a));
+            }
+            else if (e instanceof Instances[]) {
+                Instances ev[] = (Instances[]) e;
+                Instances av[] = (Instances[]) a;
+                assertEquals(m, ev.length, av.length);
+                for (int j = 0; j < ev.length; j++)
+                    assertSameInstances(m + "[" + j + "]", ev[j], av[j]);
+            }
+            else if (e instanceof Instances || e == null) {
+                assertSameInstances(m, (Instances) e, (Instances) a);
+            }
+            else {
+                fail(m + ": unexpected type " + e.getClass().getName());
+            }
+        }
+    }
+
+    public void testMLStats() {
+        Random r = new Random(1);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int N = 1 + r.nextInt(40);
+            int L = 1 + r.nextInt(8);
+            int Y[][] = randomY(r, N, L, 2);
+            double Rpred[][] = randomConfidences(r, N, L);
+            double t[] = new double[L];
+            for (int j = 0; j < L; j++)
+                t[j] = THRESHOLDS[r.nextInt(THRESHOLDS.length)];
+            for (int V = 1; V <= 7; V++) {
+                String msg = "Trial " + trial + ", V=" + V;
+                HashMap<String,Object> expected = expectedMLStats(Rpred, Y, t, V);
+                assertSameStats(msg, expected, MLEvalUtils.getMLStats(Rpred, Y, t, String.valueOf(V)));
+                assertSameStats(msg + ", 2 threads", expected, MLEvalUtils.getMLStats(Rpred, Y, t, String.valueOf(V), 2));
+            }
+        }
+    }
+
+    public void testMLStatsThresholdString() {
+        Random r = new Random(2);
+        int Y[][] = randomY(r, 30, 5, 2);
+        double Rpred[][] = randomConfidences(r, 30, 5);
+        double t[] = new double[5];
+        Arrays.fill(t, 0.5);
+        for (int V = 1; V <= 7; V++)
+            assertSameStats("V=" + V, expectedMLStats(Rpred, Y, t, V), MLEvalUtils.getMLStats(Rpred, Y, "0.5", String.valueOf(V)));
+    }
+
+    public void testMTStats() {
+        Random r = new Random(3);
+        for (int trial = 0; trial < TRIALS; trial++) {
+            int N = 1 + r.nextInt(40);
+            int L = 1 + r.nextInt(6);
+            int K = 2 + r.nextInt(4);
+            int Y[][] = randomY(r, N, L, K);
+            double Rpred[][] = randomPredictions(r, N, L, K);
+            for (int V = 1; V <= 7; V++)
+                assertSameStats("Trial " + trial + ", V=" + V, expectedMTStats(Rpred, Y, V), MLEvalUtils.getMTStats(Rpred, Y, String.valueOf(V)));
+        }
+    }
+
+    public static Test suite() {
+        return new TestSuite(MLEvalUtilsTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
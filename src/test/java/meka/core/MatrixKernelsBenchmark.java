@@ -0,0 +1,118 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import Jama.Matrix;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Benchmarks the matrix kernels, against the plain triple loops (as MatrixUtils used to have them) and Jama.
+ * Not a unit test; run from the command line (on the test classpath) with:<p/>
+ * java meka.core.MatrixKernelsBenchmark [seconds per measurement]
+ * <br>
+ * Each operation is warmed up, then run repeatedly for the given time (default: 1 second); the median time per call is
+ * reported. Use -XX:ActiveProcessorCount (or -Djava.util.concurrent.ForkJoinPool.common.parallelism) to vary the
+ * number of threads of the kernels.
+ *
+ * @version $Revision$
+ */
+public class MatrixKernelsBenchmark {
+
+    /** n x p times p x q: square, and as in the forward/backward passes of a neural network (batch x inputs x hidden). */
+    private static final int SIZES[][] = {{128, 128, 128}, {512, 512, 512}, {1024, 1024, 1024}, {10000, 100, 100}, {64, 1000, 500}};
+
+    /** An operation to time. */
+    private interface Op {
+        Object run();
+    }
+
+    /** The plain i-k-j triple loop (previously MatrixUtils.multiply). */
+    private static double[][] naiveMultiply(double A[][], double B[][]) {
+        double C[][] = new double[A.length][B[0].length];
+        for (int i = 0; i < A.length; i++)
+            for (int k = 0; k < B.length; k++)
+                for (int j = 0; j < B[0].length; j++)
+                    C[i][j] += A[i][k] * B[k][j];
+        return C;
+    }
+
+    /** A transpose, then the triple loop (previously MatrixUtils.transposeMultiply). */
+    private static double[][] naiveTransposeMultiply(double A[][], double B[][]) {
+        double At[][] = new double[A[0].length][A.length];
+        for (int i = 0; i < A.length; i++)
+            for (int j = 0; j < A[0].length; j++)
+                At[j][i] = A[i][j];
+        return naiveMultiply(At, B);
+    }
+
+    /** The triple loop, then the sigmoid (previously MatrixUtils.sigma(MatrixUtils.multiply(A,B))). */
+    private static double[][] naiveMultiplySigma(double A[][], double B[][]) {
+        double C[][] = naiveMultiply(A, B);
+        double S[][] = new double[C.length][C[0].length];
+        for (int i = 0; i < C.length; i++)
+            for (int j = 0; j < C[0].length; j++)
+                S[i][j] = MatrixUtils.sigma(C[i][j]);
+        return S;
+    }
+
+    /** The median time of a call of op (in ms), over (about) the given time. */
+    private static double time(Op op, double seconds) {
+        // warm up
+        long end = System.nanoTime() + (long)(seconds * 0.5e9);
+        while (System.nanoTime() < end)
+            op.run();
+        double times[] = new double[10000];
+        int n = 0;
+        end = System.nanoTime() + (long)(seconds * 1e9);
+        do {
+            long t = System.nanoTime();
+            op.run();
+            times[n++] = (System.nanoTime() - t) / 1e6;
+        } while (System.nanoTime() < end && n < times.length);
+        Arrays.sort(times, 0, n);
+        return times[n / 2];
+    }
+
+    public static void main(String[] args) {
+        double seconds = (args.length > 0) ? Double.parseDouble(args[0]) : 1.0;
+        Random r = new Random(1);
+        System.out.println("Threads (fork/join pool): " + java.util.concurrent.ForkJoinPool.getCommonPoolParallelism());
+        System.out.println(String.format("%-12s %-20s %10s %10s %10s", "op", "n x p x q", "naive ms", "Jama ms", "kernel ms"));
+        for (int s[] : SIZES) {
+            final double A[][] = MatrixUtils.randn(s[0], s[1], r);
+            final double B[][] = MatrixUtils.randn(s[1], s[2], r);
+            final double At[][] = MatrixUtils.randn(s[0], s[2], r);
+            final double C[][] = new double[s[0]][s[2]];
+            final double Ct[][] = new double[s[1]][s[2]];
+            final Matrix A_ = new Matrix(A), B_ = new Matrix(B), At_ = new Matrix(At);
+            String dim = s[0] + " x " + s[1] + " x " + s[2];
+            System.out.println(String.format("%-12s %-20s %10.3f %10.3f %10.3f", "A*B", dim,
+                time(() -> naiveMultiply(A, B), seconds),
+                time(() -> A_.times(B_), seconds),
+                time(() -> MatrixKernels.multiply(A, B, C), seconds)));
+            System.out.println(String.format("%-12s %-20s %10.3f %10.3f %10.3f", "A^T*B", dim,
+                time(() -> naiveTransposeMultiply(A, At), seconds),
+                time(() -> A_.transpose().times(At_), seconds),
+                time(() -> MatrixKernels.transposeMultiply(A, At, Ct), seconds)));
+            System.out.println(String.format("%-12s %-20s %10.3f %10.3f %10.3f", "sigma(A*B)", dim,
+                time(() -> naiveMultiplySigma(A, B), seconds),
+                time(() -> MatrixUtils.sigma(A_.times(B_)), seconds),
+                time(() -> MatrixKernels.multiplySigma(A, B, null, C), seconds)));
+        }
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import Jama.Matrix;
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the matrix kernels, against Jama (which sums in the same order, so the results are the same).
+ *
+ * @version $Revision$
+ */
+public class MatrixKernelsTest extends TestCase {
+
+    /** Dimensions around (and across) the block sizes. */
+    private static final int SIZES[][] = {{1, 1, 1}, {3, 5, 2}, {17, 65, 9}, {70, 130, 300}, {200, 7, 513}};
+
+    public void testMultiply() {
+        Random r = new Random(1);
+        for (int s[] : SIZES) {
+            double A[][] = MatrixUtils.randn(s[0], s[1], r);
+            double B[][] = MatrixUtils.randn(s[1], s[2], r);
+            double C[][] = new Matrix(A).times(new Matrix(B)).getArray();
+            assertTrue(Arrays.deepEquals(C, MatrixKernels.multiply(A, B, null)));
+            assertTrue(Arrays.deepEquals(C, MatrixUtils.multiply(A, B)));
+            // into a (dirty) buffer
+            double C_[][] = MatrixUtils.randn(s[0], s[2], r);
+            assertSame(C_, MatrixKernels.multiply(A, B, C_));
+            assertTrue(Arrays.deepEquals(C, C_));
+        }
+    }
+
+    public void testTransposed() {
+        Random r = new Random(2);
+        for (int s[] : SIZES) {
+            double A[][] = MatrixUtils.randn(s[0], s[1], r);
+            double B[][] = MatrixUtils.randn(s[0], s[2], r);
+            double C[][] = new Matrix(A).transpose().times(new Matrix(B)).getArray();
+            assertTrue(Arrays.deepEquals(C, MatrixKernels.transposeMultiply(A, B, null)));
+            assertTrue(Arrays.deepEquals(C, MatrixUtils.transposeMultiply(A, B)));
+            double D[][] = MatrixUtils.randn(s[2], s[1], r);
+            double E[][] = new Matrix(A).times(new Matrix(D).transpose()).getArray();
+            assertTrue(Arrays.deepEquals(E, MatrixKernels.multiplyTranspose(A, D, null)));
+            assertTrue(Arrays.deepEquals(E, MatrixUtils.multiplyTranspose(A, D)));
+            assertTrue(Arrays.deepEquals(MatrixUtils.sigma(E), MatrixKernels.multiplyTransposeSigma(A, D, null)));
+        }
+    }
+
+    public void testMultiplySigma() {
+        Random r = new Random(3);
+        for (int s[] : SIZES) {
+            double A[][] = MatrixUtils.randn(s[0], s[1], r);
+            double B[][] = MatrixUtils.randn(s[1], s[2], r);
+            double b[] = MatrixUtils.randn(1, s[2], r)[0];
+            double C[][] = new Matrix(A).times(new Matrix(B)).getArray();
+            assertTrue(Arrays.deepEquals(MatrixUtils.sigma(C), MatrixKernels.multiplySigma(A, B, null, null)));
+            double Cb[][] = new double[s[0]][s[2]];
+            for (int i = 0; i < s[0]; i++)
+                for (int j = 0; j < s[2]; j++)
+                    Cb[i][j] = MatrixUtils.sigma(C[i][j] + b[j]);
+            assertTrue(Arrays.deepEquals(Cb, MatrixKernels.multiplySigma(A, B, b, null)));
+        }
+    }
+
+    public void testElementWise() {
+        Random r = new Random(4);
+        double A[][] = MatrixUtils.randn(300, 301, r);
+        double B[][] = MatrixUtils.randn(300, 301, r);
+        Matrix A_ = new Matrix(A);
+        Matrix B_ = new Matrix(B);
+        assertTrue(Arrays.deepEquals(A_.plus(B_).getArray(), MatrixUtils.add(A, B)));
+        assertTrue(Arrays.deepEquals(A_.minus(B_).getArray(), MatrixUtils.subtract(A, B)));
+        double S[][] = MatrixUtils.sigma(A);
+        double dS[][] = MatrixUtils.dsigma(A);
+        assertEquals(MatrixUtils.sigma(A[299][300]), S[299][300], 0.0);
+        assertEquals(MatrixUtils.dsigma(A[299][300]), dS[299][300], 0.0);
+        // in place
+        double C[][] = MatrixUtils.copy(A);
+        assertSame(C, MatrixKernels.add(C, B, C));
+        assertTrue(Arrays.deepEquals(A_.plus(B_).getArray(), C));
+        assertSame(C, MatrixKernels.subtract(C, B, C));
+        assertSame(C, MatrixKernels.sigma(C, C));
+        assertTrue(Arrays.deepEquals(MatrixUtils.sigma(A_.plus(B_).minus(B_).getArray()), C));
+        C = MatrixUtils.copy(A);
+        assertSame(C, MatrixKernels.dsigma(C, C));
+        assertTrue(Arrays.deepEquals(dS, C));
+    }
+
+    public void testDimensions() {
+        try {
+            MatrixKernels.multiply(new double[2][3], new double[2][3], null);
+            fail("Expected an exception");
+        }
+        catch (IllegalArgumentException e) {
+            // expected
+        }
+        assertEquals(0, MatrixKernels.multiply(new double[0][3], new double[3][2], null).length);
+    }
+
+    public void testNumThreads() throws Exception {
+        Random r = new Random(4);
+        final double A[][] = MatrixUtils.randn(200, 300, r);
+        final double B[][] = MatrixUtils.randn(300, 100, r);
+        final double C[][] = new Matrix(A).times(new Matrix(B)).getArray();
+        try {
+            for (int numThreads : new int[]{ThreadUtils.SEQUENTIAL, 2, ThreadUtils.ALL}) {
+                MatrixKernels.setNumThreads(numThreads);
+                if (numThreads == ThreadUtils.SEQUENTIAL)
+                    assertEquals(ThreadUtils.SEQUENTIAL, MatrixKernels.getNumThreads());
+                assertTrue(Arrays.deepEquals(C, MatrixKernels.multiply(A, B, null)));
+            }
+            // a pool of its own is shut down when replaced
+            MatrixKernels.setNumThreads(2);
+            java.util.concurrent.ForkJoinPool previous = MatrixKernels.pool;
+            MatrixKernels.setNumThreads(3);
+            assertTrue(previous.isShutdown());
+            assertTrue(Arrays.deepEquals(C, MatrixKernels.multiply(A, B, null)));
+            // (sequentially) within the threads of a ThreadUtils pool
+            java.util.List<java.util.concurrent.Callable<double[][]>> jobs = new java.util.ArrayList<>();
+            for (int i = 0; i < 2; i++) {
+                jobs.add(new java.util.concurrent.Callable<double[][]>() {
+                    @Override
+                    public double[][] call() {
+                        assertTrue(ThreadUtils.isWorkerThread());
+                        return MatrixKernels.multiply(A, B, null);
+                    }
+                });
+            }
+            for (double C_[][] : ThreadUtils.runAll(jobs, 2))
+                assertTrue(Arrays.deepEquals(C, C_));
+            assertFalse(ThreadUtils.isWorkerThread());
+        }
+        finally {
+            MatrixKernels.setNumThreads(ThreadUtils.ALL);
+        }
+    }
+
+    public static Test suite() {
+        return new TestSuite(MatrixKernelsTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -1139,6 +1139,198 @@ public class MetricsTest
         }
     }
     
+    public void testPredictionsToRanking(){
+        assertTrue(Arrays.equals(new int[]{5,1,3,3,4,0},
+                                 MLUtils.predictionsToRanking(new double[]{0.0,0.75,0.5,0.5,0.25,1.0})));
+        assertTrue(Arrays.equals(new int[]{2,-1,0,2},
+                                 MLUtils.predictionsToRanking(new double[]{0.2,Double.NaN,0.9,0.2})));
+    }
+
+    public void testL_Coverage(){
+        // relevant labels ranked at positions 1 and 3 (0-based)
+        assertEquals(3.0,
+                     Metrics.L_Coverage(new int[]{0,1,0,1},
+                                        new double[]{0.9,0.8,0.7,0.1}), 0.0);
+        // ties are counted pessimistically
+        assertEquals(2.0,
+                     Metrics.L_Coverage(new int[]{1,0,0},
+                                        new double[]{0.5,0.5,0.5}), 0.0);
+        // missing labels are ignored, and so are rows with no relevant labels
+        assertEquals(0.5,
+                     Metrics.L_Coverage(new int[][]{{-1,1,0},{0,0,0},{-1,-1,-1}},
+                                        new double[][]{{0.9,0.1,0.2},{0.3,0.2,0.1},{0.1,0.2,0.3}}), 0.0);
+    }
+
+    /**
+     * The ranking metrics are computed in O(L log L); they must give exactly the same 
+     * results as the original (quadratic) implementations, below.
+     */
+    public void testRankingRegression(){
+        java.util.Random rand = new java.util.Random(42);
+        for(int i = 0; i < 2000; i++){
+            int L = 1 + rand.nextInt(30);
+            int y[] = new int[L];
+            double p[] = new double[L];
+            for(int j = 0; j < L; j++){
+                y[j] = rand.nextInt(10) == 0 ? -1 : rand.nextInt(2);
+                // few distinct values, for plenty of ties
+                p[j] = (i % 2 == 0) ? rand.nextInt(5) / 4.0 : rand.nextDouble();
+                if (rand.nextInt(20) == 0)
+                    p[j] = Double.NaN;
+            }
+
+            assertTrue(Arrays.equals(predictionsToRankingQuadratic(p),
+                                     MLUtils.predictionsToRanking(p)));
+
+            double[][] aligned = Metrics.align(y,p);
+            int y_[] = Metrics.toIntArray(aligned[0]);
+            double p_[] = aligned[1];
+            int order[] = Utils.sort(p_);
+            int r[] = MLUtils.predictionsToRanking(p_);
+
+            assertEquals(L_RankLossQuadratic(y_,order),
+                         Metrics.L_RankLoss(y_,order), 0.0);
+            assertEquals(P_AveragePrecisionQuadratic(y_,r),
+                         Metrics.P_AveragePrecision(y_,r), 0.0);
+            assertTrue(Arrays.equals(r, MLUtils.predictionsToRanking(p_,order)));
+        }
+    }
+
+    private static int[] predictionsToRankingQuadratic(double[] predictions){
+        int[] res = new int[predictions.length];
+        for (int i = 0; i < predictions.length; i++){
+            int countHigherOrEqual = 0;
+            for (int j = 0; j < predictions.length; j++){
+                if (predictions[i] <= predictions[j]){
+                    countHigherOrEqual++;
+                }
+            }
+            res[i] = countHigherOrEqual - 1;
+        }
+        return res;
+    }
+
+    private static double L_RankLossQuadratic(int y[], int r[]){
+        ArrayList<Integer> tI = new ArrayList<Integer>();
+        ArrayList<Integer> fI = new ArrayList<Integer>();
+        for (int j = 0; j < y.length; j++){
+            if (y[j] == 1){
+                tI.add(j);
+            } else {
+                fI.add(j);
+            }
+        }
+        if (tI.isEmpty() || fI.isEmpty()){
+            return 0.0;
+        }
+        int c = 0;
+        for (int k : tI){
+            for (int l : fI){
+                if (position(k,r) < position(l,r)){
+                    c++;
+                }
+            }
+        }
+        return (double) c / (double)(tI.size() * fI.size());
+    }
+
+    private static int position(int index, int r[]){
+        int i = 0;
+        while (r[i] != index)
+            i++;
+        return i;
+    }
+
+    private static double P_AveragePrecisionQuadratic(int y[], int r[]){
+        ArrayList<Integer> ones = new ArrayList<Integer>();
+        for (int j = 0; j < y.length; j++){
+            if (y[j] == 1){
+                ones.add(j);
+            }
+        }
+        if (ones.size() <= 0){
+            return 1.0;
+        }
+        double avg_prec = 0;
+        for (int j : ones){
+            double s = 0.0;
+            for (int k : ones){
+                if (r[k] <= r[j]){
+                    s++;
+                }
+            }
+            avg_prec += (s / (1+r[j]));
+        }
+        avg_prec /= ones.size();
+        return avg_prec;
+    }
+
+    /**
+     * The curves (and the areas under them) are computed on primitive arrays; they must be the same as
+     * those of Weka's ThresholdCurve.
+     */
+    public void testCurveDataRegression(){
+        java.util.Random rand = new java.util.Random(7);
+        for(int i = 0; i < 200; i++){
+            int N = 1 + rand.nextInt(100);
+            int y[] = new int[N];
+            double p[] = new double[N];
+            for(int n = 0; n < N; n++){
+                y[n] = rand.nextInt(10) == 0 ? -1 : rand.nextInt(2);
+                // few distinct values, for plenty of ties
+                p[n] = (i % 2 == 0) ? rand.nextInt(5) / 4.0 : rand.nextDouble();
+                if (rand.nextInt(20) == 0)
+                    p[n] = Double.NaN;
+            }
+
+            double[][] aligned = Metrics.align(y,p);
+            if (aligned[0].length == 0)
+                continue;
+            Instances expected = new ThresholdCurve().getCurve(MLUtils.toWekaPredictions(Metrics.toIntArray(aligned[0]),aligned[1]));
+            Instances actual = Metrics.curveData(y,p);
+
+            assertEquals(expected.numInstances(), actual.numInstances());
+            for(int k = 0; k < expected.numInstances(); k++){
+                assertTrue(Arrays.equals(expected.instance(k).toDoubleArray(),
+                                         actual.instance(k).toDoubleArray()));
+            }
+            assertEquals(ThresholdCurve.getROCArea(expected),
+                         CurveUtils.getCurve(y,p).areaUnderROC(), 0.0);
+            assertEquals(ThresholdCurve.getPRCArea(expected),
+                         CurveUtils.getCurve(y,p).areaUnderPRC(), 0.0);
+            for (double t = 0.0; t < 1.; t+=0.1) {
+                assertEquals(ThresholdCurve.getThresholdInstance(expected,t),
+                             CurveUtils.getCurve(y,p).thresholdIndex(t));
+            }
+        }
+    }
+
+    public void testCurveDownsample(){
+        int y[] = new int[1000];
+        double p[] = new double[1000];
+        for(int n = 0; n < 1000; n++){
+            y[n] = n % 3 == 0 ? 1 : 0;
+            p[n] = n / 1000.0;
+        }
+        CurveUtils.Curve curve = CurveUtils.getCurve(y,p);
+        assertEquals(1001, curve.size());
+        assertSame(curve, curve.downsample(0));
+        assertSame(curve, curve.downsample(2000));
+
+        CurveUtils.Curve small = curve.downsample(11);
+        assertEquals(11, small.size());
+        // keeps the first and the last (zero) point
+        assertEquals(curve.truePositives(0), small.truePositives(0));
+        assertEquals(curve.falsePositives(0), small.falsePositives(0));
+        assertEquals(0, small.truePositives(10));
+        assertEquals(0, small.falsePositives(10));
+        assertEquals(curve.threshold(1000), small.threshold(10), 0.0);
+
+        Instances data[] = Metrics.curveData(new CurveUtils.Curve[]{curve, null}, 11);
+        assertEquals(11, data[0].numInstances());
+        assertNull(data[1]);
+    }
+
     public static Test suite() {
         return new TestSuite(MetricsTest.class);
     }
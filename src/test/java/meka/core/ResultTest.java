@@ -0,0 +1,116 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * Tests the (compact) storage of Result.
+ *
+ * @version $Revision$
+ */
+public class ResultTest extends TestCase {
+
+    /** A multi-label Result of N random predictions, with some missing labels. */
+    protected static Result randomResult(int N, int L, Random r) {
+        Result result = new Result(N, L);
+        result.setInfo("Type", "ML");
+        result.setInfo("Threshold", "0.5");
+        for (int i = 0; i < N; i++) {
+            double p[] = new double[L];
+            int y[] = new int[L];
+            for (int j = 0; j < L; j++) {
+                p[j] = r.nextDouble();
+                y[j] = r.nextInt(3) - 1;
+            }
+            result.addResult(p, y);
+        }
+        return result;
+    }
+
+    protected static void assertSameRows(Result r1, Result r2) {
+        assertEquals(r1.size(), r2.size());
+        assertTrue(Arrays.deepEquals(r1.allPredictions(), r2.allPredictions()));
+        assertTrue(Arrays.deepEquals(r1.allTrueValues(), r2.allTrueValues()));
+        for (int j = 0; j < r1.L; j++)
+            assertTrue(Arrays.equals(r1.colConfidence(j), r2.colConfidence(j)));
+    }
+
+    protected static void assertSameStats(Map<String,Object> stats1, Map<String,Object> stats2) {
+        assertEquals(stats1.keySet(), stats2.keySet());
+        for (String m : stats1.keySet())
+            assertTrue(m, Arrays.deepEquals(new Object[]{stats1.get(m)}, new Object[]{stats2.get(m)}));
+    }
+
+    public void testSetCompact() {
+        Result r1 = randomResult(1500, 5, new Random(1));
+        Result r2 = randomResult(1000, 5, new Random(1));
+        assertFalse(r2.isCompact());
+        r2.setCompact(true);
+        assertTrue(r2.isCompact());
+        assertNull(r2.predictions);
+        assertNull(r2.actuals);
+        // (the rest added compactly)
+        Result r3 = randomResult(1500, 5, new Random(1));
+        for (int i = 1000; i < 1500; i++)
+            r2.addResult(r3.rowConfidence(i), r3.rowTrue(i));
+        assertSameRows(r1, r2);
+        assertSameStats(Result.getStats(r1, "6"), Result.getStats(r2, "6"));
+        // and back
+        r2.setCompact(false);
+        assertFalse(r2.isCompact());
+        assertEquals(1500, r2.predictions.size());
+        assertSameRows(r1, r2);
+    }
+
+    public void testSerialization() throws Exception {
+        Result r1 = randomResult(1100, 3, new Random(2));
+        r1.setCompact(true);
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream out = new ObjectOutputStream(bytes);
+        out.writeObject(r1);
+        out.close();
+        Result r2 = (Result) new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray())).readObject();
+        assertTrue(r2.isCompact());
+        assertSameRows(r1, r2);
+        assertEquals(r1.info, r2.info);
+    }
+
+    public void testCompactSize() {
+        assertFalse(Result.isCompactSize(1000, 6));
+        assertTrue(Result.isCompactSize((int) (Result.COMPACT_SIZE / 10), 10));
+        // (no overflow)
+        assertTrue(Result.isCompactSize(Integer.MAX_VALUE, 1000));
+    }
+
+    public static Test suite() {
+        return new TestSuite(ResultTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.Random;
+
+/**
+ * Tests the sliding window metrics, against a MetricAccumulator on the rows in the window.
+ *
+ * @version $Revision$
+ */
+public class SlidingWindowMetricsTest extends TestCase {
+
+    private static final double EPS = 1e-9;
+
+    public void testWindow() {
+        Random rand = new Random(1);
+        int L = 6;
+        double t[] = new double[L];
+        java.util.Arrays.fill(t, 0.5);
+        for (int W : new int[]{1, 7, 50}) {
+            int N = 333;
+            int Y[][] = new int[N][L];
+            double P[][] = new double[N][L];
+            SlidingWindowMetrics window = new SlidingWindowMetrics(L, t, W);
+            for (int i = 0; i < N; i++) {
+                for (int j = 0; j < L; j++) {
+                    Y[i][j] = (rand.nextInt(10) == 0) ? -1 : rand.nextInt(2);
+                    P[i][j] = rand.nextDouble();
+                }
+                window.update(Y[i], P[i]);
+                assertEquals(Math.min(i + 1, W), window.numInstances());
+                if (i % 11 != 0)
+                    continue;
+                MetricAccumulator acc = new MetricAccumulator(L, t);
+                for (int k = Math.max(0, i - W + 1); k <= i; k++)
+                    acc.update(Y[k], P[k]);
+                assertEquals(acc.P_Accuracy(), window.P_Accuracy(), EPS);
+                assertEquals(acc.P_Hamming(), window.P_Hamming(), EPS);
+                assertEquals(acc.P_ExactMatch(), window.P_ExactMatch(), EPS);
+                assertEquals(acc.P_FmacroAvgD(), window.P_FmacroAvgD(), EPS);
+                assertEquals(acc.P_FmicroAvg(), window.P_FmicroAvg(), EPS);
+            }
+        }
+    }
+
+    public void testMultiTarget() {
+        SlidingWindowMetrics window = new SlidingWindowMetrics(2, null, 2);
+        window.update(new int[]{2, 0}, new double[]{2.0, 1.0});
+        window.update(new int[]{1, 1}, new double[]{1.2, 0.8});
+        assertEquals(0.75, window.P_Hamming(), EPS);
+        assertEquals(0.5, window.P_ExactMatch(), EPS);
+        window.update(new int[]{0, 1}, new double[]{0.0, 1.0});
+        assertEquals(1.0, window.P_Hamming(), EPS);
+        assertEquals(1.0, window.P_ExactMatch(), EPS);
+    }
+
+    public static Test suite() {
+        return new TestSuite(SlidingWindowMetricsTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
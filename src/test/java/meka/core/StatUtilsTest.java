@@ -0,0 +1,99 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import weka.core.Attribute;
+import weka.core.DenseInstance;
+import weka.core.Instances;
+import weka.core.SparseInstance;
+import weka.core.Utils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * Tests the co-occurrence counts.
+ *
+ * @version $Revision$
+ */
+public class StatUtilsTest extends TestCase {
+
+    /**
+     * The co-occurrence counts, as they were originally computed: over all pairs of labels.
+     */
+    private static int[][] getCDense(Instances D) {
+        int L = D.classIndex();
+        int C[][] = new int[L][L];
+        for (int i = 0; i < D.numInstances(); i++) {
+            for (int j = 0; j < L; j++) {
+                C[j][j] += (int) D.instance(i).value(j);
+                for (int k = j + 1; k < L; k++)
+                    C[j][k] += (D.instance(i).value(j) + D.instance(i).value(k) >= 2.0) ? 1 : 0;
+            }
+        }
+        return C;
+    }
+
+    private static Instances randomData(Random rand, int N, int L, boolean sparse) {
+        ArrayList<Attribute> atts = new ArrayList<Attribute>();
+        for (int j = 0; j < L; j++)
+            atts.add(new Attribute("y" + j, Arrays.asList("0", "1")));
+        atts.add(new Attribute("x"));
+        Instances D = new Instances("random", atts, N);
+        for (int i = 0; i < N; i++) {
+            double v[] = new double[L + 1];
+            for (int j = 0; j < L; j++)
+                v[j] = (rand.nextDouble() < 0.1) ? 1.0 : 0.0;
+            v[L] = rand.nextDouble();
+            D.add(sparse ? new SparseInstance(1.0, v) : new DenseInstance(1.0, v));
+        }
+        D.setClassIndex(L);
+        return D;
+    }
+
+    public void testGetC() {
+        Random rand = new Random(1);
+        for (int it = 0; it < 20; it++) {
+            Instances D = randomData(rand, 1 + rand.nextInt(100), 1 + rand.nextInt(40), it % 2 == 0);
+            if (it % 3 == 0) {
+                // missing and non-binary label values
+                D.instance(0).setValue(0, Utils.missingValue());
+                D.instance(D.numInstances() - 1).setValue(D.classIndex() - 1, 2.0);
+            }
+            int C[][] = getCDense(D);
+            assertTrue(Arrays.deepEquals(C, StatUtils.getC(D)));
+            assertTrue(Arrays.deepEquals(C, StatUtils.getC(D, 3)));
+        }
+    }
+
+    public void testGetApproxP() {
+        Instances D = randomData(new Random(2), 200, 10, false);
+        int N = D.numInstances();
+        assertTrue(Arrays.deepEquals(StatUtils.getP(StatUtils.getC(D), N), StatUtils.getApproxP(D)));
+    }
+
+    public static Test suite() {
+        return new TestSuite(StatUtilsTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
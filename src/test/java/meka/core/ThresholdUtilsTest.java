@@ -0,0 +1,120 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.core;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Tests the PCut threshold calibration.
+ *
+ * @version $Revision$
+ */
+public class ThresholdUtilsTest extends TestCase {
+
+    /**
+     * PCut, as it was originally computed: on all the confidences, fully sorted.
+     */
+    private static double pCutSorted(List<double[]> Y, double LC_train) {
+        if (Y.size() <= 0)
+            return 0.5;
+        int N = Y.size();
+        List<Double> big = new ArrayList<Double>();
+        for (double y[] : Y)
+            for (double y_ : y)
+                big.add(y_);
+        java.util.Collections.sort(big);
+        int i = big.size() - (int) Math.round(LC_train * (double) N);
+        if (N == big.size()) {
+            if (i + 1 == N)
+                return (big.get(N - 2) + big.get(N - 1)) / 2.0;
+            if (i + 1 >= N)
+                return 1.0;
+            else
+                return Math.max(((big.get(i) + big.get(i + 1)) / 2.0), 0.00001);
+        }
+        if (i == big.size() || i + 1 == big.size())
+            return Math.max((big.get(big.size() - 2) + big.get(big.size() - 1)) / 2.0, 0.00001);
+        return Math.max((big.get(i) + big.get(Math.max(i + 1, N - 1))) / 2.0, 0.00001);
+    }
+
+    private static List<double[]> randomConfidences(Random rand, int N, int L, int mode) {
+        List<double[]> Y = new ArrayList<double[]>();
+        for (int i = 0; i < N; i++) {
+            double y[] = new double[L];
+            for (int j = 0; j < L; j++) {
+                if (mode == 0)
+                    y[j] = rand.nextInt(4) / 3.0;                  // many ties
+                else if (mode == 1)
+                    y[j] = Math.pow(rand.nextDouble(), 30);         // skewed (crowded histogram bins)
+                else
+                    y[j] = rand.nextDouble();
+            }
+            Y.add(y);
+        }
+        return Y;
+    }
+
+    public void testPCut1() {
+        Random rand = new Random(1);
+        for (int it = 0; it < 300; it++) {
+            int N = 2 + rand.nextInt(200);
+            int L = 2 + rand.nextInt(10);
+            List<double[]> Y = randomConfidences(rand, N, L, it % 3);
+            double LC = rand.nextDouble() * L;
+            assertEquals(pCutSorted(Y, LC), ThresholdUtils.calibrateThreshold(Y, LC), 0.0);
+        }
+    }
+
+    public void testPCutL() {
+        Random rand = new Random(2);
+        for (int it = 0; it < 100; it++) {
+            int N = 2 + rand.nextInt(200);
+            int L = 1 + rand.nextInt(10);
+            List<double[]> Y = randomConfidences(rand, N, L, it % 3);
+            double LC[] = new double[L];
+            double expected[] = new double[L];
+            for (int j = 0; j < L; j++) {
+                LC[j] = (rand.nextInt(5) == 0) ? 0.0 : rand.nextDouble();
+                List<double[]> Y_j = new ArrayList<double[]>();
+                for (double y[] : Y)
+                    Y_j.add(new double[]{y[j]});
+                expected[j] = pCutSorted(Y_j, LC[j]);
+            }
+            assertTrue(Arrays.equals(expected, ThresholdUtils.calibrateThresholds(Y, LC)));
+            assertTrue(Arrays.equals(expected, ThresholdUtils.calibrateThresholds(Y, LC, 3)));
+        }
+    }
+
+    public void testEmpty() {
+        assertEquals(0.5, ThresholdUtils.calibrateThreshold(new ArrayList<double[]>(), 1.0), 0.0);
+        assertTrue(Arrays.equals(new double[]{0.5, 0.5}, ThresholdUtils.calibrateThresholds(new ArrayList<double[]>(), new double[]{0.2, 0.3})));
+    }
+
+    public static Test suite() {
+        return new TestSuite(ThresholdUtilsTest.class);
+    }
+
+    public static void main(String[] args){
+        junit.textui.TestRunner.run(suite());
+    }
+}
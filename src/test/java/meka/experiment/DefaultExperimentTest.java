@@ -0,0 +1,112 @@
+/*
+ *   This program is free software: you can redistribute it and/or modify
+ *   it under the terms of the GNU General Public License as published by
+ *   the Free Software Foundation, either version 3 of the License, or
+ *   (at your option) any later version.
+ *
+ *   This program is distributed in the hope that it will be useful,
+ *   but WITHOUT ANY WARRANTY; without even the implied warranty of
+ *   MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ *   GNU General Public License for more details.
+ *
+ *   You should have received a copy of the GNU General Public License
+ *   along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package meka.experiment;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+import meka.classifiers.multilabel.BR;
+import meka.classifiers.multilabel.CC;
+import meka.classifiers.multilabel.MultiLabelClassifier;
+import meka.experiment.datasetproviders.LocalDatasetProvider;
+import meka.experiment.evaluationstatistics.EvaluationStatistics;
+import meka.experiment.evaluationstatistics.InMemory;
+import meka.experiment.evaluators.CrossValidation;
+import meka.experiment.evaluators.RepeatedRuns;
+import weka.classifiers.trees.J48;
+
+import java.io.File;
+import java.util.List;
+
+/**
+ * Tests DefaultExperiment. Run from the command line with:<p/>
+ * java meka.experiment.DefaultExperimentTest
+ *
+ * @version $Revision$
+ */
+public class DefaultExperimentTest
+  extends TestCase {
+
+  /**
+   * Returns an experiment of 2 classifiers on 2 datasets, with 2 runs of 3-fold CV.
+   *
+   * @param numThreads the number of threads of the experiment
+   * @return the experiment
+   */
+  protected DefaultExperiment newExperiment(int numThreads) {
+    DefaultExperiment result = new DefaultExperiment();
+    BR br = new BR();
+    br.setClassifier(new J48());
+    CC cc = new CC();
+    cc.setClassifier(new J48());
+    result.setClassifiers(new MultiLabelClassifier[]{br, cc});
+    LocalDatasetProvider provider = new LocalDatasetProvider();
+    provider.setDatasets(new File[]{new File("src/test/resources/Music-train.arff"), new File("src/test/resources/Music-test.arff")});
+    result.setDatasetProvider(provider);
+    CrossValidation cv = new CrossValidation();
+    cv.setNumFolds(3);
+    RepeatedRuns runs = new RepeatedRuns();
+    runs.setLowerRuns(1);
+    runs.setUpperRuns(2);
+    runs.setEvaluator(cv);
+    result.setEvaluator(runs);
+    result.setStatisticsHandler(new InMemory());
+    result.setNumThreads(numThreads);
+    return result;
+  }
+
+  /**
+   * Runs the experiment and returns its statistics.
+   */
+  protected List<EvaluationStatistics> run(DefaultExperiment exp) {
+    assertNull(exp.initialize());
+    assertNull(exp.run());
+    exp.finish();
+    return exp.getStatistics();
+  }
+
+  /**
+   * The jobs run in parallel give the same statistics, in the same order, as sequential execution.
+   */
+  public void testParallel() {
+    List<EvaluationStatistics> stats1 = run(newExperiment(1));
+    List<EvaluationStatistics> stats2 = run(newExperiment(3));
+    // 2 datasets x 2 classifiers x 2 runs x 3 folds
+    assertEquals(24, stats1.size());
+    assertEquals(stats1.size(), stats2.size());
+    for (int i = 0; i < stats1.size(); i++) {
+      EvaluationStatistics s1 = stats1.get(i);
+      EvaluationStatistics s2 = stats2.get(i);
+      assertEquals(s1.getCommandLine(), s2.getCommandLine());
+      assertEquals(s1.getRelation(), s2.getRelation());
+      assertEquals(s1.keySet(), s2.keySet());
+      for (String key : s1.keySet()) {
+        // (apart from the timings)
+        if (key.toLowerCase().contains("time"))
+          continue;
+        assertEquals("Statistics " + i + ": " + key, s1.get(key), s2.get(key));
+      }
+    }
+  }
+
+  public static Test suite() {
+    return new TestSuite(DefaultExperimentTest.class);
+  }
+
+  public static void main(String[] args){
+    junit.textui.TestRunner.run(suite());
+  }
+}